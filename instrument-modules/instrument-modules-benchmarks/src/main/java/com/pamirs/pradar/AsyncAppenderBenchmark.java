@@ -0,0 +1,127 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 多个业务线程同时写调用日志时 AsyncAppender.append 的开销
+ * <p>
+ * maxWaitMillis=0 与 Pradar 的调用日志一样，队列满时不等待直接丢弃，accepted/discarded 分别统计进入队列与被丢弃的日志数，
+ * 对比时需要同时关注两者，丢弃得越多 append 看起来越快；maxWaitMillis>0 时队列满会等待消费者，
+ * 吞吐量即为消费者能持续写出的日志数
+ * <p>
+ * 由于 AsyncAppender 是包内可见的，所以基准测试放在与 AsyncAppender 相同的包下
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AsyncAppenderBenchmark {
+
+    @Param({"false", "true"})
+    public boolean batchEnabled;
+
+    @Param({"1024", "16384"})
+    public int queueSize;
+
+    @Param({"0", "100"})
+    public int maxWaitMillis;
+
+    private File logDir;
+    private AsyncAppender appender;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Pradar 初始化时会创建自身的日志输出，避免写到用户目录下
+        logDir = File.createTempFile("pradar-benchmark", "");
+        logDir.delete();
+        logDir.mkdirs();
+        System.setProperty("SIMULATOR_LOG_PATH", logDir.getAbsolutePath());
+        appender = new AsyncAppender(queueSize, maxWaitMillis, batchEnabled);
+        appender.start(new PradarRollingFileAppender(new File(logDir, "benchmark.log").getAbsolutePath(),
+            Pradar.MAX_RPC_LOG_FILE_SIZE, false), new TraceInvokeContextEncoder(), "BenchmarkLog");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        appender.flushAndWait();
+        appender.close();
+        final File[] files = logDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logDir.delete();
+    }
+
+    @Benchmark
+    public boolean append(Producer producer) {
+        if (appender.append(producer.ctx)) {
+            producer.accepted++;
+            return true;
+        }
+        producer.discarded++;
+        return false;
+    }
+
+    /**
+     * 业务线程，每个线程重复提交同一个已经结束的客户端调用上下文
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Producer {
+
+        public long accepted;
+        public long discarded;
+
+        private InvokeContext ctx;
+
+        @Setup(Level.Trial)
+        public void setup(AsyncAppenderBenchmark benchmark) {
+            ctx = new InvokeContext(TraceIdGenerator.generateCompact(false), "benchmark-app", InvokeId.of("0.1"));
+            ctx.startClientInvoke("com.example.OrderService", "query");
+            ctx.endClientInvoke(ResultCode.INVOKE_RESULT_SUCCESS, MiddlewareType.TYPE_RPC);
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            accepted = 0;
+            discarded = 0;
+        }
+    }
+}
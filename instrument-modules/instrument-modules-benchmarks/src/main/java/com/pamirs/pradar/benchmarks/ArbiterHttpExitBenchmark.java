@@ -0,0 +1,145 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.pamirs.pradar.internal.config.MatchConfig;
+import com.pamirs.pradar.pressurement.agent.shared.exit.ArbiterHttpExit;
+import com.pamirs.pradar.pressurement.agent.shared.exit.RpcWhiteListIndex;
+import com.pamirs.pradar.pressurement.agent.shared.exit.UrlWhiteListTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * http/rpc 白名单匹配开销
+ * <p>
+ * linear* 为原有的逐条匹配白名单的路径，compiled* 为编译后的前缀树/索引的路径，
+ * 白名单中 2/3 为常量路径，1/3 带有 {id} 路径变量，每次调用依次匹配常量命中、变量命中、未命中三个 url
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArbiterHttpExitBenchmark {
+
+    @Param({"500", "5000"})
+    public int whiteListSize;
+
+    private Set<MatchConfig> urlWhiteList;
+    private Set<MatchConfig> rpcWhiteList;
+    private UrlWhiteListTrie urlWhiteListTrie;
+    private RpcWhiteListIndex rpcWhiteListIndex;
+
+    private String[] urls;
+    private String[] rpcNames;
+
+    @Setup
+    public void setup() {
+        urlWhiteList = new LinkedHashSet<MatchConfig>();
+        rpcWhiteList = new LinkedHashSet<MatchConfig>();
+        for (int i = 0; i < whiteListSize; i++) {
+            if (i % 3 == 0) {
+                urlWhiteList.add(config("/service" + i + "/order/{id}/detail"));
+            } else {
+                urlWhiteList.add(config("/service" + i + "/api/list"));
+            }
+            rpcWhiteList.add(config("com.example.service.Service" + i + "#invoke"));
+        }
+        urlWhiteListTrie = UrlWhiteListTrie.compile(urlWhiteList);
+        rpcWhiteListIndex = RpcWhiteListIndex.compile(rpcWhiteList);
+
+        final int last = whiteListSize - 1;
+        final int lastVariable = last - last % 3;
+        final int lastLiteral = last % 3 == 0 ? last - 1 : last;
+        urls = new String[] {
+            "/service" + lastLiteral + "/api/list",
+            "/service" + lastVariable + "/order/20210618001/detail",
+            "/service" + whiteListSize + "/api/list"};
+        rpcNames = new String[] {
+            "com.example.service.Service" + last + "#invoke",
+            "com.example.service.Service" + whiteListSize + "#invoke"};
+    }
+
+    @Benchmark
+    public int linearUrl() {
+        int matched = 0;
+        for (String url : urls) {
+            for (MatchConfig matchConfig : urlWhiteList) {
+                MatchConfig result = ArbiterHttpExit.match(url, matchConfig);
+                if (result != null && result.isSuccess()) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int compiledUrl() {
+        int matched = 0;
+        for (String url : urls) {
+            if (urlWhiteListTrie.match(url) != null) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int linearRpc() {
+        int matched = 0;
+        for (String name : rpcNames) {
+            for (MatchConfig matchConfig : rpcWhiteList) {
+                if (name.equals(matchConfig.getUrl())) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int compiledRpc() {
+        int matched = 0;
+        for (String name : rpcNames) {
+            if (rpcWhiteListIndex.match(name) != null) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static MatchConfig config(String url) {
+        MatchConfig matchConfig = new MatchConfig();
+        matchConfig.setUrl(url);
+        return matchConfig;
+    }
+}
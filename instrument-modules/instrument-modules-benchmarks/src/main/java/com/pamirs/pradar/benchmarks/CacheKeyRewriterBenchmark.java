@@ -0,0 +1,133 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.util.CacheKeyRewriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 一次 100 个 key 的 MGET 改写成影子 key 的开销
+ * <p>
+ * legacy 为原有的每个 key 先解码成字符串、逐条比较白名单、拼接前缀后再编码回 byte[] 的路径，
+ * rewriter 为 {@link CacheKeyRewriter} 直接在字节上匹配白名单、数组拷贝前缀的路径，
+ * 每 10 个 key 中有 1 个命中白名单、1 个已经带有压测前缀
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheKeyRewriterBenchmark {
+
+    private static final int KEY_COUNT = 100;
+
+    @Param({"10", "200"})
+    public int whiteListSize;
+
+    private File logDir;
+    private byte[][] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Pradar 在类初始化时创建日志输出，必须在第一次访问 Pradar 之前设置
+        logDir = File.createTempFile("pradar-benchmark", "");
+        logDir.delete();
+        logDir.mkdirs();
+        System.setProperty("SIMULATOR_LOG_PATH", logDir.getAbsolutePath());
+
+        final Set<String> whiteList = new HashSet<String>();
+        for (int i = 0; i < whiteListSize; i++) {
+            whiteList.add("config:module" + i + ":");
+        }
+        GlobalConfig.getInstance().setCacheKeyWhiteList(whiteList);
+
+        keys = new byte[KEY_COUNT][];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key;
+            if (i % 10 == 0) {
+                key = "config:module" + (i % whiteListSize) + ":switch";
+            } else if (i % 10 == 1) {
+                key = Pradar.addClusterTestPrefix("user:session:" + i);
+            } else {
+                key = "order:detail:2021061800" + i;
+            }
+            keys[i] = key.getBytes();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        GlobalConfig.getInstance().setCacheKeyWhiteList(new HashSet<String>());
+        final File[] files = logDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logDir.delete();
+    }
+
+    @Benchmark
+    public byte[][] legacy() {
+        final byte[][] datas = keys.clone();
+        final Set<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
+        for (int i = 0, len = datas.length; i < len; i++) {
+            String str = new String(datas[i]);
+            if (ignore(whiteList, str)) {
+                continue;
+            }
+            if (!Pradar.isClusterTestPrefix(str)) {
+                str = Pradar.addClusterTestPrefix(str);
+            }
+            datas[i] = str.getBytes();
+        }
+        return datas;
+    }
+
+    @Benchmark
+    public byte[][] rewriter() {
+        return CacheKeyRewriter.toClusterTestKeys(keys.clone());
+    }
+
+    private static boolean ignore(Set<String> whiteList, String key) {
+        for (String white : whiteList) {
+            if (key.startsWith(white)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.interceptor.ContextSetter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 出站调用写入传输上下文的开销
+ * <p>
+ * transformMap 为原来的写法：先通过 getInvokeContextMap 构造完整的上下文 Map，再移除不需要传输的字段，
+ * 最后遍历写入请求头；setter 通过 {@link ContextSetter} 把字段直接写入载体。
+ * 载体直接把字段交给 Blackhole，不产生额外分配，使用 -prof gc 查看 gc.alloc.rate.norm 即为每次出站调用的分配字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContextPropagationBenchmark {
+
+    private static final ContextSetter<Blackhole> SETTER = new ContextSetter<Blackhole>() {
+        @Override
+        public void set(Blackhole carrier, String key, String value) {
+            carrier.consume(key);
+            carrier.consume(value);
+        }
+    };
+
+    private File logDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Pradar 在类初始化时创建日志输出，必须在第一次访问 Pradar 之前设置
+        logDir = File.createTempFile("pradar-benchmark", "");
+        logDir.delete();
+        logDir.mkdirs();
+        System.setProperty("SIMULATOR_LOG_PATH", logDir.getAbsolutePath());
+        Pradar.startTrace(null, "/benchmark/propagation", "GET");
+        Pradar.startClientInvoke("com.example.DemoService", "sayHello");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Pradar.endClientInvoke("200", 1);
+        Pradar.endTrace();
+        Pradar.flush();
+        final File[] files = logDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logDir.delete();
+    }
+
+    @Benchmark
+    public void transformMap(Blackhole blackhole) {
+        final Map<String, String> context = Pradar.getInvokeContextMap();
+        final Iterator<Map.Entry<String, String>> it = context.entrySet().iterator();
+        while (it.hasNext()) {
+            if (!Pradar.getInvokeContextTransformKeys().contains(it.next().getKey())) {
+                it.remove();
+            }
+        }
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            SETTER.set(blackhole, entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void setter(Blackhole blackhole) {
+        Pradar.injectInvokeContext(blackhole, SETTER);
+    }
+}
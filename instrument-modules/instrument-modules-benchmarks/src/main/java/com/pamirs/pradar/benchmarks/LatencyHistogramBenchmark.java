@@ -0,0 +1,71 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.pamirs.pradar.metrics.LatencyHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 4 个线程并发向同一个维度的 {@link LatencyHistogram} 记录耗时的开销
+ * <p>
+ * stripes=1 为所有线程竞争同一组计数的情况，stripes=4 为按线程分段后的情况
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LatencyHistogramBenchmark {
+
+    @Param({"1", "4"})
+    public int stripes;
+
+    private LatencyHistogram histogram;
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram(stripes);
+    }
+
+    @State(Scope.Thread)
+    public static class Cost {
+        long value = 7;
+
+        long next() {
+            value = value * 6364136223846793005L + 1442695040888963407L;
+            return (value >>> 40) & 0xFF;
+        }
+    }
+
+    @Benchmark
+    public void record(Cost cost) {
+        histogram.record(cost.next());
+    }
+}
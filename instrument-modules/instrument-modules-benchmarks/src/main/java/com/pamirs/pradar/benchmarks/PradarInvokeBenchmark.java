@@ -0,0 +1,114 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.pamirs.pradar.InvokeContext;
+import com.pamirs.pradar.MiddlewareType;
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.ResultCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 插件埋点一次客户端调用的开销
+ * <p>
+ * clientInvoke 为已有 trace 时的一次 startClientInvoke/endClientInvoke，
+ * traceWithClientInvoke 为入口开启 trace、发起一次客户端调用再结束 trace 的完整过程，
+ * 调用日志由 Pradar 的 AsyncAppender 异步写入临时目录，logBatchEnabled 对应 pradar.log.batch.enabled
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PradarInvokeBenchmark {
+
+    @Param({"false", "true"})
+    public boolean logBatchEnabled;
+
+    private File logDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Pradar 在类初始化时创建日志输出，必须在第一次访问 Pradar 之前设置
+        logDir = File.createTempFile("pradar-benchmark", "");
+        logDir.delete();
+        logDir.mkdirs();
+        System.setProperty("SIMULATOR_LOG_PATH", logDir.getAbsolutePath());
+        System.setProperty(Pradar.LOG_BATCH_ENABLED, String.valueOf(logBatchEnabled));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Pradar.flush();
+        final File[] files = logDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logDir.delete();
+    }
+
+    @Benchmark
+    public InvokeContext clientInvoke(ActiveTrace trace) {
+        final InvokeContext ctx = Pradar.startClientInvoke("com.example.OrderService", "query");
+        Pradar.endClientInvoke(ResultCode.INVOKE_RESULT_SUCCESS, MiddlewareType.TYPE_RPC);
+        return ctx;
+    }
+
+    @Benchmark
+    public InvokeContext traceWithClientInvoke() {
+        Pradar.startTrace(null, "/benchmark/order", "POST");
+        final InvokeContext ctx = Pradar.startClientInvoke("com.example.OrderService", "create");
+        Pradar.endClientInvoke(ResultCode.INVOKE_RESULT_SUCCESS, MiddlewareType.TYPE_RPC);
+        Pradar.endTrace();
+        return ctx;
+    }
+
+    /**
+     * clientInvoke 所在的 trace，每轮迭代开启一次
+     */
+    @State(Scope.Thread)
+    public static class ActiveTrace {
+
+        @Setup(Level.Iteration)
+        public void startTrace(PradarInvokeBenchmark benchmark) {
+            // 依赖外层的状态，保证 Pradar 初始化之前已经设置好日志目录
+            Pradar.startTrace(null, "/benchmark/entry", "GET");
+        }
+
+        @TearDown(Level.Iteration)
+        public void endTrace() {
+            Pradar.endTrace();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import com.pamirs.attach.plugin.common.web.CapturingServletInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 业务读取一次上传请求体并在 trace 结束时取出请求体的开销
+ * <p>
+ * buffer 为原有的先把整个请求体读入 ByteArrayOutputStream 再 toByteArray 交给业务的路径，
+ * capture 为 {@link CapturingServletInputStream} 在业务读取时旁路采集前缀的路径，
+ * 配合 -prof gc 可以对比每次请求的分配量
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestBodyCaptureBenchmark {
+
+    /**
+     * plugin.request.size 默认值的 4 倍
+     */
+    private static final int CAPTURE_LIMIT = 4000;
+
+    @Param({"1048576", "8388608"})
+    public int bodySize;
+
+    private byte[] body;
+    private byte[] readBuffer;
+
+    @Setup
+    public void setup() {
+        body = new byte[bodySize];
+        new Random(0).nextBytes(body);
+        // 业务框架通常使用 8k 的缓冲区读取请求体
+        readBuffer = new byte[8192];
+    }
+
+    @Benchmark
+    public int buffer() throws IOException {
+        final InputStream is = new SourceInputStream(body);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte buff[] = new byte[1024];
+        int read;
+        while ((read = is.read(buff)) > 0) {
+            baos.write(buff, 0, read);
+        }
+        final byte[] buffer = baos.toByteArray();
+        return consume(new ByteArrayInputStream(buffer)) + buffer.length;
+    }
+
+    @Benchmark
+    public int capture() throws IOException {
+        final CapturingServletInputStream in = new CapturingServletInputStream(new SourceInputStream(body),
+            CAPTURE_LIMIT, body.length);
+        return consume(in) + in.getCaptured().length;
+    }
+
+    private int consume(InputStream in) throws IOException {
+        int total = 0;
+        int read;
+        while ((read = in.read(readBuffer)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * 容器提供的原始请求输入流
+     */
+    private static class SourceInputStream extends ServletInputStream {
+        private final byte[] body;
+        private int pos;
+
+        SourceInputStream(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public int read() {
+            return pos < body.length ? body[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= body.length) {
+                return -1;
+            }
+            final int n = Math.min(len, body.length - pos);
+            System.arraycopy(body, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return pos >= body.length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+        }
+    }
+}
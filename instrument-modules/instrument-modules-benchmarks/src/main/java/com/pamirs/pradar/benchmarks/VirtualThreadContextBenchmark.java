@@ -0,0 +1,163 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.ttl.TtlRunnable;
+import com.pamirs.pradar.InvokeContext;
+import com.pamirs.pradar.InvokeContextSnapshot;
+import com.pamirs.pradar.Pradar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 每个虚拟线程任务传递调用上下文的开销，每次调用提交 1M 个任务，每个任务一个新的虚拟线程，并等待全部结束
+ * <p>
+ * inherit 使用 newVirtualThreadPerTaskExecutor，不包装任务，依赖虚拟线程创建时对 TTL 的继承；
+ * ttl 和 snapshot 使用关闭了 InheritableThreadLocal 继承的虚拟线程 ThreadFactory，分别用 TtlRunnable 的 capture/replay
+ * 和虚拟线程插件使用的 {@link InvokeContextSnapshot} 传递上下文。
+ * 每个任务读取一次上下文，任何一组有任务没有拿到上下文时都会在 tearDown 中失败。
+ * 需要在 JDK 21 及以上运行，低版本 JDK 上退化为固定大小的平台线程池，只能对比包装本身的开销
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadContextBenchmark {
+
+    private static final int TASKS = 1000000;
+
+    @Param({"inherit", "ttl", "snapshot"})
+    public String propagation;
+
+    private File logDir;
+    private ThreadFactory nonInheritingFactory;
+    private final AtomicInteger missed = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Pradar 在类初始化时创建日志输出，必须在第一次访问 Pradar 之前设置
+        logDir = File.createTempFile("pradar-benchmark", "");
+        logDir.delete();
+        logDir.mkdirs();
+        System.setProperty("SIMULATOR_LOG_PATH", logDir.getAbsolutePath());
+        nonInheritingFactory = newNonInheritingFactory();
+        Pradar.startTrace(null, "/benchmark/virtual", "GET");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Pradar.endTrace();
+        Pradar.flush();
+        final File[] files = logDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logDir.delete();
+        if (missed.get() > 0) {
+            throw new IllegalStateException("context is missing in " + missed.get() + " tasks with propagation " + propagation + ".");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void submit() throws Exception {
+        final ExecutorService executor = newTaskExecutor();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                final InvokeContext context = Pradar.getInvokeContext();
+                if (context == null) {
+                    missed.incrementAndGet();
+                }
+            }
+        };
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(wrap(task));
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+    }
+
+    private Runnable wrap(final Runnable task) {
+        if ("ttl".equals(propagation)) {
+            return TtlRunnable.get(task);
+        }
+        if ("snapshot".equals(propagation)) {
+            final InvokeContextSnapshot snapshot = InvokeContextSnapshot.capture();
+            return new Runnable() {
+                @Override
+                public void run() {
+                    final InvokeContext backup = snapshot.attach();
+                    try {
+                        task.run();
+                    } finally {
+                        InvokeContextSnapshot.detach(backup);
+                    }
+                }
+            };
+        }
+        return task;
+    }
+
+    private ExecutorService newTaskExecutor() {
+        try {
+            if ("inherit".equals(propagation)) {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, nonInheritingFactory);
+        } catch (Exception e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().inheritInheritableThreadLocals(false).factory()，低版本 JDK 上返回 null
+     */
+    private static ThreadFactory newNonInheritingFactory() {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("inheritInheritableThreadLocals", boolean.class).invoke(builder, false);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 影子表 sql 改写的开销
+ * <p>
+ * parseAndReplaceTableNames 为每次都经过 druid 解析改写的路径，rewriteCache 为按 sql 指纹缓存改写模板的路径，
+ * 每次调用依次改写字面量不同的同一组语句，所以原有按完整 sql 缓存的方式无法命中
+ * <p>
+ * 由于 SqlRewriteCache 是包内可见的，所以基准测试放在与 SqlRewriteCache 相同的包下
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlParserBenchmark {
+
+    private static final String KEY = "jdbc:mysql://127.0.0.1:3306/benchmark|root";
+    private static final String DB_TYPE = "mysql";
+
+    private static final String SIMPLE = "SELECT id, name, status FROM t_order WHERE id = %d AND status = 'PAID'";
+
+    private static final String JOIN = "SELECT o.id, o.amount, u.name FROM t_order o LEFT JOIN t_user u ON o.user_id = u.id "
+        + "WHERE o.create_time > '2021-01-%02d' AND u.level = %d ORDER BY o.id DESC LIMIT 20";
+
+    private static final String SUBQUERY = "SELECT r.*, c.org_name, (SELECT org_name FROM t_city WHERE org_code = c.parent_code) "
+        + "province_name FROM t_route_rule r LEFT JOIN t_city c ON r.city_uuid = c.uuid WHERE r.status != -1 "
+        + "AND r.uuid = '%d' AND r.rule_type = %d AND r.city_uuid IN (SELECT uuid FROM t_city_ext WHERE level = 2) "
+        + "ORDER BY r.status DESC, r.update_time DESC";
+
+    @Param({"simple", "join", "subquery"})
+    public String statement;
+
+    /**
+     * 字面量不同的语句数
+     */
+    private static final int SIZE = 64;
+
+    private String[] sqls;
+    private int index;
+    private SqlRewriteCache rewriteCache;
+    private File logDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Pradar 初始化时会创建自身的日志输出，避免写到用户目录下
+        logDir = File.createTempFile("pradar-benchmark", "");
+        logDir.delete();
+        logDir.mkdirs();
+        System.setProperty("SIMULATOR_LOG_PATH", logDir.getAbsolutePath());
+
+        final String template = "simple".equals(statement) ? SIMPLE : "join".equals(statement) ? JOIN : SUBQUERY;
+        sqls = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            sqls[i] = String.format(template, i % 28 + 1, i);
+        }
+        rewriteCache = new SqlRewriteCache(1 << 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        final File[] files = logDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logDir.delete();
+    }
+
+    private String nextSql() {
+        return sqls[index++ & (SIZE - 1)];
+    }
+
+    @Benchmark
+    public String parseAndReplaceTableNames() throws Exception {
+        return SqlParser.parseAndReplaceTableNames(nextSql(), KEY, DB_TYPE);
+    }
+
+    @Benchmark
+    public String rewriteCache() throws Exception {
+        return rewriteCache.rewrite(nextSql(), KEY, DB_TYPE, SqlRewriteCache.MODE_TABLE);
+    }
+}
@@ -19,6 +19,7 @@ import com.alibaba.druid.pool.DruidDataSource;
 import com.pamirs.attach.plugin.alibaba.druid.destroy.DruidDestroy;
 import com.pamirs.attach.plugin.alibaba.druid.obj.DbDruidMediatorDataSource;
 import com.pamirs.attach.plugin.alibaba.druid.util.DataSourceWrapUtil;
+import com.pamirs.attach.plugin.common.datasource.ShadowDataSourceWarmupListener;
 import com.pamirs.attach.plugin.dynamic.*;
 import com.pamirs.attach.plugin.dynamic.template.DruidTemplate;
 import com.pamirs.pradar.CutOffResult;
@@ -35,6 +36,7 @@ import com.pamirs.pradar.pressurement.agent.listener.EventResult;
 import com.pamirs.pradar.pressurement.agent.listener.PradarEventListener;
 import com.pamirs.pradar.pressurement.agent.shared.service.DataSourceMeta;
 import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
@@ -136,7 +138,8 @@ public class DruidInjectGetConnectionInterceptor extends CutoffInterceptorAdapto
             public int order() {
                 return 8;
             }
-        }).addListener(new PradarEventListener() {
+        }).addListener(new ShadowDataSourceWarmupListener("alibaba-druid-datasource-plugin", ShadowDataSourceWarmupListener.ORDER_DRUID,
+            DataSourceWrapUtil.pressureDataSources.values())).addListener(new PradarEventListener() {
             @Override
             public EventResult onEvent(IEvent event) {
                 if (!(event instanceof ShadowDataSourceConfigModifyEvent)) {
@@ -163,6 +166,10 @@ public class DruidInjectGetConnectionInterceptor extends CutoffInterceptorAdapto
                             } catch (Throwable e) {
                                 logger.error("module-alibaba-druid: closed datasource err! target:{}, url:{} username:{}", entry.getKey().getDataSource().hashCode(), entry.getKey().getUrl(), entry.getKey().getUsername(), e);
                             }
+                            if (ShadowDataSourceWarmer.isWarmupRequired(config)) {
+                                //配置变更后重新创建并预热影子数据源
+                                DataSourceWrapUtil.doWrap(entry.getKey());
+                            }
                             break;
                         }
                     }
@@ -50,10 +50,21 @@ public class DbDruidMediatorDataSource extends WrappedDbMediatorDataSource<Druid
         return datasource.getDriverClassName();
     }
 
+    @Override
+    protected int getMinIdle(DruidDataSource datasource) {
+        return datasource.getMinIdle();
+    }
+
+    @Override
+    protected int getMaxActive(DruidDataSource datasource) {
+        return datasource.getMaxActive();
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         if (Pradar.isClusterTest()) {
             try {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     //影子表
@@ -126,6 +137,7 @@ public class DbDruidMediatorDataSource extends WrappedDbMediatorDataSource<Druid
 
     @Override
     public void close() {
+        releaseWarmup();
         if (dataSourcePerformanceTest != null) {
             try {
                 dataSourcePerformanceTest.close();
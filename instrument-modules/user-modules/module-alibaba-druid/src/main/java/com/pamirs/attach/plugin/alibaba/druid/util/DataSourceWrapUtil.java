@@ -124,6 +124,7 @@ public class DataSourceWrapUtil {
             if (infoEnabled) {
                 LOGGER.info("[druid] create shadow datasource success. target:{} url:{} ,username:{} shadow-url:{},shadow-username:{}", target.hashCode(), target.getUrl(), target.getUsername(), ptDataSource.getUrl(), ptDataSource.getUsername());
             }
+            dbMediatorDataSource.prewarm();
             return dbMediatorDataSource;
         }
     }
@@ -29,6 +29,7 @@ import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.exception.PradarException;
 import com.pamirs.pradar.exception.PressureMeasureError;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -43,6 +44,12 @@ import java.util.Map;
  */
 public class SendMessageHookImpl implements SendMessageHook, MQTraceConstants {
     private final static Logger LOGGER = LoggerFactory.getLogger(SendMessageHookImpl.class.getName());
+    private final static ContextSetter<Message> USER_PROPERTY_SETTER = new ContextSetter<Message>() {
+        @Override
+        public void set(Message message, String key, String value) {
+            putUserProperty(message, key, value);
+        }
+    };
 
     @Override
     public String hookName() {
@@ -104,11 +111,7 @@ public class SendMessageHookImpl implements SendMessageHook, MQTraceConstants {
             traceBean.setContext(rpcContext);
             traceBean.setClusterTest(message.getUserProperty(PradarService.PRADAR_CLUSTER_TEST_KEY));
 
-            MQSendMessageTraceLog.sendMessageBefore(mqTraceContext);
-
-            for (Map.Entry<String, String> entry : traceBean.getContext().entrySet()) {
-                putUserProperty(message, entry.getKey(), entry.getValue());
-            }
+            MQSendMessageTraceLog.sendMessageBefore(mqTraceContext, message, USER_PROPERTY_SETTER);
         } catch (PradarException e) {
             LOGGER.error("", e);
             if (Pradar.isClusterTest()) {
@@ -127,7 +130,7 @@ public class SendMessageHookImpl implements SendMessageHook, MQTraceConstants {
         }
     }
 
-    private void putUserProperty(Message message, String key, String value) {
+    private static void putUserProperty(Message message, String key, String value) {
         if (value != null && !value.isEmpty()) {
             message.putUserProperty(key, value);
         }
@@ -20,6 +20,7 @@ import com.pamirs.attach.plugin.alibaba.rocketmq.common.MQTraceContext;
 import com.pamirs.attach.plugin.alibaba.rocketmq.common.PradarLogUtils;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.ResultCode;
+import com.pamirs.pradar.interceptor.ContextSetter;
 
 /**
  * 消息发送轨迹埋点
@@ -30,6 +31,18 @@ import com.pamirs.pradar.ResultCode;
 public class MQSendMessageTraceLog {
 
     public static void sendMessageBefore(MQTraceContext ctx) {
+        sendMessageBefore(ctx, null, null);
+    }
+
+    /**
+     * 开始发送消息，并把需要远程传输的上下文直接写入消息载体
+     *
+     * @param ctx     消息轨迹上下文
+     * @param carrier 消息载体，为 null 时上下文以 Map 的形式记录在 {@link MQTraceBean#getContext()} 中
+     * @param setter  消息载体写入器
+     * @param <C>     消息载体类型
+     */
+    public static <C> void sendMessageBefore(MQTraceContext ctx, C carrier, ContextSetter<? super C> setter) {
         if (ctx == null || ctx.getTraceBeans() == null || ctx.getTraceBeans().size() == 0
                 || ctx.getTraceBeans().get(0) == null) {
             return;
@@ -40,7 +53,11 @@ public class MQSendMessageTraceLog {
         Pradar.startClientInvoke(service, method);
 
         MQTraceBean traceBean = ctx.getTraceBeans().get(0);
-        traceBean.setContext(Pradar.getInvokeContextMap());
+        if (setter == null) {
+            traceBean.setContext(Pradar.getInvokeContextMap());
+        } else {
+            Pradar.injectInvokeContext(carrier, setter);
+        }
         //如果使用消息头模式传递压测标，则需要显示从消费发送端设置
 
         Pradar.requestSize(traceBean.getBodyLength());
@@ -116,8 +116,8 @@ public class ProducerSendInterceptor extends TraceInterceptorAdaptor {
         ClusterTestUtils.validateClusterTest();
         try {
             final Callback callback = (Callback)advice.getParameterArray()[1];
-            final Map<String, String> context = Pradar.getInvokeContextMap();
             if (callback != null) {
+                final Map<String, String> context = Pradar.getInvokeContextMap();
                 advice.changeParameter(1, new Callback() {
                     @Override
                     public void onCompletion(RecordMetadata metadata, Exception exception) {
@@ -180,10 +180,10 @@ public class ProducerSendInterceptor extends TraceInterceptorAdaptor {
         Object[] args = advice.getParameterArray();
         final ProducerRecord producerRecord = (ProducerRecord)args[0];
         if (PradarSwitcher.isKafkaMessageHeadersEnabled() && !isHeadReadOnly(producerRecord)) {
+            final HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(producerRecord);
             return new ContextTransfer() {
                 @Override
                 public void transfer(String key, String value) {
-                    HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(producerRecord);
                     headerProcessor.setHeader(producerRecord, key, value);
                 }
             };
@@ -14,6 +14,7 @@
  */
 package com.pamirs.attach.plugin.apache.kafka.origin;
 
+import com.pamirs.attach.plugin.apache.kafka.origin.selector.PollingSelector;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
@@ -63,7 +64,12 @@ public class ConsumerHolder {
         while (it.hasNext()) {
             Map.Entry<Integer, ConsumerProxy> entry = it.next();
             it.remove();
-            Consumer consumer = entry.getValue().getPtConsumer();
+            ConsumerProxy consumerProxy = entry.getValue();
+            if (consumerProxy.isAsyncPoll()) {
+                consumerProxy.closePtConsumer();
+                continue;
+            }
+            Consumer consumer = consumerProxy.getPtConsumer();
             if (consumer != null) {
                 consumer.close();
             }
@@ -127,7 +133,8 @@ public class ConsumerHolder {
                 consumerProxy = ConsumerHolder.PROXY_MAPPING.get(code);
                 if (consumerProxy == null) {
                     try {
-                        consumerProxy = new ConsumerProxy(consumer, consumerMetaData, getAllowMaxLag(), timeout);
+                        consumerProxy = new ConsumerProxy(consumer, consumerMetaData, getAllowMaxLag(), new PollingSelector(),
+                                timeout, getAsyncPollQueueSize());
                         if (isInfoEnabled) {
                             logger.info("shadow consumer create successful! with biz group id : {} biz topic : {} pt group id : {} pt_topic : {}",
                                     consumerMetaData.getGroupId(), consumerMetaData.getTopics(),
@@ -156,4 +163,24 @@ public class ConsumerHolder {
         }
         return maxLagMillSecond;
     }
+
+    /**
+     * 开启 shadow.kafka.asyncPoll 后影子消费者使用独立的拉取线程，不再在业务线程上同步拉取
+     *
+     * @return 交接队列最多缓存的批次数，未开启时返回 0
+     */
+    private static int getAsyncPollQueueSize() {
+        if (!Boolean.parseBoolean(System.getProperty("shadow.kafka.asyncPoll"))) {
+            return 0;
+        }
+        int queueSize = 2;
+        String queueSizeStr = System.getProperty("shadow.kafka.asyncPollQueueSize");
+        if (!StringUtils.isEmpty(queueSizeStr)) {
+            try {
+                queueSize = Integer.parseInt(queueSizeStr);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return Math.max(queueSize, 1);
+    }
 }
@@ -25,6 +25,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 import com.pamirs.attach.plugin.apache.kafka.ConfigCache;
@@ -74,24 +75,48 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
 
     private final long ptMaxPollTimeout = 500;
 
-    private long lag = 0;
+    private volatile long lag = 0;
+
+    private volatile long shadowLag = 0;
 
     private final long allowMaxLag;
 
     private final long currentPollTime;
 
+    /**
+     * 对影子消费者的访问都需要持有该锁，独立拉取线程模式下影子消费者会被拉取线程和业务线程同时访问
+     */
+    private final ReentrantLock ptLock = new ReentrantLock(true);
+
+    /**
+     * 影子消费者独立的拉取线程，为 null 时在业务线程上同步拉取影子消费者
+     */
+    private final ShadowPollLoop shadowPollLoop;
+
     public ConsumerProxy(KafkaConsumer consumer, ConsumerMetaData topicAndGroup, long maxLagMillSecond, long timeout) {
         this(consumer, topicAndGroup, maxLagMillSecond, new PollingSelector(), timeout);
     }
 
     public ConsumerProxy(KafkaConsumer consumer, ConsumerMetaData topicAndGroup,
         long maxLagMillSecond, PollConsumerSelector consumerSelector, long timeout) {
+        this(consumer, topicAndGroup, maxLagMillSecond, consumerSelector, timeout, 0);
+    }
+
+    /**
+     * @param asyncPollQueueSize 大于 0 时影子消费者使用独立的拉取线程，值为交接队列最多缓存的批次数
+     */
+    public ConsumerProxy(KafkaConsumer consumer, ConsumerMetaData topicAndGroup,
+        long maxLagMillSecond, PollConsumerSelector consumerSelector, long timeout, int asyncPollQueueSize) {
         this.bizConsumer = consumer;
         this.allowMaxLag = maxLagMillSecond;
         this.currentPollTime = timeout;
+        this.shadowPollLoop = asyncPollQueueSize > 0 ? new ShadowPollLoop(ptLock, asyncPollQueueSize) : null;
         this.ptConsumer = createPtConsumer(consumer, topicAndGroup);
         this.topicAndGroup = topicAndGroup;
         this.consumerSelector = consumerSelector;
+        if (shadowPollLoop != null) {
+            shadowPollLoop.start(ptConsumer, "pradar-kafka-shadow-poll-" + topicAndGroup.getPtGroupId());
+        }
     }
 
     public Consumer getPtConsumer() {
@@ -102,10 +127,41 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         return bizConsumer;
     }
 
+    /**
+     * 业务消费者最近一次拉取到的消息的延迟(毫秒)
+     */
+    public long getBizLag() {
+        return lag;
+    }
+
+    /**
+     * 影子消费者最近一次交给业务线程的消息的延迟(毫秒)
+     */
+    public long getShadowLag() {
+        return shadowPollLoop != null ? shadowPollLoop.getLag() : shadowLag;
+    }
+
+    /**
+     * 独立拉取线程已经拉取但还没有交给业务线程的批次数，同步拉取模式下始终为 0
+     */
+    public int getShadowPendingBatches() {
+        return shadowPollLoop != null ? shadowPollLoop.pendingBatches() : 0;
+    }
+
+    public boolean isAsyncPoll() {
+        return shadowPollLoop != null;
+    }
+
     @Override
     public Set<TopicPartition> assignment() {
         Set<TopicPartition> set1 = this.bizConsumer.assignment();
-        Set<TopicPartition> set2 = this.ptConsumer.assignment();
+        Set<TopicPartition> set2;
+        ptLock.lock();
+        try {
+            set2 = this.ptConsumer.assignment();
+        } finally {
+            ptLock.unlock();
+        }
         Set<TopicPartition> result = new HashSet();
         result.addAll(set1);
         result.addAll(set2);
@@ -115,7 +171,13 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
     @Override
     public Set<String> subscription() {
         Set<String> set1 = this.bizConsumer.subscription();
-        Set<String> set2 = this.ptConsumer.subscription();
+        Set<String> set2;
+        ptLock.lock();
+        try {
+            set2 = this.ptConsumer.subscription();
+        } finally {
+            ptLock.unlock();
+        }
         Set<String> result = new HashSet();
         result.addAll(set1);
         result.addAll(set2);
@@ -132,27 +194,45 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
     public void subscribe(Pattern pattern, ConsumerRebalanceListener callback) {
         this.bizConsumer.subscribe(pattern, callback);
         this.topicAndGroup = ConsumerMetaData.build((KafkaConsumer)bizConsumer);
-        this.ptConsumer.subscribe(this.topicAndGroup.getShadowTopics());
+        subscribePt(this.topicAndGroup.getShadowTopics());
     }
 
     @Override
     public void unsubscribe() {
         this.bizConsumer.unsubscribe();
-        this.ptConsumer.unsubscribe();
+        ptLock.lock();
+        try {
+            this.ptConsumer.unsubscribe();
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     @Override
     public void subscribe(Collection topics, ConsumerRebalanceListener callback) {
         this.bizConsumer.subscribe(topics, callback);
         this.topicAndGroup = ConsumerMetaData.build((KafkaConsumer) bizConsumer);
-        this.ptConsumer.subscribe(this.topicAndGroup.getShadowTopics());
+        subscribePt(this.topicAndGroup.getShadowTopics());
     }
 
     @Override
     public void subscribe(Collection topics) {
         this.bizConsumer.subscribe(topics);
         this.topicAndGroup = ConsumerMetaData.build((KafkaConsumer) bizConsumer);
-        this.ptConsumer.subscribe(this.topicAndGroup.getShadowTopics());
+        subscribePt(this.topicAndGroup.getShadowTopics());
+    }
+
+    private void subscribePt(Collection<String> shadowTopics) {
+        ptLock.lock();
+        try {
+            if (shadowPollLoop != null) {
+                this.ptConsumer.subscribe(shadowTopics, shadowPollLoop);
+            } else {
+                this.ptConsumer.subscribe(shadowTopics);
+            }
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     /**
@@ -166,6 +246,9 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
 
     @Override
     public ConsumerRecords<K, V> poll(long timeout) {
+        if (shadowPollLoop != null) {
+            return doAsyncPoll(timeout);
+        }
         if (isBiz()) {
             return doBizPoll(timeout);
         } else {
@@ -173,34 +256,54 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         }
     }
 
+    /**
+     * 影子消息由独立的拉取线程拉取，这里只从交接队列中取，没有影子消息时直接拉取业务消息。
+     * 由 {@link PollConsumerSelector} 决定本次是否取影子消息，默认的 {@link PollingSelector}
+     * 在业务与影子之间轮流选择，避免压测流量较大时业务消费被饿死
+     */
+    private ConsumerRecords doAsyncPoll(long timeout) {
+        shadowPollLoop.polled();
+        if (consumerSelector.select() == ConsumerType.SHADOW) {
+            ConsumerRecords consumerRecords = shadowPollLoop.take();
+            if (consumerRecords != null) {
+                Pradar.setClusterTest(true);
+                return consumerRecords;
+            }
+        }
+        return doBizPoll(timeout);
+    }
+
     private ConsumerRecords doShadowPoll(long timeout) {
+        ptLock.lock();
         try {
             ConsumerRecords consumerRecords = ptConsumer.poll(Math.min(timeout, ptMaxPollTimeout));
+            shadowLag = detectLag(consumerRecords, shadowLag);
             Pradar.setClusterTest(true);
             return consumerRecords;
         } catch (Exception e) {
             log.error("shadow consumer poll fail!", e);
             return ConsumerRecords.empty();
+        } finally {
+            ptLock.unlock();
         }
     }
 
     private ConsumerRecords doBizPoll(long timeout) {
         ConsumerRecords consumerRecords = bizConsumer.poll(timeout);
-        logDetection(consumerRecords);
+        lag = detectLag(consumerRecords, lag);
         Pradar.setClusterTest(false);
         return consumerRecords;
     }
 
-    private void logDetection(ConsumerRecords consumerRecords) {
+    private long detectLag(ConsumerRecords consumerRecords, long current) {
         if (consumerRecords.isEmpty()) {
-            lag = 0L;
-            return;
+            return 0L;
         }
         long earliest = getEarliestRecordTime(consumerRecords);
         if (earliest <= 0) {
-            return;
+            return current;
         }
-        lag = System.currentTimeMillis() - earliest;
+        return System.currentTimeMillis() - earliest;
     }
 
     private long getEarliestRecordTime(ConsumerRecords<K, V> consumerRecords) {
@@ -216,10 +319,23 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         commitAsync(null);
     }
 
+    /**
+     * 独立拉取线程模式下影子消费者已经拉取的消息可能还在交接队列中，
+     * 不带偏移量的提交只提交已经交给业务线程的偏移量
+     */
     @Override
     public void commitAsync(OffsetCommitCallback callback) {
         if (Pradar.isClusterTest()) {
-            ptConsumer.commitAsync(wrapShadowCommitCallback(callback));
+            if (shadowPollLoop != null) {
+                commitAsync(shadowPollLoop.deliveredOffsets(), callback);
+                return;
+            }
+            ptLock.lock();
+            try {
+                ptConsumer.commitAsync(wrapShadowCommitCallback(callback));
+            } finally {
+                ptLock.unlock();
+            }
         } else {
             bizConsumer.commitAsync(callback);
         }
@@ -229,7 +345,12 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
     public void commitAsync(Map offsets, OffsetCommitCallback callback) {
         if (Pradar.isClusterTest()) {
             checkIfTopicMix(offsets, false);
-            ptConsumer.commitAsync(offsets, wrapShadowCommitCallback(callback));
+            ptLock.lock();
+            try {
+                ptConsumer.commitAsync(offsets, wrapShadowCommitCallback(callback));
+            } finally {
+                ptLock.unlock();
+            }
         } else {
             checkIfTopicMix(offsets, true);
             bizConsumer.commitAsync(offsets, callback);
@@ -238,26 +359,52 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
 
     @Override
     public void commitSync() {
-        Consumer consumer = chooseConsumerByContext();
-        consumer.commitSync();
+        if (Pradar.isClusterTest()) {
+            if (shadowPollLoop != null) {
+                commitSync(shadowPollLoop.deliveredOffsets());
+                return;
+            }
+            ptLock.lock();
+            try {
+                ptConsumer.commitSync();
+            } finally {
+                ptLock.unlock();
+            }
+        } else {
+            bizConsumer.commitSync();
+        }
     }
 
     @Override
     public void commitSync(Map offsets) {
         if (Pradar.isClusterTest()) {
             checkIfTopicMix(offsets, false);
-            ptConsumer.commitSync(offsets);
+            ptLock.lock();
+            try {
+                ptConsumer.commitSync(offsets);
+            } finally {
+                ptLock.unlock();
+            }
         } else {
             checkIfTopicMix(offsets, true);
             bizConsumer.commitSync(offsets);
         }
     }
 
+    /**
+     * 独立拉取线程模式下 seek 之前需要先回退交接队列中还没有交付的消息，否则这些消息会在 seek 之后继续交付
+     */
     @Override
     public void seek(TopicPartition partition, long offset) {
         String topic = partition.topic();
         if (Pradar.isClusterTestPrefix(topic)) {
-            this.ptConsumer.seek(partition, offset);
+            ptLock.lock();
+            try {
+                rewindPending();
+                this.ptConsumer.seek(partition, offset);
+            } finally {
+                ptLock.unlock();
+            }
         } else {
             this.bizConsumer.seek(partition, offset);
         }
@@ -267,20 +414,44 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
     public void seekToEnd(Collection<TopicPartition> partitions) {
         TopicPartitions topicPartitions = TopicPartitions.split(partitions);
         this.bizConsumer.seekToEnd(topicPartitions.bizCollection);
-        this.ptConsumer.seekToEnd(topicPartitions.ptCollection);
+        ptLock.lock();
+        try {
+            rewindPending();
+            this.ptConsumer.seekToEnd(topicPartitions.ptCollection);
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     @Override
     public void seekToBeginning(Collection<TopicPartition> partitions) {
         TopicPartitions topicPartitions = TopicPartitions.split(partitions);
         this.bizConsumer.seekToBeginning(topicPartitions.bizCollection);
-        this.ptConsumer.seekToBeginning(topicPartitions.ptCollection);
+        ptLock.lock();
+        try {
+            rewindPending();
+            this.ptConsumer.seekToBeginning(topicPartitions.ptCollection);
+        } finally {
+            ptLock.unlock();
+        }
+    }
+
+    private void rewindPending() {
+        if (shadowPollLoop != null) {
+            shadowPollLoop.rewind();
+        }
     }
 
     @Override
     public void close() {
         bizConsumer.close();
-        ptConsumer.close();
+        stopShadowPollLoop();
+        ptLock.lock();
+        try {
+            ptConsumer.close();
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     /**
@@ -295,33 +466,72 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
     private boolean alive = true;
 
     public void closePtConsumer() {
-        ptConsumer.unsubscribe();
-        ptConsumer.close();
+        stopShadowPollLoop();
+        ptLock.lock();
+        try {
+            ptConsumer.unsubscribe();
+            ptConsumer.close();
+        } finally {
+            ptLock.unlock();
+        }
         alive = false;
     }
 
+    private void stopShadowPollLoop() {
+        if (shadowPollLoop != null) {
+            shadowPollLoop.stop();
+        }
+    }
+
     @Override
     public void close(long timeout, TimeUnit unit) {
         bizConsumer.close(timeout, unit);
-        ptConsumer.close(timeout, unit);
+        stopShadowPollLoop();
+        ptLock.lock();
+        try {
+            ptConsumer.close(timeout, unit);
+        } finally {
+            ptLock.unlock();
+        }
     }
 
+    /**
+     * 独立拉取线程模式下影子消费者不会阻塞业务线程，不需要唤醒
+     */
     @Override
     public void wakeup() {
         this.bizConsumer.wakeup();
-        this.ptConsumer.wakeup();
+        if (shadowPollLoop == null) {
+            this.ptConsumer.wakeup();
+        }
     }
 
     @Override
     public long position(TopicPartition partition) {
         String topic = partition.topic();
-        return Pradar.isClusterTestPrefix(topic) ? ptConsumer.position(partition) : bizConsumer.position(partition);
+        if (!Pradar.isClusterTestPrefix(topic)) {
+            return bizConsumer.position(partition);
+        }
+        ptLock.lock();
+        try {
+            return ptConsumer.position(partition);
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     @Override
     public OffsetAndMetadata committed(TopicPartition partition) {
         String topic = partition.topic();
-        return Pradar.isClusterTestPrefix(topic) ? ptConsumer.committed(partition) : bizConsumer.committed(partition);
+        if (!Pradar.isClusterTestPrefix(topic)) {
+            return bizConsumer.committed(partition);
+        }
+        ptLock.lock();
+        try {
+            return ptConsumer.committed(partition);
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     @Override
@@ -332,14 +542,28 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
 
     @Override
     public List<PartitionInfo> partitionsFor(String topic) {
-        return Pradar.isClusterTestPrefix(topic) ? ptConsumer.partitionsFor(topic) : bizConsumer.partitionsFor(topic);
+        if (!Pradar.isClusterTestPrefix(topic)) {
+            return bizConsumer.partitionsFor(topic);
+        }
+        ptLock.lock();
+        try {
+            return ptConsumer.partitionsFor(topic);
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     @Override
     public Map<String, List<PartitionInfo>> listTopics() {
         Map<String, List<PartitionInfo>> result = new HashMap();
         Map<String, List<PartitionInfo>> map1 = this.bizConsumer.listTopics();
-        Map<String, List<PartitionInfo>> map2 = this.ptConsumer.listTopics();
+        Map<String, List<PartitionInfo>> map2;
+        ptLock.lock();
+        try {
+            map2 = this.ptConsumer.listTopics();
+        } finally {
+            ptLock.unlock();
+        }
         result.putAll(map1);
         result.putAll(map2);
         return result;
@@ -348,7 +572,13 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
     @Override
     public Set<TopicPartition> paused() {
         Set<TopicPartition> set1 = this.bizConsumer.paused();
-        Set<TopicPartition> set2 = this.ptConsumer.paused();
+        Set<TopicPartition> set2;
+        ptLock.lock();
+        try {
+            set2 = this.ptConsumer.paused();
+        } finally {
+            ptLock.unlock();
+        }
         Set<TopicPartition> result = new HashSet();
         result.addAll(set1);
         result.addAll(set2);
@@ -360,7 +590,13 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         TopicPartitions topicPartitions = TopicPartitions.split(partitions);
         Map<TopicPartition, Long> result = new HashMap();
         Map<TopicPartition, Long> map1 = this.bizConsumer.endOffsets(topicPartitions.bizCollection);
-        Map<TopicPartition, Long> map2 = this.ptConsumer.endOffsets(topicPartitions.ptCollection);
+        Map<TopicPartition, Long> map2;
+        ptLock.lock();
+        try {
+            map2 = this.ptConsumer.endOffsets(topicPartitions.ptCollection);
+        } finally {
+            ptLock.unlock();
+        }
         result.putAll(map1);
         result.putAll(map2);
         return result;
@@ -371,7 +607,13 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         TopicPartitions topicPartitions = TopicPartitions.split(partitions);
         Map<TopicPartition, Long> result = new HashMap();
         Map<TopicPartition, Long> map1 = this.bizConsumer.beginningOffsets(topicPartitions.bizCollection);
-        Map<TopicPartition, Long> map2 = this.ptConsumer.beginningOffsets(topicPartitions.ptCollection);
+        Map<TopicPartition, Long> map2;
+        ptLock.lock();
+        try {
+            map2 = this.ptConsumer.beginningOffsets(topicPartitions.ptCollection);
+        } finally {
+            ptLock.unlock();
+        }
         result.putAll(map1);
         result.putAll(map2);
         return result;
@@ -390,7 +632,13 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         }
         Map<TopicPartition, OffsetAndTimestamp> result = new HashMap();
         Map<TopicPartition, OffsetAndTimestamp> map1 = this.bizConsumer.offsetsForTimes(bizMap);
-        Map<TopicPartition, OffsetAndTimestamp> map2 = this.ptConsumer.offsetsForTimes(ptMap);
+        Map<TopicPartition, OffsetAndTimestamp> map2;
+        ptLock.lock();
+        try {
+            map2 = this.ptConsumer.offsetsForTimes(ptMap);
+        } finally {
+            ptLock.unlock();
+        }
         result.putAll(map1);
         result.putAll(map2);
         return result;
@@ -400,18 +648,27 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
     public void resume(Collection<TopicPartition> partitions) {
         TopicPartitions topicPartitions = TopicPartitions.split(partitions);
         this.bizConsumer.resume(topicPartitions.bizCollection);
-        this.ptConsumer.resume(topicPartitions.ptCollection);
+        ptLock.lock();
+        try {
+            this.ptConsumer.resume(topicPartitions.ptCollection);
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     @Override
     public void pause(Collection<TopicPartition> partitions) {
         TopicPartitions topicPartitions = TopicPartitions.split(partitions);
         this.bizConsumer.pause(topicPartitions.bizCollection);
-        this.ptConsumer.pause(topicPartitions.ptCollection);
-    }
-
-    private Consumer chooseConsumerByContext() {
-        return Pradar.isClusterTest() ? ptConsumer : bizConsumer;
+        ptLock.lock();
+        try {
+            this.ptConsumer.pause(topicPartitions.ptCollection);
+            if (shadowPollLoop != null) {
+                shadowPollLoop.pausedByUser(topicPartitions.ptCollection);
+            }
+        } finally {
+            ptLock.unlock();
+        }
     }
 
     private OffsetCommitCallback wrapShadowCommitCallback(final OffsetCommitCallback callback) {
@@ -538,11 +795,38 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         putSlience(config, ConsumerConfig.MAX_POLL_RECORDS_CONFIG, fetcher, "maxPollRecords");
         putSlience(config, ConsumerConfig.CHECK_CRCS_CONFIG, fetcher, "checkCrcs");
 
+        if (shadowPollLoop != null) {
+            takeOverAutoCommit(config);
+        }
+
         KafkaConsumer kafkaConsumer = new KafkaConsumer(config);
-        kafkaConsumer.subscribe(consumerMetaData.getShadowTopics());
+        if (shadowPollLoop != null) {
+            kafkaConsumer.subscribe(consumerMetaData.getShadowTopics(), shadowPollLoop);
+        } else {
+            kafkaConsumer.subscribe(consumerMetaData.getShadowTopics());
+        }
         return new WithTryCatchConsumerProxy(kafkaConsumer);
     }
 
+    /**
+     * 独立拉取线程模式下关闭影子消费者自身的自动提交，由拉取线程按照原来的间隔提交已经交给业务线程的偏移量
+     */
+    private void takeOverAutoCommit(Properties config) {
+        String autoCommit = config.getProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG);
+        if (autoCommit == null || Boolean.parseBoolean(autoCommit)) {
+            long interval = 5000L;
+            String intervalStr = config.getProperty(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG);
+            if (intervalStr != null) {
+                try {
+                    interval = Long.parseLong(intervalStr);
+                } catch (NumberFormatException ignore) {
+                }
+            }
+            shadowPollLoop.autoCommit(interval);
+        }
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    }
+
     private static void putSlience(Properties config, String configStr, Object value) {
         try {
             config.put(configStr, value.toString());
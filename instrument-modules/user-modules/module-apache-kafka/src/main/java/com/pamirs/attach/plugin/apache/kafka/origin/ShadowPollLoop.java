@@ -0,0 +1,361 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.apache.kafka.origin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 影子消费者独立的拉取线程
+ * <p>
+ * 影子消费者由该线程持续拉取，拉取到的消息放入有界的交接队列，业务线程 poll 时只从队列中取，
+ * 不再在业务线程上发起影子消费者的网络请求。队列满时暂停影子消费者的分区，队列有空位后再恢复，
+ * 暂停期间仍然持续 poll 以保持心跳。
+ * <p>
+ * KafkaConsumer 不允许并发访问，所以对影子消费者的所有调用都需要持有同一把公平锁，
+ * 拉取线程每次 poll 后都会释放锁，业务线程上的提交、seek 等操作最多等待一次拉取的时间。
+ * <p>
+ * 队列中的消息已经被影子消费者消费但还没有交给业务线程，所以影子消费者的自动提交会被关闭，
+ * 改由拉取线程按照原来的提交间隔提交。与 KafkaConsumer 的自动提交语义一致，
+ * 交给业务线程的一批消息要等到业务线程下一次 poll 时才认为处理完成，自动提交只提交处理完成的偏移量
+ * <p>
+ * 影子消费者没有订阅也没有分配分区时拉取线程不调用 poll，每隔一次拉取超时检查一次；
+ * 拉取连续失败时等待的时间逐次翻倍，等待都在锁外进行，成功拉取一次后恢复
+ */
+class ShadowPollLoop implements Runnable, ConsumerRebalanceListener {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ShadowPollLoop.class);
+
+    /**
+     * 拉取线程每次 poll 的超时时间，也是其他线程获取锁的最大等待时间
+     */
+    private final static long POLL_TIMEOUT = 100L;
+
+    /**
+     * 拉取连续失败时的最大等待时间
+     */
+    private final static long MAX_ERROR_BACKOFF = 10000L;
+
+    private final ReentrantLock lock;
+
+    private final ArrayBlockingQueue<ConsumerRecords> handoff;
+
+    /**
+     * 已经交给业务线程的偏移量
+     */
+    private final Map<TopicPartition, OffsetAndMetadata> deliveredOffsets
+        = new ConcurrentHashMap<TopicPartition, OffsetAndMetadata>();
+
+    /**
+     * 最近一次交给业务线程、业务线程还在处理的偏移量，只在业务线程上修改
+     */
+    private final Map<TopicPartition, OffsetAndMetadata> processingOffsets
+        = new ConcurrentHashMap<TopicPartition, OffsetAndMetadata>();
+
+    /**
+     * 业务线程已经处理完成的偏移量，自动提交只提交这部分
+     */
+    private final Map<TopicPartition, OffsetAndMetadata> processedOffsets
+        = new ConcurrentHashMap<TopicPartition, OffsetAndMetadata>();
+
+    /**
+     * 因为队列已满被拉取线程暂停的分区，只在持有锁时访问
+     */
+    private final Set<TopicPartition> pausedByLoop = new HashSet<TopicPartition>();
+
+    private Consumer ptConsumer;
+
+    private boolean autoCommit;
+
+    private long autoCommitIntervalMs;
+
+    private long lastCommitTime;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    private volatile long lag;
+
+    ShadowPollLoop(ReentrantLock lock, int queueSize) {
+        this.lock = lock;
+        this.handoff = new ArrayBlockingQueue<ConsumerRecords>(Math.max(queueSize, 1));
+    }
+
+    /**
+     * 由拉取线程代替影子消费者自动提交
+     *
+     * @param autoCommitIntervalMs 自动提交间隔
+     */
+    void autoCommit(long autoCommitIntervalMs) {
+        this.autoCommit = true;
+        this.autoCommitIntervalMs = autoCommitIntervalMs;
+    }
+
+    void start(Consumer ptConsumer, String name) {
+        this.ptConsumer = ptConsumer;
+        this.lastCommitTime = System.currentTimeMillis();
+        this.running = true;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 停止拉取线程，等待当前的一次拉取结束
+     */
+    void stop() {
+        running = false;
+        Thread t = thread;
+        if (t == null || t == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(t);
+        try {
+            t.join(POLL_TIMEOUT * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long backoff = 0L;
+        while (running) {
+            long idle = 0L;
+            lock.lock();
+            try {
+                if (!running) {
+                    break;
+                }
+                if (ptConsumer.subscription().isEmpty() && ptConsumer.assignment().isEmpty()) {
+                    idle = POLL_TIMEOUT;
+                } else {
+                    applyBackPressure();
+                    ConsumerRecords records = ptConsumer.poll(POLL_TIMEOUT);
+                    if (!records.isEmpty() && !handoff.offer(records)) {
+                        rewind(records);
+                    }
+                    maybeAutoCommit();
+                    backoff = 0L;
+                }
+            } catch (WakeupException e) {
+                /**
+                 * 停止时关闭影子消费者会唤醒正在进行的 poll，运行中的 wakeup 只打断本次拉取
+                 */
+                if (!running) {
+                    break;
+                }
+            } catch (IllegalStateException e) {
+                /**
+                 * 影子消费者已经关闭
+                 */
+                if (!running) {
+                    break;
+                }
+                backoff = nextBackoff(backoff);
+                idle = backoff;
+                LOGGER.error("shadow consumer poll fail, retry after " + backoff + "ms!", e);
+            } catch (Throwable e) {
+                backoff = nextBackoff(backoff);
+                idle = backoff;
+                LOGGER.error("shadow consumer poll fail, retry after " + backoff + "ms!", e);
+            } finally {
+                lock.unlock();
+            }
+            if (idle > 0 && running) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(idle));
+            }
+        }
+    }
+
+    private static long nextBackoff(long backoff) {
+        if (backoff <= 0L) {
+            return POLL_TIMEOUT;
+        }
+        return Math.min(backoff * 2, MAX_ERROR_BACKOFF);
+    }
+
+    /**
+     * 业务线程每次 poll 时调用，上一次交给业务线程的消息已经处理完成
+     */
+    void polled() {
+        if (processingOffsets.isEmpty()) {
+            return;
+        }
+        processedOffsets.putAll(processingOffsets);
+        processingOffsets.clear();
+    }
+
+    /**
+     * 业务线程取出一批影子消息，没有时立即返回 null
+     */
+    ConsumerRecords take() {
+        ConsumerRecords records = handoff.poll();
+        if (records == null) {
+            lag = 0L;
+            return null;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Object o : records) {
+            ConsumerRecord record = (ConsumerRecord)o;
+            earliest = Math.min(earliest, record.timestamp());
+            final TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            final OffsetAndMetadata offset = new OffsetAndMetadata(record.offset() + 1);
+            deliveredOffsets.put(partition, offset);
+            processingOffsets.put(partition, offset);
+        }
+        if (earliest > 0 && earliest != Long.MAX_VALUE) {
+            lag = System.currentTimeMillis() - earliest;
+        }
+        return records;
+    }
+
+    /**
+     * 已经交给业务线程的偏移量快照，用于不带偏移量的提交
+     */
+    Map<TopicPartition, OffsetAndMetadata> deliveredOffsets() {
+        return new HashMap<TopicPartition, OffsetAndMetadata>(deliveredOffsets);
+    }
+
+    /**
+     * 丢弃队列中还没有交付的消息，并把对应分区回退到这些消息的位置，需要持有锁
+     */
+    void rewind() {
+        List<ConsumerRecords> pending = new ArrayList<ConsumerRecords>();
+        handoff.drainTo(pending);
+        for (ConsumerRecords records : pending) {
+            rewind(records);
+        }
+    }
+
+    private void rewind(ConsumerRecords records) {
+        Map<TopicPartition, Long> first = firstOffsets(records);
+        Set<TopicPartition> assignment = ptConsumer.assignment();
+        for (Entry<TopicPartition, Long> entry : first.entrySet()) {
+            if (assignment.contains(entry.getKey())) {
+                ptConsumer.seek(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 业务代码主动暂停的分区不再由拉取线程恢复，需要持有锁
+     */
+    void pausedByUser(Collection<TopicPartition> partitions) {
+        pausedByLoop.removeAll(partitions);
+    }
+
+    int pendingBatches() {
+        return handoff.size();
+    }
+
+    long getLag() {
+        return lag;
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        if (autoCommit) {
+            commitProcessed();
+        }
+        rewind();
+        pausedByLoop.clear();
+        for (TopicPartition partition : partitions) {
+            deliveredOffsets.remove(partition);
+            processingOffsets.remove(partition);
+            processedOffsets.remove(partition);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    private void applyBackPressure() {
+        if (handoff.remainingCapacity() == 0) {
+            Set<TopicPartition> toPause = new HashSet<TopicPartition>(ptConsumer.assignment());
+            toPause.removeAll(ptConsumer.paused());
+            if (!toPause.isEmpty()) {
+                ptConsumer.pause(toPause);
+                pausedByLoop.addAll(toPause);
+            }
+        } else if (!pausedByLoop.isEmpty()) {
+            pausedByLoop.retainAll(ptConsumer.assignment());
+            ptConsumer.resume(new ArrayList<TopicPartition>(pausedByLoop));
+            pausedByLoop.clear();
+        }
+    }
+
+    private void maybeAutoCommit() {
+        if (!autoCommit) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastCommitTime < autoCommitIntervalMs) {
+            return;
+        }
+        lastCommitTime = now;
+        Map<TopicPartition, OffsetAndMetadata> offsets = processedOffsets();
+        if (!offsets.isEmpty()) {
+            ptConsumer.commitAsync(offsets, null);
+        }
+    }
+
+    private void commitProcessed() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = processedOffsets();
+        if (!offsets.isEmpty()) {
+            ptConsumer.commitSync(offsets);
+        }
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> processedOffsets() {
+        return new HashMap<TopicPartition, OffsetAndMetadata>(processedOffsets);
+    }
+
+    private static Map<TopicPartition, Long> firstOffsets(ConsumerRecords records) {
+        Map<TopicPartition, Long> first = new HashMap<TopicPartition, Long>();
+        for (Object o : records) {
+            ConsumerRecord record = (ConsumerRecord)o;
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            Long offset = first.get(partition);
+            if (offset == null || record.offset() < offset) {
+                first.put(partition, record.offset());
+            }
+        }
+        return first;
+    }
+}
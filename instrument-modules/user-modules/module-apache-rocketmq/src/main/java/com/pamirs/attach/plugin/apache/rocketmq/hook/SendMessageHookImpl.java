@@ -30,6 +30,7 @@ import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.exception.PradarException;
 import com.pamirs.pradar.exception.PressureMeasureError;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.rocketmq.client.hook.SendMessageContext;
@@ -45,6 +46,12 @@ import org.slf4j.LoggerFactory;
  */
 public class SendMessageHookImpl implements SendMessageHook, MQTraceConstants {
     private final static Logger LOGGER = LoggerFactory.getLogger(SendMessageHookImpl.class.getName());
+    private final static ContextSetter<Message> USER_PROPERTY_SETTER = new ContextSetter<Message>() {
+        @Override
+        public void set(Message message, String key, String value) {
+            putUserProperty(message, key, value);
+        }
+    };
 
     @Override
     public String hookName() {
@@ -111,11 +118,7 @@ public class SendMessageHookImpl implements SendMessageHook, MQTraceConstants {
             traceBean.setContext(rpcContext);
 
             traceBean.setClusterTest(message.getUserProperty(PradarService.PRADAR_CLUSTER_TEST_KEY));
-            MQSendMessageTraceLog.sendMessageBefore(mqTraceContext);
-
-            for (Map.Entry<String, String> entry : traceBean.getContext().entrySet()) {
-                putUserProperty(message, entry.getKey(), entry.getValue());
-            }
+            MQSendMessageTraceLog.sendMessageBefore(mqTraceContext, message, USER_PROPERTY_SETTER);
             putUserProperty(message,RocketmqConstants.NAME_SERVER_ADDRESS,traceBean.getStoreHost());
 
         } catch (PradarException e) {
@@ -136,7 +139,7 @@ public class SendMessageHookImpl implements SendMessageHook, MQTraceConstants {
         }
     }
 
-    private void putUserProperty(Message message, String key, String value) {
+    private static void putUserProperty(Message message, String key, String value) {
         if (value != null && !value.isEmpty()) {
             message.putUserProperty(key, value);
         }
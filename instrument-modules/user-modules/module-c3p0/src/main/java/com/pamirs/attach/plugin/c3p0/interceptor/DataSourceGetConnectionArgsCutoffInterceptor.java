@@ -19,6 +19,7 @@ import com.pamirs.attach.plugin.c3p0.ListenerRegisterStatus;
 import com.pamirs.attach.plugin.c3p0.destroy.C3p0Destroy;
 import com.pamirs.attach.plugin.c3p0.utils.C3p0MediaDataSource;
 import com.pamirs.attach.plugin.c3p0.utils.DataSourceWrapUtil;
+import com.pamirs.attach.plugin.common.datasource.ShadowDataSourceWarmupListener;
 import com.pamirs.attach.plugin.dynamic.Attachment;
 import com.pamirs.attach.plugin.dynamic.ResourceManager;
 import com.pamirs.attach.plugin.dynamic.Type;
@@ -36,6 +37,7 @@ import com.pamirs.pradar.pressurement.agent.listener.EventResult;
 import com.pamirs.pradar.pressurement.agent.listener.PradarEventListener;
 import com.pamirs.pradar.pressurement.agent.shared.service.DataSourceMeta;
 import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
@@ -143,7 +145,8 @@ public class DataSourceGetConnectionArgsCutoffInterceptor extends CutoffIntercep
             public int order() {
                 return 8;
             }
-        }).addListener(new PradarEventListener() {
+        }).addListener(new ShadowDataSourceWarmupListener("c3p0-plugin", ShadowDataSourceWarmupListener.ORDER_C3P0,
+            DataSourceWrapUtil.pressureDataSources.values())).addListener(new PradarEventListener() {
             @Override
             public EventResult onEvent(IEvent event) {
                 if (!(event instanceof ShadowDataSourceConfigModifyEvent)) {
@@ -170,6 +173,10 @@ public class DataSourceGetConnectionArgsCutoffInterceptor extends CutoffIntercep
                             } catch (Throwable e) {
                                 logger.error("module-c3p0: closed datasource err! target:{}, url:{} username:{}", entry.getKey().getDataSource().hashCode(), entry.getKey().getUrl(), entry.getKey().getUsername(), e);
                             }
+                            if (ShadowDataSourceWarmer.isWarmupRequired(config)) {
+                                //配置变更后重新创建并预热影子数据源
+                                DataSourceWrapUtil.init(entry.getKey());
+                            }
                             break;
                         }
                     }
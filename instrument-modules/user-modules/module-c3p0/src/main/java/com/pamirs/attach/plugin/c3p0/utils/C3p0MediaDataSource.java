@@ -56,10 +56,21 @@ public class C3p0MediaDataSource extends WrappedDbMediatorDataSource<ComboPooled
         return datasource.getDriverClass();
     }
 
+    @Override
+    protected int getMinIdle(ComboPooledDataSource datasource) {
+        return datasource.getMinPoolSize();
+    }
+
+    @Override
+    protected int getMaxActive(ComboPooledDataSource datasource) {
+        return datasource.getMaxPoolSize();
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         if (Pradar.isClusterTest()) {
             try {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     //影子表
@@ -99,6 +110,7 @@ public class C3p0MediaDataSource extends WrappedDbMediatorDataSource<ComboPooled
 
     @Override
     public void close() {
+        releaseWarmup();
         if (dataSourcePerformanceTest != null) {
             try {
                 dataSourcePerformanceTest.close();
@@ -171,6 +171,7 @@ public class DataSourceWrapUtil {
                 if (logger.isInfoEnabled()) {
                     logger.info("[c3p0] create shadow datasource successful. target:{} url:{} ,username:{} shadow-url:{},shadow-username:{}", target.hashCode(), target.getJdbcUrl(), target.getUser(), ptDataSource.getJdbcUrl(), ptDataSource.getUser());
                 }
+                dataSource.prewarm();
             } catch (Throwable t) {
                 logger.error("[c3p0] init datasource err!", t);
                 ErrorReporter.buildError()
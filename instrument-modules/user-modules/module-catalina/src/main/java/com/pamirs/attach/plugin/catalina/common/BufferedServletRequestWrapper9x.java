@@ -14,6 +14,7 @@
  */
 package com.pamirs.attach.plugin.catalina.common;
 
+import com.pamirs.attach.plugin.common.web.CapturingServletInputStream;
 import com.pamirs.attach.plugin.common.web.IBufferedServletRequestWrapper;
 import org.apache.catalina.Context;
 import org.apache.catalina.Host;
@@ -47,7 +48,15 @@ import java.util.Map;
  */
 public class BufferedServletRequestWrapper9x extends Request implements IBufferedServletRequestWrapper {
 
+    /**
+     * buffer 模式下读取到的整个请求体
+     */
     private byte[] buffer;
+    /**
+     * 默认模式下业务读取请求体时旁路采集请求体的前缀
+     */
+    private CapturingServletInputStream capturingInputStream;
+    private BufferedReader capturingReader;
     private final Request request;
     protected RequestFacade facade;
 
@@ -691,30 +700,54 @@ public class BufferedServletRequestWrapper9x extends Request implements IBuffere
 
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        if (this.buffer == null) {
-            initBuffer();
+        if (CapturingServletInputStream.isBufferMode()) {
+            if (this.buffer == null) {
+                initBuffer();
+            }
+            return new BufferedServletInputStream(this.buffer);
+        }
+        if (capturingInputStream == null) {
+            capturingInputStream = new CapturingServletInputStream(request.getInputStream(),
+                CapturingServletInputStream.getCaptureLimit(), request.getContentLengthLong());
         }
-        return new BufferedServletInputStream(this.buffer);
+        return capturingInputStream;
     }
 
     @Override
     public BufferedReader getReader() throws IOException {
-        if (buffer == null) {
-            initBuffer();
+        if (CapturingServletInputStream.isBufferMode()) {
+            if (buffer == null) {
+                initBuffer();
+            }
+            return new BufferedReaderWrapper(new InputStreamReader(getInputStream(), getReaderEncoding()));
+        }
+        /**
+         * 采集模式下请求体只能读取一次，多次获取需要返回同一个 reader，否则已经缓冲在 reader 中的内容会丢失
+         */
+        if (capturingReader == null) {
+            capturingReader = new BufferedReaderWrapper(
+                new InputStreamReader(getInputStream(), getReaderEncoding()));
         }
+        return capturingReader;
+    }
+
+    private String getReaderEncoding() {
         String characterEncoding = request.getCharacterEncoding();
         if (characterEncoding == null) {
             characterEncoding = "ISO8859-1";
         }
-        return new BufferedReaderWrapper(new InputStreamReader(getInputStream(), characterEncoding));
+        return characterEncoding;
     }
 
     @Override
     public byte[] getBody() {
-        if (null == this.buffer) {
-            return null;
+        if (this.buffer != null) {
+            return this.buffer;
+        }
+        if (this.capturingInputStream != null) {
+            return this.capturingInputStream.getCaptured();
         }
-        return this.buffer;
+        return null;
     }
 
     @Override
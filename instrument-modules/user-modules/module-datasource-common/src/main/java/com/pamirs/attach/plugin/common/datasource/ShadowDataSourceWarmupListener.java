@@ -0,0 +1,70 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.common.datasource;
+
+import com.pamirs.pradar.pressurement.agent.event.IEvent;
+import com.pamirs.pradar.pressurement.agent.event.impl.ClusterTestSwitchOnEvent;
+import com.pamirs.pradar.pressurement.agent.listener.EventResult;
+import com.pamirs.pradar.pressurement.agent.listener.PradarEventListener;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
+
+import java.util.Collection;
+
+/**
+ * 压测开关打开时预热插件已经创建的影子连接池
+ * <p>
+ * EventRouter 按 order 排序并去重，order 相同的监听器只会保留先注册的一个，
+ * 所以每个连接池插件需要使用下面各自独立的 order，不能与其他监听器共用
+ * </p>
+ */
+public class ShadowDataSourceWarmupListener implements PradarEventListener {
+    public final static int ORDER_HIKARI = 20;
+    public final static int ORDER_DRUID = 21;
+    public final static int ORDER_C3P0 = 22;
+    public final static int ORDER_DBCP = 23;
+    public final static int ORDER_DBCP2 = 24;
+    public final static int ORDER_PROXOOL = 25;
+
+    private final String pluginName;
+    private final int order;
+    private final Collection<? extends WrappedDbMediatorDataSource> dataSources;
+
+    /**
+     * @param pluginName  插件名称
+     * @param order       插件独立的监听器顺序
+     * @param dataSources 插件持有的影子数据源，一般为影子数据源 Map 的 values 视图
+     */
+    public ShadowDataSourceWarmupListener(String pluginName, int order,
+        Collection<? extends WrappedDbMediatorDataSource> dataSources) {
+        this.pluginName = pluginName;
+        this.order = order;
+        this.dataSources = dataSources;
+    }
+
+    @Override
+    public EventResult onEvent(IEvent event) {
+        if (!(event instanceof ClusterTestSwitchOnEvent) || !ShadowDataSourceWarmer.isEnabled()) {
+            return EventResult.IGNORE;
+        }
+        //预热压测数据源
+        WrappedDbMediatorDataSource.prewarm(dataSources);
+        return EventResult.success(pluginName);
+    }
+
+    @Override
+    public int order() {
+        return order;
+    }
+}
@@ -23,6 +23,7 @@ import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.pressurement.agent.shared.service.ErrorReporter;
 import com.pamirs.pradar.pressurement.datasource.DatabaseUtils;
 import com.pamirs.pradar.pressurement.datasource.DbMediatorDataSource;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
 import com.pamirs.pradar.pressurement.datasource.util.DbType;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.druid.util.JdbcUtils;
@@ -34,7 +35,11 @@ import java.io.PrintWriter;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -48,6 +53,11 @@ public abstract class WrappedDbMediatorDataSource<T extends DataSource> extends
 
     protected volatile AtomicBoolean init = new AtomicBoolean(false);
 
+    /**
+     * 预热时校验连接的超时时间(秒)
+     */
+    private final static int VALIDATE_TIMEOUT_SECONDS = 3;
+
     /**
      * 根据数据源获取用户
      *
@@ -165,6 +175,147 @@ public abstract class WrappedDbMediatorDataSource<T extends DataSource> extends
         }
     }
 
+    /**
+     * 获取影子连接池需要预热的连接数，默认为 1，各连接池返回自身的最小空闲连接数
+     *
+     * @param datasource 影子数据源
+     * @return
+     */
+    protected int getMinIdle(T datasource) {
+        return 1;
+    }
+
+    /**
+     * 获取影子连接池的最大连接数，预热的连接数不会超过最大连接数并且会给压测流量留出余量，
+     * 小于等于 0 表示不限制
+     *
+     * @param datasource 影子数据源
+     * @return
+     */
+    protected int getMaxActive(T datasource) {
+        return 0;
+    }
+
+    /**
+     * 后台预热影子连接池，需要开启 pradar.shadow.datasource.warmup
+     *
+     * @return 是否提交了预热任务
+     */
+    public boolean prewarm() {
+        if (!ShadowDataSourceWarmer.isEnabled() || dataSourceBusiness == null) {
+            return false;
+        }
+        return ShadowDataSourceWarmer.submit(this, getWarmupName(), new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return warmup();
+            }
+        });
+    }
+
+    /**
+     * 预热多个影子连接池
+     *
+     * @param dataSources 数据源中间对象
+     */
+    public static void prewarm(Collection<? extends WrappedDbMediatorDataSource> dataSources) {
+        if (!ShadowDataSourceWarmer.isEnabled() || dataSources == null) {
+            return;
+        }
+        for (WrappedDbMediatorDataSource dataSource : dataSources) {
+            dataSource.prewarm();
+        }
+    }
+
+    /**
+     * 初始化并从影子连接池中借出最小空闲连接数个连接逐个校验后归还，
+     * 连接池会保留这些物理连接，压测流量进来时不需要再建立连接
+     *
+     * @return 预热的连接数
+     * @throws Exception
+     */
+    protected int warmup() throws Exception {
+        init();
+        final T performanceTest = dataSourcePerformanceTest;
+        if (useTable || performanceTest == null) {
+            return 0;
+        }
+        int size = getWarmupSize(getMinIdle(performanceTest), getMaxActive(performanceTest));
+        List<Connection> connections = new ArrayList<Connection>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection connection = ShadowDataSourceWarmer.borrow(new Callable<Connection>() {
+                    @Override
+                    public Connection call() throws Exception {
+                        return performanceTest.getConnection();
+                    }
+                });
+                if (connection == null) {
+                    break;
+                }
+                connections.add(connection);
+                if (!isValid(connection)) {
+                    throw new SQLException("shadow connection is invalid. url=" + url + ", username=" + username);
+                }
+            }
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                }
+            }
+        }
+        return connections.size();
+    }
+
+    /**
+     * 等待影子连接池预热完成，需要开启 pradar.shadow.datasource.warmup.hold
+     */
+    protected void awaitWarmup() {
+        ShadowDataSourceWarmer.awaitReady(this);
+    }
+
+    /**
+     * 关闭时移除预热状态
+     */
+    protected void releaseWarmup() {
+        ShadowDataSourceWarmer.remove(this);
+    }
+
+    /**
+     * 预热连接数为最小空闲连接数，不超过 pradar.shadow.datasource.warmup.max.connections，
+     * 并且给压测流量保留至少最大连接数的 1/4
+     */
+    private static int getWarmupSize(int minIdle, int maxActive) {
+        int size = Math.min(Math.max(minIdle, 1), ShadowDataSourceWarmer.getMaxConnections());
+        if (maxActive > 0) {
+            size = Math.min(size, maxActive - Math.max(1, maxActive / 4));
+        }
+        return Math.max(size, 0);
+    }
+
+    private String getWarmupName() {
+        try {
+            String url = getUrl(dataSourceBusiness);
+            if (url == null) {
+                url = getJndiName();
+            }
+            return DbUrlUtils.getKey(url, getUsername(dataSourceBusiness));
+        } catch (Throwable e) {
+            return dataSourceBusiness.getClass().getName() + "@" + System.identityHashCode(dataSourceBusiness);
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATE_TIMEOUT_SECONDS);
+        } catch (Throwable e) {
+            //驱动不支持 isValid 时不做校验
+            return true;
+        }
+    }
+
     /**
      * <p>{@code } instances should NOT be constructed in
      * standard programming. </p>
@@ -303,6 +454,7 @@ public abstract class WrappedDbMediatorDataSource<T extends DataSource> extends
         Throwable t = null;
         try {
             if (Pradar.isClusterTest()) {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     //影子表
@@ -353,6 +505,7 @@ public abstract class WrappedDbMediatorDataSource<T extends DataSource> extends
         Throwable t = null;
         try {
             if (Pradar.isClusterTest()) {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     if (dataSourceBusiness == null) {
@@ -447,5 +600,6 @@ public abstract class WrappedDbMediatorDataSource<T extends DataSource> extends
 
     @Override
     public void close() {
+        releaseWarmup();
     }
 }
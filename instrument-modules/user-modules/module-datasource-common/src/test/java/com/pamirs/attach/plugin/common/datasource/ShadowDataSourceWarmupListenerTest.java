@@ -0,0 +1,109 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.common.datasource;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.pamirs.pradar.pressurement.agent.event.IEvent;
+import com.pamirs.pradar.pressurement.agent.event.impl.ClusterTestSwitchOnEvent;
+import com.pamirs.pradar.pressurement.agent.listener.EventResult;
+import com.pamirs.pradar.pressurement.agent.listener.PradarEventListener;
+import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShadowDataSourceWarmupListenerTest {
+
+    static {
+        System.setProperty("pradar.shadow.datasource.warmup", "true");
+    }
+
+    @Test
+    public void warmupRunsWhenSwitchOnIsPublished() throws Exception {
+        // 连接池插件在预热监听器之前注册了 order 为 8 的关闭压测数据源监听器
+        PradarEventListener switchOffListener = new PradarEventListener() {
+            @Override
+            public EventResult onEvent(IEvent event) {
+                return EventResult.IGNORE;
+            }
+
+            @Override
+            public int order() {
+                return 8;
+            }
+        };
+        CountDownLatch warmed = new CountDownLatch(1);
+        Map<String, WrappedDbMediatorDataSource> dataSources = new ConcurrentHashMap<String, WrappedDbMediatorDataSource>();
+        ShadowDataSourceWarmupListener warmupListener = new ShadowDataSourceWarmupListener("test-plugin",
+            ShadowDataSourceWarmupListener.ORDER_HIKARI, dataSources.values());
+        EventRouter.router().addListener(switchOffListener).addListener(warmupListener);
+        try {
+            // 监听器持有的是 values 视图，注册之后创建的影子数据源也会被预热
+            dataSources.put("shadow", new RecordingDataSource(warmed));
+            Assert.assertTrue(EventRouter.router().publish(new ClusterTestSwitchOnEvent(this)));
+            Assert.assertTrue("warmup listener was not invoked", warmed.await(5, TimeUnit.SECONDS));
+        } finally {
+            EventRouter.router().removeListener(warmupListener).removeListener(switchOffListener);
+        }
+    }
+
+    @Test
+    public void pluginOrdersAreUnique() {
+        Set<Integer> orders = new HashSet<Integer>();
+        orders.add(8);
+        Assert.assertTrue(orders.add(ShadowDataSourceWarmupListener.ORDER_HIKARI));
+        Assert.assertTrue(orders.add(ShadowDataSourceWarmupListener.ORDER_DRUID));
+        Assert.assertTrue(orders.add(ShadowDataSourceWarmupListener.ORDER_C3P0));
+        Assert.assertTrue(orders.add(ShadowDataSourceWarmupListener.ORDER_DBCP));
+        Assert.assertTrue(orders.add(ShadowDataSourceWarmupListener.ORDER_DBCP2));
+        Assert.assertTrue(orders.add(ShadowDataSourceWarmupListener.ORDER_PROXOOL));
+    }
+
+    private static class RecordingDataSource extends WrappedDbMediatorDataSource<DataSource> {
+        private final CountDownLatch warmed;
+
+        RecordingDataSource(CountDownLatch warmed) {
+            this.warmed = warmed;
+        }
+
+        @Override
+        public boolean prewarm() {
+            warmed.countDown();
+            return true;
+        }
+
+        @Override
+        public String getUsername(DataSource datasource) {
+            return null;
+        }
+
+        @Override
+        public String getUrl(DataSource datasource) {
+            return null;
+        }
+
+        @Override
+        public String getDriverClassName(DataSource datasource) {
+            return null;
+        }
+    }
+}
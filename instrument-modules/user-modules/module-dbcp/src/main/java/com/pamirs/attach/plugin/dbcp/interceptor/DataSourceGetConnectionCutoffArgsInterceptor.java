@@ -14,6 +14,7 @@
  */
 package com.pamirs.attach.plugin.dbcp.interceptor;
 
+import com.pamirs.attach.plugin.common.datasource.ShadowDataSourceWarmupListener;
 import com.pamirs.attach.plugin.dbcp.ListenerRegisterStatus;
 import com.pamirs.attach.plugin.dbcp.destroy.DbcpDestroy;
 import com.pamirs.attach.plugin.dbcp.utils.DataSourceWrapUtil;
@@ -31,6 +32,7 @@ import com.pamirs.pradar.pressurement.agent.listener.EventResult;
 import com.pamirs.pradar.pressurement.agent.listener.PradarEventListener;
 import com.pamirs.pradar.pressurement.agent.shared.service.DataSourceMeta;
 import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
@@ -120,7 +122,8 @@ public class DataSourceGetConnectionCutoffArgsInterceptor extends CutoffIntercep
             public int order() {
                 return 8;
             }
-        }).addListener(new PradarEventListener() {
+        }).addListener(new ShadowDataSourceWarmupListener("dbcp-plugin", ShadowDataSourceWarmupListener.ORDER_DBCP,
+            DataSourceWrapUtil.pressureDataSources.values())).addListener(new PradarEventListener() {
             @Override
             public EventResult onEvent(IEvent event) {
                 if (!(event instanceof ShadowDataSourceConfigModifyEvent)) {
@@ -147,6 +150,10 @@ public class DataSourceGetConnectionCutoffArgsInterceptor extends CutoffIntercep
                             } catch (Throwable e) {
                                 logger.error("module-dbcp: closed datasource err! target:{}, url:{} username:{}", entry.getKey().getDataSource().hashCode(), entry.getKey().getUrl(), entry.getKey().getUsername(), e);
                             }
+                            if (ShadowDataSourceWarmer.isWarmupRequired(config)) {
+                                //配置变更后重新创建并预热影子数据源
+                                DataSourceWrapUtil.init(entry.getKey());
+                            }
                             break;
                         }
                     }
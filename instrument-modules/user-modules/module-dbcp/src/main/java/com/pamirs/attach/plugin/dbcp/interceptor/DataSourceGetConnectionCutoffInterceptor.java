@@ -14,6 +14,7 @@
  */
 package com.pamirs.attach.plugin.dbcp.interceptor;
 
+import com.pamirs.attach.plugin.common.datasource.ShadowDataSourceWarmupListener;
 import com.pamirs.attach.plugin.dbcp.ListenerRegisterStatus;
 import com.pamirs.attach.plugin.dbcp.destroy.DbcpDestroy;
 import com.pamirs.attach.plugin.dbcp.utils.DataSourceWrapUtil;
@@ -32,6 +33,7 @@ import com.pamirs.pradar.pressurement.agent.listener.PradarEventListener;
 import com.pamirs.pradar.pressurement.agent.shared.service.DataSourceMeta;
 import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
 import com.pamirs.pradar.pressurement.datasource.DbMediatorDataSource;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
@@ -119,7 +121,8 @@ public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorA
             public int order() {
                 return 8;
             }
-        }).addListener(new PradarEventListener() {
+        }).addListener(new ShadowDataSourceWarmupListener("dbcp-plugin", ShadowDataSourceWarmupListener.ORDER_DBCP,
+            DataSourceWrapUtil.pressureDataSources.values())).addListener(new PradarEventListener() {
             @Override
             public EventResult onEvent(IEvent event) {
                 if (!(event instanceof ShadowDataSourceConfigModifyEvent)) {
@@ -146,6 +149,10 @@ public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorA
                             } catch (Throwable e) {
                                 logger.error("module-dbcp: closed datasource err! target:{}, url:{} username:{}", entry.getKey().getDataSource().hashCode(), entry.getKey().getUrl(), entry.getKey().getUsername(), e);
                             }
+                            if (ShadowDataSourceWarmer.isWarmupRequired(config)) {
+                                //配置变更后重新创建并预热影子数据源
+                                DataSourceWrapUtil.init(entry.getKey());
+                            }
                             break;
                         }
                     }
@@ -184,6 +184,7 @@ public class DataSourceWrapUtil {
                 if (logger.isInfoEnabled()) {
                     logger.info("[dbcp] create shadow datasource success. target:{} url:{} ,username:{} shadow-url:{},shadow-username:{}", target.hashCode(), target.getUrl(), target.getUsername(), ptDataSource.getUrl(), ptDataSource.getUsername());
                 }
+                dataSource.prewarm();
             } catch (Throwable t) {
                 logger.error("[dbcp] init datasource err!", t);
                 ErrorReporter.buildError()
@@ -311,6 +312,13 @@ public class DataSourceWrapUtil {
             target.setMaxActive(sourceDatasource.getMaxActive());
         }
 
+        Long maxWait = ptDataSourceConf.getLongProperty("maxWait");
+        if (maxWait != null) {
+            target.setMaxWait(maxWait);
+        } else {
+            target.setMaxWait(sourceDatasource.getMaxWait());
+        }
+
         Boolean testOnReturn = ptDataSourceConf.getBooleanProperty("testOnReturn");
         if (testOnReturn != null) {
             target.setTestOnReturn(testOnReturn);
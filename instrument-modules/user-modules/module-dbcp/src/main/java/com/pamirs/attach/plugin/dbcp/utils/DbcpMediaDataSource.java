@@ -52,10 +52,21 @@ public class DbcpMediaDataSource extends WrappedDbMediatorDataSource<BasicDataSo
         return datasource.getDriverClassName();
     }
 
+    @Override
+    protected int getMinIdle(BasicDataSource datasource) {
+        return datasource.getMinIdle();
+    }
+
+    @Override
+    protected int getMaxActive(BasicDataSource datasource) {
+        return datasource.getMaxActive();
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         if (Pradar.isClusterTest()) {
             try {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     //影子表
@@ -97,6 +108,7 @@ public class DbcpMediaDataSource extends WrappedDbMediatorDataSource<BasicDataSo
     public Connection getConnection(String username, String password) throws SQLException {
         if (Pradar.isClusterTest()) {
             try {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     //影子表
@@ -136,6 +148,7 @@ public class DbcpMediaDataSource extends WrappedDbMediatorDataSource<BasicDataSo
 
     @Override
     public void close() {
+        releaseWarmup();
         if (dataSourcePerformanceTest != null) {
             try {
                 dataSourcePerformanceTest.close();
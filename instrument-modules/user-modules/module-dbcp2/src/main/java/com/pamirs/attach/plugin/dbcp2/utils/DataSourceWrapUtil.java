@@ -183,6 +183,7 @@ public class DataSourceWrapUtil {
                 if (logger.isInfoEnabled()) {
                     logger.info("[dbcp2] create shadow datasource successful. target:{} url:{} ,username:{} shadow-url:{},shadow-username:{}", target.hashCode(), target.getUrl(), target.getUsername(), ptDataSource.getUrl(), ptDataSource.getUsername());
                 }
+                dataSource.prewarm();
             } catch (Throwable t) {
                 logger.error("[dbcp2] init datasource err!", t);
                 ErrorReporter.buildError()
@@ -339,6 +340,13 @@ public class DataSourceWrapUtil {
             target.setTestOnCreate(sourceDatasource.getTestOnCreate());
         }
 
+        Long maxWait = ptDataSourceConf.getLongProperty("maxWait");
+        if (maxWait != null) {
+            target.setMaxWaitMillis(maxWait);
+        } else {
+            target.setMaxWaitMillis(sourceDatasource.getMaxWaitMillis());
+        }
+
         Boolean testOnReturn = ptDataSourceConf.getBooleanProperty("testOnReturn");
         if (testOnReturn != null) {
             target.setTestOnReturn(testOnReturn);
@@ -31,6 +31,8 @@ import io.grpc.Metadata;
 
 import javax.annotation.Resource;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * GRPC调用服务端
@@ -40,6 +42,11 @@ import java.net.SocketTimeoutException;
  * @Date 2020-03-13 15:36
  */
 public class ClientCallStartInterceptor extends TraceInterceptorAdaptor {
+    /**
+     * 传输字段是固定的几个，缓存 Metadata.Key 避免每次调用都重新校验和创建
+     */
+    private final static ConcurrentMap<String, Metadata.Key<String>> METADATA_KEYS = new ConcurrentHashMap<String, Metadata.Key<String>>();
+
     @Resource
     protected DynamicFieldManager manager;
 
@@ -111,14 +118,25 @@ public class ClientCallStartInterceptor extends TraceInterceptorAdaptor {
         return new ContextTransfer() {
             @Override
             public void transfer(String keyName, String value) {
-                Metadata.Key<String> key = Metadata.Key.of(keyName, Metadata.ASCII_STRING_MARSHALLER);
                 if (null != value) {
-                    metadata.put(key, value);
+                    metadata.put(getMetadataKey(keyName), value);
                 }
             }
         };
     }
 
+    private static Metadata.Key<String> getMetadataKey(String keyName) {
+        Metadata.Key<String> key = METADATA_KEYS.get(keyName);
+        if (key == null) {
+            key = Metadata.Key.of(keyName, Metadata.ASCII_STRING_MARSHALLER);
+            Metadata.Key<String> old = METADATA_KEYS.putIfAbsent(keyName, key);
+            if (old != null) {
+                key = old;
+            }
+        }
+        return key;
+    }
+
     @Override
     public SpanRecord beforeTrace(Advice advice) {
         Object[] args = advice.getParameterArray();
@@ -167,6 +167,7 @@ public class DataSourceWrapUtil {
                 if (logger.isInfoEnabled()) {
                     logger.info("[hikariCP] create shadow datasource success. target:{} url:{} ,username:{} shadow-url:{},shadow-username:{}", target.hashCode(), target.getJdbcUrl(), target.getUsername(), ptDataSource.getJdbcUrl(), ptDataSource.getUsername());
                 }
+                dataSource.prewarm();
             } catch (Throwable t) {
                 logger.error("[hikariCP] init datasource err!", t);
                 ErrorReporter.buildError()
@@ -56,10 +56,21 @@ public class HikariMediaDataSource extends WrappedDbMediatorDataSource<HikariDat
         return datasource.getDriverClassName();
     }
 
+    @Override
+    protected int getMinIdle(HikariDataSource datasource) {
+        return datasource.getMinimumIdle();
+    }
+
+    @Override
+    protected int getMaxActive(HikariDataSource datasource) {
+        return datasource.getMaximumPoolSize();
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         if (Pradar.isClusterTest()) {
             try {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     //影子表
@@ -101,6 +112,7 @@ public class HikariMediaDataSource extends WrappedDbMediatorDataSource<HikariDat
 
     @Override
     public void close() {
+        releaseWarmup();
         if (dataSourcePerformanceTest != null) {
             try {
                 dataSourcePerformanceTest.close();
@@ -21,6 +21,7 @@ import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.common.HeaderMark;
 import com.pamirs.pradar.interceptor.AroundInterceptor;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.internal.config.ExecutionCall;
 import com.pamirs.pradar.internal.config.MatchConfig;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -43,6 +44,12 @@ import java.util.Map;
  * Created by xiaobin on 2016/12/15.
  */
 public class AsyncHttpClientv4MethodInterceptor extends AroundInterceptor {
+    private static final ContextSetter<HttpMessage> HEADER_SETTER = new ContextSetter<HttpMessage>() {
+        @Override
+        public void set(HttpMessage carrier, String key, String value) {
+            carrier.setHeader(key, value);
+        }
+    };
 
     private static String getService(String schema, String host, int port, String path) {
         String url = schema + "://" + host;
@@ -118,13 +125,9 @@ public class AsyncHttpClientv4MethodInterceptor extends AroundInterceptor {
             }
         }
         final Map<String, String> context = Pradar.getInvokeContextMap();
-        for (Map.Entry<String, String> entry : context.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
-                    request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
-                request.setHeader(key, value);
-            }
+        if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
+                request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
+            Pradar.injectInvokeContext(request, HEADER_SETTER);
         }
         Pradar.popInvokeContext();
 
@@ -25,6 +25,7 @@ import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.common.HeaderMark;
 import com.pamirs.pradar.interceptor.AroundInterceptor;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.internal.config.ExecutionCall;
 import com.pamirs.pradar.internal.config.MatchConfig;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -33,6 +34,7 @@ import com.shulie.instrument.simulator.api.ProcessControlException;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpMessage;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
@@ -47,6 +49,12 @@ import org.apache.http.message.BasicStatusLine;
  * Created by xiaobin on 2016/12/15.
  */
 public class AsyncHttpClientv4MethodInterceptor1 extends AroundInterceptor {
+    private static final ContextSetter<HttpMessage> HEADER_SETTER = new ContextSetter<HttpMessage>() {
+        @Override
+        public void set(HttpMessage carrier, String key, String value) {
+            carrier.setHeader(key, value);
+        }
+    };
 
     private static String getService(String schema, String host, int port, String path) {
         String url = schema + "://" + host;
@@ -117,13 +125,9 @@ public class AsyncHttpClientv4MethodInterceptor1 extends AroundInterceptor {
             }
         }
         final Map<String, String> context = Pradar.getInvokeContextMap();
-        for (Map.Entry<String, String> entry : context.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
-                    request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
-                request.setHeader(key, value);
-            }
+        if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
+                request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
+            Pradar.injectInvokeContext(request, HEADER_SETTER);
         }
         Pradar.popInvokeContext();
 
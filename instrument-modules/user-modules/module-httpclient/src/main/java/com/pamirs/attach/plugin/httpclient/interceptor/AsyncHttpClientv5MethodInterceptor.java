@@ -27,6 +27,7 @@ import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.common.HeaderMark;
 import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.interceptor.AroundInterceptor;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.internal.config.ExecutionCall;
 import com.pamirs.pradar.internal.config.MatchConfig;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -39,6 +40,7 @@ import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpMessage;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.io.entity.StringEntity;
@@ -51,6 +53,13 @@ import org.slf4j.LoggerFactory;
  * Created by baozi on 2021/8/12.
  */
 public class AsyncHttpClientv5MethodInterceptor extends AroundInterceptor {
+    private static final ContextSetter<HttpMessage> HEADER_SETTER = new ContextSetter<HttpMessage>() {
+        @Override
+        public void set(HttpMessage carrier, String key, String value) {
+            carrier.setHeader(key, value);
+        }
+    };
+
     private final static Logger logger = LoggerFactory.getLogger(AsyncHttpClientv5MethodInterceptor.class);
 
     private static String getService(String schema, String host, int port, String path) {
@@ -112,13 +121,9 @@ public class AsyncHttpClientv5MethodInterceptor extends AroundInterceptor {
             }
         }
         final Map<String, String> context = Pradar.getInvokeContextMap();
-        for (Map.Entry<String, String> entry : context.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
-                request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
-                request.setHeader(key, value);
-            }
+        if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
+            request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
+            Pradar.injectInvokeContext(request, HEADER_SETTER);
         }
         //pradar启动提前为的是捕获白名单异常能trace进去的
         try{
@@ -28,6 +28,7 @@ import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.common.HeaderMark;
 import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.interceptor.AroundInterceptor;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.internal.config.ExecutionCall;
 import com.pamirs.pradar.internal.config.MatchConfig;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -38,6 +39,7 @@ import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpMessage;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
@@ -50,6 +52,13 @@ import org.slf4j.LoggerFactory;
 public class
 
 AsyncHttpClientv5MethodInterceptor1 extends AroundInterceptor {
+    private static final ContextSetter<HttpMessage> HEADER_SETTER = new ContextSetter<HttpMessage>() {
+        @Override
+        public void set(HttpMessage carrier, String key, String value) {
+            carrier.setHeader(key, value);
+        }
+    };
+
     private final static Logger logger = LoggerFactory.getLogger(AsyncHttpClientv5MethodInterceptor1.class);
 
     private static String getService(String schema, String host, int port, String path) {
@@ -105,13 +114,9 @@ AsyncHttpClientv5MethodInterceptor1 extends AroundInterceptor {
             }
         }
         final Map<String, String> context = Pradar.getInvokeContextMap();
-        for (Map.Entry<String, String> entry : context.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
-                request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
-                request.setHeader(key, value);
-            }
+        if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null ||
+            request.getHeaders(HeaderMark.DONT_MODIFY_HEADER).length == 0) {
+            Pradar.injectInvokeContext(request, HEADER_SETTER);
         }
         try {
             config.getStrategy().processBlock(advice.getBehavior().getReturnType(),advice.getClassLoader(), config, new ExecutionCall() {
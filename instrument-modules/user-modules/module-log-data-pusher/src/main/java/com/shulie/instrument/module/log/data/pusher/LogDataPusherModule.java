@@ -17,6 +17,7 @@ package com.shulie.instrument.module.log.data.pusher;
 import com.pamirs.pradar.AppNameUtils;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.log.parser.DataType;
+import com.pamirs.pradar.metrics.PradarMetrics;
 import com.pamirs.pradar.remoting.protocol.ProtocolCode;
 import com.shulie.instrument.module.log.data.pusher.log.PullLogResponse;
 import com.shulie.instrument.module.log.data.pusher.log.reader.impl.LogPusherOptions;
@@ -96,6 +97,10 @@ public class LogDataPusherModule extends ModuleLifecycleAdapter implements Exten
         pusherOptions.setConnectionTimeoutMillis(simulatorConfig.getZkConnectionTimeout());
         pusherOptions.setSessionTimeoutMillis(simulatorConfig.getZkSessionTimeout());
         pusherOptions.setProtocolCode(simulatorConfig.getIntProperty("pradar.push.serialize.protocol.code", ProtocolCode.NONE));
+        pusherOptions.setPipelineWindow(simulatorConfig.getIntProperty("pradar.data.pusher.pipeline.window", 1));
+        pusherOptions.setCompressEnabled(simulatorConfig.getBooleanProperty("pradar.data.pusher.compress.enabled", false));
+        final int minChunkSize = simulatorConfig.getIntProperty("pradar.data.pusher.pipeline.min.chunk.size", 16 * 1024);
+        final int lingerMillis = simulatorConfig.getIntProperty("pradar.data.pusher.pipeline.linger.ms", 50);
 
         List<LogPusherOptions> logPusherOptionsList = new ArrayList<LogPusherOptions>();
         LogPusherOptions traceLogOptions = new LogPusherOptions();
@@ -103,6 +108,8 @@ public class LogDataPusherModule extends ModuleLifecycleAdapter implements Exten
         traceLogOptions.setDataType(DataType.TRACE_LOG);
         traceLogOptions.setVersion(Pradar.PRADAR_TARCE_LOG_VERSION);
         traceLogOptions.setMaxFailureSleepInterval(simulatorConfig.getIntProperty("max.push.log.failure.sleep.interval", 10000));
+        traceLogOptions.setMinChunkSize(minChunkSize);
+        traceLogOptions.setLingerMillis(lingerMillis);
         logPusherOptionsList.add(traceLogOptions);
 
         LogPusherOptions monitorLogOptions = new LogPusherOptions();
@@ -110,13 +117,28 @@ public class LogDataPusherModule extends ModuleLifecycleAdapter implements Exten
         monitorLogOptions.setDataType(DataType.MONITOR_LOG);
         monitorLogOptions.setVersion(Pradar.PRADAR_MONITOR_LOG_VERSION);
         monitorLogOptions.setMaxFailureSleepInterval(simulatorConfig.getIntProperty("max.push.log.failure.sleep.interval", 10000));
+        monitorLogOptions.setMinChunkSize(minChunkSize);
+        monitorLogOptions.setLingerMillis(lingerMillis);
         logPusherOptionsList.add(monitorLogOptions);
 
+        if (PradarMetrics.isEnabled()) {
+            LogPusherOptions metricsLogOptions = new LogPusherOptions();
+            metricsLogOptions.setPath(Pradar.PRADAR_METRICS_LOG_FILE);
+            metricsLogOptions.setDataType(Pradar.PRADAR_METRICS_LOG_DATA_TYPE);
+            metricsLogOptions.setVersion(Pradar.PRADAR_METRICS_LOG_VERSION);
+            metricsLogOptions.setMaxFailureSleepInterval(simulatorConfig.getIntProperty("max.push.log.failure.sleep.interval", 10000));
+            metricsLogOptions.setMinChunkSize(minChunkSize);
+            metricsLogOptions.setLingerMillis(lingerMillis);
+            logPusherOptionsList.add(metricsLogOptions);
+        }
+
         LogPusherOptions agentErrorLogOptions = new LogPusherOptions();
         agentErrorLogOptions.setPath(Pradar.PRADAR_AGENT_ERROR_LOG_FILE);
         agentErrorLogOptions.setDataType(DataType.AGENT_LOG);
         agentErrorLogOptions.setVersion(Pradar.PRADAR_ERROR_LOG_VERSION);
         agentErrorLogOptions.setMaxFailureSleepInterval(simulatorConfig.getIntProperty("max.push.log.failure.sleep.interval", 10000));
+        agentErrorLogOptions.setMinChunkSize(minChunkSize);
+        agentErrorLogOptions.setLingerMillis(lingerMillis);
         logPusherOptionsList.add(agentErrorLogOptions);
 
         LogPusherOptions simulatorErrorLogOptions = new LogPusherOptions();
@@ -124,6 +146,8 @@ public class LogDataPusherModule extends ModuleLifecycleAdapter implements Exten
         simulatorErrorLogOptions.setDataType(DataType.AGENT_LOG);
         simulatorErrorLogOptions.setVersion(Pradar.PRADAR_ERROR_LOG_VERSION);
         simulatorErrorLogOptions.setMaxFailureSleepInterval(simulatorConfig.getIntProperty("max.push.log.failure.sleep.interval", 10000));
+        simulatorErrorLogOptions.setMinChunkSize(minChunkSize);
+        simulatorErrorLogOptions.setLingerMillis(lingerMillis);
         logPusherOptionsList.add(simulatorErrorLogOptions);
         pusherOptions.setLogPusherOptions(logPusherOptionsList);
 
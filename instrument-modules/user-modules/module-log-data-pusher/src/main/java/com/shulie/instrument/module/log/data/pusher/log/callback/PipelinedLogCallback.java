@@ -0,0 +1,54 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.module.log.data.pusher.log.callback;
+
+/**
+ * 支持流水线推送的日志回调
+ * <p>
+ * 与 {@link LogCallback} 每次同步等待服务端应答不同，流水线模式下同时可以有多个推送请求
+ * 在途，应答通过 {@link AckListener} 异步通知，由调用方根据连续应答的结果推进位点
+ */
+public interface PipelinedLogCallback extends LogCallback {
+
+    /**
+     * 最大在途的请求数，小于等于1时退化为 {@link LogCallback#call} 的同步推送
+     *
+     * @return 窗口大小
+     */
+    int getWindowSize();
+
+    /**
+     * 异步推送一块日志数据
+     *
+     * @param data     日志数据，调用后不能再被修改
+     * @param dataType 数据类型
+     * @param version  版本
+     * @param listener 应答监听器，无论成功失败都会被回调且只回调一次
+     * @return 请求是否成功发出，返回 false 时不会再回调 listener
+     */
+    boolean callAsync(byte[] data, byte dataType, int version, AckListener listener);
+
+    /**
+     * 推送应答监听器
+     */
+    interface AckListener {
+        /**
+         * 收到应答或者请求失败
+         *
+         * @param success 服务端是否成功接收
+         */
+        void onAck(boolean success);
+    }
+}
@@ -16,6 +16,7 @@ package com.shulie.instrument.module.log.data.pusher.log.reader.impl;
 
 import com.pamirs.pradar.Pradar;
 import com.shulie.instrument.module.log.data.pusher.log.callback.LogCallback;
+import com.shulie.instrument.module.log.data.pusher.log.callback.PipelinedLogCallback;
 import com.shulie.instrument.module.log.data.pusher.log.reader.FileFetcher;
 import com.shulie.instrument.module.log.data.pusher.log.reader.FileReader;
 import org.apache.commons.lang.ArrayUtils;
@@ -25,7 +26,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.concurrent.*;
@@ -44,9 +47,40 @@ class DefaultFileReader implements FileReader {
      * 默认连续推送失败时的最大休眠间隔时长
      */
     private final static int DEFAULT_MAX_FAILURE_SLEEP_INTERVAL = 10000;
+    /**
+     * 默认流水线推送时小数据块合并的阈值
+     */
+    private final static int DEFAULT_MIN_CHUNK_SIZE = 16 * 1024;
+    /**
+     * 默认流水线推送时等待合并或等待窗口的最长时间
+     */
+    private final static int DEFAULT_LINGER_MILLIS = 50;
     public static final long[] ZERO = {0L, 0L};
     private String path;
+    /**
+     * 已经被服务端确认的位点，保存到 idx 文件中的也是这个位点
+     */
     private volatile long position = -1;
+    /**
+     * 流水线推送时下一个数据块的开始位点，在途请求都确认后与 position 相等
+     */
+    private long sendPosition = -1;
+    /**
+     * 流水线推送时按照发送顺序排列的在途请求，所有的访问都需要持有该对象的锁
+     */
+    private final ArrayDeque<InFlight> inFlights = new ArrayDeque<InFlight>();
+    /**
+     * 流水线推送时是否有请求失败，失败后需要等待在途请求全部结束再从 position 开始重推
+     */
+    private boolean pipelineBroken;
+    /**
+     * 流水线推送时小于该字节数的数据块在有在途请求时会等待合并
+     */
+    private int minChunkSize;
+    /**
+     * 流水线推送时等待合并或者等待窗口空闲的最长时间
+     */
+    private int lingerMillis;
     /**
      * 回调信息
      */
@@ -115,11 +149,18 @@ class DefaultFileReader implements FileReader {
     }
 
     public DefaultFileReader(byte dataType, int version, String path, LogCallback callback, int maxFailureSleepInterval) {
+        this(dataType, version, path, callback, maxFailureSleepInterval, DEFAULT_MIN_CHUNK_SIZE, DEFAULT_LINGER_MILLIS);
+    }
+
+    public DefaultFileReader(byte dataType, int version, String path, LogCallback callback, int maxFailureSleepInterval,
+                             int minChunkSize, int lingerMillis) {
         this.path = path;
         this.version = version;
         this.callback = callback;
         this.dataType = dataType;
         this.maxFailureSleepInterval = maxFailureSleepInterval;
+        this.minChunkSize = minChunkSize <= 0 ? DEFAULT_MIN_CHUNK_SIZE : minChunkSize;
+        this.lingerMillis = lingerMillis <= 0 ? DEFAULT_LINGER_MILLIS : lingerMillis;
     }
 
     @Override
@@ -230,14 +271,11 @@ class DefaultFileReader implements FileReader {
      * @return 返回是否下次不休眠继续推
      */
     private boolean push() {
+        if (callback instanceof PipelinedLogCallback && ((PipelinedLogCallback) callback).getWindowSize() > 1) {
+            return pushPipelined((PipelinedLogCallback) callback);
+        }
         try {
-            if (fileRange == null) {
-                this.fileRange = getFileRange();
-                lastTime = System.currentTimeMillis();
-            } else if (System.currentTimeMillis() - lastTime > 2000) {
-                this.fileRange = getFileRange();
-                lastTime = System.currentTimeMillis();
-            }
+            refreshFileRange();
 
             /**
              * 如果位点比最小位点还小，重置读取的文件并且将位点置为当前最小位点,返回true则让其赶紧拉取
@@ -338,6 +376,200 @@ class DefaultFileReader implements FileReader {
         }
     }
 
+    /**
+     * 每两秒钟更新一次日志内容范围
+     */
+    private void refreshFileRange() {
+        if (fileRange == null) {
+            this.fileRange = getFileRange();
+            lastTime = System.currentTimeMillis();
+        } else if (System.currentTimeMillis() - lastTime > 2000) {
+            this.fileRange = getFileRange();
+            lastTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 流水线推送数据
+     * 同时最多有窗口大小个请求在途，位点只在前面的请求全部确认后才推进；
+     * 任意请求失败后停止发送，等在途请求全部结束后从已确认的位点开始重推。
+     * 有在途请求时不跨越文件边界，也不发送小于 minChunkSize 的数据块，以便合并成更大的块
+     *
+     * @param callback 流水线回调
+     * @return 返回是否下次不休眠继续推
+     */
+    private boolean pushPipelined(PipelinedLogCallback callback) {
+        try {
+            refreshFileRange();
+            boolean idle;
+            synchronized (inFlights) {
+                if (pipelineBroken) {
+                    if (hasPending()) {
+                        inFlights.wait(lingerMillis);
+                        return true;
+                    }
+                    inFlights.clear();
+                    pipelineBroken = false;
+                    sendPosition = position;
+                    return false;
+                }
+                if (inFlights.size() >= callback.getWindowSize()) {
+                    inFlights.wait(lingerMillis);
+                    return true;
+                }
+                idle = inFlights.isEmpty();
+                if (idle) {
+                    sendPosition = position;
+                }
+            }
+
+            if (idle) {
+                /**
+                 * 没有在途请求时与同步推送的位点校正逻辑保持一致
+                 */
+                if (this.position < fileRange[0]) {
+                    this.position = fileRange[0];
+                    resetFileFetcher();
+                    return true;
+                }
+                if (this.position > fileRange[1]) {
+                    this.position = fileRange[1];
+                    resetFileFetcher();
+                    return false;
+                }
+                if (!this.fileFetcher.getFc().isOpen()) {
+                    resetFileFetcher();
+                }
+            }
+            if (sendPosition >= fileRange[1]) {
+                return waitInFlights();
+            }
+
+            long length = this.fileFetcher.readAvailableLength(sendPosition, Pradar.PUSH_MAX_SIZE);
+            if (length == 0) {
+                /**
+                 * 当前文件已经读完，需要等在途请求都确认后再滚动到下一个文件
+                 */
+                if (!idle) {
+                    return waitInFlights();
+                }
+                if (this.position > fileRange[0] && this.position < fileRange[1]) {
+                    resetFileFetcher();
+                }
+                return false;
+            }
+            if (!idle && length < minChunkSize) {
+                return waitInFlights();
+            }
+
+            long begin = sendPosition - this.fileFetcher.getBegin();
+            if (begin < 0) {
+                LOGGER.warn("push log data with a illegal start pos={}, file={}", begin, fileFetcher.getName());
+                return false;
+            }
+            byte[] data = new byte[(int) length];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                if (this.fileFetcher.getFc().read(buffer, begin + buffer.position()) < 0) {
+                    return false;
+                }
+            }
+
+            InFlight inFlight = new InFlight(sendPosition + length);
+            synchronized (inFlights) {
+                inFlights.addLast(inFlight);
+            }
+            if (!callback.callAsync(data, dataType, version, inFlight)) {
+                inFlight.onAck(false);
+                return false;
+            }
+            sendPosition += length;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ClosedChannelException e) {
+            try {
+                synchronized (inFlights) {
+                    pipelineBroken = true;
+                }
+                resetFileFetcher();
+            } catch (Throwable ex) {
+            }
+            return false;
+        } catch (Throwable e) {
+            synchronized (inFlights) {
+                pipelineBroken = true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 有在途请求时等待应答，没有时告诉外部调用可以休眠一会
+     */
+    private boolean waitInFlights() throws InterruptedException {
+        synchronized (inFlights) {
+            if (inFlights.isEmpty()) {
+                return false;
+            }
+            inFlights.wait(lingerMillis);
+            return true;
+        }
+    }
+
+    private boolean hasPending() {
+        for (InFlight inFlight : inFlights) {
+            if (inFlight.state == InFlight.PENDING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 收到应答后按照发送顺序推进连续确认的位点
+     */
+    private void onAck(InFlight inFlight, boolean success) {
+        synchronized (inFlights) {
+            if (inFlight.state != InFlight.PENDING) {
+                return;
+            }
+            inFlight.state = success ? InFlight.ACKED : InFlight.FAILED;
+            if (!success) {
+                pipelineBroken = true;
+            }
+            while (!inFlights.isEmpty() && inFlights.peekFirst().state == InFlight.ACKED) {
+                this.position = inFlights.pollFirst().end;
+            }
+            inFlights.notifyAll();
+        }
+    }
+
+    /**
+     * 在途的推送请求
+     */
+    private final class InFlight implements PipelinedLogCallback.AckListener {
+        static final int PENDING = 0;
+        static final int ACKED = 1;
+        static final int FAILED = 2;
+
+        /**
+         * 数据块结束的全局位点
+         */
+        final long end;
+        int state = PENDING;
+
+        InFlight(long end) {
+            this.end = end;
+        }
+
+        @Override
+        public void onAck(boolean success) {
+            DefaultFileReader.this.onAck(this, success);
+        }
+    }
+
     private File getTarget(String path, long begin) {
         File file = new File(path);
         final String fileName = file.getName();
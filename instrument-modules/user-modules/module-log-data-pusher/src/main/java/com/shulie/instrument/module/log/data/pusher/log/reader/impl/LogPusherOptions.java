@@ -15,6 +15,7 @@
 package com.shulie.instrument.module.log.data.pusher.log.reader.impl;
 
 
+import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.exception.PradarException;
 import com.pamirs.pradar.log.parser.DataType;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
@@ -35,6 +36,32 @@ public class LogPusherOptions {
      */
     private int maxFailureSleepInterval;
 
+    /**
+     * 流水线推送时小于该字节数的数据块会等待在途请求应答后再合并推送
+     */
+    private int minChunkSize;
+
+    /**
+     * 流水线推送时等待合并小数据块或者等待窗口空闲的最长时间,单位毫秒
+     */
+    private int lingerMillis;
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public void setMinChunkSize(int minChunkSize) {
+        this.minChunkSize = minChunkSize;
+    }
+
+    public int getLingerMillis() {
+        return lingerMillis;
+    }
+
+    public void setLingerMillis(int lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
     public int getMaxFailureSleepInterval() {
         return maxFailureSleepInterval;
     }
@@ -51,6 +78,8 @@ public class LogPusherOptions {
                 return GlobalConfig.getInstance().getSimulatorDynamicConfig().getPradarMonitorLogVersion(version);
             case DataType.AGENT_LOG:
                 return GlobalConfig.getInstance().getSimulatorDynamicConfig().getPradarErrorLogVersion(version);
+            case Pradar.PRADAR_METRICS_LOG_DATA_TYPE:
+                return version;
             default:
                 throw new PradarException("unknown log type " + String.valueOf(dataType));
         }
@@ -32,6 +32,32 @@ public class ServerOptions {
      */
     private int protocolCode = ProtocolCode.JAVA;
 
+    /**
+     * 流水线推送时最大在途的请求数，小于等于1时使用同步推送
+     */
+    private int pipelineWindow = 1;
+
+    /**
+     * 流水线推送时是否压缩数据块，只对在 zk 注册数据中声明支持压缩的服务端生效
+     */
+    private boolean compressEnabled;
+
+    public int getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+    public void setPipelineWindow(int pipelineWindow) {
+        this.pipelineWindow = pipelineWindow;
+    }
+
+    public boolean isCompressEnabled() {
+        return compressEnabled;
+    }
+
+    public void setCompressEnabled(boolean compressEnabled) {
+        this.compressEnabled = compressEnabled;
+    }
+
     public int getProtocolCode() {
         return protocolCode;
     }
@@ -109,6 +109,8 @@ public class DefaultDataPushManager implements DataPushManager {
             final ServerOptions serverOptions = new ServerOptions();
             serverOptions.setTimeout(this.pusherOptions.getTimeout());
             serverOptions.setProtocolCode(this.pusherOptions.getProtocolCode());
+            serverOptions.setPipelineWindow(this.pusherOptions.getPipelineWindow());
+            serverOptions.setCompressEnabled(this.pusherOptions.isCompressEnabled());
             dataPusher.setServerAddrProvider(provider);
             boolean isSuccess = dataPusher.init(serverOptions);
             if (!isSuccess) {
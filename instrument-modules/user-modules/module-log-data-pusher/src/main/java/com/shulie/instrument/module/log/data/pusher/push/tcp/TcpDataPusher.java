@@ -16,6 +16,7 @@ package com.shulie.instrument.module.log.data.pusher.push.tcp;
 
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarCoreUtils;
+import com.pamirs.pradar.remoting.RemotingCallback;
 import com.pamirs.pradar.remoting.RemotingClient;
 import com.pamirs.pradar.remoting.exception.RemotingConnectException;
 import com.pamirs.pradar.remoting.exception.RemotingSendRequestException;
@@ -24,6 +25,7 @@ import com.pamirs.pradar.remoting.netty.NettyClientConfigurator;
 import com.pamirs.pradar.remoting.netty.NettyRemotingClient;
 import com.pamirs.pradar.remoting.protocol.*;
 import com.shulie.instrument.module.log.data.pusher.log.callback.LogCallback;
+import com.shulie.instrument.module.log.data.pusher.log.callback.PipelinedLogCallback;
 import com.shulie.instrument.module.log.data.pusher.push.DataPusher;
 import com.shulie.instrument.module.log.data.pusher.push.ServerOptions;
 import com.shulie.instrument.module.log.data.pusher.server.ConnectInfo;
@@ -32,9 +34,11 @@ import io.netty.channel.DefaultFileRegion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.channels.FileChannel;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
 
 /**
  * @author xiaobin.zfb
@@ -42,6 +46,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class TcpDataPusher implements DataPusher {
     private final static Logger LOGGER = LoggerFactory.getLogger(TcpDataPusher.class.getName());
+    /**
+     * 压缩推送时通过 V3 协议的扩展头告知服务端数据块的压缩算法
+     */
+    private final static byte[] COMPRESS_EXTRA_HEADER = "compress=deflate".getBytes(Charset.forName("UTF-8"));
     private ServerOptions serverOptions;
     private AtomicBoolean isStarted = new AtomicBoolean(false);
     /**
@@ -49,7 +57,7 @@ public class TcpDataPusher implements DataPusher {
      */
     private RemotingClient client;
     private ServerAddrProvider provider;
-    private ConnectInfo currentConnectInfo;
+    private volatile ConnectInfo currentConnectInfo;
 
     public TcpDataPusher() {
     }
@@ -84,11 +92,103 @@ public class TcpDataPusher implements DataPusher {
 
     @Override
     public LogCallback buildLogCallback() {
-        return new LogCallback() {
+        return new PipelinedLogCallback() {
             /**
              * 请求参数可以复用,因为这个不存在并发的问题，可以减少一些请求对象的产生
              */
             private RemotingCommand requestCommand = new RemotingCommand();
+            /**
+             * 每个 FileReader 独占一个回调，压缩只会在推送线程中进行
+             */
+            private Deflater deflater;
+
+            @Override
+            public int getWindowSize() {
+                return serverOptions.getPipelineWindow();
+            }
+
+            @Override
+            public boolean callAsync(byte[] data, byte dataType, int version, final AckListener listener) {
+                if (!isStarted.get()) {
+                    return false;
+                }
+                /**
+                 * 请求在途时不能复用，每次都需要新建
+                 */
+                RemotingCommand command = new RemotingCommand();
+                command.setCode(CommandCode.SUCCESS);
+                command.setProtocolCode(serverOptions.getProtocolCode());
+                command.setDataType(dataType);
+                command.setIp(PradarCoreUtils.getLocalAddressNumber());
+                command.setDataVersion(version);
+                command.setEncodeType(EncoderType.of(Pradar.DEFAULT_CHARSET.name()).getEncoderType());
+                final ConnectInfo connectInfo = currentConnectInfo;
+                /**
+                 * 只有服务端在注册数据中声明支持压缩时才压缩
+                 */
+                final boolean compressed = serverOptions.isCompressEnabled() && connectInfo.isCompressSupported();
+                byte[] body = data;
+                if (compressed) {
+                    body = compress(data);
+                    command.setVersion(CommandVersion.V3);
+                    command.setExtraHeader(COMPRESS_EXTRA_HEADER);
+                } else {
+                    command.setVersion(CommandVersion.V2);
+                }
+                command.setLength(body.length);
+                command.setBody(body);
+
+                try {
+                    client.invokeAsync(connectInfo.getAddr(), command, serverOptions.getTimeout(), new RemotingCallback() {
+                        @Override
+                        public void onComplete(com.pamirs.pradar.remoting.ResponseFuture responseFuture) {
+                            RemotingCommand responseCommand = responseFuture.getResponse();
+                            if (responseCommand == null) {
+                                switchConnectInfo(connectInfo, responseFuture.isTimeout() ? "timeout" : "send failed");
+                                listener.onAck(false);
+                            } else if (responseCommand.getCode() == CommandCode.SUCCESS) {
+                                listener.onAck(true);
+                            } else if (responseCommand.getCode() == CommandCode.SYSTEM_BUSY) {
+                                switchConnectInfo(connectInfo, "busy");
+                                listener.onAck(false);
+                            } else if (responseCommand.getCode() == CommandCode.COMMAND_CODE_NOT_SUPPORTED && compressed) {
+                                /**
+                                 * 服务端声明了压缩能力却不认识压缩的数据块，当前连接降级为不压缩，失败的数据块会被重新推送
+                                 */
+                                if (connectInfo.isCompressSupported()) {
+                                    connectInfo.setCompressSupported(false);
+                                    LOGGER.warn("log server {} not support compressed log data, fallback to uncompressed.", connectInfo.getAddr());
+                                }
+                                listener.onAck(false);
+                            } else {
+                                listener.onAck(false);
+                            }
+                        }
+                    });
+                    return true;
+                } catch (InterruptedException e) {
+                    return false;
+                } catch (Throwable e) {
+                    switchConnectInfo(connectInfo, e.getClass().getSimpleName());
+                    return false;
+                }
+            }
+
+            private byte[] compress(byte[] data) {
+                if (deflater == null) {
+                    deflater = new Deflater(Deflater.BEST_SPEED);
+                }
+                deflater.reset();
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            }
 
             @Override
             public boolean call(FileChannel fc, long position, long length, byte dataType, int version) {
@@ -177,6 +277,29 @@ public class TcpDataPusher implements DataPusher {
         };
     }
 
+    /**
+     * 异步推送失败时切换服务端，多个在途请求同时失败时只切换一次
+     *
+     * @param failed 失败的服务端
+     * @param reason 失败原因
+     */
+    private synchronized void switchConnectInfo(ConnectInfo failed, String reason) {
+        if (failed != currentConnectInfo) {
+            return;
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("client send request to log server {} failed: {}. attempt to choose another log server.", failed.getAddr(), reason);
+        }
+        provider.errorConnectInfo(failed);
+        ConnectInfo connectInfo = provider.selectConnectInfo();
+        if (connectInfo != null) {
+            currentConnectInfo = connectInfo;
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("log server changed to connect host {}.", currentConnectInfo.getAddr());
+        }
+    }
+
     @Override
     public boolean start() {
         if (!isStarted.compareAndSet(false, true)) {
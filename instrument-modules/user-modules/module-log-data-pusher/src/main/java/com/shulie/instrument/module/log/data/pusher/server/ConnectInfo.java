@@ -23,6 +23,10 @@ package com.shulie.instrument.module.log.data.pusher.server;
 public class ConnectInfo {
     private String serverAddr;
     private int port;
+    /**
+     * 服务端是否声明支持压缩的数据块，服务端拒绝压缩的数据块后置为 false
+     */
+    private volatile boolean compressSupported;
 
     public String getAddr(){
         return getServerAddr() + ':' + getPort();
@@ -36,6 +40,14 @@ public class ConnectInfo {
         this.serverAddr = serverAddr;
     }
 
+    public boolean isCompressSupported() {
+        return compressSupported;
+    }
+
+    public void setCompressSupported(boolean compressSupported) {
+        this.compressSupported = compressSupported;
+    }
+
     public int getPort() {
         return port;
     }
@@ -44,6 +44,11 @@ public class Node {
      */
     private long errorCount;
 
+    /**
+     * 服务端是否在注册数据中声明支持压缩的数据块
+     */
+    private boolean compressSupported;
+
 
     public Node() {
     }
@@ -71,6 +76,14 @@ public class Node {
         return getLastErrorTime() / 1000;
     }
 
+    public boolean isCompressSupported() {
+        return compressSupported;
+    }
+
+    public void setCompressSupported(boolean compressSupported) {
+        this.compressSupported = compressSupported;
+    }
+
     public String getHost() {
         return host;
     }
@@ -14,6 +14,7 @@
  */
 package com.shulie.instrument.module.log.data.pusher.server.impl;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -47,6 +48,10 @@ import org.slf4j.LoggerFactory;
  */
 public class DefaultServerAddrProvider implements ServerAddrProvider {
     private final static Logger LOGGER = LoggerFactory.getLogger(DefaultServerAddrProvider.class.getName());
+    /**
+     * 服务端在注册节点的数据中声明支持的能力，多个能力使用逗号分隔，声明了该能力的服务端才会推送压缩的数据块
+     */
+    private final static String COMPRESS_CAPABILITY = "compress=deflate";
     private ZkClient zkClient;
     private ZkPathChildrenCache zkServerPath;
     private ServerProviderOptions serverProviderOptions;
@@ -155,6 +160,7 @@ public class DefaultServerAddrProvider implements ServerAddrProvider {
             Node n = new Node();
             n.setHost(addr);
             n.setPort(Integer.valueOf(portStr));
+            n.setCompressSupported(isCompressSupported(node));
             addNodes.add(n);
         }
 
@@ -198,6 +204,30 @@ public class DefaultServerAddrProvider implements ServerAddrProvider {
     }
 
 
+    /**
+     * 读取服务端注册节点的数据，判断服务端是否声明支持压缩的数据块，未声明或者读取失败时不压缩
+     *
+     * @param node 注册节点名称 host:port
+     * @return TRUE:支持；FALSE：不支持
+     */
+    private boolean isCompressSupported(String node) {
+        String serverZkPath = serverProviderOptions.getServerZkPath();
+        if (!StringUtils.endsWith(serverZkPath, "/")) {
+            serverZkPath = serverZkPath + '/';
+        }
+        byte[] data = zkClient.getDataQuietly(serverZkPath + node);
+        if (data == null || data.length == 0) {
+            return false;
+        }
+        String[] capabilities = StringUtils.split(new String(data, Charset.forName("UTF-8")), ",;\r\n");
+        for (String capability : capabilities) {
+            if (StringUtils.equals(COMPRESS_CAPABILITY, StringUtils.trim(capability))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public ConnectInfo selectConnectInfo() {
         if (CollectionUtils.isEmpty(this.availableNodes)) {
@@ -228,6 +258,7 @@ public class DefaultServerAddrProvider implements ServerAddrProvider {
         ConnectInfo connectInfo = new ConnectInfo();
         connectInfo.setServerAddr(node.getHost());
         connectInfo.setPort(node.getPort());
+        connectInfo.setCompressSupported(node.isCompressSupported());
         return connectInfo;
     }
 
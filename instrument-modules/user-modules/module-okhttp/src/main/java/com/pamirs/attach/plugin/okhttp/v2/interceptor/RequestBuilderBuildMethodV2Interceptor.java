@@ -15,11 +15,11 @@
 package com.pamirs.attach.plugin.okhttp.v2.interceptor;
 
 import java.net.URL;
-import java.util.Map;
 
 import com.pamirs.attach.plugin.okhttp.OKHttpConstants;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarService;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.pamirs.pradar.internal.config.MatchConfig;
@@ -39,6 +39,14 @@ import com.squareup.okhttp.Request;
  * @Date 2020/6/29 8:40 下午
  */
 public class RequestBuilderBuildMethodV2Interceptor extends TraceInterceptorAdaptor {
+    private static final ContextSetter<Request.Builder> HEADER_SETTER = new ContextSetter<Request.Builder>() {
+        @Override
+        public void set(Request.Builder builder, String key, String value) {
+            builder.removeHeader(key);
+            builder.addHeader(key, value);
+        }
+    };
+
     @Override
     public String getPluginName() {
         return OKHttpConstants.PLUGIN_NAME;
@@ -95,11 +103,7 @@ public class RequestBuilderBuildMethodV2Interceptor extends TraceInterceptorAdap
     public SpanRecord beforeTrace(Advice advice) {
         Object target = advice.getTarget();
         Request.Builder builder = (Request.Builder) target;
-        Map<String, String> contextMap = Pradar.getInvokeContextTransformMap();
-        for (Map.Entry<String, String> entry : contextMap.entrySet()) {
-            builder.removeHeader(entry.getKey());
-            builder.addHeader(entry.getKey(), entry.getValue());
-        }
+        Pradar.injectInvokeContext(builder, HEADER_SETTER);
         return null;
     }
 }
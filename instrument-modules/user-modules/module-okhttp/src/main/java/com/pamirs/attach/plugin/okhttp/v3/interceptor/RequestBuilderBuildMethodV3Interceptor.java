@@ -18,6 +18,7 @@ import com.pamirs.attach.plugin.okhttp.OKHttpConstants;
 import com.pamirs.pradar.MiddlewareType;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarService;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.pamirs.pradar.internal.config.MatchConfig;
@@ -30,8 +31,6 @@ import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.Request;
 
-import java.util.Map;
-
 /**
  * @Description
  * @Author xiaobin.zfb
@@ -40,6 +39,14 @@ import java.util.Map;
  */
 @ListenerBehavior(isFilterBusinessData = true)
 public class RequestBuilderBuildMethodV3Interceptor extends TraceInterceptorAdaptor {
+    private static final ContextSetter<Request.Builder> HEADER_SETTER = new ContextSetter<Request.Builder>() {
+        @Override
+        public void set(Request.Builder builder, String key, String value) {
+            builder.removeHeader(key);
+            builder.addHeader(key, value);
+        }
+    };
+
     @Override
     public String getPluginName() {
         return OKHttpConstants.PLUGIN_NAME;
@@ -54,11 +61,7 @@ public class RequestBuilderBuildMethodV3Interceptor extends TraceInterceptorAdap
     public SpanRecord beforeTrace(Advice advice) {
         Object target = advice.getTarget();
         Request.Builder builder = (Request.Builder) target;
-        Map<String, String> contextMap = Pradar.getInvokeContextTransformMap();
-        for (Map.Entry<String, String> entry : contextMap.entrySet()) {
-            builder.removeHeader(entry.getKey());
-            builder.addHeader(entry.getKey(), entry.getValue());
-        }
+        Pradar.injectInvokeContext(builder, HEADER_SETTER);
         return null;
     }
 }
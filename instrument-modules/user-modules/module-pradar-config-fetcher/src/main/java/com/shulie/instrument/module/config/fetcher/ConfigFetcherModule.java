@@ -18,6 +18,7 @@ import com.pamirs.pradar.internal.PradarInternalService;
 import com.shulie.instrument.module.config.fetcher.config.ConfigManager;
 import com.shulie.instrument.module.config.fetcher.config.DefaultConfigFetcher;
 import com.shulie.instrument.module.config.fetcher.config.event.model.*;
+import com.shulie.instrument.module.config.fetcher.config.resolver.http.ApplicationConfigHttpResolver;
 import com.shulie.instrument.module.config.fetcher.config.resolver.zk.ZookeeperOptions;
 import com.shulie.instrument.simulator.api.ExtensionModule;
 import com.shulie.instrument.simulator.api.ModuleInfo;
@@ -65,6 +66,9 @@ public class ConfigFetcherModule extends ModuleLifecycleAdapter implements Exten
     @Override
     public boolean onActive() throws Throwable {
         isActive = true;
+        /**
+         * 存在配置快照时立即初始化，尽快从快照中恢复影子路由
+         */
         this.future = ExecutorServiceFactory.getFactory().schedule(new Runnable() {
             @Override
             public void run() {
@@ -82,7 +86,7 @@ public class ConfigFetcherModule extends ModuleLifecycleAdapter implements Exten
                     future = ExecutorServiceFactory.getFactory().schedule(this, 5, TimeUnit.SECONDS);
                 }
             }
-        }, 10, TimeUnit.SECONDS);
+        }, ApplicationConfigHttpResolver.hasConfigSnapshot() ? 0 : 10, TimeUnit.SECONDS);
 
         PradarInternalService.registerConfigFetcher(new DefaultConfigFetcher());
         return true;
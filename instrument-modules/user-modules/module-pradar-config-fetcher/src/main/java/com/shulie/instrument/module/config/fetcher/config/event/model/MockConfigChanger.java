@@ -20,6 +20,8 @@ import com.pamirs.pradar.pressurement.agent.event.impl.MockConfigModifyEvent;
 import com.pamirs.pradar.pressurement.agent.event.impl.MockConfigRemoveEvent;
 import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.script.ScriptEvaluator;
+import com.pamirs.pradar.script.ScriptManager;
 import com.shulie.instrument.module.config.fetcher.config.impl.ApplicationConfig;
 import com.shulie.instrument.module.config.fetcher.config.utils.ObjectUtils;
 import com.shulie.instrument.simulator.api.util.CollectionUtils;
@@ -93,6 +95,7 @@ public class MockConfigChanger implements IChange<Set<MockConfig>, ApplicationCo
             MockConfigModifyEvent modifyEvent = new MockConfigModifyEvent(modifyMockConfigs);
             EventRouter.router().publish(modifyEvent);
         }
+        invalidateScripts(removeMockConfigs, modifyMockConfigs, oldConfigs);
         GlobalConfig.getInstance().setMockConfigs(newValue);
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info("publish mock config successful. config={}", newValue);
@@ -100,6 +103,31 @@ public class MockConfigChanger implements IChange<Set<MockConfig>, ApplicationCo
         return Boolean.TRUE;
     }
 
+    /**
+     * 删除以及变更前的挡板脚本不会再执行，清理掉这些脚本的编译缓存
+     *
+     * @param removeMockConfigs 删除的mock配置
+     * @param modifyMockConfigs 变更的mock配置
+     * @param oldMockConfigs    变更前的mock配置
+     */
+    private void invalidateScripts(Set<MockConfig> removeMockConfigs, Set<MockConfig> modifyMockConfigs, Map<String, MockConfig> oldMockConfigs) {
+        ScriptEvaluator evaluator = ScriptManager.getInstance().getScriptEvaluator("bsh");
+        if (evaluator == null) {
+            return;
+        }
+        for (MockConfig mockConfig : removeMockConfigs) {
+            if (mockConfig.getCodeScript() != null) {
+                evaluator.invalidate(mockConfig.getCodeScript());
+            }
+        }
+        for (MockConfig mockConfig : modifyMockConfigs) {
+            MockConfig oldMockConfig = oldMockConfigs.get(mockConfig.getKey());
+            if (oldMockConfig != null && oldMockConfig.getCodeScript() != null) {
+                evaluator.invalidate(oldMockConfig.getCodeScript());
+            }
+        }
+    }
+
     /**
      * 计算所有新增的mock配置
      *
@@ -72,6 +72,13 @@ public abstract class AbstractHttpResolver<T extends AbstractConfig<T>> implemen
     @Override
     public void triggerFetch(T refreshConfig) {
         refreshConfig.refresh(fetch());
+        afterRefresh();
+    }
+
+    /**
+     * 拉取到的配置刷新成功之后回调，刷新过程中抛出异常时不会回调
+     */
+    protected void afterRefresh() {
     }
 
     @Override
@@ -88,6 +95,7 @@ public abstract class AbstractHttpResolver<T extends AbstractConfig<T>> implemen
             public void run() {
                 try {
                     refreshConfig.refresh(fetch());
+                    afterRefresh();
                 } catch (Throwable e) {
                     LOGGER.error("定时获取配置异常:", e);
                     ErrorReporter.buildError()
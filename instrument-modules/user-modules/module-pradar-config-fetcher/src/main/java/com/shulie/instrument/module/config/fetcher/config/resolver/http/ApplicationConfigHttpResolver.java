@@ -30,8 +30,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
@@ -74,6 +82,9 @@ import com.pamirs.pradar.pressurement.mock.WhiteListStrategy;
 import com.shulie.instrument.module.config.fetcher.ConfigFetcherConstants;
 import com.shulie.instrument.module.config.fetcher.config.event.FIELDS;
 import com.shulie.instrument.module.config.fetcher.config.impl.ApplicationConfig;
+import com.shulie.instrument.module.config.fetcher.config.resolver.http.ConfigSectionVersions.Section;
+import com.shulie.instrument.module.config.fetcher.config.resolver.http.ConfigSectionVersions.SectionResult;
+import com.shulie.instrument.simulator.api.guard.SimulatorGuard;
 import com.shulie.instrument.simulator.api.resource.SwitcherManager;
 import com.shulie.instrument.simulator.api.util.StringUtil;
 import org.apache.commons.lang.StringUtils;
@@ -93,6 +104,23 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
     public static final String PRADAR_AGENT_VERSION_CONFIG_ENV = "agent.version";
     public static final String PRADAR_SIMULATOR_VERSION_CONFIG_ENV = "simulator.version";
 
+    /**
+     * 是否增量拉取配置，没有变化的配置分段不再解析，也不会触发配置变更
+     */
+    public static final String CONFIG_FETCH_DELTA_ENABLED = "pradar.config.fetch.delta.enabled";
+    /**
+     * 增量拉取时每隔多少次做一次全量拉取，避免本地配置因为其他原因与服务端不一致后一直无法恢复
+     */
+    public static final String CONFIG_FETCH_FULL_SYNC_TIMES = "pradar.config.fetch.full.sync.times";
+    /**
+     * 并发拉取配置的线程数，小于等于 1 时在调度线程上顺序拉取
+     */
+    public static final String CONFIG_FETCH_PARALLELISM = "pradar.config.fetch.parallelism";
+    /**
+     * 是否保存配置快照，应用重启时先从快照恢复配置，再由定时拉取校正
+     */
+    public static final String CONFIG_SNAPSHOT_ENABLED = "pradar.config.snapshot.enabled";
+
     private boolean uploadEntranceRule = false;
     private static final String REGISTER_URL = "/api/agent/api/register";
     /**
@@ -221,9 +249,42 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
     private AtomicBoolean shadowConfigPullSwitch = new AtomicBoolean(Boolean.TRUE);
     protected SwitcherManager switcherManager;
 
+    private final ConfigSectionVersions sectionVersions = new ConfigSectionVersions();
+    private final boolean deltaEnabled;
+    private final int fullSyncTimes;
+    /**
+     * 定时拉取的次数，只在调度线程上访问
+     */
+    private int fetchTimes;
+    /**
+     * 并发拉取配置的线程池，顺序拉取时为 null
+     */
+    private final ExecutorService fetchExecutor;
+    /**
+     * 配置快照文件，未开启快照时为 null
+     */
+    private final File snapshotFile;
+
     public ApplicationConfigHttpResolver(SwitcherManager switcherManager, int interval, TimeUnit timeUnit) {
         super("application-config-fetch-scheduled", interval, timeUnit);
         this.switcherManager = switcherManager;
+        this.deltaEnabled = !"false".equals(System.getProperty(CONFIG_FETCH_DELTA_ENABLED));
+        this.fullSyncTimes = Math.max(1, NumberUtils.toInt(System.getProperty(CONFIG_FETCH_FULL_SYNC_TIMES), 10));
+        int parallelism = NumberUtils.toInt(System.getProperty(CONFIG_FETCH_PARALLELISM), 4);
+        if (parallelism > 1) {
+            final AtomicInteger threadIndex = new AtomicInteger();
+            this.fetchExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Pradar-Fetch-Config-Worker-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            this.fetchExecutor = null;
+        }
+        this.snapshotFile = getSnapshotFile();
         EventRouter.router().addListener(new PradarEventListener() {
 
             @Override
@@ -262,125 +323,353 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
         });
     }
 
+    /**
+     * 是否存在可以用来恢复配置的快照
+     */
+    public static boolean hasConfigSnapshot() {
+        File file = getSnapshotFile();
+        return file != null && file.isFile();
+    }
+
+    private static File getSnapshotFile() {
+        if ("false".equals(System.getProperty(CONFIG_SNAPSHOT_ENABLED))) {
+            return null;
+        }
+        String path = PropertyUtil.getConfigSnapshotFilePath();
+        return path == null ? null : new File(path);
+    }
+
+    /**
+     * 快照只对同一个租户、应用及控制台有效
+     */
+    private static String getSnapshotKey() {
+        return PropertyUtil.getAppKey() + '|' + AppNameUtils.appName() + '|' + PropertyUtil.getTroControlWebUrl();
+    }
+
+    @Override
+    public void resolve(ApplicationConfig refreshConfig) {
+        restoreSnapshot(refreshConfig);
+        super.resolve(refreshConfig);
+    }
+
+    /**
+     * 回放上次保存的配置快照，在第一次拉取配置之前恢复白名单、影子库等配置。
+     * 之后第一次定时拉取总是全量拉取，与控制台不一致的配置会在那时被校正
+     */
+    private void restoreSnapshot(ApplicationConfig refreshConfig) {
+        if (snapshotFile == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            if (!sectionVersions.load(snapshotFile, getSnapshotKey())) {
+                return;
+            }
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: load config snapshot failed. file={}", snapshotFile, e);
+            return;
+        }
+        sectionVersions.setReplay(true);
+        try {
+            refreshConfig.refresh(fetch(false, true));
+            if (isInfoEnabled) {
+                logger.info("SIMULATOR: restored config from snapshot {} in {}ms.", snapshotFile,
+                    System.currentTimeMillis() - start);
+            }
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: restore config from snapshot failed. file={}", snapshotFile, e);
+        } finally {
+            sectionVersions.setReplay(false);
+        }
+    }
+
+    private void storeSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            sectionVersions.store(snapshotFile, getSnapshotKey());
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: store config snapshot failed. file={}", snapshotFile, e);
+        }
+    }
+
     @Override
     public ApplicationConfig fetch() {
+        /**
+         * 增量拉取时没有变化的分段不生成配置项，每隔 fullSyncTimes 次做一次全量拉取
+         */
+        final boolean delta = deltaEnabled && fetchTimes++ % fullSyncTimes != 0;
+        return fetch(delta, false);
+    }
+
+    /**
+     * 配置刷新之后才记录分段的版本，没有被应用的分段下次拉取时仍然按有变化处理
+     */
+    @Override
+    protected void afterRefresh() {
+        for (Section section : Section.values()) {
+            if (isApplied(section)) {
+                sectionVersions.commit(section);
+            }
+        }
+        sectionVersions.clearStaged();
+        storeSnapshot();
+    }
+
+    /**
+     * 分段是否已经被应用，与 {@link ApplicationConfig#refresh(ApplicationConfig)} 的判断保持一致
+     */
+    private static boolean isApplied(Section section) {
+        switch (section) {
+            case WHITE_LIST:
+            case MQ_SHADOW_CONSUMER:
+                return ApplicationConfig.getWhiteList;
+            case SHADOW_DATABASE:
+            case SHADOW_JOB:
+            case MOCK:
+                return ApplicationConfig.getPressureTable4AccessSimple;
+            case PLUGIN_CONFIG:
+                return ApplicationConfig.getPlugin;
+            default:
+                /**
+                 * 影子 redis、es 每次都会刷新，hbase、trace 规则、动态参数在解析时已经写入 GlobalConfig
+                 */
+                return true;
+        }
+    }
+
+    /**
+     * 拉取配置
+     *
+     * @param delta  是否增量拉取
+     * @param replay 是否为回放快照，回放时不上报应用信息
+     * @return 拉取到的配置
+     */
+    private ApplicationConfig fetch(final boolean delta, final boolean replay) {
         if (isInfoEnabled) {
             logger.info("SIMULATOR: prepare to fetch config....");
         }
         PradarSwitcher.turnConfigSyncSwitchOn();
         // 获取配置
-        String troControlWebUrl = PropertyUtil.getTroControlWebUrl();
+        final String troControlWebUrl = PropertyUtil.getTroControlWebUrl();
         /**
-         * 上传入口规则
+         * 各个分段的配置互相独立，分别写入 applicationConfig 的不同字段，可以并发拉取，
+         * 全部完成后再统一判断本次拉取的结果
          */
-        uploadEntranceRule(troControlWebUrl);
+        final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
         /**
-         * 上传应用接入状态,如果上报失败可以忽略
+         * 上次拉取之后刷新失败时暂存的版本不能再记录
          */
-        uploadAccessStatus(troControlWebUrl);
+        sectionVersions.clearStaged();
 
-        /**
-         * 上传应用信息,如果失败可以忽略
-         */
-        uploadAppInfo(troControlWebUrl);
+        if (!replay) {
+            /**
+             * 上传入口规则
+             */
+            futures.add(submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    uploadEntranceRule(troControlWebUrl);
+                    return Boolean.TRUE;
+                }
+            }));
+            /**
+             * 上传应用接入状态,如果上报失败可以忽略
+             */
+            futures.add(submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    uploadAccessStatus(troControlWebUrl);
+                    return Boolean.TRUE;
+                }
+            }));
+            /**
+             * 上传应用信息,如果失败可以忽略
+             */
+            futures.add(submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    uploadAppInfo(troControlWebUrl);
+                    return Boolean.TRUE;
+                }
+            }));
 
-        /**
-         * 拉取es名单信息
-         */
-        fetchEsBlockList();
+            /**
+             * 拉取es名单信息
+             */
+            fetchEsBlockList();
+        }
 
-        ApplicationConfig applicationConfig = new ApplicationConfig(this);
+        final ApplicationConfig applicationConfig = new ApplicationConfig(this);
 
         /**
          * 拉取插件配置
          */
-        if (getPluginConfig(troControlWebUrl, applicationConfig)) {
-            ApplicationConfig.getPlugin = Boolean.TRUE;
-        }
-
-        boolean isSuccess;
-        if (whiteListPullSwitch.get()) {
-            /**
-             * 从服务端获取白名单列表,如果失败则启动失败
-             */
-            isSuccess = getWhiteList(troControlWebUrl, applicationConfig);
-            if (!isSuccess) {
-                PradarSwitcher.turnConfigSyncSwitchOff();
-                if (ApplicationConfig.getWhiteList) {
-                    // 存在成功获取配置
-                    applicationConfig.setUrlWhiteList(GlobalConfig.getInstance().getUrlWhiteList());
-                    applicationConfig.setRpcNameWhiteList(GlobalConfig.getInstance().getRpcNameWhiteList());
-                    applicationConfig.setCacheKeyAllowList(GlobalConfig.getInstance().getCacheKeyWhiteList());
-                    applicationConfig.setContextPathBlockList(GlobalConfig.getInstance().getContextPathBlockList());
-                    applicationConfig.setMqList(GlobalConfig.getInstance().getMqWhiteList());
-                    applicationConfig.setSearchWhiteList(GlobalConfig.getInstance().getSearchWhiteList());
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (skipReplay(replay, Section.PLUGIN_CONFIG)) {
+                    return Boolean.TRUE;
                 }
-                logger.error("SIMULATOR: get white list from server failed");
-            } else {
-                ApplicationConfig.getWhiteList = Boolean.TRUE;
-            }
-        }
-        if (shadowConfigPullSwitch.get()) {
-            /**
-             * 读取压测的影子数据源配置
-             */
-            isSuccess = getPressureTable4AccessSimple(troControlWebUrl, applicationConfig);
-            if (!isSuccess) {
-                PradarSwitcher.turnConfigSyncSwitchOff();
-                if (ApplicationConfig.getPressureTable4AccessSimple) {
-                    applicationConfig.setShadowDatabaseConfigs(GlobalConfig.getInstance().getShadowDatasourceConfigs());
+                if (getPluginConfig(troControlWebUrl, applicationConfig, delta)) {
+                    ApplicationConfig.getPlugin = Boolean.TRUE;
                 }
-                logger.error("SIMULATOR: get shadow db config from server failed");
-            } else {
-                ApplicationConfig.getPressureTable4AccessSimple = Boolean.TRUE;
+                return Boolean.TRUE;
             }
+        }));
 
-            /**
-             * 获取影子job配置
-             */
-            isSuccess = getShadowJobConfig(troControlWebUrl, applicationConfig);
-            if (!isSuccess) {
-                PradarSwitcher.turnConfigSyncSwitchOff();
-                logger.error("SIMULATOR: get shadow job config from server failed");
-            } else {
-                ApplicationConfig.getShadowJobConfig = Boolean.TRUE;
+        /**
+         * 影子消费者会追加到白名单的 mq 列表中，所以白名单与影子消费者在同一个任务中先后处理，
+         * 影子消费者有变化时白名单也需要重新解析
+         */
+        final boolean pullWhiteList = whiteListPullSwitch.get();
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                final boolean skipShadowConsumer = skipReplay(replay, Section.MQ_SHADOW_CONSUMER);
+                SectionResult shadowConsumerResult = null;
+                if (!skipShadowConsumer) {
+                    shadowConsumerResult = sectionVersions.doGet(Section.MQ_SHADOW_CONSUMER,
+                        troControlWebUrl + TRO_SHADOW_MQ_CONSUMER_URL + "?appName=" + AppNameUtils.appName(), delta);
+                }
+                if (pullWhiteList && !skipReplay(replay, Section.WHITE_LIST)) {
+                    fetchWhiteList(troControlWebUrl, applicationConfig,
+                        delta && shadowConsumerResult != null && shadowConsumerResult.isUnchanged());
+                }
+                /**
+                 * 拉取mq影子消费者信息
+                 */
+                if (!skipShadowConsumer && !fetchMqShadowConsumer(shadowConsumerResult, applicationConfig)) {
+                    PradarSwitcher.turnConfigSyncSwitchOff();
+                    logger.error("[pradar] get shadow consumer from server failed");
+                }
+                return Boolean.TRUE;
             }
+        }));
 
-            /**
-             * 上报错误的影子job配置,如果失败则可以忽略
-             */
-            reportErrorShadowJobConfig(troControlWebUrl);
+        if (shadowConfigPullSwitch.get()) {
+            futures.add(submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    if (skipReplay(replay, Section.SHADOW_DATABASE)) {
+                        return Boolean.TRUE;
+                    }
+                    /**
+                     * 读取压测的影子数据源配置
+                     */
+                    boolean isSuccess = getPressureTable4AccessSimple(troControlWebUrl, applicationConfig, delta);
+                    if (!isSuccess) {
+                        PradarSwitcher.turnConfigSyncSwitchOff();
+                        if (ApplicationConfig.getPressureTable4AccessSimple) {
+                            applicationConfig.setShadowDatabaseConfigs(
+                                GlobalConfig.getInstance().getShadowDatasourceConfigs());
+                        }
+                        logger.error("SIMULATOR: get shadow db config from server failed");
+                    } else {
+                        ApplicationConfig.getPressureTable4AccessSimple = Boolean.TRUE;
+                    }
+                    return Boolean.TRUE;
+                }
+            }));
+            futures.add(submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    if (skipReplay(replay, Section.SHADOW_JOB)) {
+                        return Boolean.TRUE;
+                    }
+                    /**
+                     * 获取影子job配置
+                     */
+                    boolean isSuccess = getShadowJobConfig(troControlWebUrl, applicationConfig, delta);
+                    if (!isSuccess) {
+                        PradarSwitcher.turnConfigSyncSwitchOff();
+                        logger.error("SIMULATOR: get shadow job config from server failed");
+                    } else {
+                        ApplicationConfig.getShadowJobConfig = Boolean.TRUE;
+                    }
+
+                    /**
+                     * 上报错误的影子job配置,如果失败则可以忽略，回放快照时不上报
+                     */
+                    if (!replay) {
+                        reportErrorShadowJobConfig(troControlWebUrl);
+                    }
+                    return Boolean.TRUE;
+                }
+            }));
         }
 
-        Set<MockConfig> mockConfigs = getMockSet(troControlWebUrl);
-        applicationConfig.setMockConfigs(mockConfigs);
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (skipReplay(replay, Section.MOCK)) {
+                    return Boolean.TRUE;
+                }
+                Set<MockConfig> mockConfigs = getMockSet(troControlWebUrl, delta);
+                applicationConfig.setMockConfigs(mockConfigs);
+                return Boolean.TRUE;
+            }
+        }));
 
         /**
          * 抓取影子server的配置
          */
-        getShadowRedisServerConfig(troControlWebUrl, applicationConfig);
-
-        getShadowEsServerConfig(troControlWebUrl, applicationConfig);
-        getHbaseShadowConfig(troControlWebUrl, applicationConfig);
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (!skipReplay(replay, Section.SHADOW_REDIS_SERVER)) {
+                    getShadowRedisServerConfig(troControlWebUrl, applicationConfig, delta);
+                }
+                return Boolean.TRUE;
+            }
+        }));
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (!skipReplay(replay, Section.SHADOW_ES_SERVER)) {
+                    getShadowEsServerConfig(troControlWebUrl, applicationConfig, delta);
+                }
+                return Boolean.TRUE;
+            }
+        }));
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (skipReplay(replay, Section.SHADOW_HBASE_SERVER)) {
+                    return Boolean.TRUE;
+                }
+                return getHbaseShadowConfig(troControlWebUrl, applicationConfig, delta);
+            }
+        }));
 
         /**
          * 获取 trace 规则入口配置
          */
-        getTraceRegularRules(troControlWebUrl);
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (skipReplay(replay, Section.TRACE_RULE)) {
+                    return Boolean.TRUE;
+                }
+                return getTraceRegularRules(troControlWebUrl, delta);
+            }
+        }));
 
         /**
          * 拉取探针动态配置参数
          */
-        getDynamicSimulatorConfig(troControlWebUrl);
+        futures.add(submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (!skipReplay(replay, Section.DYNAMIC_CONFIG)) {
+                    getDynamicSimulatorConfig(troControlWebUrl, delta);
+                }
+                return Boolean.TRUE;
+            }
+        }));
 
-        /**
-         * 拉取mq影子消费者信息
-         */
-        isSuccess = fetchMqShadowConsumer(troControlWebUrl, applicationConfig);
-        if (!isSuccess) {
-            PradarSwitcher.turnConfigSyncSwitchOff();
-            logger.error("[pradar] get shadow consumer from server failed");
-        }
+        awaitAll(futures);
 
         if (PradarSwitcher.configSyncSwitchOn()
             || (ApplicationConfig.getWhiteList && ApplicationConfig.getPressureTable4AccessSimple
@@ -404,21 +693,111 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
         return applicationConfig;
     }
 
-    private Set<MockConfig> getMockSet(String troControlWebUrl) {
+    /**
+     * 回放快照时跳过快照中没有的分段，不按拉取失败处理，也不上报错误。
+     * 白名单、影子库、影子 job 缺失时关闭配置同步开关，是否就绪由历史拉取记录决定
+     *
+     * @param replay  是否为回放快照
+     * @param section 分段
+     * @return 是否跳过
+     */
+    private boolean skipReplay(boolean replay, Section section) {
+        if (!replay || sectionVersions.contains(section)) {
+            return false;
+        }
+        if (section == Section.WHITE_LIST || section == Section.SHADOW_DATABASE || section == Section.SHADOW_JOB) {
+            PradarSwitcher.turnConfigSyncSwitchOff();
+        }
+        return true;
+    }
+
+    /**
+     * 从服务端获取白名单列表,失败时如果曾经成功获取过则沿用当前生效的白名单
+     */
+    private void fetchWhiteList(String troControlWebUrl, ApplicationConfig applicationConfig, boolean delta) {
+        boolean isSuccess = getWhiteList(troControlWebUrl, applicationConfig, delta);
+        if (!isSuccess) {
+            PradarSwitcher.turnConfigSyncSwitchOff();
+            if (ApplicationConfig.getWhiteList) {
+                // 存在成功获取配置
+                applicationConfig.setUrlWhiteList(GlobalConfig.getInstance().getUrlWhiteList());
+                applicationConfig.setRpcNameWhiteList(GlobalConfig.getInstance().getRpcNameWhiteList());
+                applicationConfig.setCacheKeyAllowList(GlobalConfig.getInstance().getCacheKeyWhiteList());
+                applicationConfig.setContextPathBlockList(GlobalConfig.getInstance().getContextPathBlockList());
+                applicationConfig.setMqList(GlobalConfig.getInstance().getMqWhiteList());
+                applicationConfig.setSearchWhiteList(GlobalConfig.getInstance().getSearchWhiteList());
+            }
+            logger.error("SIMULATOR: get white list from server failed");
+        } else {
+            ApplicationConfig.getWhiteList = Boolean.TRUE;
+        }
+    }
+
+    /**
+     * 提交拉取任务，没有线程池时直接在当前线程上执行
+     */
+    private Future<Boolean> submit(final Callable<Boolean> task) {
+        if (fetchExecutor == null) {
+            FutureTask<Boolean> future = new FutureTask<Boolean>(task);
+            future.run();
+            return future;
+        }
+        return fetchExecutor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                // 与调度线程一样，拉取配置发起的请求不应该被其他插件增强
+                SimulatorGuard.getInstance().enter();
+                try {
+                    return task.call();
+                } finally {
+                    SimulatorGuard.getInstance().exit();
+                }
+            }
+        });
+    }
+
+    private void awaitAll(List<Future<Boolean>> futures) {
+        for (Future<Boolean> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                PradarSwitcher.turnConfigSyncSwitchOff();
+                logger.error("SIMULATOR: fetch config failed.", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                PradarSwitcher.turnConfigSyncSwitchOff();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
+        }
+    }
+
+    private Set<MockConfig> getMockSet(String troControlWebUrl, boolean delta) {
         try {
             String projectName = AppNameUtils.appName();
             String linkGuardUrl = String.format(MOCK_URL, projectName);
             final StringBuilder url = new StringBuilder(troControlWebUrl).append(linkGuardUrl);
-            final HttpUtils.HttpResult httpResult = HttpUtils.doGet(url.toString());
+            final SectionResult httpResult = sectionVersions.doGet(Section.MOCK, url.toString(), delta);
             if (!httpResult.isSuccess()) {
                 logger.warn("SIMULATOR: [FetchConfig] get mock config error. status: {}, result: {}",
                     httpResult.getStatus(), httpResult.getResult());
                 return Collections.EMPTY_SET;
             }
+            if (httpResult.isUnchanged()) {
+                return null;
+            }
 
             JSONObject dataMap = JSON.parseObject(httpResult.getResult());
             JSONArray mapList = dataMap.getJSONArray(DATA);
             if (mapList == null || mapList.isEmpty()) {
+                sectionVersions.stage(Section.MOCK, httpResult);
                 return Collections.EMPTY_SET;
             }
 
@@ -473,6 +852,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
 
                 mockConfigs.add(mockConfig);
             }
+            sectionVersions.stage(Section.MOCK, httpResult);
             return mockConfigs;
         } catch (Throwable e) {
             logger.warn("link guard config parse err!", e);
@@ -487,14 +867,11 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
     }
 
     /**
-     * 拉取mq影子消费者
+     * 拉取mq影子消费者，影子消费者追加到白名单的 mq 列表中，
+     * 所以只有影子消费者与白名单都没有变化时才可以跳过
      */
-    private boolean fetchMqShadowConsumer(String troControlWebUrl, ApplicationConfig applicationConfig) {
+    private boolean fetchMqShadowConsumer(SectionResult httpResult, ApplicationConfig applicationConfig) {
         try {
-
-            StringBuilder url = new StringBuilder(troControlWebUrl)
-                    .append(TRO_SHADOW_MQ_CONSUMER_URL).append("?appName=").append(AppNameUtils.appName());
-            final HttpUtils.HttpResult httpResult = HttpUtils.doGet(url.toString());
             if (!httpResult.isSuccess()) {
                 logger.warn("SIMULATOR: [FetchConfig] get shadow consumer config error. status: {}, result: {}",
                         httpResult.getStatus(), httpResult.getResult());
@@ -511,6 +888,9 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                         .report();
                 return Boolean.FALSE;
             }
+            if (httpResult.isUnchanged() && applicationConfig.getMqList() == null) {
+                return Boolean.TRUE;
+            }
 
             JSONObject dataMap = JSON.parseObject(httpResult.getResult());
             Boolean success = (Boolean) dataMap.get("success");
@@ -530,6 +910,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                 if (logger.isDebugEnabled()) {
                     logger.debug("SIMULATOR: [FetchConfig] get shadow consumer config size is null. ");
                 }
+                sectionVersions.stage(Section.MQ_SHADOW_CONSUMER, httpResult);
                 return Boolean.TRUE;
             }
 
@@ -552,6 +933,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                     }
                 }
             }
+            sectionVersions.stage(Section.MQ_SHADOW_CONSUMER, httpResult);
             return true;
 
         } catch (Throwable e) {
@@ -579,7 +961,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                     /**
                      * 从服务端获取白名单列表,如果失败则启动失败
                      */
-                    boolean isSuccess = getWhiteList(troControlWebUrl, applicationConfig);
+                    boolean isSuccess = getWhiteList(troControlWebUrl, applicationConfig, false);
                     if (!isSuccess) {
                         PradarSwitcher.turnConfigSyncSwitchOff();
                         if (ApplicationConfig.getWhiteList) {
@@ -600,7 +982,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                     /**
                      * 读取压测的影子数据源配置
                      */
-                    isSuccess = getPressureTable4AccessSimple(troControlWebUrl, applicationConfig);
+                    isSuccess = getPressureTable4AccessSimple(troControlWebUrl, applicationConfig, false);
                     if (!isSuccess) {
                         PradarSwitcher.turnConfigSyncSwitchOff();
                         if (ApplicationConfig.getPressureTable4AccessSimple) {
@@ -617,7 +999,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                     /**
                      * 获取影子job配置
                      */
-                    isSuccess = getShadowJobConfig(troControlWebUrl, applicationConfig);
+                    isSuccess = getShadowJobConfig(troControlWebUrl, applicationConfig, false);
                     if (!isSuccess) {
                         PradarSwitcher.turnConfigSyncSwitchOff();
                         logger.error("SIMULATOR: get shadow job config from server failed");
@@ -631,7 +1013,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                     reportErrorShadowJobConfig(troControlWebUrl);
                     break;
                 case MOCK_CONFIGS:
-                    Set<MockConfig> mockConfigs = getMockSet(troControlWebUrl);
+                    Set<MockConfig> mockConfigs = getMockSet(troControlWebUrl, false);
                     applicationConfig.setMockConfigs(mockConfigs);
                     break;
                 case SHADOW_REDIS_SERVER_CONFIG:
@@ -639,16 +1021,16 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                     /**
                      * 抓取redis 影子server配置信息
                      */
-                    getShadowRedisServerConfig(troControlWebUrl, applicationConfig);
+                    getShadowRedisServerConfig(troControlWebUrl, applicationConfig, false);
                     break;
                 case SHADOW_ES_SERVER_CONFIG:
-                    getShadowEsServerConfig(troControlWebUrl, applicationConfig);
+                    getShadowEsServerConfig(troControlWebUrl, applicationConfig, false);
                     break;
                 case SHADOW_HBASE_SERVER_CONFIG:
-                    getHbaseShadowConfig(troControlWebUrl, applicationConfig);
+                    getHbaseShadowConfig(troControlWebUrl, applicationConfig, false);
                     break;
                 case PLUGIN_MAX_REDIS_EXPIRE_TIME:
-                    boolean pluginConfig = getPluginConfig(troControlWebUrl, applicationConfig);
+                    boolean pluginConfig = getPluginConfig(troControlWebUrl, applicationConfig, false);
                     if (pluginConfig) {
                         ApplicationConfig.getPlugin = true;
                     }
@@ -663,7 +1045,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
     /**
      * 从服务端获取redis最大过期时间
      */
-    private boolean getPluginConfig(String troWebUrl, ApplicationConfig applicationConfig) {
+    private boolean getPluginConfig(String troWebUrl, ApplicationConfig applicationConfig, boolean delta) {
         try {
             final StringBuilder url = new StringBuilder(troWebUrl)
                 .append(TRO_PLUGIN_CONIFG)
@@ -671,7 +1053,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                 .append(AppNameUtils.appName())
                 .append("&configKey=redis_expire");
 
-            return loadPluginConfig(url, applicationConfig);
+            return loadPluginConfig(url, applicationConfig, delta);
         } catch (Throwable e) {
             ErrorReporter.buildError()
                 .setErrorType(ErrorTypeEnum.AgentError)
@@ -684,8 +1066,12 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
     }
 
     private boolean loadPluginConfig(final StringBuilder url,
-        ApplicationConfig applicationConfig) {
-        final HttpUtils.HttpResult httpResult = HttpUtils.doGet(url.toString());
+        ApplicationConfig applicationConfig, boolean delta) {
+        final SectionResult httpResult = sectionVersions.doGet(Section.PLUGIN_CONFIG, url.toString(), delta);
+        if (httpResult.isUnchanged()) {
+            applicationConfig.setPluginMaxRedisExpireTime(null);
+            return true;
+        }
         if (!httpResult.isSuccess() || !JSON.parseObject(httpResult.getResult()).getBoolean("success")) {
             logger.error("[pradar] pull plugin configs error,url:{},httpResult:{}", url, JSON.toJSONString(httpResult));
             ErrorReporter.buildError()
@@ -707,6 +1093,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
         } catch (Exception e) {
             logger.error("set pluginMaxRedisExpireTime error", e);
         }
+        sectionVersions.stage(Section.PLUGIN_CONFIG, httpResult);
         if (isInfoEnabled) {
             logger.info("[pradar] pull pluginMaxRedisExpireTime success:{}",
                 applicationConfig.getPluginMaxRedisExpireTime());
@@ -714,17 +1101,23 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
         return true;
     }
 
-    private void getShadowEsServerConfig(String troControlWebUrl, ApplicationConfig applicationConfig) {
+    private void getShadowEsServerConfig(String troControlWebUrl, ApplicationConfig applicationConfig,
+        boolean delta) {
         String appName = AppNameUtils.appName();
         String accessUrl = String.format("%s%s?appName=%s", troControlWebUrl, ES_SHADOW_SERVER_URL, appName);
         try {
             String response = System.getProperty("shadow.es.config");
+            SectionResult httpResult = null;
             if (StringUtils.isBlank(response)) {
-                HttpUtils.HttpResult httpResult = HttpUtils.doGet(accessUrl);
+                httpResult = sectionVersions.doGet(Section.SHADOW_ES_SERVER, accessUrl, delta);
                 if (!httpResult.isSuccess()) {
                     GlobalConfig.getInstance().setShadowEsServer(Boolean.FALSE);
                     return;
                 }
+                if (httpResult.isUnchanged()) {
+                    applicationConfig.setShadowEsServerConfigs(null);
+                    return;
+                }
                 response = httpResult.getResult();
             }
             Map<String, ShadowEsServerConfig> shadowEsConfigMap = new HashMap<String, ShadowEsServerConfig>();
@@ -744,6 +1137,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
             JSONArray datas = res.getJSONArray(DATA);
             if (datas == null || datas.size() == 0) {
                 GlobalConfig.getInstance().setShadowEsServer(Boolean.FALSE);
+                sectionVersions.stage(Section.SHADOW_ES_SERVER, httpResult);
                 return;
             }
             for (Object object : datas) {
@@ -768,26 +1162,32 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
             }
             applicationConfig.setShadowEsServerConfigs(shadowEsConfigMap);
             GlobalConfig.getInstance().setShadowEsServer(Boolean.TRUE);
+            sectionVersions.stage(Section.SHADOW_ES_SERVER, httpResult);
         } catch (Throwable e) {
             logger.error("fetch es server config error. url={}", accessUrl, e);
         }
 
     }
 
-    private void getShadowRedisServerConfig(String troControlWebUrl, ApplicationConfig applicationConfig) {
+    private void getShadowRedisServerConfig(String troControlWebUrl, ApplicationConfig applicationConfig,
+        boolean delta) {
         String appName = AppNameUtils.appName();
         StringBuilder builder = new StringBuilder(troControlWebUrl)
             .append(REDIS_SHADOW_SERVER_URL)
             .append("?appName=")
             .append(appName);
         try {
-            HttpUtils.HttpResult httpResult = HttpUtils.doGet(builder.toString());
+            SectionResult httpResult = sectionVersions.doGet(Section.SHADOW_REDIS_SERVER, builder.toString(), delta);
             if (!httpResult.isSuccess()) {
                 logger.warn(
                     "SIMULATOR: [FetchConfig] get shadow redis server config error. url={}, status={}, result={}",
                     builder.toString(), httpResult.getStatus(), httpResult.getResult());
                 return;
             }
+            if (httpResult.isUnchanged()) {
+                applicationConfig.setShadowRedisConfigs(null);
+                return;
+            }
 
             //没有配置默认为影子表
             Map<String, ShadowRedisConfig> shadowRedisConfigMap = new HashMap<String, ShadowRedisConfig>();
@@ -813,6 +1213,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
 
             if (datas == null || datas.size() == 0) {
                 GlobalConfig.getInstance().setShadowDbRedisServer(false);
+                sectionVersions.stage(Section.SHADOW_REDIS_SERVER, httpResult);
                 return;
             }
             for (Map data : datas) {
@@ -858,6 +1259,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
             }
             applicationConfig.setShadowRedisConfigs(shadowRedisConfigMap);
             GlobalConfig.getInstance().setShadowDbRedisServer(true);
+            sectionVersions.stage(Section.SHADOW_REDIS_SERVER, httpResult);
 
         } catch (Throwable e) {
             logger.error("fetch redis server config error. url={}", builder.toString()
@@ -921,22 +1323,27 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
     /**
      * 拉取探针动态参数
      */
-    private void getDynamicSimulatorConfig(String troWeb) {
+    private void getDynamicSimulatorConfig(String troWeb, boolean delta) {
         final StringBuilder url = new StringBuilder(troWeb).append(AGENT_CONFIG_URL);
 
         Map<String, String> params = new HashMap<String, String>();
         params.put("projectName", AppNameUtils.appName());
         params.put("version", getSimulatorVersion());
         params.put("effectMechanism", "1");//动态参数
-        HttpUtils.HttpResult httpResult = HttpUtils.doPost(url.toString(), JSON.toJSONString(params));
+        SectionResult httpResult = sectionVersions.doPost(Section.DYNAMIC_CONFIG, url.toString(),
+            JSON.toJSONString(params), delta);
         if (!httpResult.isSuccess()) {
             logger.error("获取控制台动态配置信息失败 url={}, result={}", url, httpResult.getResult());
             return;
         }
+        if (httpResult.isUnchanged()) {
+            return;
+        }
         Map<String, String> configs = JSON.parseObject(httpResult.getResult(), Map.class);
         if (configs != null && configs.get("data") != null) {
             GlobalConfig.getInstance().setSimulatorDynamicConfig(
                 new SimulatorDynamicConfig(JSONObject.parseObject(JSON.toJSONString(configs.get("data")), Map.class)));
+            sectionVersions.stage(Section.DYNAMIC_CONFIG, httpResult);
         } else {
             logger.error("获取探针动态参数异常");
         }
@@ -1059,11 +1466,11 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
      *
      * @param troControlWebUrl
      */
-    private boolean getTraceRegularRules(String troControlWebUrl) {
+    private boolean getTraceRegularRules(String troControlWebUrl, boolean delta) {
         StringBuilder url = new StringBuilder(troControlWebUrl)
                 .append(TRACE_REGULAR_RULE_URL).append("?appName=").append(AppNameUtils.appName());
         try {
-            HttpUtils.HttpResult httpResult = HttpUtils.doGet(url.toString());
+            SectionResult httpResult = sectionVersions.doGet(Section.TRACE_RULE, url.toString(), delta);
             if (!httpResult.isSuccess()) {
                 logger.error(
                         "SIMULATOR: [FetchConfig] get trace regular rules config from server with error response. url={},"
@@ -1078,6 +1485,9 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                 return false;
             }
 
+            if (httpResult.isUnchanged()) {
+                return true;
+            }
             JSONObject map = JSON.parseObject(httpResult.getResult());
             Boolean success = map.getBoolean("success");
             if (!success) {
@@ -1104,6 +1514,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
             if (!sets.isEmpty()) {
                 GlobalConfig.getInstance().setTraceRules(sets);
             }
+            sectionVersions.stage(Section.TRACE_RULE, httpResult);
         } catch (Throwable e) {
             logger.error("SIMULATOR: get shadow job config from server with err response. url={}", url, e);
             ErrorReporter.buildError()
@@ -1122,12 +1533,13 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
      *
      * @param troControlWebUrl
      */
-    private boolean getShadowJobConfig(String troControlWebUrl, ApplicationConfig applicationConfig) {
+    private boolean getShadowJobConfig(String troControlWebUrl, ApplicationConfig applicationConfig,
+        boolean delta) {
         StringBuilder url = new StringBuilder(troControlWebUrl)
                 .append(TRO_SHADOW_JOB_URL).append("?appName=").append(AppNameUtils.appName());
         try {
             Set<ShadowJob> shadowJobs = new HashSet<ShadowJob>();
-            HttpUtils.HttpResult httpResult = HttpUtils.doGet(url.toString());
+            SectionResult httpResult = sectionVersions.doGet(Section.SHADOW_JOB, url.toString(), delta);
             if (!httpResult.isSuccess()) {
                 logger.error(
                         "SIMULATOR: [FetchConfig] get shadow job config from server with error response. url={}, "
@@ -1142,6 +1554,11 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                 return false;
             }
 
+            if (httpResult.isUnchanged()) {
+                GlobalConfig.getInstance().clearErrorRegisteredJobs();
+                applicationConfig.setShadowJobs(null);
+                return true;
+            }
             Map map = JSON.parseObject(httpResult.getResult());
             Boolean success = (Boolean) map.get("success");
             if (!success) {
@@ -1201,6 +1618,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
             }
             GlobalConfig.getInstance().clearErrorRegisteredJobs();
             applicationConfig.setShadowJobs(shadowJobs);
+            sectionVersions.stage(Section.SHADOW_JOB, httpResult);
         } catch (Throwable e) {
             logger.error("SIMULATOR: get shadow job config from server with err response. url={}", url, e);
             ErrorReporter.buildError()
@@ -1219,10 +1637,11 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
      *
      * @param troWebUrl
      */
-    private boolean getPressureTable4AccessSimple(String troWebUrl, ApplicationConfig applicationConfig) {
+    private boolean getPressureTable4AccessSimple(String troWebUrl, ApplicationConfig applicationConfig,
+        boolean delta) {
         final String getShadowDatasourceUrl = troWebUrl + SHADOW_DB_TABLE_URL + "?appName=" + AppNameUtils.appName();
         try {
-            HttpUtils.HttpResult httpResult = HttpUtils.doGet(getShadowDatasourceUrl);
+            SectionResult httpResult = sectionVersions.doGet(Section.SHADOW_DATABASE, getShadowDatasourceUrl, delta);
             if (!httpResult.isSuccess()) {
                 logger.warn("SIMULATOR: [FetchConfig] get datasource config error. url={}, status={}, result={}"
                         , getShadowDatasourceUrl, httpResult.getStatus(), httpResult.getResult());
@@ -1234,6 +1653,10 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                         .report();
                 return false;
             }
+            if (httpResult.isUnchanged()) {
+                applicationConfig.setShadowDatabaseConfigs(null);
+                return true;
+            }
             Map<String, Object> resultMap = JSON.parseObject(httpResult.getResult());
             Boolean success = (Boolean) resultMap.get("success");
             if (!success) {
@@ -1308,6 +1731,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                 }
             }
             applicationConfig.setShadowDatabaseConfigs(map);
+            sectionVersions.stage(Section.SHADOW_DATABASE, httpResult);
 
         } catch (Throwable e) {
             logger.error("SIMULATOR: get shadow db config with a err response. got a unknow err. url={}",
@@ -1326,13 +1750,13 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
     /**
      * 从服务端获取白名单列表
      */
-    private boolean getWhiteList(String troWebUrl, ApplicationConfig applicationConfig) {
+    private boolean getWhiteList(String troWebUrl, ApplicationConfig applicationConfig, boolean delta) {
         final StringBuilder url = new StringBuilder(troWebUrl)
                 .append(WHITELIST_FILE_URL)
                 .append("?appName=")
                 .append(AppNameUtils.appName());
         try {
-            return loadList(url, applicationConfig);
+            return loadList(url, applicationConfig, delta);
         } catch (Throwable e) {
             logger.error("SIMULATOR: [FetchConfig] get whitelist config error. url={}", troWebUrl, e);
             ErrorReporter.buildError()
@@ -1352,8 +1776,8 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
      * @param applicationConfig
      */
     private boolean loadList(final StringBuilder url,
-                             ApplicationConfig applicationConfig) {
-        final HttpUtils.HttpResult httpResult = HttpUtils.doGet(url.toString());
+                             ApplicationConfig applicationConfig, boolean delta) {
+        final SectionResult httpResult = sectionVersions.doGet(Section.WHITE_LIST, url.toString(), delta);
         if (!httpResult.isSuccess()) {
             logger.warn("SIMULATOR: [FetchConfig] get whitelist config error. status: {}, result: {}",
                     httpResult.getStatus(), httpResult.getResult());
@@ -1365,6 +1789,15 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                     .report();
             return false;
         }
+        if (httpResult.isUnchanged()) {
+            applicationConfig.setUrlWhiteList(null);
+            applicationConfig.setRpcNameWhiteList(null);
+            applicationConfig.setCacheKeyAllowList(null);
+            applicationConfig.setContextPathBlockList(null);
+            applicationConfig.setMqList(null);
+            applicationConfig.setSearchWhiteList(null);
+            return true;
+        }
 
         final Set<MatchConfig> urlWarList = new HashSet<MatchConfig>();
         final Set<MatchConfig> rpcClassMethodName = new HashSet<MatchConfig>();
@@ -1431,6 +1864,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
         applicationConfig.setContextPathBlockList(blockList);
         applicationConfig.setMqList(mqList);
         applicationConfig.setSearchWhiteList(searchWhiteList);
+        sectionVersions.stage(Section.WHITE_LIST, httpResult);
         return true;
     }
 
@@ -1577,10 +2011,10 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
      *
      * @param troWebUrl
      */
-    private boolean getHbaseShadowConfig(String troWebUrl, ApplicationConfig applicationConfig) {
+    private boolean getHbaseShadowConfig(String troWebUrl, ApplicationConfig applicationConfig, boolean delta) {
         final String url = troWebUrl + SHADOW_HBASE_SERVER_URL + "?appName=" + AppNameUtils.appName();
         try {
-            HttpUtils.HttpResult result = HttpUtils.doGet(url);
+            SectionResult result = sectionVersions.doGet(Section.SHADOW_HBASE_SERVER, url, delta);
 
             if (!result.isSuccess()) {
                 logger.error("pull shadow hbase config error {}, url={}", result.getResult(),
@@ -1593,6 +2027,10 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
                         .report();
                 return false;
             }
+            if (result.isUnchanged()) {
+                applicationConfig.setShadowHbaseConfigs(null);
+                return true;
+            }
             Map<String, Object> resultMap = JSONObject.parseObject(result.getResult());
             Boolean success = (Boolean) resultMap.get("success");
             if (!success) {
@@ -1661,6 +2099,7 @@ public class ApplicationConfigHttpResolver extends AbstractHttpResolver<Applicat
             } else {
                 logger.warn("获取hbase数据源配置为空：{}", result.getResult());
             }
+            sectionVersions.stage(Section.SHADOW_HBASE_SERVER, result);
 
         } catch (Throwable e) {
             logger.error("[pradar] get shadow hbase config with a err response. got a unknow err. url={}", url, e);
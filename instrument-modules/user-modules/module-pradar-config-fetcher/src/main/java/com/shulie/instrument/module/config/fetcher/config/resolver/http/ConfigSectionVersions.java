@@ -0,0 +1,383 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.module.config.fetcher.config.resolver.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import com.pamirs.pradar.common.HttpUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 配置分段的版本
+ * <p>
+ * 每个配置接口作为一个分段，记录最近一次成功应用的响应内容以及服务端返回的 ETag。
+ * 增量拉取时带上 If-None-Match，服务端返回 304 或者响应内容与上次应用的一致时认为分段没有变化，
+ * 调用方可以跳过 JSON 解析，不生成该分段对应的配置项，也就不会触发对应的配置变更。
+ * 服务端不支持 ETag 时退化为比较响应内容
+ * <p>
+ * 调用方解析成功后通过 {@link #stage(Section, SectionResult)} 暂存版本，
+ * 等到配置刷新真正应用了该分段之后再通过 {@link #commit(Section)} 记录，
+ * 解析失败或者没有被应用的分段下次仍然会被当作有变化处理
+ * <p>
+ * 已应用的版本可以保存为本地快照，应用重启后先回放快照中的响应内容，
+ * 不需要等到第一次拉取配置就可以恢复影子路由
+ */
+final class ConfigSectionVersions {
+
+    private static final String ETAG = "ETag";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+
+    /**
+     * 快照文件格式: magic | format | key | count | (section | etag | content)* | crc32
+     */
+    private static final int SNAPSHOT_MAGIC = 0x50435346;
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    enum Section {
+        PLUGIN_CONFIG,
+        WHITE_LIST,
+        MQ_SHADOW_CONSUMER,
+        SHADOW_DATABASE,
+        SHADOW_JOB,
+        MOCK,
+        SHADOW_REDIS_SERVER,
+        SHADOW_ES_SERVER,
+        SHADOW_HBASE_SERVER,
+        TRACE_RULE,
+        DYNAMIC_CONFIG
+    }
+
+    private final Map<Section, Version> versions = new ConcurrentHashMap<Section, Version>();
+    /**
+     * 解析成功但还没有被应用的版本
+     */
+    private final Map<Section, Version> staged = new ConcurrentHashMap<Section, Version>();
+
+    /**
+     * 回放快照时不发起请求，直接返回已记录的响应内容
+     */
+    private volatile boolean replay;
+    /**
+     * 上次保存快照之后是否有新的版本
+     */
+    private volatile boolean dirty;
+
+    /**
+     * 拉取分段配置
+     *
+     * @param section 分段
+     * @param url     请求地址
+     * @param delta   是否增量拉取，非增量时总是认为有变化
+     * @return 拉取结果，服务端返回 304 时结果为上次应用的响应内容
+     */
+    SectionResult doGet(Section section, String url, boolean delta) {
+        if (replay) {
+            return replay(section);
+        }
+        final Version version = delta ? versions.get(section) : null;
+        Map<String, String> headers = null;
+        if (version != null && version.etag != null) {
+            headers = Collections.singletonMap(IF_NONE_MATCH, version.etag);
+        }
+        return toSectionResult(version, HttpUtils.doGet(url, headers));
+    }
+
+    /**
+     * 以 POST 的方式拉取分段配置，只能通过比较响应内容判断是否有变化
+     */
+    SectionResult doPost(Section section, String url, String body, boolean delta) {
+        if (replay) {
+            return replay(section);
+        }
+        final Version version = delta ? versions.get(section) : null;
+        return toSectionResult(version, HttpUtils.doPost(url, body));
+    }
+
+    private SectionResult toSectionResult(Version version, HttpUtils.HttpResult httpResult) {
+        final SectionResult result = new SectionResult();
+        result.setHeaders(httpResult.getHeaders());
+        result.etag = httpResult.getHeader(ETAG);
+        if (httpResult.isNotModified() && version != null) {
+            result.setStatus(200);
+            result.setResult(version.content);
+            result.etag = version.etag;
+            result.unchanged = true;
+            return result;
+        }
+        result.setStatus(httpResult.getStatus());
+        result.setResult(httpResult.getResult());
+        result.unchanged = version != null && httpResult.isSuccess()
+            && StringUtils.equals(version.content, httpResult.getResult());
+        return result;
+    }
+
+    /**
+     * 分段配置解析成功后暂存版本
+     */
+    void stage(Section section, SectionResult result) {
+        if (result == null || !result.isSuccess() || result.unchanged || replay) {
+            return;
+        }
+        staged.put(section, new Version(result.etag, result.getResult()));
+    }
+
+    /**
+     * 分段配置应用成功后记录暂存的版本
+     */
+    void commit(Section section) {
+        final Version version = staged.remove(section);
+        if (version == null) {
+            return;
+        }
+        versions.put(section, version);
+        dirty = true;
+    }
+
+    /**
+     * 丢弃所有暂存的版本
+     */
+    void clearStaged() {
+        staged.clear();
+    }
+
+    /**
+     * 清除所有分段的版本，下次拉取时全部按有变化处理
+     */
+    void clear() {
+        versions.clear();
+        staged.clear();
+        dirty = false;
+    }
+
+    /**
+     * 是否记录了分段的版本，回放快照时调用方应当跳过没有记录的分段
+     */
+    boolean contains(Section section) {
+        return versions.containsKey(section);
+    }
+
+    /**
+     * 开始或者结束回放，回放期间的拉取直接返回快照中的内容，快照中没有的分段返回 404
+     */
+    void setReplay(boolean replay) {
+        this.replay = replay;
+    }
+
+    private SectionResult replay(Section section) {
+        final SectionResult result = new SectionResult();
+        final Version version = versions.get(section);
+        if (version == null) {
+            result.setStatus(404);
+            result.setResult("section " + section + " not found in config snapshot");
+            return result;
+        }
+        result.setStatus(200);
+        result.setResult(version.content);
+        result.etag = version.etag;
+        return result;
+    }
+
+    /**
+     * 从快照文件中加载版本，文件不存在、损坏或者不是同一个 key 生成的快照时不加载
+     *
+     * @param file 快照文件
+     * @param key  快照所属的应用及控制台地址
+     * @return 是否加载成功
+     */
+    boolean load(File file, String key) throws IOException {
+        if (!file.isFile() || file.length() > Integer.MAX_VALUE) {
+            return false;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) file.length());
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            final FileChannel channel = in.getChannel();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+        } finally {
+            HttpUtils.closeQuietly(in);
+        }
+        buffer.flip();
+        if (buffer.remaining() < 8) {
+            return false;
+        }
+        final CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), 0, buffer.limit() - 8);
+        if (crc32.getValue() != buffer.getLong(buffer.limit() - 8)) {
+            return false;
+        }
+        buffer.limit(buffer.limit() - 8);
+        try {
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_FORMAT
+                || !StringUtils.equals(key, readString(buffer))) {
+                return false;
+            }
+            final Map<Section, Version> loaded = new HashMap<Section, Version>();
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                final String name = readString(buffer);
+                final String etag = readString(buffer);
+                final String content = readString(buffer);
+                // 忽略新版本中已经不存在的分段
+                for (Section section : Section.values()) {
+                    if (section.name().equals(name)) {
+                        loaded.put(section, new Version(etag, content));
+                        break;
+                    }
+                }
+            }
+            versions.putAll(loaded);
+            return true;
+        } catch (BufferUnderflowException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 有新的版本时保存快照，先写临时文件再替换，避免进程退出时留下不完整的快照。
+     * 快照中包含影子库的账号密码，文件只允许当前用户读写
+     *
+     * @param file 快照文件
+     * @param key  快照所属的应用及控制台地址
+     */
+    void store(File file, String key) throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        final Map<Section, Version> current = new HashMap<Section, Version>(versions);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_FORMAT);
+        writeString(out, key);
+        out.writeInt(current.size());
+        for (Map.Entry<Section, Version> entry : current.entrySet()) {
+            writeString(out, entry.getKey().name());
+            writeString(out, entry.getValue().etag);
+            writeString(out, entry.getValue().content);
+        }
+        final CRC32 crc32 = new CRC32();
+        crc32.update(bytes.toByteArray());
+        out.writeLong(crc32.getValue());
+        out.flush();
+
+        final File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can't create config snapshot dir " + dir);
+        }
+        final File tmp = new File(file.getPath() + ".tmp");
+        if (tmp.exists() && !tmp.delete()) {
+            throw new IOException("can't delete config snapshot tmp file " + tmp);
+        }
+        if (!tmp.createNewFile() || !restrictToOwner(tmp)) {
+            tmp.delete();
+            dirty = true;
+            throw new IOException("can't create config snapshot tmp file with owner only permission " + tmp);
+        }
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tmp);
+            bytes.writeTo(fos);
+            fos.getFD().sync();
+        } finally {
+            HttpUtils.closeQuietly(fos);
+        }
+        if (!tmp.renameTo(file)) {
+            // windows 下目标文件存在时不能直接重命名
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                dirty = true;
+                throw new IOException("can't replace config snapshot " + file);
+            }
+        }
+    }
+
+    /**
+     * 文件权限改为只有当前用户可以读写(0600)，windows 下不能去掉读权限，由目录的 ACL 控制
+     */
+    private static boolean restrictToOwner(File file) {
+        if (File.separatorChar == '\\') {
+            return file.setWritable(true, true);
+        }
+        return file.setReadable(false, false) && file.setReadable(true, true)
+            && file.setWritable(false, false) && file.setWritable(true, true)
+            && file.setExecutable(false, false);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final String value = new String(buffer.array(), buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    static final class SectionResult extends HttpUtils.HttpResult {
+        private String etag;
+        private boolean unchanged;
+
+        /**
+         * 与上次应用的版本相比是否没有变化
+         */
+        boolean isUnchanged() {
+            return unchanged;
+        }
+    }
+
+    private static final class Version {
+        private final String etag;
+        private final String content;
+
+        Version(String etag, String content) {
+            this.etag = etag;
+            this.content = content;
+        }
+    }
+}
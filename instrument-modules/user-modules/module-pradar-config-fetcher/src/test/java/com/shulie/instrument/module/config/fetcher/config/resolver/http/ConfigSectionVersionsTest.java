@@ -0,0 +1,144 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.module.config.fetcher.config.resolver.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.shulie.instrument.module.config.fetcher.config.resolver.http.ConfigSectionVersions.Section;
+import com.shulie.instrument.module.config.fetcher.config.resolver.http.ConfigSectionVersions.SectionResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 使用本地的桩 HTTP 服务验证分段版本的暂存、记录以及条件请求
+ */
+public class ConfigSectionVersionsTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String CONTENT = "{\"success\":true,\"data\":[]}";
+
+    private HttpServer server;
+    private String url;
+    private final AtomicReference<String> ifNoneMatch = new AtomicReference<String>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/section", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+                ifNoneMatch.set(etag);
+                // HttpUtils 按原样匹配 Content-Length，桩服务返回的响应头是 Content-length，关闭连接让客户端读到流结束
+                exchange.getResponseHeaders().set("Connection", "close");
+                if (ETAG.equals(etag)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                final byte[] body = CONTENT.getBytes("UTF-8");
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.sendResponseHeaders(200, body.length);
+                final OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/section";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void stagedVersionIsNotUsedUntilCommitted() {
+        final ConfigSectionVersions versions = new ConfigSectionVersions();
+        SectionResult result = versions.doGet(Section.MOCK, url, true);
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertFalse(result.isUnchanged());
+        versions.stage(Section.MOCK, result);
+
+        result = versions.doGet(Section.MOCK, url, true);
+        Assert.assertNull(ifNoneMatch.get());
+        Assert.assertFalse(result.isUnchanged());
+
+        versions.commit(Section.MOCK);
+        result = versions.doGet(Section.MOCK, url, true);
+        Assert.assertEquals(ETAG, ifNoneMatch.get());
+        Assert.assertTrue(result.isUnchanged());
+        Assert.assertEquals(CONTENT, result.getResult());
+    }
+
+    @Test
+    public void clearedStagedVersionIsNotCommitted() {
+        final ConfigSectionVersions versions = new ConfigSectionVersions();
+        versions.stage(Section.SHADOW_JOB, versions.doGet(Section.SHADOW_JOB, url, true));
+        versions.clearStaged();
+        versions.commit(Section.SHADOW_JOB);
+
+        final SectionResult result = versions.doGet(Section.SHADOW_JOB, url, true);
+        Assert.assertNull(ifNoneMatch.get());
+        Assert.assertFalse(result.isUnchanged());
+    }
+
+    @Test
+    public void fullFetchIgnoresCommittedVersion() {
+        final ConfigSectionVersions versions = new ConfigSectionVersions();
+        versions.stage(Section.WHITE_LIST, versions.doGet(Section.WHITE_LIST, url, true));
+        versions.commit(Section.WHITE_LIST);
+
+        final SectionResult result = versions.doGet(Section.WHITE_LIST, url, false);
+        Assert.assertNull(ifNoneMatch.get());
+        Assert.assertFalse(result.isUnchanged());
+        Assert.assertEquals(CONTENT, result.getResult());
+    }
+
+    @Test
+    public void replaySnapshotWithoutRequest() throws IOException {
+        final File file = File.createTempFile("config_snapshot", "");
+        try {
+            final ConfigSectionVersions versions = new ConfigSectionVersions();
+            versions.stage(Section.SHADOW_DATABASE, versions.doGet(Section.SHADOW_DATABASE, url, true));
+            versions.commit(Section.SHADOW_DATABASE);
+            versions.store(file, "key");
+
+            final ConfigSectionVersions restored = new ConfigSectionVersions();
+            Assert.assertFalse(restored.load(file, "other"));
+            Assert.assertTrue(restored.load(file, "key"));
+            Assert.assertTrue(restored.contains(Section.SHADOW_DATABASE));
+            Assert.assertFalse(restored.contains(Section.SHADOW_JOB));
+
+            server.stop(0);
+            restored.setReplay(true);
+            final SectionResult result = restored.doGet(Section.SHADOW_DATABASE, url, false);
+            Assert.assertTrue(result.isSuccess());
+            Assert.assertEquals(CONTENT, result.getResult());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -58,11 +58,11 @@ abstract class AbstractContext extends BaseContext {
     volatile boolean hasError;
 
     // service receiver
-    AbstractContext(String _traceId, String _traceAppName, String _invokeId) {
+    AbstractContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId) {
         super(_traceId, _traceAppName, _invokeId);
     }
 
-    AbstractContext(String _traceId, String _traceAppName, String _invokeId,
+    AbstractContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId,
                     String traceMethod, String traceServiceName) {
         super(_traceId, _traceAppName, _invokeId, traceMethod, traceServiceName);
     }
@@ -146,6 +146,13 @@ abstract class AbstractContext extends BaseContext {
             return true;
         }
 
+        if (AdaptiveTraceSampler.isEnabled()) {
+            int si = AdaptiveTraceSampler.getInterval(this);
+            if (si > 0) {
+                return isTraceSampled(si);
+            }
+        }
+
         boolean clusterTest = Pradar.isClusterTest();
 
         if (clusterTest) {
@@ -154,10 +161,32 @@ abstract class AbstractContext extends BaseContext {
         return isTraceSampled(PradarSwitcher.getSamplingInterval());
     }
 
+    /**
+     * 获取输出到日志中的采样间隔，开启自适应采样时使用 trace 透传的采样间隔
+     *
+     * @return 采样频率 1/x
+     */
+    public int getSamplingInterval() {
+        if (AdaptiveTraceSampler.isEnabled()) {
+            int si = AdaptiveTraceSampler.getInterval(this);
+            if (si > 0) {
+                return si;
+            }
+        }
+        return PradarSwitcher.getSamplingInterval();
+    }
+
     private boolean isTraceSampled(int si) {
         if (si <= 1 || si > 10000) {
             return true;
         }
+        /**
+         * 本机生成的 traceId 直接取 nextId，不需要生成字符串
+         */
+        if (traceId.isCompact()) {
+            return traceId.getNextId() % si == 0;
+        }
+        String traceId = this.traceId.toString();
         if (traceId.length() < 25) {
             return traceId.hashCode() % si == 0;
         }
@@ -0,0 +1,232 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按入口服务流量自适应的 trace 采样
+ * <p>
+ * 固定采样间隔下低流量的服务几乎采不到 trace，高流量的服务又会把日志队列打满。
+ * 开启后在入口（startTrace/startServerInvoke）按该入口服务最近的请求速率和每秒目标 trace 数算出采样间隔，
+ * 写入透传的 user data 中，同一个 trace 的后续节点和下游应用都使用这个间隔对 traceId 取模，保证采样结果一致。
+ * <p>
+ * 未被采样的调用如果失败或者耗时超过阈值，会把整个 trace 的采样间隔改为 1，
+ * 当前调用以及之后结束的调用（包括最后在 endServerInvoke/endTrace 结束的入口）都会输出。
+ * trace 日志队列有丢弃时按倍数放大采样间隔，持续没有丢弃后再逐步恢复
+ */
+final class AdaptiveTraceSampler {
+
+    /**
+     * 是否开启自适应采样
+     */
+    static final String ADAPTIVE_ENABLED = "pradar.trace.sampling.adaptive.enabled";
+    /**
+     * 每个入口服务每秒期望采集的业务流量 trace 数
+     */
+    static final String TARGET_TPS = "pradar.trace.sampling.target.tps";
+    /**
+     * 每个入口服务每秒期望采集的压测流量 trace 数
+     */
+    static final String CLUSTER_TEST_TARGET_TPS = "pradar.trace.sampling.cluster.test.target.tps";
+    /**
+     * 慢调用阈值，单位毫秒，超过的调用总是输出
+     */
+    static final String SLOW_THRESHOLD = "pradar.trace.sampling.slow.threshold";
+
+    /**
+     * 透传采样间隔使用的 user data key
+     */
+    static final String SAMPLING_INTERVAL_KEY = "p-pradar-si";
+
+    /**
+     * 采样间隔上限，{@link AbstractContext#isTraceSampled()} 会把超过 10000 的间隔当作全采样
+     */
+    static final int MAX_INTERVAL = 9999;
+    private static final String PROMOTED_INTERVAL = "1";
+    private static final String OVERFLOW_SERVICE = "__overflow__";
+    private static final int MAX_SERVICES = 1024;
+    private static final int MAX_BACKPRESSURE = 1024;
+    /**
+     * 连续多少次检查没有丢弃日志后把放大倍数减半
+     */
+    private static final int RECOVER_CHECKS = 10;
+
+    private static final boolean ENABLED = Pradar.getBooleanProperty(ADAPTIVE_ENABLED, false);
+    private static final int TARGET = Math.max(1, Pradar.getIntProperty(TARGET_TPS, 5));
+    private static final int CLUSTER_TEST_TARGET = Math.max(1, Pradar.getIntProperty(CLUSTER_TEST_TARGET_TPS, 20));
+    private static final long SLOW_MILLIS = Pradar.getLongProperty(SLOW_THRESHOLD, 1000L);
+
+    private static final ConcurrentHashMap<String, RateCounter> BUSINESS_RATES
+        = new ConcurrentHashMap<String, RateCounter>();
+    private static final ConcurrentHashMap<String, RateCounter> CLUSTER_TEST_RATES
+        = new ConcurrentHashMap<String, RateCounter>();
+
+    private static final AtomicLong lastCheckTime = new AtomicLong();
+    private static volatile long lastDiscardCount;
+    private static volatile int backpressure = 1;
+    private static int quietChecks;
+
+    private AdaptiveTraceSampler() {
+    }
+
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * 入口开始时决定采样间隔，上游已经决定过的直接沿用
+     */
+    static void onEntrance(AbstractContext ctx) {
+        if (!ENABLED || ctx.hasUserData(SAMPLING_INTERVAL_KEY)) {
+            return;
+        }
+        ctx.putUserData(SAMPLING_INTERVAL_KEY,
+            String.valueOf(intervalFor(ctx.getServiceName(), ctx.isClusterTest())));
+    }
+
+    /**
+     * 获取上下文透传的采样间隔
+     *
+     * @return 没有透传时返回 -1
+     */
+    static int getInterval(AbstractContext ctx) {
+        String value = ctx.getUserData(SAMPLING_INTERVAL_KEY);
+        if (value == null) {
+            return -1;
+        }
+        int interval = 0;
+        for (int i = 0, len = value.length(); i < len; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || i >= 5) {
+                return -1;
+            }
+            interval = interval * 10 + c - '0';
+        }
+        return interval;
+    }
+
+    /**
+     * 判断调用是否不需要输出
+     */
+    static boolean isFiltered(AbstractContext ctx) {
+        if (ctx.isDebug() || ctx.isTraceSampled()) {
+            return false;
+        }
+        if (isErrorOrSlow(ctx.getResultCode(), ctx.getLogTime() - ctx.getStartTime())) {
+            ctx.putUserData(SAMPLING_INTERVAL_KEY, PROMOTED_INTERVAL);
+            return false;
+        }
+        return true;
+    }
+
+    static boolean isErrorOrSlow(String resultCode, long cost) {
+        if (cost >= SLOW_MILLIS) {
+            return true;
+        }
+        if (resultCode == null || resultCode.length() == 0) {
+            return false;
+        }
+        return !ResultCode.isOk(resultCode);
+    }
+
+    static int intervalFor(String serviceName, boolean clusterTest) {
+        long now = System.currentTimeMillis();
+        checkBackpressure(now);
+        ConcurrentHashMap<String, RateCounter> rates = clusterTest ? CLUSTER_TEST_RATES : BUSINESS_RATES;
+        String key = serviceName == null ? "" : serviceName;
+        RateCounter counter = rates.get(key);
+        if (counter == null) {
+            if (rates.size() >= MAX_SERVICES) {
+                key = OVERFLOW_SERVICE;
+            }
+            counter = new RateCounter();
+            RateCounter old = rates.putIfAbsent(key, counter);
+            if (old != null) {
+                counter = old;
+            }
+        }
+        long rate = counter.incrementAndGetRate(now);
+        int target = clusterTest ? CLUSTER_TEST_TARGET : TARGET;
+        long interval = (rate + target - 1) / target * backpressure;
+        if (interval < 1) {
+            return 1;
+        }
+        return interval > MAX_INTERVAL ? MAX_INTERVAL : (int) interval;
+    }
+
+    /**
+     * 每秒最多检查一次 trace 日志的丢弃数
+     */
+    private static void checkBackpressure(long now) {
+        long last = lastCheckTime.get();
+        if (now - last < 1000L || !lastCheckTime.compareAndSet(last, now)) {
+            return;
+        }
+        AsyncAppender appender = Pradar.getRpcAppender();
+        if (appender == null) {
+            return;
+        }
+        long discardCount = appender.getDiscardCount();
+        if (discardCount > lastDiscardCount) {
+            backpressure = Math.min(backpressure << 1, MAX_BACKPRESSURE);
+            quietChecks = 0;
+        } else if (backpressure > 1 && ++quietChecks >= RECOVER_CHECKS) {
+            backpressure = backpressure >> 1;
+            quietChecks = 0;
+        }
+        lastDiscardCount = discardCount;
+    }
+
+    /**
+     * 最近 10 秒的滑动窗口计数，每秒一个槽，槽过期时 CAS 重置
+     */
+    static final class RateCounter {
+        private static final int SLOTS = 10;
+
+        private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+        private final AtomicLongArray seconds = new AtomicLongArray(SLOTS);
+
+        /**
+         * 计数一次并返回最近窗口内的每秒速率，向上取整
+         */
+        long incrementAndGetRate(long now) {
+            long second = now / 1000L;
+            int index = (int) (second % SLOTS);
+            long slotSecond = seconds.get(index);
+            if (slotSecond != second && seconds.compareAndSet(index, slotSecond, second)) {
+                counts.set(index, 0L);
+            }
+            counts.incrementAndGet(index);
+
+            long total = 0L;
+            long oldest = second;
+            for (int i = 0; i < SLOTS; i++) {
+                long s = seconds.get(i);
+                if (second - s < SLOTS) {
+                    total += counts.get(i);
+                    if (s < oldest) {
+                        oldest = s;
+                    }
+                }
+            }
+            // 刚启动时窗口还没填满，按实际经过的秒数计算
+            long window = second - oldest + 1;
+            return (total + window - 1) / window;
+        }
+    }
+}
@@ -68,6 +68,12 @@ class AsyncAppender extends PradarAppender {
     private final ReentrantLock lock;
     private final Condition notEmpty;
 
+    /**
+     * 批量模式：消费者通过 park/unpark 唤醒，日志批量编码到堆外缓冲后一次写入文件
+     */
+    private final boolean batchEnabled;
+    private volatile Thread consumerThread;
+
     // 下一个写的位置，一直递增
     private AtomicLong putIndex;
     // 最近丢弃的日志条数
@@ -75,6 +81,14 @@ class AsyncAppender extends PradarAppender {
     // 下一个读的位置，一直递增，不能大于 putIndex
     private AtomicLong takeIndex;
 
+    // 以下统计只由消费者线程写入
+    private volatile long writtenCount;
+    private volatile long writtenBytes;
+    private volatile long batchCount;
+    private volatile long maxBatchSize;
+    // 累计丢弃的日志条数，discardCount 在输出日志后会清零
+    private final AtomicLong totalDiscardCount = new AtomicLong(0L);
+
     private PradarAppender appender;
     private TraceEncoder encoder;
     private String workerName;
@@ -85,6 +99,10 @@ class AsyncAppender extends PradarAppender {
     private AtomicBoolean running;
 
     public AsyncAppender(int queueSize, int maxWaitMillis) {
+        this(queueSize, maxWaitMillis, false);
+    }
+
+    public AsyncAppender(int queueSize, int maxWaitMillis, boolean batchEnabled) {
         // queueSize 取大于或等于 value 的 2 的 n 次方数
         queueSize = 1 << (32 - Integer.numberOfLeadingZeros(queueSize - 1));
 
@@ -102,6 +120,7 @@ class AsyncAppender extends PradarAppender {
 
         this.lock = new ReentrantLock(false);
         this.notEmpty = lock.newCondition();
+        this.batchEnabled = batchEnabled;
     }
 
     void start(PradarAppender appender, TraceEncoder encoder, String workerName) {
@@ -137,6 +156,7 @@ class AsyncAppender extends PradarAppender {
             if (size >= qsize) {
                 if (maxWaitMillis <= 0) {
                     discardCount.incrementAndGet();
+                    totalDiscardCount.incrementAndGet();
                     return false;
                 } else {
                     long now = System.currentTimeMillis();
@@ -144,6 +164,7 @@ class AsyncAppender extends PradarAppender {
                         startTime = now;
                     } else if (now - startTime >= maxWaitMillis) {
                         discardCount.incrementAndGet();
+                        totalDiscardCount.incrementAndGet();
                         return false;
                     }
                     LockSupport.parkNanos(1000);
@@ -152,16 +173,10 @@ class AsyncAppender extends PradarAppender {
             }
             if (putIndex.compareAndSet(put, put + 1)) {
                 entries[(int)put & indexMask] = ctx;
-                // 仅仅在队列的日志数超过阈值，且消费者不在运行，且获得锁，才唤醒消费者
+                // 仅仅在队列的日志数超过阈值，且消费者不在运行，才唤醒消费者
                 // 这个做法能保证只有必要时才立即通知消费者，减少上下文切换的开销
-                if (size >= consumerThreshold && !running.get() && lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
+                if (size >= consumerThreshold && !running.get()) {
+                    signalNotEmpty();
                 }
                 return true;
             }
@@ -180,6 +195,7 @@ class AsyncAppender extends PradarAppender {
             if (size >= qsize) {
                 if (maxWaitMillis <= 0) {
                     discardCount.incrementAndGet();
+                    totalDiscardCount.incrementAndGet();
                     return false;
                 } else {
                     long now = System.currentTimeMillis();
@@ -187,6 +203,7 @@ class AsyncAppender extends PradarAppender {
                         startTime = now;
                     } else if (now - startTime >= maxWaitMillis) {
                         discardCount.incrementAndGet();
+                        totalDiscardCount.incrementAndGet();
                         return false;
                     }
                     LockSupport.parkNanos(1000);
@@ -195,16 +212,10 @@ class AsyncAppender extends PradarAppender {
             }
             if (putIndex.compareAndSet(put, put + 1)) {
                 entries[(int)put & indexMask] = ctx;
-                // 仅仅在队列的日志数超过阈值，且消费者不在运行，且获得锁，才唤醒消费者
+                // 仅仅在队列的日志数超过阈值，且消费者不在运行，才唤醒消费者
                 // 这个做法能保证只有必要时才立即通知消费者，减少上下文切换的开销
-                if (size >= consumerThreshold && !running.get() && lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
+                if (size >= consumerThreshold && !running.get()) {
+                    signalNotEmpty();
                 }
                 return true;
             }
@@ -221,6 +232,7 @@ class AsyncAppender extends PradarAppender {
             if (size >= qsize) {
                 if (maxWaitMillis <= 0) {
                     discardCount.incrementAndGet();
+                    totalDiscardCount.incrementAndGet();
                     return;
                 } else {
                     long now = System.currentTimeMillis();
@@ -228,6 +240,7 @@ class AsyncAppender extends PradarAppender {
                         startTime = now;
                     } else if (now - startTime >= maxWaitMillis) {
                         discardCount.incrementAndGet();
+                        totalDiscardCount.incrementAndGet();
                         return;
                     }
                     LockSupport.parkNanos(1000);
@@ -236,16 +249,10 @@ class AsyncAppender extends PradarAppender {
             }
             if (putIndex.compareAndSet(put, put + 1)) {
                 entries[(int)put & indexMask] = log;
-                // 仅仅在队列的日志数超过阈值，且消费者不在运行，且获得锁，才唤醒消费者
+                // 仅仅在队列的日志数超过阈值，且消费者不在运行，才唤醒消费者
                 // 这个做法能保证只有必要时才立即通知消费者，减少上下文切换的开销
-                if (size >= consumerThreshold && !running.get() && lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
+                if (size >= consumerThreshold && !running.get()) {
+                    signalNotEmpty();
                 }
                 return;
             }
@@ -298,19 +305,78 @@ class AsyncAppender extends PradarAppender {
                     break;
                 }
             } else {
-                if (lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
-                }
+                signalNotEmpty();
+            }
+        }
+    }
+
+    /**
+     * 唤醒消费者，批量模式下直接 unpark 消费线程，不需要竞争锁
+     */
+    private void signalNotEmpty() {
+        if (batchEnabled) {
+            final Thread consumer = consumerThread;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        } else if (lock.tryLock()) {
+            try {
+                notEmpty.signal();
+            } catch (Throwable e) {
+                LOGGER.error("fail to signal notEmpty: {}", workerName, e);
+            } finally {
+                lock.unlock();
             }
         }
     }
 
+    /**
+     * 累计处理的日志条数，可以按时间间隔计算吞吐量
+     */
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * 累计写入文件的字节数，只统计批量模式
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * 累计丢弃的日志条数
+     */
+    public long getDiscardCount() {
+        return totalDiscardCount.get();
+    }
+
+    /**
+     * 消费者处理的批次数
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * 单批次处理的最大日志条数
+     */
+    public long getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * 单批次处理的平均日志条数
+     */
+    public long getAverageBatchSize() {
+        final long batchCount = this.batchCount;
+        return batchCount == 0 ? 0 : writtenCount / batchCount;
+    }
+
+    public boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
     PradarAppender getPradarAppender() {
         return appender;
     }
@@ -328,6 +394,14 @@ class AsyncAppender extends PradarAppender {
 
         @Override
         public void run() {
+            if (batchEnabled) {
+                runBatch();
+            } else {
+                runSingle();
+            }
+        }
+
+        private void runSingle() {
             final AsyncAppender parent = AsyncAppender.this;
             final int indexMask = parent.indexMask;
             final int queueSize = parent.queueSize;
@@ -353,6 +427,7 @@ class AsyncAppender extends PradarAppender {
                     long size = putIndex.get() - take;
                     if (size > 0) {
                         // 直接批量处理掉 size 个日志对象
+                        final long batchSize = size;
                         do {
                             final int idx = (int)take & indexMask;
                             Object ctx = entries[idx];
@@ -366,6 +441,11 @@ class AsyncAppender extends PradarAppender {
                             --size;
                             processContext(ctx, parent.appender, encoder);
                         } while (size > 0);
+                        parent.writtenCount += batchSize;
+                        parent.batchCount++;
+                        if (batchSize > parent.maxBatchSize) {
+                            parent.maxBatchSize = batchSize;
+                        }
 
                         long discardNum = discardCount.get();
                         if (discardNum > 0 &&
@@ -399,6 +479,119 @@ class AsyncAppender extends PradarAppender {
             running.set(false);
         }
 
+        /**
+         * 批量模式的消费逻辑，一次取出队列中所有的日志，编码到堆外缓冲后一次写入文件
+         */
+        private void runBatch() {
+            final AsyncAppender parent = AsyncAppender.this;
+            final int indexMask = parent.indexMask;
+            final int queueSize = parent.queueSize;
+            final TraceEncoder encoder = parent.encoder;
+            final String workerName = parent.workerName;
+            final Object[] entries = parent.entries;
+            final AtomicLong putIndex = parent.putIndex;
+            final AtomicLong takeIndex = parent.takeIndex;
+            final AtomicLong discardCount = parent.discardCount;
+            final AtomicBoolean running = parent.running;
+            final PradarLogBuffer logBuffer = new PradarLogBuffer(Pradar.DEFAULT_CHARSET);
+
+            parent.consumerThread = Thread.currentThread();
+
+            // 输出统计信息
+            final long outputSpan = TimeUnit.MINUTES.toMillis(1);
+            long lastOutputTime = System.currentTimeMillis();
+            long lastWrittenCount = 0L;
+            long now;
+
+            while (isRunning) {
+                try {
+                    running.set(true);
+                    long take = takeIndex.get();
+                    long size = putIndex.get() - take;
+                    if (size > 0) {
+                        final PradarAppender appender = parent.appender;
+                        // 只有滚动文件支持直接写入字节缓冲，其他的 appender 依然逐条输出
+                        final PradarRollingFileAppender fileAppender = appender instanceof PradarRollingFileAppender
+                            ? (PradarRollingFileAppender)appender : null;
+                        final long batchSize = size;
+                        do {
+                            final int idx = (int)take & indexMask;
+                            Object ctx = entries[idx];
+                            // 从生产者 claim 到 putIndex 位置，到生产者把日志对象放入队列之间，有可能存在间隙
+                            while (ctx == null) {
+                                Thread.yield();
+                                ctx = entries[idx];
+                            }
+                            entries[idx] = null;
+                            takeIndex.set(++take); // 单个消费者，无需用 CAS
+                            --size;
+                            processContext(ctx, appender, fileAppender, encoder, logBuffer);
+                        } while (size > 0);
+
+                        if (fileAppender != null) {
+                            parent.writtenBytes += logBuffer.writeTo(fileAppender);
+                        }
+                        parent.writtenCount += batchSize;
+                        parent.batchCount++;
+                        if (batchSize > parent.maxBatchSize) {
+                            parent.maxBatchSize = batchSize;
+                        }
+
+                        if ((now = System.currentTimeMillis()) - lastOutputTime > outputSpan) {
+                            final long discardNum = discardCount.get();
+                            discardCount.lazySet(0); // 无需内存屏障，统计的数量稍微丢失一点
+                            if (discardNum > 0) {
+                                LOGGER.warn("{} discarded {} logs, queueSize={}", workerName, discardNum, queueSize);
+                            }
+                            if (LOGGER.isInfoEnabled()) {
+                                final long writtenCount = parent.writtenCount;
+                                LOGGER.info("{} wrote {} logs/s, avgBatchSize={}, maxBatchSize={}, discardCount={}",
+                                    workerName, (writtenCount - lastWrittenCount) * 1000 / (now - lastOutputTime),
+                                    parent.getAverageBatchSize(), parent.maxBatchSize, parent.getDiscardCount());
+                                lastWrittenCount = writtenCount;
+                            }
+                            lastOutputTime = now;
+                        }
+
+                        // 写完一批日志之后，做一次刷新
+                        appender.flush();
+                    } else {
+                        running.set(false);
+                        // 生产者只在 running 为 false 时唤醒消费者，所以这里需要再检查一次，避免错过唤醒
+                        if (putIndex.get() == takeIndex.get()) {
+                            LockSupport.parkNanos(parent, TimeUnit.SECONDS.toNanos(1));
+                        }
+                        if (Thread.interrupted()) {
+                            LOGGER.warn("{} async thread is iterrupted", workerName);
+                            break;
+                        }
+                    }
+                } catch (Throwable e) {
+                    LOGGER.error("Fail to async write log {}", workerName, e);
+                }
+            }
+            running.set(false);
+            parent.consumerThread = null;
+        }
+
+        private void processContext(final Object ctx, final PradarAppender appender,
+            final PradarRollingFileAppender fileAppender, final TraceEncoder encoder,
+            final PradarLogBuffer logBuffer) throws IOException {
+            if (fileAppender == null) {
+                processContext(ctx, appender, encoder);
+            } else if (fileAppender.isShared()) {
+                // 多进程写同一个文件时批量写入会超过 4KB 导致日志交织，退回逐条写入
+                writtenBytes += logBuffer.writeTo(fileAppender);
+                processContext(ctx, appender, encoder);
+            } else if (ctx instanceof String) {
+                logBuffer.append((String)ctx, fileAppender);
+            } else if (!(ctx instanceof BaseContext) || !encoder.encode((BaseContext)ctx, logBuffer, fileAppender)) {
+                // 控制命令以及不支持直接编码的日志，需要先把缓冲中的日志写出去，保证日志的顺序
+                writtenBytes += logBuffer.writeTo(fileAppender);
+                processContext(ctx, appender, encoder);
+            }
+        }
+
         private final void processContext(final Object ctx,
             final PradarAppender appender, final TraceEncoder encoder) throws IOException {
             if (ctx == EVENT_LOG_FLUSH) {
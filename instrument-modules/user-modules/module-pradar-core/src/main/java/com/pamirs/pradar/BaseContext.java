@@ -26,16 +26,19 @@ import java.util.List;
  */
 abstract class BaseContext {
 
-    final String traceId;
+    /**
+     * traceId，字符串形式只在传输或输出日志时生成
+     */
+    final TraceId traceId;
     final String traceAppName;
     String remoteAppName = PradarCoreUtils.EMPTY_STRING;
     String upAppName = PradarCoreUtils.EMPTY_STRING;
     String traceServiceName = PradarCoreUtils.EMPTY_STRING;
     String traceMethod = PradarCoreUtils.EMPTY_STRING;
     /**
-     * 调用 ID
+     * 调用 ID，字符串形式只在传输或输出日志时生成
      */
-    final String invokeId;
+    final InvokeId invokeId;
 
     String traceName = PradarCoreUtils.EMPTY_STRING;
 
@@ -115,13 +118,13 @@ abstract class BaseContext {
      */
     int invokeType = 0;
 
-    BaseContext(String _traceId, String _traceAppName, String _invokeId) {
+    BaseContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId) {
         this.traceId = _traceId;
         this.invokeId = _invokeId;
         this.traceAppName = _traceAppName;
     }
 
-    BaseContext(String _traceId, String _traceAppName, String _invokeId
+    BaseContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId
             , String traceMethod, String traceServiceName) {
         this.traceId = _traceId;
         this.invokeId = _invokeId;
@@ -132,7 +135,8 @@ abstract class BaseContext {
 
     // log control event ctx
     BaseContext(int logType) {
-        this(PradarCoreUtils.EMPTY_STRING, PradarCoreUtils.EMPTY_STRING, PradarCoreUtils.EMPTY_STRING);
+        this(TraceId.of(PradarCoreUtils.EMPTY_STRING), PradarCoreUtils.EMPTY_STRING,
+            InvokeId.of(PradarCoreUtils.EMPTY_STRING));
         this.logType = logType;
     }
 
@@ -204,14 +208,32 @@ abstract class BaseContext {
      * 获取上下文的 TraceId
      */
     public String getTraceId() {
-        return traceId;
+        return traceId == null ? null : traceId.toString();
     }
 
     /**
      * 获取上下文的 invokeId
      */
     public String getInvokeId() {
-        return invokeId;
+        return invokeId == null ? null : invokeId.toString();
+    }
+
+    /**
+     * 把 traceId 追加到日志缓冲中，为 null 时不追加
+     */
+    void appendTraceId(StringBuilder buffer) {
+        if (traceId != null) {
+            traceId.appendTo(buffer);
+        }
+    }
+
+    /**
+     * 把 invokeId 追加到日志缓冲中，为 null 时不追加
+     */
+    void appendInvokeId(StringBuilder buffer) {
+        if (invokeId != null) {
+            invokeId.appendTo(buffer);
+        }
     }
 
     public String getTraceAppName() {
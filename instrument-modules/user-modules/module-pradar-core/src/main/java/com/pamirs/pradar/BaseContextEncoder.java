@@ -52,12 +52,14 @@ class DefaultInvokeContextEncoder extends BaseContextEncoder {
         //响应结果编码|请求体长度|响应体长度|请求体序列化|响应结果序列化|是否压测
         StringBuilder buffer = this.buffer;
         buffer.delete(0, buffer.length());
-        buffer.append(ctx.getTraceId() == null ? "" : ctx.getTraceId()).append('|')
+        ctx.appendTraceId(buffer);
+        buffer.append('|')
             .append(ctx.getStartTime()).append('|')
             .append(Pradar.AGENT_ID_NOT_CONTAIN_USER_INFO).append('|')
             .append(ctx.getTraceNode()).append('|')
-            .append(ctx.getNodeId()).append('|')
-            .append(ctx.getInvokeId() == null ? "" : ctx.getInvokeId()).append('|')
+            .append(ctx.getNodeId()).append('|');
+        ctx.appendInvokeId(buffer);
+        buffer.append('|')
             .append(ctx.getLogType()).append('|')
             .append(ctx.getInvokeType()).append('|')
             .append(PradarCoreUtils.makeLogSafe(AppNameUtils.appName())).append('|')
@@ -82,7 +84,7 @@ class DefaultInvokeContextEncoder extends BaseContextEncoder {
             .append(ctx.isClusterTest() ? '1' : '0').append('|')
             .append(PradarCoreUtils.makeLogSafe(ctx.getCallBackMsg() == null ? "" : ctx.getCallBackMsg()));
 
-        final int samplingInterval = PradarSwitcher.getSamplingInterval();
+        final int samplingInterval = ctx.getSamplingInterval();
         if (samplingInterval >= 2 && samplingInterval <= 9999) {
             buffer.append("|#").append(samplingInterval);
         }
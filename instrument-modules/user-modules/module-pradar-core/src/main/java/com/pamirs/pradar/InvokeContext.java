@@ -15,6 +15,8 @@
 package com.pamirs.pradar;
 
 import com.alibaba.ttl.TransmittableThreadLocal;
+import com.pamirs.pradar.interceptor.ContextGetter;
+import com.pamirs.pradar.interceptor.ContextSetter;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
 import org.apache.commons.lang.StringUtils;
@@ -106,23 +108,23 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
 
     // log control event ctx
     InvokeContext(int logType) {
-        this(EMPTY, Pradar.ROOT_INVOKE_ID, null, StringUtils.EMPTY, StringUtils.EMPTY);
+        this(TraceId.of(EMPTY), Pradar.ROOT_INVOKE_ID, null, StringUtils.EMPTY, StringUtils.EMPTY);
         this.logType = logType;
         initAttribute();
     }
 
     // root RPC context
-    InvokeContext(String _traceId, String _traceAppName, String _invokeId) {
+    InvokeContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId) {
         this(_traceId, _traceAppName, _invokeId, null);
     }
 
     // when call other service
-    InvokeContext(String _traceId, String _traceAppName, String _invokeId, InvokeContext _parentInvokeContext) {
+    InvokeContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId, InvokeContext _parentInvokeContext) {
         this(_traceId, _traceAppName, _invokeId, _parentInvokeContext, new AtomicInteger(0));
     }
 
     // childRpcIdx for clone
-    InvokeContext(String _traceId, String _traceAppName, String _invokeId, InvokeContext _parentInvokeContext,
+    InvokeContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId, InvokeContext _parentInvokeContext,
                   AtomicInteger _childRpcIdx) {
         super(_traceId, _traceAppName, _invokeId);
         parentInvokeContext = _parentInvokeContext;
@@ -140,7 +142,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
     }
 
     // for clone
-    InvokeContext(String _traceId, String _traceAppName, String _invokeId, InvokeContext _parentInvokeContext,
+    InvokeContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId, InvokeContext _parentInvokeContext,
                   AtomicInteger _childRpcIdx, long _id) {
         super(_traceId, _traceAppName, _invokeId);
         parentInvokeContext = _parentInvokeContext;
@@ -151,18 +153,18 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
     //===============
 
     // new root RPC context
-    InvokeContext(String _traceId, String _traceAppName, String _invokeId, String traceMethod,
+    InvokeContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId, String traceMethod,
                   String traceServiceName) {
         this(_traceId, _traceAppName, _invokeId, null, traceMethod, traceServiceName);
     }
 
-    InvokeContext(String _traceId, String _traceAppName, String _invokeId, InvokeContext _parentInvokeContext
+    InvokeContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId, InvokeContext _parentInvokeContext
             , String traceMethod, String traceServiceName) {
         this(_traceId, _traceAppName, _invokeId, _parentInvokeContext, new AtomicInteger(0)
                 , traceMethod, traceServiceName);
     }
 
-    InvokeContext(String _traceId, String _traceAppName, String _invokeId, InvokeContext _parentInvokeContext,
+    InvokeContext(TraceId _traceId, String _traceAppName, InvokeId _invokeId, InvokeContext _parentInvokeContext,
                   AtomicInteger _childRpcIdx
             , String traceMethod, String traceServiceName) {
         super(_traceId, _traceAppName, _invokeId, traceMethod, traceServiceName);
@@ -178,7 +180,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
      * @return
      */
     static InvokeContext buildEmptyInvokeContext() {
-        return new InvokeContext("empty", "", "", "", "");
+        return new InvokeContext(TraceId.of("empty"), "", InvokeId.of(""), "", "");
     }
 
     /**
@@ -334,6 +336,16 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         return name;
     }
 
+    /**
+     * Map 载体的读取器
+     */
+    static final ContextGetter<Map<String, String>> MAP_GETTER = new ContextGetter<Map<String, String>>() {
+        @Override
+        public String get(Map<String, String> carrier, String key) {
+            return carrier.get(key);
+        }
+    };
+
     /**
      * 反序列化上下文
      *
@@ -342,27 +354,40 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
      * @return
      */
     static InvokeContext fromMap(Map<String, String> map, InvokeContext parent) {
-        String traceId = map.get(PradarService.PRADAR_TRACE_ID_KEY);
-        String traceAppName = map.get(PradarService.PRADAR_TRACE_APPNAME_KEY);
-        String invokeId = map.get(PradarService.PRADAR_INVOKE_ID_KEY);
-        String userData = map.get(PradarService.PRADAR_USER_DATA_KEY);
-        String logType = map.get(PradarService.PRADAR_LOG_TYPE_KEY);
-        String remoteAppName = map.get(PradarService.PRADAR_REMOTE_APPNAME_KEY);
-        String startTime = map.get(PradarService.PRADAR_START_TIME_KEY);
-        String remoteIp = map.get(PradarService.PRADAR_REMOTE_IP);
-        String upAppName = map.get(PradarService.PRADAR_UPSTREAM_APPNAME_KEY);
-        String serviceName = map.get(PradarService.PRADAR_SERVICE_NAME);
-        String methodName = map.get(PradarService.PRADAR_METHOD_NAME);
-        String middlewareName = map.get(PradarService.PRADAR_MIDDLEWARE_NAME);
+        return fromCarrier(map, MAP_GETTER, parent);
+    }
+
+    /**
+     * 从载体中直接读取字段反序列化上下文
+     *
+     * @param carrier 载体
+     * @param getter  载体读取器
+     * @param parent  父上下文
+     * @param <C>     载体类型
+     * @return 上下文
+     */
+    static <C> InvokeContext fromCarrier(C carrier, ContextGetter<C> getter, InvokeContext parent) {
+        String traceId = getter.get(carrier, PradarService.PRADAR_TRACE_ID_KEY);
+        String traceAppName = getter.get(carrier, PradarService.PRADAR_TRACE_APPNAME_KEY);
+        String invokeId = getter.get(carrier, PradarService.PRADAR_INVOKE_ID_KEY);
+        String userData = getter.get(carrier, PradarService.PRADAR_USER_DATA_KEY);
+        String logType = getter.get(carrier, PradarService.PRADAR_LOG_TYPE_KEY);
+        String remoteAppName = getter.get(carrier, PradarService.PRADAR_REMOTE_APPNAME_KEY);
+        String startTime = getter.get(carrier, PradarService.PRADAR_START_TIME_KEY);
+        String remoteIp = getter.get(carrier, PradarService.PRADAR_REMOTE_IP);
+        String upAppName = getter.get(carrier, PradarService.PRADAR_UPSTREAM_APPNAME_KEY);
+        String serviceName = getter.get(carrier, PradarService.PRADAR_SERVICE_NAME);
+        String methodName = getter.get(carrier, PradarService.PRADAR_METHOD_NAME);
+        String middlewareName = getter.get(carrier, PradarService.PRADAR_MIDDLEWARE_NAME);
 
 /*      //  ！！！！！！！这个不要放开！！！！！！！！！ passcheck不要进行远程传输..........
         boolean passedCheck = Boolean.parseBoolean(map.get(PradarService.PRADAR_WHITE_LIST_CHECK));
 */
-        boolean isClusterTest = ClusterTestUtils.isClusterTestRequest(map.get(PradarService.PRADAR_CLUSTER_TEST_KEY));
+        boolean isClusterTest = ClusterTestUtils.isClusterTestRequest(getter.get(carrier, PradarService.PRADAR_CLUSTER_TEST_KEY));
         if (!isClusterTest) {
-            isClusterTest = ClusterTestUtils.isClusterTestRequest(map.get(PradarService.PRADAR_HTTP_CLUSTER_TEST_KEY));
+            isClusterTest = ClusterTestUtils.isClusterTestRequest(getter.get(carrier, PradarService.PRADAR_HTTP_CLUSTER_TEST_KEY));
         }
-        boolean isDebug = ClusterTestUtils.isDebugRequest(map.get(PradarService.PRADAR_DEBUG_KEY));
+        boolean isDebug = ClusterTestUtils.isDebugRequest(getter.get(carrier, PradarService.PRADAR_DEBUG_KEY));
         /**
          * 解决rpcId过长的问题，如果上游传下来的rpcId过长,则将rpcId重置为9
          */
@@ -372,15 +397,18 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
             invokeId = Pradar.ROOT_INVOKE_ID;
         }
 
+        TraceId compactTraceId;
         if (traceId == null) {
             if (StringUtils.isNotBlank(remoteIp)) {
-                traceId = TraceIdGenerator.generate(remoteIp, isClusterTest);
+                compactTraceId = TraceIdGenerator.generateCompact(remoteIp, isClusterTest);
             } else {
-                traceId = TraceIdGenerator.generate(isClusterTest);
+                compactTraceId = TraceIdGenerator.generateCompact(isClusterTest);
             }
+        } else {
+            compactTraceId = TraceId.of(traceId);
         }
 
-        InvokeContext ctx = new InvokeContext(traceId, traceAppName, invokeId, parent);
+        InvokeContext ctx = new InvokeContext(compactTraceId, traceAppName, InvokeId.of(invokeId), parent);
         ctx.importUserData(userData);
         if (null != startTime) {
             ctx.setStartTime(Long.valueOf(startTime));
@@ -430,16 +458,16 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
     }
 
     public boolean isEmpty() {
-        return StringUtils.equals(traceId, "empty");
+        return traceId != null && !traceId.isCompact() && "empty".equals(traceId.toString());
     }
 
-    String nextChildInvokeId() {
-        String childInvokeId = invokeId + "." + childInvokeIdx.incrementAndGet();
+    InvokeId nextChildInvokeId() {
+        InvokeId childInvokeId = invokeId.child(childInvokeIdx.incrementAndGet());
         /**
          * 检查rpcId是否超出
          */
         if (checkInvokeIdOverLoad(childInvokeId)) {
-            return Pradar.ADJUST_ROOT_INVOKE_ID;
+            return InvokeId.of(Pradar.ADJUST_ROOT_INVOKE_ID);
         }
         return childInvokeId;
     }
@@ -450,8 +478,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
      * @return
      */
     public boolean isRoot() {
-        return StringUtils.equals(invokeId, Pradar.ROOT_INVOKE_ID) || StringUtils.equals(invokeId,
-                Pradar.MAL_ROOT_INVOKE_ID);
+        return invokeId != null && (invokeId.is(Pradar.ROOT_INVOKE_ID) || invokeId.is(Pradar.MAL_ROOT_INVOKE_ID));
     }
 
     @Override
@@ -468,7 +495,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
     }
 
     protected InvokeContext cloneInstance() {
-        InvokeContext clone = new InvokeContext(traceId, traceAppName, getInvokeId(), parentInvokeContext,
+        InvokeContext clone = new InvokeContext(traceId, traceAppName, invokeId, parentInvokeContext,
                 childInvokeIdx);
         clone.attributes = this.attributes;
         clone.localAttributes = this.localAttributes;
@@ -505,7 +532,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
             // parent->parent，很可能就是埋点出现问题，比如一直 startInvoke，没有 endInvoke，
             // 会导致 InvokeContext 嵌套过深的内存泄漏。这个时候重新创建一个上下文，使上面的上下文都能够释放。
             LOGGER.warn("InvokeContext leak detected, traceId={}, invokeId={}", traceId, invokeId);
-            parent = new InvokeContext(traceId, traceAppName, Pradar.ADJUST_ROOT_INVOKE_ID, traceMethod,
+            parent = new InvokeContext(traceId, traceAppName, InvokeId.of(Pradar.ADJUST_ROOT_INVOKE_ID), traceMethod,
                     traceServiceName);
         } else {
             parent = this;
@@ -527,6 +554,10 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         return invokeId.length() > INVOKE_ID_LENGTH_LIMIT;
     }
 
+    boolean checkInvokeIdOverLoad(InvokeId invokeId) {
+        return invokeId != null && invokeId.length() > INVOKE_ID_LENGTH_LIMIT;
+    }
+
     /**
      * 获取上一层调用上下文
      */
@@ -555,6 +586,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
          */
         setTraceNode(traceNode);
         setNodeId(traceNode);
+        AdaptiveTraceSampler.onEntrance(this);
     }
 
     public void endTrace(String result, int type) {
@@ -621,6 +653,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
          * 生成当前节点的唯一标识
          */
         setNodeId(generateNodeId());
+        AdaptiveTraceSampler.onEntrance(this);
     }
 
     /**
@@ -682,15 +715,53 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         putLocalAttribute(PradarService.PRADAR_NODE_ID_KEY, nodeId);
     }
 
+    /**
+     * 把需要远程传输的字段直接写入载体，写入的字段及取值与
+     * {@link Pradar#getInvokeContextTransformMap()} 一致，不构造中间的 Map
+     *
+     * @param carrier 载体
+     * @param setter  载体写入器
+     * @param <C>     载体类型
+     */
+    <C> void inject(C carrier, ContextSetter<? super C> setter) {
+        String traceId = getTraceId();
+        if (StringUtils.isNotBlank(traceId)) {
+            setter.set(carrier, PradarService.PRADAR_TRACE_ID_KEY, traceId);
+        }
+        setter.set(carrier, PradarService.PRADAR_TRACE_APPNAME_KEY, traceAppName == null ? appName() : traceAppName);
+        String invokeId = getInvokeId();
+        if (StringUtils.isNotBlank(invokeId)) {
+            setter.set(carrier, PradarService.PRADAR_INVOKE_ID_KEY, invokeId);
+        }
+        String userData = exportUserData();
+        if (StringUtils.isNotBlank(userData)) {
+            setter.set(carrier, PradarService.PRADAR_USER_DATA_KEY, userData);
+        }
+        final String appName = appName();
+        setter.set(carrier, PradarService.PRADAR_REMOTE_APPNAME_KEY, appName);
+        // 与 Pradar#getInvokeContextMap 一致，本应用名称不为空时上游应用名称传本应用名称
+        if (StringUtils.isNotBlank(appName)) {
+            setter.set(carrier, PradarService.PRADAR_UPSTREAM_APPNAME_KEY, appName);
+        } else {
+            setter.set(carrier, PradarService.PRADAR_UPSTREAM_APPNAME_KEY, upAppName == null ? appName : upAppName);
+        }
+        setter.set(carrier, PradarService.PRADAR_REMOTE_IP, PradarCoreUtils.getLocalAddress());
+        setter.set(carrier, PradarService.PRADAR_CLUSTER_TEST_KEY,
+                isClusterTest() ? Pradar.PRADAR_CLUSTER_TEST_ON : Pradar.PRADAR_CLUSTER_TEST_OFF);
+        setter.set(carrier, PradarService.PRADAR_DEBUG_KEY, isDebug() ? Pradar.PRADAR_DEBUG_ON : Pradar.PRADAR_DEBUG_OFF);
+    }
+
     /**
      * 把 InvokeContext 导出为 Map 进行传输，以便网络传输时序列化可以兼容新老版本。
      */
     public Map<String, String> toMap() {
         Map<String, String> context = new HashMap<String, String>();
+        String traceId = getTraceId();
         if (StringUtils.isNotBlank(traceId)) {
             context.put(PradarService.PRADAR_TRACE_ID_KEY, traceId);
         }
         context.put(PradarService.PRADAR_TRACE_APPNAME_KEY, traceAppName == null ? appName() : traceAppName);
+        String invokeId = getInvokeId();
         if (StringUtils.isNotBlank(invokeId)) {
             context.put(PradarService.PRADAR_INVOKE_ID_KEY, invokeId);
         }
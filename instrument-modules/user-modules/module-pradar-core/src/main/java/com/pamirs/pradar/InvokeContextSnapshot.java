@@ -0,0 +1,65 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+/**
+ * 调用上下文快照，用于把上下文从提交任务的线程传递给执行任务的线程
+ * <p>
+ * 快照只持有提交任务时的 {@link InvokeContext} 引用，不做 TTL 的 capture/replay：
+ * 执行任务前直接设置到执行线程，任务结束后还原执行线程原来的上下文。
+ * 当前线程没有上下文时 {@link #capture()} 返回 null，不需要包装任务
+ * </p>
+ */
+public final class InvokeContextSnapshot {
+
+    private final InvokeContext context;
+
+    private InvokeContextSnapshot(InvokeContext context) {
+        this.context = context;
+    }
+
+    /**
+     * 捕获当前线程的调用上下文，需要在提交任务的线程上调用
+     *
+     * @return 快照，当前线程没有上下文时返回 null
+     */
+    public static InvokeContextSnapshot capture() {
+        final InvokeContext context = InvokeContext.get();
+        if (context == null) {
+            return null;
+        }
+        return new InvokeContextSnapshot(context);
+    }
+
+    /**
+     * 将快照中的上下文设置到当前线程
+     *
+     * @return 当前线程原来的上下文，可能为 null，需要在任务结束后通过 {@link #detach(InvokeContext)} 还原
+     */
+    public InvokeContext attach() {
+        final InvokeContext backup = InvokeContext.get();
+        InvokeContext.set(context);
+        return backup;
+    }
+
+    /**
+     * 还原当前线程原来的上下文
+     *
+     * @param backup {@link #attach()} 的返回值
+     */
+    public static void detach(InvokeContext backup) {
+        InvokeContext.set(backup);
+    }
+}
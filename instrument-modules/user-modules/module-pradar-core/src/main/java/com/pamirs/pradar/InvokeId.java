@@ -0,0 +1,127 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+/**
+ * invokeId
+ * <p>
+ * 子调用的 invokeId 只保存父 invokeId 和自身的序号，例如 0.1.2 保存为 (0.1) + 2，
+ * 不再在每次创建子调用时拼接字符串，字符串形式只有在需要传输或者输出日志时才会生成一次并缓存下来。
+ * 长度在创建时就计算好，超长检查不需要生成字符串
+ */
+final class InvokeId {
+
+    private final InvokeId parent;
+    private final int index;
+    private final int length;
+
+    /**
+     * 字符串形式，子调用的 invokeId 延迟生成
+     */
+    private String value;
+
+    private InvokeId(String value) {
+        this.parent = null;
+        this.index = 0;
+        this.length = value.length();
+        this.value = value;
+    }
+
+    private InvokeId(InvokeId parent, int index) {
+        this.parent = parent;
+        this.index = index;
+        this.length = parent.length + 1 + stringSize(index);
+    }
+
+    /**
+     * 使用字符串形式的 invokeId 构建
+     *
+     * @param invokeId invokeId
+     * @return invokeId 为 null 时返回 null
+     */
+    static InvokeId of(String invokeId) {
+        return invokeId == null ? null : new InvokeId(invokeId);
+    }
+
+    /**
+     * 创建子调用的 invokeId
+     *
+     * @param index 子调用的序号
+     * @return 子调用的 invokeId
+     */
+    InvokeId child(int index) {
+        return new InvokeId(this, index);
+    }
+
+    /**
+     * 字符串形式的长度
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * 判断是否与字符串形式的 invokeId 相等，长度不同时不需要生成字符串
+     */
+    boolean is(String invokeId) {
+        return invokeId != null && invokeId.length() == length && toString().equals(invokeId);
+    }
+
+    /**
+     * 直接追加到日志缓冲中，字符串形式还没有生成时不再单独生成字符串
+     *
+     * @param buffer 日志缓冲
+     */
+    void appendTo(StringBuilder buffer) {
+        String v = value;
+        if (v != null) {
+            buffer.append(v);
+            return;
+        }
+        parent.appendTo(buffer);
+        buffer.append('.').append(index);
+    }
+
+    @Override
+    public String toString() {
+        String v = value;
+        if (v == null) {
+            char[] chars = new char[length];
+            int pos = length;
+            InvokeId node = this;
+            while (node.value == null) {
+                int i = node.index;
+                do {
+                    chars[--pos] = (char) ('0' + i % 10);
+                    i /= 10;
+                } while (i > 0);
+                chars[--pos] = '.';
+                node = node.parent;
+            }
+            node.value.getChars(0, node.length, chars, 0);
+            v = value = new String(chars);
+        }
+        return v;
+    }
+
+    private static int stringSize(int i) {
+        int size = 1;
+        while (i >= 10) {
+            i /= 10;
+            size++;
+        }
+        return size;
+    }
+}
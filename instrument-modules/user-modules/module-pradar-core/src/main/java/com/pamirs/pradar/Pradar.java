@@ -20,7 +20,6 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -32,6 +31,10 @@ import com.pamirs.pradar.common.PropertyPlaceholderHelper;
 import com.pamirs.pradar.common.RuntimeUtils;
 import com.pamirs.pradar.debug.DebugHelper;
 import com.pamirs.pradar.exception.PressureMeasureError;
+import com.pamirs.pradar.interceptor.ContextGetter;
+import com.pamirs.pradar.interceptor.ContextSetter;
+import com.pamirs.pradar.interceptor.ContextTransfer;
+import com.pamirs.pradar.metrics.PradarMetrics;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
 import org.apache.commons.lang.StringUtils;
@@ -88,6 +91,14 @@ public final class Pradar {
      * monitor日志版本号
      */
     static public final int PRADAR_MONITOR_LOG_VERSION = getPradarMonitorLogVersion();
+    /**
+     * metrics日志版本号
+     */
+    static public final int PRADAR_METRICS_LOG_VERSION = 1;
+    /**
+     * metrics日志推送的数据类型，不复用 DataType.METRICS_LOG(2)，服务端可以按类型区分聚合后的耗时指标
+     */
+    static public final byte PRADAR_METRICS_LOG_DATA_TYPE = 5;
 
     /**
      * error日志版本号
@@ -121,6 +132,10 @@ public final class Pradar {
      * Pradar 服务器信息 日志文件名
      */
     static final public String PRADAR_MONITOR_LOG_FILE = Pradar.PRADAR_LOG_DIR + "pradar_monitor.log";
+    /**
+     * Pradar 聚合指标 日志文件名
+     */
+    static final public String PRADAR_METRICS_LOG_FILE = Pradar.PRADAR_LOG_DIR + "pradar_metrics.log";
 
     static final public String PRADAR_AGENT_ERROR_LOG_FILE = Pradar.PRADAR_LOG_DIR + "simulator-agent-error.log";
     static final public String PRADAR_SIMULATOR_ERROR_LOG_FILE = Pradar.PRADAR_LOG_DIR + "simulator-error.log";
@@ -155,6 +170,11 @@ public final class Pradar {
      */
     static AsyncAppender serverMonitorAppender;
 
+    /**
+     * 聚合指标 日志输出
+     */
+    static AsyncAppender metricsAppender;
+
     /**
      * 正常 TRACE 开始的 InvokeId
      */
@@ -201,6 +221,18 @@ public final class Pradar {
      * monitor 日志的队列长度大小
      */
     static public final String MONITOR_QUEUE_SIZE = "pradar.monitor.queue.size";
+    /**
+     * trace/monitor 日志是否使用批量编码写入
+     */
+    static public final String LOG_BATCH_ENABLED = "pradar.log.batch.enabled";
+    /**
+     * 影子表/影子库 sql 改写是否使用 sql 指纹缓存
+     */
+    static public final String SQL_REWRITE_CACHE_ENABLED = "pradar.sql.rewrite.cache.enabled";
+    /**
+     * sql 指纹缓存的最大权重，按照缓存的字符数计算
+     */
+    static public final String SQL_REWRITE_CACHE_MAX_WEIGHT = "pradar.sql.rewrite.cache.max.weight";
     /**
      * 是否影子库里用影子表模式
      */
@@ -209,6 +241,10 @@ public final class Pradar {
      * 默认 trace 缓存队列的大小
      */
     static public final int DEFAULT_TRACE_QUEUE_SIZE = 1024;
+    /**
+     * 默认 sql 指纹缓存的最大权重
+     */
+    static public final long DEFAULT_SQL_REWRITE_CACHE_MAX_WEIGHT = 4L * 1024 * 1024;
     /**
      * 默认 monitor 缓存队列的大小
      */
@@ -255,6 +291,18 @@ public final class Pradar {
      */
     private final static AtomicBoolean hasPressureRequest = new AtomicBoolean(false);
     private final static Logger LOGGER = LoggerFactory.getLogger(Pradar.class);
+    private final static ContextSetter<Map<String, String>> MAP_SETTER = new ContextSetter<Map<String, String>>() {
+        @Override
+        public void set(Map<String, String> carrier, String key, String value) {
+            carrier.put(key, value);
+        }
+    };
+    private final static ContextSetter<ContextTransfer> CONTEXT_TRANSFER_SETTER = new ContextSetter<ContextTransfer>() {
+        @Override
+        public void set(ContextTransfer carrier, String key, String value) {
+            carrier.transfer(key, value);
+        }
+    };
     private final static List<String> RPC_TRANSFORM_KEYS = Arrays.asList(
         PradarService.PRADAR_TRACE_ID_KEY,
         PradarService.PRADAR_TRACE_APPNAME_KEY,
@@ -278,6 +326,7 @@ public final class Pradar {
     static public int PUSH_MAX_SIZE = getPushMaxSize();
     private static PradarRollingFileAppender pradarAppender;
     private static PradarRollingFileAppender monitorAppender;
+    private static PradarRollingFileAppender metricsFileAppender;
 
     /**
      * Pradar 初始化
@@ -288,6 +337,7 @@ public final class Pradar {
         try {
             pradarAppender = createPradarLoggers();
             monitorAppender = createMonitorLoggers();
+            metricsFileAppender = createMetricsLoggers();
         } catch (Throwable e) {
             LOGGER.error("fail to create Pradar logger", e);
         }
@@ -409,6 +459,39 @@ public final class Pradar {
         return DEFAULT_MONITOR_QUEUE_SIZE;
     }
 
+    /**
+     * trace/monitor 日志是否使用批量编码写入，开启后日志直接编码到堆外缓冲，
+     * 每批日志通过一次 gathering write 写入文件
+     *
+     * @return 默认返回 false
+     */
+    public static boolean isLogBatchEnabled() {
+        return Boolean.parseBoolean(System.getProperty(LOG_BATCH_ENABLED));
+    }
+
+    /**
+     * 影子表/影子库 sql 改写是否使用 sql 指纹缓存，开启后字面量不同的同构 sql 共享一份改写模板，
+     * 命中时直接拼接影子表名，不再重新解析 sql
+     *
+     * @return 默认返回 false
+     */
+    public static boolean isSqlRewriteCacheEnabled() {
+        return Boolean.parseBoolean(System.getProperty(SQL_REWRITE_CACHE_ENABLED));
+    }
+
+    /**
+     * sql 指纹缓存的最大权重
+     *
+     * @return 默认返回 {@link #DEFAULT_SQL_REWRITE_CACHE_MAX_WEIGHT}
+     */
+    public static long getSqlRewriteCacheMaxWeight() {
+        String value = System.getProperty(SQL_REWRITE_CACHE_MAX_WEIGHT);
+        if (NumberUtils.isDigits(value)) {
+            return Long.parseLong(value);
+        }
+        return DEFAULT_SQL_REWRITE_CACHE_MAX_WEIGHT;
+    }
+
     /**
      * 是否影子库里用影子表模式
      *
@@ -689,6 +772,15 @@ public final class Pradar {
         return strBuilder.toString();
     }
 
+    /**
+     * 获取 trace appender
+     *
+     * @return
+     */
+    public static AsyncAppender getRpcAppender() {
+        return rpcAppender;
+    }
+
     /**
      * 获取monitor appender
      *
@@ -709,6 +801,17 @@ public final class Pradar {
         }
     }
 
+    /**
+     * 提交聚合指标日志
+     *
+     * @param metricsLog metrics log
+     */
+    public static void commitMetricsLog(String metricsLog) {
+        if (metricsAppender != null) {
+            metricsAppender.append(metricsLog);
+        }
+    }
+
     /**
      * 获取agentId
      *
@@ -994,7 +1097,7 @@ public final class Pradar {
 
     static private final PradarRollingFileAppender createPradarLoggers() {
         // 配置日志输出
-        rpcAppender = new AsyncAppender(getTraceQueueSize(), 0);
+        rpcAppender = new AsyncAppender(getTraceQueueSize(), 0, isLogBatchEnabled());
 
         PradarRollingFileAppender rpcLogger = new PradarRollingFileAppender(
             PRADAR_INVOKE_LOG_FILE, Pradar.MAX_RPC_LOG_FILE_SIZE, false);
@@ -1007,7 +1110,7 @@ public final class Pradar {
     static private final PradarRollingFileAppender createMonitorLoggers() {
 
         // 配置日志输出
-        serverMonitorAppender = new AsyncAppender(getMonitorQueueSize(), 0);
+        serverMonitorAppender = new AsyncAppender(getMonitorQueueSize(), 0, isLogBatchEnabled());
 
         PradarRollingFileAppender rpcLogger = new PradarRollingFileAppender(
             PRADAR_MONITOR_LOG_FILE, Pradar.MAX_MONITOR_LOG_FILE_SIZE, false);
@@ -1016,6 +1119,20 @@ public final class Pradar {
         return rpcLogger;
     }
 
+    static private final PradarRollingFileAppender createMetricsLoggers() {
+        if (!PradarMetrics.isEnabled()) {
+            return null;
+        }
+        // 配置日志输出
+        metricsAppender = new AsyncAppender(getMonitorQueueSize(), 0, isLogBatchEnabled());
+
+        PradarRollingFileAppender metricsLogger = new PradarRollingFileAppender(
+            PRADAR_METRICS_LOG_FILE, Pradar.MAX_MONITOR_LOG_FILE_SIZE, false);
+        metricsAppender.start(metricsLogger, new TraceInvokeContextEncoder(), "MetricsLog");
+        PradarLogDaemon.watch(metricsAppender);
+        return metricsLogger;
+    }
+
     public static void shutdown() {
         PradarLogDaemon.shutdown();
         if (pradarAppender != null) {
@@ -1024,6 +1141,9 @@ public final class Pradar {
         if (monitorAppender != null) {
             monitorAppender.shutdown();
         }
+        if (metricsFileAppender != null) {
+            metricsFileAppender.shutdown();
+        }
     }
 
     /**
@@ -1063,7 +1183,7 @@ public final class Pradar {
                 isDebug = ctx.isDebug();
             }
             // 重复 startTrace 的检测
-            if (!ctx.traceId.equals(traceId) || !serviceName.equals(ctx.serviceName)) {
+            if (traceId == null || !ctx.getTraceId().equals(traceId) || !serviceName.equals(ctx.serviceName)) {
                 // 说明有潜在的埋点问题，先把前面那个调用链结束掉
                 LOGGER.warn("duplicated startTrace detected, overrided {} ({}) to {} ({})", ctx.traceId,
                     ctx.serviceName,
@@ -1075,15 +1195,19 @@ public final class Pradar {
             }
         }
 
+        TraceId compactTraceId;
         if (traceId == null || traceId.isEmpty()) {
-            traceId = TraceIdGenerator.generate(isClusterTest);
-            invokeId = Pradar.ROOT_INVOKE_ID;
-        } else if (invokeId == null || invokeId.length() > INVOKE_ID_LENGTH_LIMIT) {
+            compactTraceId = TraceIdGenerator.generateCompact(isClusterTest);
             invokeId = Pradar.ROOT_INVOKE_ID;
+        } else {
+            compactTraceId = TraceId.of(traceId);
+            if (invokeId == null || invokeId.length() > INVOKE_ID_LENGTH_LIMIT) {
+                invokeId = Pradar.ROOT_INVOKE_ID;
+            }
         }
         try {
             /* ctx = new InvokeContext(traceId, appName(), invokeId);*/
-            ctx = new InvokeContext(traceId, appName(), invokeId, methodName, serviceName);
+            ctx = new InvokeContext(compactTraceId, appName(), InvokeId.of(invokeId), methodName, serviceName);
             InvokeContext.set(ctx);
             ctx.startTrace(serviceName, methodName);
             if (middlewareName != null) {
@@ -1218,8 +1342,8 @@ public final class Pradar {
     static final InvokeContext createContextIfNotExists(final boolean setToThreadLocal) {
         final InvokeContext ctx = InvokeContext.get();
         if (null == ctx) {
-            final InvokeContext newCtx = new InvokeContext(TraceIdGenerator.generate(false), appName(),
-                MAL_ROOT_INVOKE_ID, ctx.traceMethod, ctx.traceServiceName);
+            final InvokeContext newCtx = new InvokeContext(TraceIdGenerator.generateCompact(false), appName(),
+                InvokeId.of(MAL_ROOT_INVOKE_ID), ctx.traceMethod, ctx.traceServiceName);
 
             if (setToThreadLocal) {
                 // 在这里设置的 ctx，有可能无法释放，例如在没有 startTrace 的上下文中直接
@@ -1343,6 +1467,21 @@ public final class Pradar {
         return InvokeContext.fromMap(ctx);
     }
 
+    /**
+     * 从载体中直接读取字段构建一个 InvokeContext，不需要先把载体转换成 Map
+     *
+     * @param carrier 载体
+     * @param getter  载体读取器
+     * @param <C>     载体类型
+     * @return 载体为 null 时返回 null
+     */
+    static public <C> InvokeContext fromCarrier(C carrier, ContextGetter<C> getter) {
+        if (carrier == null) {
+            return null;
+        }
+        return InvokeContext.fromCarrier(carrier, getter, null);
+    }
+
     /**
      * 判断是否有上下文
      *
@@ -1443,21 +1582,44 @@ public final class Pradar {
      * 该方法返回的传输字段在{@link #getInvokeContextTransformKeys()} 中定义，如果不在
      * 这个范围内定义的字段，则会被强行移除，因为{@link #getInvokeContextMap()} 方法会返回一些用于
      * 内部上下文传输时需要的冗余字段，而这些字段不在远程传输字段列表内
+     * <p>
+     * 保留用于兼容，出站调用写入请求头等载体时请使用 {@link #injectInvokeContext(Object, ContextSetter)}
      *
      * @return
      */
     static public Map<String, String> getInvokeContextTransformMap() {
-        Map<String, String> ctx = getInvokeContextMap();
-        Iterator<Map.Entry<String, String>> it = ctx.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, String> entry = it.next();
-            if (!getInvokeContextTransformKeys().contains(entry.getKey())) {
-                it.remove();
-            }
-        }
+        Map<String, String> ctx = new HashMap<String, String>();
+        injectInvokeContext(ctx, MAP_SETTER);
         return ctx;
     }
 
+    /**
+     * 把当前上下文中需要远程传输的字段直接写入载体，如请求头、RPC 附件、消息属性等
+     * <p>
+     * 写入的字段与 {@link #getInvokeContextTransformMap()} 一致，但不构造中间的 Map，
+     * 出站调用时应优先使用此方法，当前线程没有上下文时不写入任何字段
+     *
+     * @param carrier 载体
+     * @param setter  载体写入器
+     * @param <C>     载体类型
+     */
+    static public <C> void injectInvokeContext(C carrier, ContextSetter<? super C> setter) {
+        InvokeContext invokeContext = InvokeContext.get();
+        if (invokeContext == null) {
+            return;
+        }
+        invokeContext.inject(carrier, setter);
+    }
+
+    /**
+     * 把当前上下文中需要远程传输的字段写入 {@link ContextTransfer}
+     *
+     * @param contextTransfer 上下文传输
+     */
+    static public void injectInvokeContext(ContextTransfer contextTransfer) {
+        injectInvokeContext(contextTransfer, CONTEXT_TRANSFER_SETTER);
+    }
+
     /**
      * 获取数据传输上下文的key
      *
@@ -1567,8 +1729,8 @@ public final class Pradar {
         }
 
         if (ctx == null) {
-            ctx = new InvokeContext(TraceIdGenerator.generate(isClusterTest), appName(), MAL_ROOT_INVOKE_ID
-                , StringUtils.EMPTY, StringUtils.EMPTY);
+            ctx = new InvokeContext(TraceIdGenerator.generateCompact(isClusterTest), appName(),
+                InvokeId.of(MAL_ROOT_INVOKE_ID), StringUtils.EMPTY, StringUtils.EMPTY);
             ctx.setUpAppName(appName());
             ctx.setClusterTest(isClusterTest);
             ctx.setDebug(isDebug);
@@ -1684,7 +1846,8 @@ public final class Pradar {
             }
 
             if (null == ctx) {
-                childCtx = new InvokeContext(TraceIdGenerator.generate(isClusterTest), appName(), MAL_ROOT_INVOKE_ID);
+                childCtx = new InvokeContext(TraceIdGenerator.generateCompact(isClusterTest), appName(),
+                    InvokeId.of(MAL_ROOT_INVOKE_ID));
                 childCtx.setUpAppName(appName());
             } else {
                 // Create child invoke context
@@ -1857,7 +2020,7 @@ public final class Pradar {
                     childCtx = createInvokeContext(ctxObj);
                 } else {
                     childCtx = new InvokeContext(TraceIdGenerator.
-                        generate(isClusterTest), appName(), MAL_ROOT_INVOKE_ID
+                        generateCompact(isClusterTest), appName(), InvokeId.of(MAL_ROOT_INVOKE_ID)
                         , method, service);
                     childCtx.setUpAppName(appName());
                 }
@@ -2094,7 +2257,7 @@ public final class Pradar {
      */
     static public String getTraceId() {
         InvokeContext ctx = InvokeContext.get();
-        return null == ctx ? null : ctx.traceId;
+        return null == ctx ? null : ctx.getTraceId();
     }
 
     /**
@@ -2102,12 +2265,12 @@ public final class Pradar {
      */
     static public String getInvokeId() {
         InvokeContext ctx = InvokeContext.get();
-        return null == ctx ? null : ctx.invokeId;
+        return null == ctx ? null : ctx.getInvokeId();
     }
 
     static public String getChildInvokeId() {
         InvokeContext ctx = InvokeContext.get();
-        return null == ctx ? null : ctx.nextChildInvokeId();
+        return null == ctx ? null : ctx.nextChildInvokeId().toString();
     }
 
     /**
@@ -2398,6 +2561,9 @@ public final class Pradar {
      * @return
      */
     static private boolean isFilterContext(InvokeContext ctx) {
+        if (AdaptiveTraceSampler.isEnabled()) {
+            return AdaptiveTraceSampler.isFiltered(ctx);
+        }
         return false;
         //if (ctx.isDebug()) {
         //    return false;
@@ -2441,6 +2607,13 @@ public final class Pradar {
             parent = parent.getParentInvokeContext();
         }
 
+        /**
+         * 聚合指标在采样之前记录，保证分位值和错误率是全量的
+         */
+        if (PradarMetrics.isEnabled() && ctx.logType >= 0 && ctx.logTime > 0) {
+            PradarMetrics.record(ctx.getMiddlewareName(), ctx.getServiceName(), ctx.getMethodName(),
+                ctx.isClusterTest(), ctx.getResultCode(), ctx.logTime - ctx.startTime);
+        }
         if (!isFilterContext(ctx)) {
             rpcAppender.append(ctx);
         }
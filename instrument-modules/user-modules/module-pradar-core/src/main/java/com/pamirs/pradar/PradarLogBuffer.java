@@ -0,0 +1,200 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 批量写日志时使用的字节缓冲，日志直接编码到一组堆外缓冲中，
+ * 缓冲写满或者一批日志处理完成后再通过 gathering write 一次写入文件，
+ * 避免每条日志都生成一次中间的字符串和字节数组。
+ * <p>
+ * 非线程安全，只能在 {@link AsyncAppender} 的消费线程中使用
+ */
+class PradarLogBuffer {
+
+    /**
+     * 单个缓冲的大小
+     */
+    private static final int SEGMENT_SIZE = 64 * 1024; // 64KB
+
+    /**
+     * 缓冲个数，所有缓冲写满后会先写出到文件
+     */
+    private static final int SEGMENT_COUNT = 4;
+
+    private static final int DEFAULT_SCRATCH_SIZE = 1024;
+
+    private final ByteBuffer[] segments;
+    private final CharsetEncoder encoder;
+    private final boolean utf8;
+
+    /**
+     * 当前正在写入的缓冲
+     */
+    private int current = 0;
+
+    /**
+     * 编码时复用的字符和字节数组，在数组上编码比逐字节写入堆外缓冲快得多，
+     * 编码完成后再整体拷贝到堆外缓冲
+     */
+    private char[] chars = new char[DEFAULT_SCRATCH_SIZE];
+    private byte[] bytes = new byte[DEFAULT_SCRATCH_SIZE * 3];
+
+    PradarLogBuffer(Charset charset) {
+        this.segments = new ByteBuffer[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = ByteBuffer.allocateDirect(SEGMENT_SIZE);
+        }
+        // 与 String.getBytes(Charset) 保持一致，无法编码的字符使用替换字符
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.utf8 = "UTF-8".equals(charset.name());
+    }
+
+    /**
+     * 编码一条日志，缓冲写满时先写出到文件
+     *
+     * @param log      日志内容
+     * @param appender 缓冲写满时写出的文件
+     * @throws IOException 写文件失败
+     */
+    void append(String log, PradarRollingFileAppender appender) throws IOException {
+        final int length = log.length();
+        log.getChars(0, length, ensureChars(length), 0);
+        put(encode(length), appender);
+    }
+
+    /**
+     * 编码一条日志，缓冲写满时先写出到文件
+     *
+     * @param log      日志内容
+     * @param appender 缓冲写满时写出的文件
+     * @throws IOException 写文件失败
+     */
+    void append(StringBuilder log, PradarRollingFileAppender appender) throws IOException {
+        final int length = log.length();
+        log.getChars(0, length, ensureChars(length), 0);
+        put(encode(length), appender);
+    }
+
+    private int encode(final int length) {
+        if (!utf8) {
+            encoder.reset();
+            final ByteBuffer out = ByteBuffer.wrap(ensureBytes((int) (length * encoder.maxBytesPerChar()) + 1));
+            final CharBuffer in = CharBuffer.wrap(chars, 0, length);
+            encoder.encode(in, out, true);
+            encoder.flush(out);
+            return out.position();
+        }
+        final char[] chars = this.chars;
+        final byte[] bytes = ensureBytes(length * 3);
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = chars[i];
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                final int codePoint = Character.toCodePoint(c, chars[++i]);
+                bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // 不成对的代理字符，与 String.getBytes 一样替换为 '?'
+                bytes[pos++] = '?';
+            }
+        }
+        return pos;
+    }
+
+    private void put(final int length, final PradarRollingFileAppender appender) throws IOException {
+        int offset = 0;
+        while (true) {
+            final ByteBuffer segment = segments[current];
+            final int n = Math.min(segment.remaining(), length - offset);
+            segment.put(bytes, offset, n);
+            offset += n;
+            if (offset >= length) {
+                return;
+            }
+            nextSegment(appender);
+        }
+    }
+
+    private char[] ensureChars(final int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length << 1)];
+        }
+        return chars;
+    }
+
+    private byte[] ensureBytes(final int length) {
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length << 1)];
+        }
+        return bytes;
+    }
+
+    private void nextSegment(PradarRollingFileAppender appender) throws IOException {
+        if (current + 1 < segments.length) {
+            current++;
+        } else {
+            writeTo(appender);
+        }
+    }
+
+    boolean isEmpty() {
+        return current == 0 && segments[0].position() == 0;
+    }
+
+    /**
+     * 把缓冲中的日志写出到文件，无论是否写入成功缓冲都会被清空
+     *
+     * @param appender 日志文件
+     * @return 写入的字节数
+     * @throws IOException 写文件失败
+     */
+    long writeTo(PradarRollingFileAppender appender) throws IOException {
+        if (isEmpty()) {
+            return 0;
+        }
+        final int length = current + 1;
+        for (int i = 0; i < length; i++) {
+            segments[i].flip();
+        }
+        try {
+            return appender.write(segments, 0, length);
+        } finally {
+            for (int i = 0; i < length; i++) {
+                segments[i].clear();
+            }
+            current = 0;
+        }
+    }
+}
@@ -20,6 +20,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -65,6 +67,11 @@ class PradarRollingFileAppender extends PradarAppender {
 
     private BufferedOutputStream bos = null;
 
+    /**
+     * 与 bos 共用同一个文件流，批量写日志时直接写入
+     */
+    private FileChannel channel = null;
+
     private long nextFlushTime = 0L;
 
     /**
@@ -208,6 +215,7 @@ class PradarRollingFileAppender extends PradarAppender {
             }
             FileOutputStream ostream = new FileOutputStream(logFile, true); // 必须 true 保证 O_APPEND
             this.bos = new BufferedOutputStream(ostream, bufferSize);
+            this.channel = ostream.getChannel();
             this.outputByteSize = logFile.length();
         } catch (Throwable e) {
             doSelfLog("[ERROR] Fail to create file to write: " + filePath + ", error=" + e.getMessage());
@@ -246,6 +254,57 @@ class PradarRollingFileAppender extends PradarAppender {
         }
     }
 
+    /**
+     * 通过 gathering write 写入批量编码好的日志，缓冲需要已经 flip 过。
+     * 注意这种方式不会像 {@link #append(String)} 一样在多进程写同一个文件时截断超过 4KB 的日志，
+     * 所以 {@link #isShared()} 为 true 时调用方需要改为逐条 append
+     *
+     * @param srcs   日志缓冲
+     * @param offset 第一个缓冲的位置
+     * @param length 缓冲个数
+     * @return 写入的字节数
+     */
+    long write(ByteBuffer[] srcs, int offset, int length) {
+        final BufferedOutputStream bos = this.bos;
+        final FileChannel channel = this.channel;
+        if (bos == null || channel == null) {
+            return 0L;
+        }
+        try {
+            waitUntilRollFinish();
+
+            // 先把通过 append 写入的日志刷新出去，保证日志的顺序
+            bos.flush();
+            final ByteBuffer last = srcs[offset + length - 1];
+            long written = 0L;
+            // gathering write 可能只写入部分数据，按顺序写完前面的缓冲才会写最后一个，循环到最后一个缓冲写完为止
+            while (last.hasRemaining()) {
+                written += channel.write(srcs, offset, length);
+            }
+            outputByteSize += written;
+            nextFlushTime = System.currentTimeMillis() + LOG_FLUSH_INTERVAL;
+
+            if (outputByteSize >= maxFileSize) {
+                rollOver();
+            }
+            return written;
+        } catch (Exception e) {
+            doSelfLog("[ERROR] fail to write log to file " + filePath + ", error=" + e.getMessage());
+            close();
+            setFile();
+            return 0L;
+        }
+    }
+
+    /**
+     * 是否发现有其他进程在写同一个文件，这时只能逐条写入以保证单次写入不超过 4KB
+     *
+     * @return 是否多进程共享
+     */
+    boolean isShared() {
+        return multiProcessDetected;
+    }
+
     @Override
     public void flush() {
         final BufferedOutputStream bos = this.bos;
@@ -333,6 +392,7 @@ class PradarRollingFileAppender extends PradarAppender {
                 doSelfLog("[WARN] Fail to close OutputStream: " + e.getMessage());
             }
             this.bos = null;
+            this.channel = null;
         }
     }
 
@@ -37,6 +37,19 @@ import org.apache.commons.lang.StringUtils;
  */
 public abstract class TraceEncoder {
     public abstract void encode(BaseContext ctx, PradarAppender appender) throws IOException;
+
+    /**
+     * 把日志直接编码到批量写的字节缓冲中
+     *
+     * @param ctx      日志
+     * @param buffer   字节缓冲
+     * @param appender 缓冲写满时写出的文件
+     * @return 不支持直接编码时返回 false，调用方需要退回到 {@link #encode(BaseContext, PradarAppender)}
+     * @throws IOException 写文件失败
+     */
+    boolean encode(BaseContext ctx, PradarLogBuffer buffer, PradarRollingFileAppender appender) throws IOException {
+        return false;
+    }
 }
 
 /**
@@ -49,26 +62,52 @@ class TraceInvokeContextEncoder extends TraceEncoder {
 
     @Override
     public void encode(BaseContext base, PradarAppender eea) throws IOException {
+        AbstractContext ctx = format(base);
+        if (ctx == null) {
+            return;
+        }
+        eea.append(buffer.toString());
+        ctx.destroy();
+    }
+
+    @Override
+    boolean encode(BaseContext base, PradarLogBuffer logBuffer, PradarRollingFileAppender appender) throws IOException {
+        AbstractContext ctx = format(base);
+        if (ctx == null) {
+            return true;
+        }
+        logBuffer.append(buffer, appender);
+        ctx.destroy();
+        return true;
+    }
+
+    /**
+     * 把日志格式化到 buffer 中
+     *
+     * @return 不需要输出时返回 null
+     */
+    private AbstractContext format(BaseContext base) {
         AbstractContext ctx;
         if (base instanceof AbstractContext) {
             ctx = (AbstractContext) base;
         } else {
-            return;
+            return null;
         }
         attachment(ctx);
         //Pradar TODO
         StringBuilder buffer = this.buffer;
         buffer.delete(0, buffer.length());
-        buffer.append(ctx.getTraceId() == null ? "" : ctx.getTraceId()).append('|')
-                .append(ctx.getStartTime()).append('|');
+        ctx.appendTraceId(buffer);
+        buffer.append('|').append(ctx.getStartTime()).append('|');
         // 新版本兼容老版本的控制台和大数据
         if (StringUtils.isNotBlank(Pradar.PRADAR_ENV_CODE)) {
             buffer.append(StringUtils.isBlank(Pradar.PRADAR_TENANT_KEY) ? "" : Pradar.PRADAR_TENANT_KEY).append('|')
                     .append(StringUtils.isBlank(Pradar.PRADAR_ENV_CODE) ? "" : Pradar.PRADAR_ENV_CODE).append('|')
                     .append(StringUtils.isBlank(Pradar.PRADAR_USER_ID) ? "" : Pradar.PRADAR_USER_ID).append('|');
         }
-        buffer.append(Pradar.AGENT_ID_NOT_CONTAIN_USER_INFO).append('|')
-                .append(ctx.getInvokeId() == null ? "" : ctx.getInvokeId()).append('|')
+        buffer.append(Pradar.AGENT_ID_NOT_CONTAIN_USER_INFO).append('|');
+        ctx.appendInvokeId(buffer);
+        buffer.append('|')
                 .append(ctx.getInvokeType()).append('|')
                 .append(PradarCoreUtils.makeLogSafe(AppNameUtils.appName())).append('|')
                 .append(ctx.getLogTime() - ctx.getStartTime()).append('|')
@@ -84,11 +123,11 @@ class TraceInvokeContextEncoder extends TraceEncoder {
                         ResultSerializer.serializeRequest(ctx.getResponse() == null ? "" : ctx.getResponse(),
                                 Pradar.getPluginRequestSize()))).append('|')
                 .append(TraceCoreUtils.combineString(ctx.isClusterTest(), ctx.isDebug(),
-                        "0".equals(ctx.invokeId),
+                        ctx.invokeId != null && ctx.invokeId.is(Pradar.ROOT_INVOKE_ID),
                         TraceCoreUtils.isServer(ctx)))
                 .append("|")
                 .append(PradarCoreUtils.makeLogSafe(ctx.getCallBackMsg() == null ? "" : ctx.getCallBackMsg()));
-        final int samplingInterval = PradarSwitcher.getSamplingInterval();
+        final int samplingInterval = ctx.getSamplingInterval();
         buffer.append("|#").append(samplingInterval);
         buffer.append("|@").append(TraceCoreUtils.attributes(ctx.traceAppName, ctx.traceServiceName, ctx.traceMethod))
                 .append("|@")
@@ -98,8 +137,7 @@ class TraceInvokeContextEncoder extends TraceEncoder {
                 .append(ctx.ext == null ? "" : ctx.ext);
         ctx.logContextData(buffer);
         buffer.append(PradarCoreUtils.NEWLINE);
-        eea.append(buffer.toString());
-        ctx.destroy();
+        return ctx;
     }
 
     void attachment(AbstractContext ctx) {
@@ -181,14 +219,28 @@ class TraceTraceEncoder extends TraceEncoder {
 
     @Override
     public void encode(BaseContext ctx, PradarAppender eea) throws IOException {
+        format(ctx);
+        eea.append(buffer.toString());
+    }
+
+    @Override
+    boolean encode(BaseContext ctx, PradarLogBuffer logBuffer, PradarRollingFileAppender appender) throws IOException {
+        format(ctx);
+        logBuffer.append(buffer, appender);
+        return true;
+    }
+
+    private void format(BaseContext ctx) {
         final char entryDelimiter = this.entryDelimiter;
         StringBuilder buffer = this.buffer;
         buffer.delete(0, buffer.length());
-        buffer.append(ctx.getTraceId()).append(entryDelimiter)// traceId
+        ctx.appendTraceId(buffer);
+        buffer.append(entryDelimiter)// traceId
                 .append(ctx.getTraceAppName()).append(entryDelimiter)
                 .append(ctx.getUpAppName()).append(entryDelimiter)
-                .append(ctx.getLogTime()).append(entryDelimiter)
-                .append(ctx.getInvokeId()).append(entryDelimiter)// rpcId
+                .append(ctx.getLogTime()).append(entryDelimiter);
+        ctx.appendInvokeId(buffer);
+        buffer.append(entryDelimiter)// rpcId
                 .append(ctx.getServiceName()).append(entryDelimiter)// bizKey
                 .append(ctx.getMethodName()).append(entryDelimiter)// queryKey
                 .append(ctx.getLogType()).append(entryDelimiter)// clusterTest
@@ -202,6 +254,5 @@ class TraceTraceEncoder extends TraceEncoder {
             buffer.append(ctx.callBackMsg);
         }
         buffer.append(PradarCoreUtils.NEWLINE);
-        eea.append(buffer.toString());
     }
 }
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+/**
+ * traceId
+ * <p>
+ * 本机生成的 traceId 使用两个 long 保存：ip(32 位)、pid(16 位)、nextId(16 位) 以及生成时的时间戳，
+ * 字符串形式只有在需要传输或者输出日志时才会生成一次并缓存下来，字符串格式与原来的格式完全一致：
+ * 8 位 16 进制 ip + 13 位时间戳 + 4 位 nextId + 'd' + 4 位 16 进制 pid
+ * <p>
+ * 上游传递过来的或者外部指定的 traceId 直接使用原始的字符串
+ */
+public final class TraceId {
+
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final static char PID_FLAG = 'd';
+
+    /**
+     * ip(32 位) | pid(16 位) | nextId(16 位)
+     */
+    private final long high;
+    /**
+     * 生成时的时间戳
+     */
+    private final long low;
+
+    private final boolean compact;
+
+    /**
+     * 字符串形式，compact 时延迟生成
+     */
+    private String value;
+
+    private TraceId(String value) {
+        this.high = 0L;
+        this.low = 0L;
+        this.compact = false;
+        this.value = value;
+    }
+
+    TraceId(int ip, int pid, int nextId, long timestamp) {
+        this.high = ((ip & 0xFFFFFFFFL) << 32) | ((pid & 0xFFFFL) << 16) | (nextId & 0xFFFFL);
+        this.low = timestamp;
+        this.compact = true;
+    }
+
+    /**
+     * 使用字符串形式的 traceId 构建
+     *
+     * @param traceId traceId
+     * @return traceId 为 null 时返回 null
+     */
+    public static TraceId of(String traceId) {
+        return traceId == null ? null : new TraceId(traceId);
+    }
+
+    /**
+     * 获取 traceId 中的 nextId，用于采样判断，不需要生成字符串
+     *
+     * @return traceId 格式不正确时返回 -1
+     */
+    public int getNextId() {
+        if (compact) {
+            return (int) (high & 0xFFFFL);
+        }
+        return TraceIdGenerator.getNextId(value);
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * 直接追加到日志缓冲中，字符串形式还没有生成时不再单独生成字符串
+     *
+     * @param buffer 日志缓冲
+     */
+    public void appendTo(StringBuilder buffer) {
+        String v = value;
+        if (v != null) {
+            buffer.append(v);
+            return;
+        }
+        int ip = (int) (high >>> 32);
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            buffer.append(HEX_DIGITS[(ip >>> shift) & 0xF]);
+        }
+        buffer.append(low);
+        int nextId = (int) (high & 0xFFFFL);
+        if (nextId <= 10) {
+            buffer.append("000");
+        } else if (nextId <= 100) {
+            buffer.append("00");
+        } else if (nextId <= 1000) {
+            buffer.append('0');
+        }
+        buffer.append(nextId).append(PID_FLAG);
+        int pid = (int) ((high >>> 16) & 0xFFFFL);
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            buffer.append(HEX_DIGITS[(pid >>> shift) & 0xF]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String v = value;
+        if (v == null) {
+            StringBuilder buffer = new StringBuilder(32);
+            appendTo(buffer);
+            v = value = buffer.toString();
+        }
+        return v;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TraceId)) {
+            return false;
+        }
+        TraceId other = (TraceId) o;
+        if (compact && other.compact) {
+            return high == other.high && low == other.low;
+        }
+        return toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
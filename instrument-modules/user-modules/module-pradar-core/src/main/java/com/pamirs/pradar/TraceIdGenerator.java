@@ -26,6 +26,11 @@ public class TraceIdGenerator {
     private static String IP_int = "255255255255";
     private static String PID = "0000";
     private static char PID_FLAG = 'd';
+    /**
+     * IP_16 与 PID 对应的数值，用于生成 {@link TraceId}
+     */
+    private static int IP_BITS = 0xFFFFFFFF;
+    private static int PID_BITS = 0;
 
     private static AtomicInteger count = new AtomicInteger(1000);
 
@@ -35,9 +40,11 @@ public class TraceIdGenerator {
             if (ipAddress != null) {
                 IP_16 = getIP_16(ipAddress);
                 IP_int = getIP_int(ipAddress);
+                IP_BITS = (int) getIpBits(ipAddress);
             }
 
             PID = getHexPid(getPid());
+            PID_BITS = Integer.parseInt(PID, 16);
         } catch (Throwable e) {
         }
     }
@@ -94,7 +101,20 @@ public class TraceIdGenerator {
      * @return
      */
     public static String generate(boolean isClusterTestRequest) {
-        return getTraceId(IP_16, System.currentTimeMillis(), getNextId(isClusterTestRequest));
+        return generateCompact(isClusterTestRequest).toString();
+    }
+
+    /**
+     * 生成 traceId，字符串形式在第一次使用时才生成，格式与 {@link #generate(boolean)} 一致
+     *
+     * @param isClusterTestRequest 是否是压测流量
+     * @return
+     */
+    public static TraceId generateCompact(boolean isClusterTestRequest) {
+        if (IP_BITS == -1 && !"ffffffff".equals(IP_16)) {
+            return TraceId.of(getTraceId(IP_16, System.currentTimeMillis(), getNextId(isClusterTestRequest)));
+        }
+        return new TraceId(IP_BITS, PID_BITS, getNextId(isClusterTestRequest), System.currentTimeMillis());
     }
 
     /**
@@ -107,10 +127,25 @@ public class TraceIdGenerator {
      * @return
      */
     public static String generate(String ip, boolean isClusterTestRequest) {
+        return generateCompact(ip, isClusterTestRequest).toString();
+    }
+
+    /**
+     * 指定 ip 生成 traceId，字符串形式在第一次使用时才生成，格式与 {@link #generate(String, boolean)} 一致
+     *
+     * @param ip                   ip
+     * @param isClusterTestRequest 是否是压测流量
+     * @return
+     */
+    public static TraceId generateCompact(String ip, boolean isClusterTestRequest) {
         if (StringUtils.isNotBlank(ip) && validate(ip)) {
-            return getTraceId(getIP_16(ip), System.currentTimeMillis(), getNextId(isClusterTestRequest));
+            long ipBits = getIpBits(ip);
+            if (ipBits == -1) {
+                return TraceId.of(getTraceId(getIP_16(ip), System.currentTimeMillis(), getNextId(isClusterTestRequest)));
+            }
+            return new TraceId((int) ipBits, PID_BITS, getNextId(isClusterTestRequest), System.currentTimeMillis());
         } else {
-            return generate(isClusterTestRequest);
+            return generateCompact(isClusterTestRequest);
         }
     }
 
@@ -156,6 +191,32 @@ public class TraceIdGenerator {
         return sb.toString();
     }
 
+    /**
+     * 获取 {@link #getIP_16(String)} 对应的数值
+     *
+     * @return 无法用 32 位表示时返回 -1
+     */
+    private static long getIpBits(String ip) {
+        String[] ips = StringUtils.split(ip, '.');
+        if (ips.length != 4) {
+            return -1;
+        }
+        long bits = 0;
+        for (int i = ips.length - 1; i >= 0; --i) {
+            int value;
+            try {
+                value = Integer.parseInt(ips[i]);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            if (value < 0 || value > 255) {
+                return -1;
+            }
+            bits = (bits << 8) | value;
+        }
+        return bits;
+    }
+
     private static String getIP_int(String ip) {
         return ip.replace(".", "");
     }
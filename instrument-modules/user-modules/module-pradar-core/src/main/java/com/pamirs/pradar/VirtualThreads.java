@@ -0,0 +1,89 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 虚拟线程支持
+ * <p>
+ * {@link InvokeContext} 在虚拟线程上同样保存在 TTL 中，创建虚拟线程时会继承创建线程的上下文，池化的虚拟线程执行器由 TTL 在提交任务时包装。
+ * 只有关闭了 InheritableThreadLocal 继承的虚拟线程拿不到上下文，开启虚拟线程传递后，虚拟线程插件只在这些入口上
+ * 捕获 {@link InvokeContextSnapshot}，在虚拟线程开始执行任务时直接设置上下文。
+ * </p>
+ * <p>
+ * 虚拟线程的类固定为 java.lang.VirtualThread，所以判断是否虚拟线程只需要比较一次 Class，低版本 JDK 上始终为 FALSE
+ * </p>
+ */
+public final class VirtualThreads {
+    private final static Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+    public final static String VIRTUAL_THREAD_CLASS_NAME = "java.lang.VirtualThread";
+
+    private final static Class<?> VIRTUAL_THREAD_CLASS = findVirtualThreadClass();
+
+    /**
+     * 是否开启虚拟线程上下文传递，由虚拟线程插件在增强成功后开启
+     */
+    private static volatile boolean propagationEnabled = false;
+
+    private VirtualThreads() {
+    }
+
+    private static Class<?> findVirtualThreadClass() {
+        try {
+            return Class.forName(VIRTUAL_THREAD_CLASS_NAME, false, null);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * 当前 JVM 是否支持虚拟线程
+     *
+     * @return TRUE:支持；FALSE：不支持
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_CLASS != null;
+    }
+
+    /**
+     * 判断线程是否是虚拟线程
+     *
+     * @param thread 线程
+     * @return TRUE:是；FALSE：否
+     */
+    public static boolean isVirtual(Thread thread) {
+        return VIRTUAL_THREAD_CLASS != null && thread != null && thread.getClass() == VIRTUAL_THREAD_CLASS;
+    }
+
+    public static boolean isPropagationEnabled() {
+        return propagationEnabled;
+    }
+
+    /**
+     * 开启或关闭虚拟线程上下文传递，不支持虚拟线程的 JVM 上不会开启
+     *
+     * @param enabled 是否开启
+     */
+    public static void setPropagationEnabled(boolean enabled) {
+        final boolean value = enabled && isSupported();
+        if (propagationEnabled != value) {
+            propagationEnabled = value;
+            LOGGER.info("virtual thread context propagation is {}.", value ? "enabled" : "disabled");
+        }
+    }
+}
@@ -43,7 +43,23 @@ public abstract class HttpUtils {
         return doGet(hostPort.host, hostPort.port, hostPort.url);
     }
 
+    /**
+     * 发起 GET 请求，并携带额外的请求头，如条件请求的 If-None-Match
+     *
+     * @param url     请求地址
+     * @param headers 额外的请求头，可以为 null
+     * @return 请求结果
+     */
+    public static HttpResult doGet(String url, Map<String, String> headers) {
+        HostPort hostPort = getHostPortUrlFromUrl(url);
+        return doGet(hostPort.host, hostPort.port, hostPort.url, headers);
+    }
+
     public static HttpResult doGet(String host, int port, String url) {
+        return doGet(host, port, url, null);
+    }
+
+    public static HttpResult doGet(String host, int port, String url, Map<String, String> headers) {
         InputStream input = null;
         OutputStream output = null;
         Socket socket = null;
@@ -62,6 +78,13 @@ public abstract class HttpUtils {
                     }
                 }
             }
+            if (headers != null) {
+                for (Map.Entry<String, String> entry : headers.entrySet()) {
+                    if (!StringUtils.isBlank(entry.getValue())) {
+                        request.append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+                    }
+                }
+            }
             request.append("\r\n");
 
             socket = new Socket();
@@ -82,10 +105,14 @@ public abstract class HttpUtils {
                 // ignore
             }
 
-            Map<String, List<String>> headers = readHeaders(input);
-            input = wrapperInput(headers, input);
+            Map<String, List<String>> responseHeaders = readHeaders(input);
+            // 304 没有响应体，保持连接时继续读取会一直阻塞到超时
+            if (status == 304) {
+                return HttpResult.result(status, "", responseHeaders);
+            }
+            input = wrapperInput(responseHeaders, input);
             String result = toString(input);
-            return HttpResult.result(status, result);
+            return HttpResult.result(status, result, responseHeaders);
         } catch (Throwable e) {
             return HttpResult.result(500, Throwables.getStackTraceAsString(e));
         } finally {
@@ -157,7 +184,7 @@ public abstract class HttpUtils {
             Map<String, List<String>> headers = readHeaders(input);
             input = wrapperInput(headers, input);
             String result = toString(input);
-            return HttpResult.result(status, result);
+            return HttpResult.result(status, result, headers);
         } catch (IOException e) {
             return HttpResult.result(500, Throwables.getStackTraceAsString(e));
         } finally {
@@ -372,6 +399,10 @@ public abstract class HttpUtils {
          * 结果
          */
         private String result;
+        /**
+         * 响应头
+         */
+        private Map<String, List<String>> headers;
 
         public static HttpResult result(int status, String result) {
             HttpResult httpResult = new HttpResult();
@@ -380,6 +411,12 @@ public abstract class HttpUtils {
             return httpResult;
         }
 
+        public static HttpResult result(int status, String result, Map<String, List<String>> headers) {
+            HttpResult httpResult = result(status, result);
+            httpResult.setHeaders(headers);
+            return httpResult;
+        }
+
         public int getStatus() {
             return status;
         }
@@ -399,5 +436,35 @@ public abstract class HttpUtils {
         public void setResult(String result) {
             this.result = result;
         }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public void setHeaders(Map<String, List<String>> headers) {
+            this.headers = headers;
+        }
+
+        /**
+         * 获取响应头，响应头名称不区分大小写
+         *
+         * @param name 响应头名称
+         * @return 响应头的第一个值，不存在时返回 null
+         */
+        public String getHeader(String name) {
+            if (headers == null) {
+                return null;
+            }
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        public boolean isNotModified() {
+            return status == 304;
+        }
     }
 }
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+/**
+ * 上下文读取器，从载体(请求头、附件、消息属性等)中直接读取上下文字段
+ *
+ * @param <C> 载体类型
+ * @see com.pamirs.pradar.Pradar#fromCarrier(Object, ContextGetter)
+ */
+public interface ContextGetter<C> {
+
+    /**
+     * 读取一个上下文字段
+     *
+     * @param carrier 载体
+     * @param key     字段名
+     * @return 字段值，不存在时返回 null
+     */
+    String get(C carrier, String key);
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+/**
+ * 上下文写入器，把需要远程传输的上下文字段直接写入载体(请求头、附件、消息属性等)
+ * <p>
+ * 与 {@link com.pamirs.pradar.Pradar#getInvokeContextTransformMap()} 不同，
+ * 写入过程不会构造中间的 Map，插件可以把实现作为常量复用
+ *
+ * @param <C> 载体类型
+ * @see com.pamirs.pradar.Pradar#injectInvokeContext(Object, ContextSetter)
+ */
+public interface ContextSetter<C> {
+
+    /**
+     * 写入一个上下文字段
+     *
+     * @param carrier 载体
+     * @param key     字段名
+     * @param value   字段值
+     */
+    void set(C carrier, String key, String value);
+}
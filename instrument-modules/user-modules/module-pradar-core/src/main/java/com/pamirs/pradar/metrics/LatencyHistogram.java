@@ -0,0 +1,221 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁分段的耗时直方图，桶的划分方式与 HdrHistogram 相同：
+ * 小于 64 的值每个值一个桶，之后每个 2 的幂区间再等分成 32 个桶，相对误差不超过 1/32
+ * <p>
+ * 记录时按线程 ID 选择分段，每个分段是一个 {@link AtomicLongArray}，只做 CAS 自增，不加锁；
+ * 分段在第一次使用时才分配。{@link #drainTo(Snapshot)} 逐桶 getAndSet(0) 取走当前周期的数据，
+ * 与并发写入之间不会丢数，只会有少量记录落到下一个周期
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 可记录的最大值，超过的都计入最后一个桶，单位毫秒，约 4.6 小时
+     */
+    public static final long MAX_VALUE = (1L << 24) - 1;
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    private static final int MAX_EXPONENT = 63 - Long.numberOfLeadingZeros(MAX_VALUE);
+
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF_COUNT;
+
+    /**
+     * 每个分段在桶之后额外存放总耗时和最大值
+     */
+    private static final int SUM_INDEX = BUCKET_COUNT;
+    private static final int MAX_INDEX = BUCKET_COUNT + 1;
+    private static final int STRIPE_LENGTH = BUCKET_COUNT + 2;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+    private final int mask;
+
+    /**
+     * @param stripes 分段数，会向上取整为 2 的幂
+     */
+    public LatencyHistogram(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new AtomicReferenceArray<AtomicLongArray>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param value 耗时，单位毫秒，负数按 0 处理
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        AtomicLongArray stripe = stripe();
+        stripe.incrementAndGet(indexOf(value));
+        stripe.addAndGet(SUM_INDEX, value);
+        long max = stripe.get(MAX_INDEX);
+        while (value > max) {
+            if (stripe.compareAndSet(MAX_INDEX, max, value)) {
+                break;
+            }
+            max = stripe.get(MAX_INDEX);
+        }
+    }
+
+    private AtomicLongArray stripe() {
+        int index = (int) Thread.currentThread().getId() & mask;
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripe = new AtomicLongArray(STRIPE_LENGTH);
+            if (!stripes.compareAndSet(index, null, stripe)) {
+                stripe = stripes.get(index);
+            }
+        }
+        return stripe;
+    }
+
+    /**
+     * 把当前累积的数据取出并清零，合并到 snapshot 中
+     *
+     * @param snapshot 由调用方复用的快照，调用前需要 {@link Snapshot#reset()}
+     */
+    public void drainTo(Snapshot snapshot) {
+        for (int i = 0, len = stripes.length(); i < len; i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            long[] counts = snapshot.counts;
+            for (int j = 0; j < BUCKET_COUNT; j++) {
+                if (stripe.get(j) != 0) {
+                    long c = stripe.getAndSet(j, 0);
+                    counts[j] += c;
+                    snapshot.count += c;
+                }
+            }
+            snapshot.sum += stripe.getAndSet(SUM_INDEX, 0);
+            snapshot.max = Math.max(snapshot.max, stripe.getAndSet(MAX_INDEX, 0));
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT
+            + (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * 桶内的最小值
+     */
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return subBucket << shift;
+    }
+
+    /**
+     * 一个周期内的直方图快照，只在刷新线程内使用
+     */
+    public static final class Snapshot {
+        final long[] counts = new long[BUCKET_COUNT];
+        long count;
+        long sum;
+        long max;
+
+        public void reset() {
+            Arrays.fill(counts, 0L);
+            count = 0L;
+            sum = 0L;
+            max = 0L;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMin() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if (counts[i] != 0) {
+                    return Math.min(lowestValueAt(i), max);
+                }
+            }
+            return 0L;
+        }
+
+        /**
+         * 获取分位值，返回所在桶的最大值，不会超过记录到的最大值
+         *
+         * @param percentile 分位，取值 (0, 100]
+         * @return 分位值，没有数据时返回 0
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0L;
+            }
+            long target = (long) Math.ceil(percentile / 100.0D * count);
+            if (target < 1) {
+                target = 1;
+            }
+            long total = 0L;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                total += counts[i];
+                if (total >= target) {
+                    return Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.metrics;
+
+/**
+ * 指标聚合的维度：服务、方法、中间件、是否压测、结果码
+ */
+final class MetricKey {
+    final String middlewareName;
+    final String serviceName;
+    final String methodName;
+    final boolean clusterTest;
+    final String resultCode;
+    private final int hash;
+
+    MetricKey(String middlewareName, String serviceName, String methodName, boolean clusterTest,
+        String resultCode) {
+        this.middlewareName = middlewareName == null ? "" : middlewareName;
+        this.serviceName = serviceName == null ? "" : serviceName;
+        this.methodName = methodName == null ? "" : methodName;
+        this.clusterTest = clusterTest;
+        this.resultCode = resultCode == null ? "" : resultCode;
+        int h = this.middlewareName.hashCode();
+        h = 31 * h + this.serviceName.hashCode();
+        h = 31 * h + this.methodName.hashCode();
+        h = 31 * h + (clusterTest ? 1 : 0);
+        h = 31 * h + this.resultCode.hashCode();
+        this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricKey)) {
+            return false;
+        }
+        MetricKey that = (MetricKey) o;
+        return hash == that.hash
+            && clusterTest == that.clusterTest
+            && serviceName.equals(that.serviceName)
+            && methodName.equals(that.methodName)
+            && resultCode.equals(that.resultCode)
+            && middlewareName.equals(that.middlewareName);
+    }
+}
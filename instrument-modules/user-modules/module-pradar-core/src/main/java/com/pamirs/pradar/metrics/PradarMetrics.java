@@ -0,0 +1,223 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.metrics;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pamirs.pradar.AppNameUtils;
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.PradarCoreUtils;
+import com.pamirs.pradar.ResultCode;
+import com.shulie.instrument.simulator.api.executors.ExecutorServiceFactory;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 调用耗时的进程内聚合
+ * <p>
+ * trace 日志受采样率控制，下游根据采样后的 trace 还原的分位值和错误率都不准确。
+ * 这里对每一个结束的调用都按 (中间件, 服务, 方法, 是否压测, 结果码) 累计到 {@link LatencyHistogram}，
+ * 按周期输出一行聚合记录到 pradar_metrics.log，由日志推送模块按 {@link Pradar#PRADAR_METRICS_LOG_DATA_TYPE} 推送：
+ * <p>
+ * appName|timestamp|[tenantKey|envCode|userId|]agentId|interval|middlewareName|serviceName|methodName
+ * |clusterTest|resultCode|error|count|sum|min|max|p50|p90|p99|p999|version
+ */
+public final class PradarMetrics {
+    private final static Logger logger = LoggerFactory.getLogger(PradarMetrics.class);
+
+    /**
+     * 是否开启指标聚合，默认关闭
+     */
+    public static final String METRICS_ENABLED = "pradar.metrics.enabled";
+    /**
+     * 输出周期，单位秒
+     */
+    public static final String METRICS_INTERVAL = "pradar.metrics.interval";
+    /**
+     * 最多聚合的维度数，超过之后新的服务和方法合并到 {@link #OVERFLOW_NAME}
+     */
+    public static final String METRICS_MAX_KEYS = "pradar.metrics.max.keys";
+
+    static final String OVERFLOW_NAME = "__overflow__";
+
+    /**
+     * 连续多少个周期没有数据时移除该维度
+     */
+    private static final int MAX_IDLE_INTERVALS = 6;
+
+    private static final boolean ENABLED = Pradar.getBooleanProperty(METRICS_ENABLED, false);
+    private static final int INTERVAL = Math.max(1, Pradar.getIntProperty(METRICS_INTERVAL, 10));
+    private static final int MAX_KEYS = Pradar.getIntProperty(METRICS_MAX_KEYS, 2048);
+    private static final int STRIPES = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final ConcurrentHashMap<MetricKey, Metric> METRICS = new ConcurrentHashMap<MetricKey, Metric>();
+    private static final AtomicInteger KEY_COUNT = new AtomicInteger();
+
+    private static ScheduledFuture future;
+    private static final LatencyHistogram.Snapshot SNAPSHOT = new LatencyHistogram.Snapshot();
+    private static final StringBuilder BUFFER = new StringBuilder(256);
+    private static int printLogCount = 2;
+
+    private PradarMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @param middlewareName 中间件名称
+     * @param serviceName    服务名称
+     * @param methodName     方法名称
+     * @param clusterTest    是否压测流量
+     * @param resultCode     结果码
+     * @param cost           耗时，单位毫秒
+     */
+    public static void record(String middlewareName, String serviceName, String methodName, boolean clusterTest,
+        String resultCode, long cost) {
+        MetricKey key = new MetricKey(middlewareName, serviceName, methodName, clusterTest, resultCode);
+        Metric metric = METRICS.get(key);
+        if (metric == null) {
+            metric = register(key);
+        }
+        metric.histogram.record(cost);
+    }
+
+    private static Metric register(MetricKey key) {
+        if (KEY_COUNT.get() >= MAX_KEYS) {
+            key = new MetricKey(key.middlewareName, OVERFLOW_NAME, OVERFLOW_NAME, key.clusterTest, key.resultCode);
+            Metric metric = METRICS.get(key);
+            if (metric != null) {
+                return metric;
+            }
+        }
+        Metric metric = new Metric(key);
+        Metric old = METRICS.putIfAbsent(key, metric);
+        if (old != null) {
+            return old;
+        }
+        KEY_COUNT.incrementAndGet();
+        return metric;
+    }
+
+    /**
+     * 启动周期输出任务
+     */
+    public static synchronized void start() {
+        if (!ENABLED || future != null) {
+            return;
+        }
+        future = ExecutorServiceFactory.getFactory().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止周期输出任务，并输出最后一个周期的数据
+     */
+    public static synchronized void stop() {
+        if (future == null) {
+            return;
+        }
+        if (!future.isCancelled() && !future.isDone()) {
+            future.cancel(false);
+        }
+        future = null;
+        flush();
+        METRICS.clear();
+        KEY_COUNT.set(0);
+    }
+
+    static synchronized void flush() {
+        try {
+            long timeStamp = System.currentTimeMillis() / 1000;
+            Iterator<Map.Entry<MetricKey, Metric>> it = METRICS.entrySet().iterator();
+            while (it.hasNext()) {
+                Metric metric = it.next().getValue();
+                SNAPSHOT.reset();
+                metric.histogram.drainTo(SNAPSHOT);
+                if (SNAPSHOT.getCount() == 0) {
+                    if (++metric.idleIntervals >= MAX_IDLE_INTERVALS) {
+                        it.remove();
+                        KEY_COUNT.decrementAndGet();
+                    }
+                    continue;
+                }
+                metric.idleIntervals = 0;
+                Pradar.commitMetricsLog(format(metric.key, SNAPSHOT, timeStamp));
+            }
+        } catch (Throwable e) {
+            if (printLogCount > 0) {
+                printLogCount--;
+                logger.error("write pradar metrics error!", e);
+            }
+        }
+    }
+
+    private static String format(MetricKey key, LatencyHistogram.Snapshot snapshot, long timeStamp) {
+        StringBuilder buffer = BUFFER;
+        buffer.setLength(0);
+        buffer.append(AppNameUtils.appName()).append('|').append(timeStamp).append('|');
+        // 新版本兼容老版本的控制台和大数据
+        if (StringUtils.isNotBlank(Pradar.PRADAR_ENV_CODE)) {
+            buffer.append(StringUtils.isBlank(Pradar.PRADAR_TENANT_KEY) ? "" : Pradar.PRADAR_TENANT_KEY).append('|')
+                .append(Pradar.PRADAR_ENV_CODE).append('|')
+                .append(StringUtils.isBlank(Pradar.PRADAR_USER_ID) ? "" : Pradar.PRADAR_USER_ID).append('|');
+        }
+        buffer.append(Pradar.AGENT_ID_NOT_CONTAIN_USER_INFO).append('|')
+            .append(INTERVAL).append('|')
+            .append(PradarCoreUtils.makeLogSafe(key.middlewareName)).append('|')
+            .append(PradarCoreUtils.makeLogSafe(key.serviceName)).append('|')
+            .append(PradarCoreUtils.makeLogSafe(key.methodName)).append('|')
+            .append(key.clusterTest ? Pradar.PRADAR_CLUSTER_TEST_ON : Pradar.PRADAR_CLUSTER_TEST_OFF).append('|')
+            .append(PradarCoreUtils.makeLogSafe(key.resultCode)).append('|')
+            .append(ResultCode.isOk(key.resultCode) ? 0 : 1).append('|')
+            .append(snapshot.getCount()).append('|')
+            .append(snapshot.getSum()).append('|')
+            .append(snapshot.getMin()).append('|')
+            .append(snapshot.getMax()).append('|')
+            .append(snapshot.getValueAtPercentile(50.0D)).append('|')
+            .append(snapshot.getValueAtPercentile(90.0D)).append('|')
+            .append(snapshot.getValueAtPercentile(99.0D)).append('|')
+            .append(snapshot.getValueAtPercentile(99.9D)).append('|')
+            .append(Pradar.PRADAR_METRICS_LOG_VERSION)
+            .append(PradarCoreUtils.NEWLINE);
+        return buffer.toString();
+    }
+
+    private static final class Metric {
+        final MetricKey key;
+        final LatencyHistogram histogram = new LatencyHistogram(STRIPES);
+        /**
+         * 只在刷新线程中访问
+         */
+        int idleIntervals;
+
+        Metric(MetricKey key) {
+            this.key = key;
+        }
+    }
+}
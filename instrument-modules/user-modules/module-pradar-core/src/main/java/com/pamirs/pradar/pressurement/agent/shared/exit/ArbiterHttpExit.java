@@ -16,7 +16,6 @@ package com.pamirs.pradar.pressurement.agent.shared.exit;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -42,25 +41,15 @@ public class ArbiterHttpExit implements Exit {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ArbiterHttpExit.class);
 
-    private static LoadingCache<String, MatchConfig> patternCache = CacheBuilder.newBuilder()
-            .maximumSize(300).expireAfterAccess(5 * 60, TimeUnit.SECONDS).build(
-                    new CacheLoader<String, MatchConfig>() {
-                        @Override
-                        public MatchConfig load(String name) throws Exception {
-                            Set<MatchConfig> urlWhiteList = GlobalConfig.getInstance().getUrlWhiteList();
-                            if (urlWhiteList != null) {
-                                for (MatchConfig matchConfig : urlWhiteList) {
-                                    /*   MatchConfig matching = matching(name, matchConfig);*/
-                                    MatchConfig matching = match(name, matchConfig);
-                                    if (null != matching && matching.isSuccess()) {
-                                        return matching;
-                                    }
-                                }
-                            }
-                            return failure();
-                        }
-                    }
-            );
+    /**
+     * 编译后的 http 白名单，白名单变更时整体替换
+     */
+    private static volatile UrlWhiteListTrie urlWhiteListTrie;
+
+    /**
+     * 编译后的 rpc 白名单，白名单变更时整体替换
+     */
+    private static volatile RpcWhiteListIndex rpcWhiteListIndex;
 
     private static LoadingCache<String, MatchConfig> httpMatchResult = CacheBuilder.newBuilder()
             .maximumSize(300).expireAfterAccess(5 * 60, TimeUnit.SECONDS).build(
@@ -72,29 +61,59 @@ public class ArbiterHttpExit implements Exit {
                     }
             );
 
-    private static LoadingCache<String, MatchConfig> rpcMatchResult = CacheBuilder.newBuilder()
-            .maximumSize(100).expireAfterAccess(5 * 60, TimeUnit.SECONDS).build(
-                    new CacheLoader<String, MatchConfig>() {
-                        @Override
-                        public MatchConfig load(String name) throws Exception {
-                            return getRpcPassedCache(name);
-                        }
-                    }
-            );
-
     public static void release() {
-        patternCache.invalidateAll();
         httpMatchResult.invalidateAll();
-        rpcMatchResult.invalidateAll();
+        urlWhiteListTrie = null;
+        rpcWhiteListIndex = null;
     }
 
+    /**
+     * rpc 白名单变更时重新编译
+     */
     public static void clearRpcMatch() {
-        rpcMatchResult.invalidateAll();
+        rpcWhiteListIndex = RpcWhiteListIndex.compile(GlobalConfig.getInstance().getRpcNameWhiteList());
     }
 
+    /**
+     * http 白名单变更时重新编译
+     */
     public static void clearHttpMatch() {
+        urlWhiteListTrie = UrlWhiteListTrie.compile(GlobalConfig.getInstance().getUrlWhiteList());
         httpMatchResult.invalidateAll();
-        patternCache.invalidateAll();
+    }
+
+    /**
+     * 获取编译后的 http 白名单，如果白名单已经被替换则重新编译
+     */
+    private static UrlWhiteListTrie getUrlWhiteListTrie() {
+        final Set<MatchConfig> urlWhiteList = GlobalConfig.getInstance().getUrlWhiteList();
+        UrlWhiteListTrie trie = urlWhiteListTrie;
+        if (trie == null || trie.getSource() != urlWhiteList) {
+            trie = UrlWhiteListTrie.compile(urlWhiteList);
+            urlWhiteListTrie = trie;
+        }
+        return trie;
+    }
+
+    /**
+     * 获取编译后的 rpc 白名单，如果白名单已经被替换则重新编译
+     */
+    private static RpcWhiteListIndex getRpcWhiteListIndex() {
+        final Set<MatchConfig> rpcNameList = GlobalConfig.getInstance().getRpcNameWhiteList();
+        RpcWhiteListIndex index = rpcWhiteListIndex;
+        if (index == null || index.getSource() != rpcNameList) {
+            index = RpcWhiteListIndex.compile(rpcNameList);
+            rpcWhiteListIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * 使用 url 路径匹配 http 白名单
+     */
+    private static MatchConfig matchPattern(String path) {
+        MatchConfig config = getUrlWhiteListTrie().match(path);
+        return config != null ? config : failure();
     }
 
     public static MatchConfig failure() {
@@ -111,7 +130,7 @@ public class ArbiterHttpExit implements Exit {
         if (!PradarSwitcher.whiteListSwitchOn()) {
             return MatchConfig.success(new WhiteListStrategy());
         }
-        return rpcMatchResult.getUnchecked(className);
+        return getRpcPassed(className);
     }
 
     /**
@@ -126,54 +145,14 @@ public class ArbiterHttpExit implements Exit {
             return MatchConfig.success(new WhiteListStrategy());
         }
         if (StringUtils.isBlank(methodName)) {
-            return rpcMatchResult.getUnchecked(className);
+            return getRpcPassed(className);
         }
-        return rpcMatchResult.getUnchecked(className + '#' + methodName);
+        return getRpcPassed(className + '#' + methodName);
     }
 
-    private static MatchConfig getRpcPassedCache(String name) {
-        if (!PradarSwitcher.whiteListSwitchOn()) {
-            return MatchConfig.success(new WhiteListStrategy());
-        }
-        if (StringUtils.isBlank(name)) {
-            return failure();
-        }
-
-        MatchConfig config = new MatchConfig();
-        config.setUrl(name);
-
-        Set<MatchConfig> rpcNameList = GlobalConfig.getInstance().getRpcNameWhiteList();
-        if (rpcNameList == null) {
-            return failure();
-        }
-        Iterator<MatchConfig> iterator = rpcNameList.iterator();
-        while (iterator.hasNext()) {
-            MatchConfig next = iterator.next();
-            if (next.equals(config)) {
-                return next;
-            }
-        }
-
-        if (StringUtils.indexOf(name, '#') != -1) {
-            return failure();
-        } else {
-            for (MatchConfig matchConfig : rpcNameList) {
-                String value = matchConfig.getUrl();
-                final int index = StringUtils.indexOf(value, '#');
-                if (index == -1) {
-                    if (StringUtils.equals(value, name)) {
-                        return matchConfig;
-                    }
-                } else {
-                    // 如果白名单包含 # ，则取出类名进行比较
-                    String className = StringUtils.substring(value, index);
-                    if (StringUtils.equals(value, className)) {
-                        return matchConfig;
-                    }
-                }
-            }
-        }
-        return failure();
+    private static MatchConfig getRpcPassed(String name) {
+        MatchConfig config = getRpcWhiteListIndex().match(name);
+        return config != null ? config : failure();
     }
 
     /**
@@ -260,12 +239,12 @@ public class ArbiterHttpExit implements Exit {
                 /**
                  * 如果 url 为空或者是/没有其他值，则使用原 url 匹配一次
                  */
-                config = patternCache.getUnchecked(orgUrl);
+                config = matchPattern(orgUrl);
                 if (null != config) {
                     return config;
                 }
             }
-            config = patternCache.getUnchecked(url);
+            config = matchPattern(url);
             if (null != config) {
                 return config;
             }
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.exit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.pamirs.pradar.internal.config.MatchConfig;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 编译后的 rpc 白名单
+ * <p>
+ * 白名单在配置变更时整体编译成哈希表，匹配时只需要一次查找，耗时与白名单的数量无关。
+ * 匹配规则与原有的逐条比较保持一致：先按照 类名 或者 类名#方法名 完全匹配，
+ * 不带方法名的类名再使用以 # 开头的白名单兜底
+ * <p>
+ * 编译后不可变，可以被多个线程同时读取
+ */
+public final class RpcWhiteListIndex {
+
+    private final static RpcWhiteListIndex EMPTY = new RpcWhiteListIndex(null, new HashMap<String, MatchConfig>(), null);
+
+    private final Set<MatchConfig> source;
+    private final Map<String, MatchConfig> exact;
+    /**
+     * 以 # 开头的白名单，可以匹配所有不带方法名的类名
+     */
+    private final MatchConfig anyClass;
+
+    private RpcWhiteListIndex(Set<MatchConfig> source, Map<String, MatchConfig> exact, MatchConfig anyClass) {
+        this.source = source;
+        this.exact = exact;
+        this.anyClass = anyClass;
+    }
+
+    /**
+     * 编译白名单
+     *
+     * @param whiteList 白名单
+     * @return 编译后的白名单
+     */
+    public static RpcWhiteListIndex compile(Set<MatchConfig> whiteList) {
+        if (whiteList == null) {
+            return EMPTY;
+        }
+        Map<String, MatchConfig> exact = new HashMap<String, MatchConfig>(whiteList.size() * 2);
+        MatchConfig anyClass = null;
+        for (MatchConfig matchConfig : whiteList) {
+            if (matchConfig == null || matchConfig.getUrl() == null) {
+                continue;
+            }
+            if (!exact.containsKey(matchConfig.getUrl())) {
+                exact.put(matchConfig.getUrl(), matchConfig);
+            }
+            if (anyClass == null && StringUtils.indexOf(matchConfig.getUrl(), '#') == 0) {
+                anyClass = matchConfig;
+            }
+        }
+        return new RpcWhiteListIndex(whiteList, exact, anyClass);
+    }
+
+    /**
+     * 匹配 rpc 名称
+     *
+     * @param name 类名 或者 类名#方法名
+     * @return 匹配上的白名单，没有匹配上返回 null
+     */
+    public MatchConfig match(String name) {
+        if (StringUtils.isBlank(name)) {
+            return null;
+        }
+        MatchConfig config = exact.get(name);
+        if (config != null) {
+            return config;
+        }
+        if (StringUtils.indexOf(name, '#') != -1) {
+            return null;
+        }
+        return anyClass;
+    }
+
+    public Set<MatchConfig> getSource() {
+        return source;
+    }
+}
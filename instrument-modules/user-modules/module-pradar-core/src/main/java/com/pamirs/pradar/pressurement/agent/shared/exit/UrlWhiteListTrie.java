@@ -0,0 +1,226 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.exit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.pamirs.pradar.internal.config.MatchConfig;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 编译后的 http 白名单
+ * <p>
+ * 白名单在配置变更时整体编译成一棵按照路径段组织的前缀树，路径段为 {xxx} 的视为路径变量，
+ * 可以匹配任意一段。匹配时只需要按 url 的路径段逐层查找，耗时与白名单的数量无关。
+ * 匹配规则与 {@link HttpMatcher} 保持一致：
+ * <ul>
+ * <li>url 与白名单格式化(首位补 /，去掉末尾的 /)后完全相等则匹配</li>
+ * <li>包含路径变量的白名单要求段数相同，非变量段完全相等；全部都是路径变量的白名单不参与匹配</li>
+ * </ul>
+ * 同一个 url 匹配多条白名单时优先返回常量段更靠前的白名单
+ * <p>
+ * 编译后不可变，可以被多个线程同时读取
+ */
+public final class UrlWhiteListTrie {
+
+    private final static UrlWhiteListTrie EMPTY = new UrlWhiteListTrie(null, Collections.<String, MatchConfig>emptyMap(), new Node());
+
+    /**
+     * 编译时使用的白名单，用于判断白名单是否已经变更
+     */
+    private final Set<MatchConfig> source;
+    /**
+     * 格式化后的白名单到配置的映射，用于完全匹配
+     */
+    private final Map<String, MatchConfig> exact;
+    private final Node root;
+
+    private UrlWhiteListTrie(Set<MatchConfig> source, Map<String, MatchConfig> exact, Node root) {
+        this.source = source;
+        this.exact = exact;
+        this.root = root;
+    }
+
+    /**
+     * 编译白名单
+     *
+     * @param whiteList 白名单
+     * @return 编译后的白名单
+     */
+    public static UrlWhiteListTrie compile(Set<MatchConfig> whiteList) {
+        if (whiteList == null || whiteList.isEmpty()) {
+            return whiteList == null ? EMPTY : new UrlWhiteListTrie(whiteList, EMPTY.exact, EMPTY.root);
+        }
+        Map<String, MatchConfig> exact = new HashMap<String, MatchConfig>(whiteList.size() * 2);
+        Node root = new Node();
+        for (MatchConfig matchConfig : whiteList) {
+            if (matchConfig == null || StringUtils.isBlank(matchConfig.getUrl())) {
+                continue;
+            }
+            final String expression = format(matchConfig.getUrl().trim());
+            if (!exact.containsKey(expression)) {
+                exact.put(expression, matchConfig);
+            }
+            List<String> segments = split(expression);
+            if (segments == null) {
+                continue;
+            }
+            int variables = 0;
+            for (String segment : segments) {
+                if (isVariable(segment)) {
+                    variables++;
+                }
+            }
+            if (variables == 0 || variables == segments.size()) {
+                continue;
+            }
+            Node node = root;
+            for (String segment : segments) {
+                node = isVariable(segment) ? node.variable() : node.child(segment);
+            }
+            if (node.config == null) {
+                node.config = matchConfig;
+            }
+        }
+        return new UrlWhiteListTrie(whiteList, exact, root);
+    }
+
+    /**
+     * 匹配 url
+     *
+     * @param url url 路径
+     * @return 匹配上的白名单，没有匹配上返回 null
+     */
+    public MatchConfig match(String url) {
+        if (url == null) {
+            return null;
+        }
+        url = url.trim();
+        if (url.length() == 0) {
+            return null;
+        }
+        url = format(url);
+        MatchConfig config = exact.get(url);
+        if (config != null) {
+            return config;
+        }
+        if (root.children == null && root.variable == null) {
+            return null;
+        }
+        return match(root, url, 1);
+    }
+
+    /**
+     * 从 url 的 start 位置开始匹配下一段
+     */
+    private static MatchConfig match(Node node, String url, int start) {
+        if (start > url.length()) {
+            return node.config;
+        }
+        int end = url.indexOf('/', start);
+        if (end == -1) {
+            end = url.length();
+        }
+        if (end == start) {
+            return null;
+        }
+        if (node.children != null) {
+            Node child = node.children.get(url.substring(start, end));
+            if (child != null) {
+                MatchConfig config = match(child, url, end + 1);
+                if (config != null) {
+                    return config;
+                }
+            }
+        }
+        if (node.variable != null) {
+            return match(node.variable, url, end + 1);
+        }
+        return null;
+    }
+
+    /**
+     * 按照 / 拆分路径段，第一个 / 之前的空段忽略
+     *
+     * @return 包含空段时返回 null
+     */
+    private static List<String> split(String expression) {
+        List<String> segments = new ArrayList<String>();
+        int start = 1;
+        while (start <= expression.length()) {
+            int end = expression.indexOf('/', start);
+            if (end == -1) {
+                end = expression.length();
+            }
+            if (end == start) {
+                return null;
+            }
+            segments.add(expression.substring(start, end));
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.length() >= 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+    /**
+     * 与 {@link HttpMatcher} 的格式化方式保持一致，确保首位是/，长度大于1的末尾不是/
+     */
+    private static String format(String url) {
+        if (url.charAt(0) != '/') {
+            url = '/' + url;
+        }
+        if (url.length() > 1 && url.charAt(url.length() - 1) == '/') {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url;
+    }
+
+    public Set<MatchConfig> getSource() {
+        return source;
+    }
+
+    private final static class Node {
+        Map<String, Node> children;
+        Node variable;
+        MatchConfig config;
+
+        Node child(String segment) {
+            if (children == null) {
+                children = new HashMap<String, Node>();
+            }
+            Node node = children.get(segment);
+            if (node == null) {
+                node = new Node();
+                children.put(segment, node);
+            }
+            return node;
+        }
+
+        Node variable() {
+            if (variable == null) {
+                variable = new Node();
+            }
+            return variable;
+        }
+    }
+}
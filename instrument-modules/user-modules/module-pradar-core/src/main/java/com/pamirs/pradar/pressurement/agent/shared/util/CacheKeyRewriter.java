@@ -0,0 +1,243 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.util;
+
+import java.util.Set;
+
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 缓存 key 的影子 key 改写
+ * <p>
+ * 各个 redis 客户端的 key 大多以 byte[] 的形式传入，原有实现对每个 key 都要先解码成字符串，
+ * 逐条比较白名单、判断压测前缀、拼接前缀后再编码回 byte[]。这里直接在字节上完成白名单匹配和前缀判断，
+ * 需要加前缀时只做一次数组拷贝
+ * <p>
+ * 字节路径只在压测前缀为 ASCII 时启用，否则退回到字符串的处理方式，两者的结果保持一致
+ */
+public final class CacheKeyRewriter {
+
+    private final static String CLUSTER_TEST_PREFIX = Pradar.CLUSTER_TEST_PREFIX;
+
+    /**
+     * 压测前缀的字节形式，压测前缀不是 ASCII 时为 null
+     */
+    private final static byte[] CLUSTER_TEST_PREFIX_BYTES = toAsciiBytes(CLUSTER_TEST_PREFIX);
+
+    private final static char[] CLUSTER_TEST_PREFIX_CHARS = CLUSTER_TEST_PREFIX.toCharArray();
+
+    private static volatile CacheKeyWhiteListTrie whiteList = CacheKeyWhiteListTrie.EMPTY;
+
+    private CacheKeyRewriter() {
+    }
+
+    private static byte[] toAsciiBytes(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        for (int i = 0, len = value.length(); i < len; i++) {
+            if (value.charAt(i) >= 0x80) {
+                return null;
+            }
+        }
+        byte[] bytes = value.getBytes();
+        return bytes.length == value.length() ? bytes : null;
+    }
+
+    /**
+     * 获取编译后的白名单，白名单变更后第一次调用时重新编译
+     */
+    private static CacheKeyWhiteListTrie whiteList() {
+        Set<String> source = GlobalConfig.getInstance().getCacheKeyWhiteList();
+        CacheKeyWhiteListTrie trie = whiteList;
+        if (!trie.isCompiledFrom(source)) {
+            trie = CacheKeyWhiteListTrie.compile(source);
+            whiteList = trie;
+        }
+        return trie;
+    }
+
+    /**
+     * 判断 key 是否在白名单中
+     *
+     * @param key key
+     * @return 是否在白名单中
+     */
+    public static boolean isWhiteListed(String key) {
+        return key != null && whiteList().matches(key);
+    }
+
+    /**
+     * 判断 key 是否在白名单中
+     *
+     * @param key key
+     * @return 是否在白名单中
+     */
+    public static boolean isWhiteListed(byte[] key) {
+        return key != null && whiteList().matches(key);
+    }
+
+    /**
+     * 判断 key 是否是纯数字，与 {@link StringUtils#isNumeric(String)} 一致，空的 key 也认为是数字
+     *
+     * @param key key
+     * @return 是否是纯数字
+     */
+    public static boolean isNumeric(byte[] key) {
+        if (key == null) {
+            return false;
+        }
+        for (byte b : key) {
+            if (b < 0) {
+                return StringUtils.isNumeric(new String(key));
+            }
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将 key 转换成影子 key，白名单中的 key 以及已经带有压测前缀的 key 保持不变
+     *
+     * @param key key
+     * @return 影子 key
+     */
+    public static String toClusterTestKey(String key) {
+        if (key == null) {
+            return null;
+        }
+        if (whiteList().matches(key) || Pradar.isClusterTestPrefix(key)) {
+            return key;
+        }
+        return Pradar.addClusterTestPrefix(key);
+    }
+
+    /**
+     * 将 key 转换成影子 key，白名单中的 key 以及已经带有压测前缀的 key 原样返回，否则返回新的数组
+     *
+     * @param key key
+     * @return 影子 key
+     */
+    public static byte[] toClusterTestKey(byte[] key) {
+        if (key == null) {
+            return null;
+        }
+        final byte[] prefix = CLUSTER_TEST_PREFIX_BYTES;
+        if (prefix == null) {
+            String value = new String(key);
+            String clusterTestKey = toClusterTestKey(value);
+            return clusterTestKey == value ? key : clusterTestKey.getBytes();
+        }
+        if (whiteList().matches(key) || hasClusterTestPrefix(key, prefix)) {
+            return key;
+        }
+        byte[] clusterTestKey = new byte[prefix.length + key.length];
+        System.arraycopy(prefix, 0, clusterTestKey, 0, prefix.length);
+        System.arraycopy(key, 0, clusterTestKey, prefix.length, key.length);
+        return clusterTestKey;
+    }
+
+    /**
+     * 将 key 转换成影子 key，白名单中的 key 以及已经带有压测前缀的 key 原样返回，否则返回新的数组
+     *
+     * @param key key
+     * @return 影子 key
+     */
+    public static char[] toClusterTestKey(char[] key) {
+        if (key == null) {
+            return null;
+        }
+        if (whiteList().matches(key) || hasClusterTestPrefix(key)) {
+            return key;
+        }
+        final char[] prefix = CLUSTER_TEST_PREFIX_CHARS;
+        char[] clusterTestKey = new char[prefix.length + key.length];
+        System.arraycopy(prefix, 0, clusterTestKey, 0, prefix.length);
+        System.arraycopy(key, 0, clusterTestKey, prefix.length, key.length);
+        return clusterTestKey;
+    }
+
+    /**
+     * 将数组中的 key 都转换成影子 key，直接替换数组中的元素
+     *
+     * @param keys key 数组
+     * @return 传入的数组
+     */
+    public static byte[][] toClusterTestKeys(byte[][] keys) {
+        if (keys == null) {
+            return null;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = toClusterTestKey(keys[i]);
+        }
+        return keys;
+    }
+
+    /**
+     * 将数组中的 key 都转换成影子 key，直接替换数组中的元素
+     *
+     * @param keys key 数组
+     * @return 传入的数组
+     */
+    public static char[][] toClusterTestKeys(char[][] keys) {
+        if (keys == null) {
+            return null;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = toClusterTestKey(keys[i]);
+        }
+        return keys;
+    }
+
+    /**
+     * 与 {@link Pradar#isClusterTestPrefix(String)} 一致，忽略大小写比较开头的压测前缀，
+     * 压测前缀是非空白的 ASCII，所以只有 key 的开头同样是单字节字符时才可能匹配，匹配上时 key 也一定不是空白
+     */
+    private static boolean hasClusterTestPrefix(byte[] key, byte[] prefix) {
+        if (prefix.length > key.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (toLowerCase(key[i]) != toLowerCase(prefix[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasClusterTestPrefix(char[] key) {
+        if (CLUSTER_TEST_PREFIX_BYTES == null) {
+            return Pradar.isClusterTestPrefix(new String(key));
+        }
+        final char[] prefix = CLUSTER_TEST_PREFIX_CHARS;
+        if (prefix.length > key.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (Character.toLowerCase(key[i]) != Character.toLowerCase(prefix[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译后的缓存 key 白名单
+ * <p>
+ * 白名单的匹配规则是 key 以任意一个白名单开头，原有实现对每个 key 逐条比较白名单。
+ * 这里在白名单变更时把所有白名单分别按字符以及按默认编码的字节构造成前缀树，
+ * 匹配时只需要从 key 的开头向下走一遍，耗时只与 key 的长度有关，字节形式的 key 也不需要先转换成字符串
+ * <p>
+ * 编译后不可变，可以被多个线程同时读取
+ */
+final class CacheKeyWhiteListTrie {
+
+    final static CacheKeyWhiteListTrie EMPTY = new CacheKeyWhiteListTrie(null, new Builder().build(), new Builder().build());
+
+    private final Set<String> source;
+    private final int sourceSize;
+    private final Node charRoot;
+    private final Node byteRoot;
+
+    private CacheKeyWhiteListTrie(Set<String> source, Node charRoot, Node byteRoot) {
+        this.source = source;
+        this.sourceSize = source == null ? 0 : source.size();
+        this.charRoot = charRoot;
+        this.byteRoot = byteRoot;
+    }
+
+    /**
+     * 编译白名单
+     *
+     * @param whiteList 白名单
+     * @return 编译后的白名单
+     */
+    static CacheKeyWhiteListTrie compile(Set<String> whiteList) {
+        if (whiteList == null) {
+            return EMPTY;
+        }
+        Builder chars = new Builder();
+        Builder bytes = new Builder();
+        for (String white : whiteList) {
+            if (white == null) {
+                continue;
+            }
+            Builder node = chars;
+            for (int i = 0, len = white.length(); i < len; i++) {
+                node = node.child(white.charAt(i));
+            }
+            node.terminal = true;
+
+            // 默认编码无法表示的白名单编码后会被替换成其他字符，解码后的 key 不会以它开头，不加入字节的前缀树
+            byte[] whiteBytes = white.getBytes();
+            if (!white.equals(new String(whiteBytes))) {
+                continue;
+            }
+            node = bytes;
+            for (byte b : whiteBytes) {
+                node = node.child(b & 0xFF);
+            }
+            node.terminal = true;
+        }
+        return new CacheKeyWhiteListTrie(whiteList, chars.build(), bytes.build());
+    }
+
+    /**
+     * 是否是从当前的白名单编译而来，白名单通常整体替换，release 时会被清空，所以同时比较数量
+     */
+    boolean isCompiledFrom(Set<String> whiteList) {
+        return whiteList == source && (whiteList == null || whiteList.size() == sourceSize);
+    }
+
+    boolean matches(String key) {
+        Node node = charRoot;
+        if (node.terminal) {
+            return true;
+        }
+        for (int i = 0, len = key.length(); i < len; i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean matches(char[] key) {
+        Node node = charRoot;
+        if (node.terminal) {
+            return true;
+        }
+        for (char c : key) {
+            node = node.child(c);
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean matches(byte[] key) {
+        Node node = byteRoot;
+        if (node.terminal) {
+            return true;
+        }
+        for (byte b : key) {
+            node = node.child(b & 0xFF);
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final static class Node {
+        private final static int[] NO_LABELS = new int[0];
+        private final static Node[] NO_CHILDREN = new Node[0];
+
+        /**
+         * 有序的子节点标签，字节按无符号数存放
+         */
+        private final int[] labels;
+        private final Node[] children;
+        private final boolean terminal;
+
+        Node(int[] labels, Node[] children, boolean terminal) {
+            this.labels = labels;
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+        Node child(int label) {
+            final int[] labels = this.labels;
+            if (labels.length == 1) {
+                return labels[0] == label ? children[0] : null;
+            }
+            final int index = Arrays.binarySearch(labels, label);
+            return index < 0 ? null : children[index];
+        }
+    }
+
+    private final static class Builder {
+        private final TreeMap<Integer, Builder> children = new TreeMap<Integer, Builder>();
+        private boolean terminal;
+
+        Builder child(int label) {
+            Builder child = children.get(label);
+            if (child == null) {
+                child = new Builder();
+                children.put(label, child);
+            }
+            return child;
+        }
+
+        Node build() {
+            if (children.isEmpty()) {
+                return new Node(Node.NO_LABELS, Node.NO_CHILDREN, terminal);
+            }
+            int[] labels = new int[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Builder> entry : children.entrySet()) {
+                labels[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node(labels, nodes, terminal);
+        }
+    }
+}
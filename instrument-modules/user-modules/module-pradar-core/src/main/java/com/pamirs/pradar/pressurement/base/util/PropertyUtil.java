@@ -52,6 +52,17 @@ public class PropertyUtil {
         return str + File.separator + AppNameUtils.appName() + File.separator + "es_white_list";
     }
 
+    /**
+     * 配置快照文件路径，simulator home 未设置时返回 null
+     */
+    public static String getConfigSnapshotFilePath() {
+        String str = System.getProperty("simulator.home");
+        if (str == null) {
+            return null;
+        }
+        return str + File.separator + AppNameUtils.appName() + File.separator + "config_snapshot";
+    }
+
     public static String getAppKey() {
         return System.getProperty(Pradar.PRADAR_TENANT_KEY, "default");
     }
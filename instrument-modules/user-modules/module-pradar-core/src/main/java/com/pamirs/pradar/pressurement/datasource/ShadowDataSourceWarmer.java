@@ -0,0 +1,409 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import com.pamirs.pradar.internal.config.ShadowDatabaseConfig;
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 影子数据源预热
+ * <p>
+ * 影子库连接池默认在第一笔压测流量到达时才创建并建立物理连接，压测开始的前几秒会出现大量的慢请求和超时。
+ * 开启预热后，在影子库配置下发或者压测开关打开时由后台线程提前初始化影子连接池、填充到最小空闲连接数并校验连接，
+ * 预热状态通过心跳上报。开启流量挡板后，压测流量获取连接时会等待对应的影子连接池预热完成(有最大等待时间)
+ * <p>
+ * 相关参数:
+ * pradar.shadow.datasource.warmup 是否开启影子数据源预热，默认 false
+ * pradar.shadow.datasource.warmup.hold 预热未完成时是否挡住压测流量，默认 false
+ * pradar.shadow.datasource.warmup.hold.timeout 压测流量最大等待时间(毫秒)，默认 5000，从第一笔压测流量开始等待时计算，
+ * 所有请求共享这个截止时间，超时后不再挡住压测流量
+ * pradar.shadow.datasource.warmup.borrow.timeout 预热时单次从影子连接池获取连接的最大等待时间(毫秒)，默认 10000
+ * pradar.shadow.datasource.warmup.threads 预热线程数，默认 2
+ * pradar.shadow.datasource.warmup.max.connections 单个影子连接池最多预热的连接数，默认 32
+ */
+public final class ShadowDataSourceWarmer {
+    private final static Logger LOGGER = LoggerFactory.getLogger(ShadowDataSourceWarmer.class.getName());
+
+    private static final boolean ENABLED = Boolean.valueOf(getSystemProperty("pradar.shadow.datasource.warmup", "false"));
+
+    private static final boolean HOLD = Boolean.valueOf(getSystemProperty("pradar.shadow.datasource.warmup.hold", "false"));
+
+    private static final long HOLD_TIMEOUT = getLongProperty("pradar.shadow.datasource.warmup.hold.timeout", 5000L);
+
+    private static final long BORROW_TIMEOUT = getLongProperty("pradar.shadow.datasource.warmup.borrow.timeout", 10000L);
+
+    private static final int THREADS = (int) getLongProperty("pradar.shadow.datasource.warmup.threads", 2L);
+
+    private static final int MAX_CONNECTIONS = (int) getLongProperty("pradar.shadow.datasource.warmup.max.connections", 32L);
+
+    /**
+     * key 为数据源中间对象，使用对象本身作为 key，对象关闭时需要调用 remove 移除
+     */
+    private static final ConcurrentMap<Object, Warmup> WARMUPS = new ConcurrentHashMap<Object, Warmup>();
+
+    private static volatile ExecutorService executor;
+
+    /**
+     * 预热时获取连接使用的线程池，获取连接超时后预热线程不再等待
+     */
+    private static volatile ExecutorService borrowExecutor;
+
+    private ShadowDataSourceWarmer() {
+    }
+
+    public enum Status {
+        /**
+         * 预热中
+         */
+        WARMING,
+        /**
+         * 预热完成
+         */
+        READY,
+        /**
+         * 预热失败，压测流量退回到首次获取连接时初始化
+         */
+        FAILED
+    }
+
+    private static final class Warmup {
+        private final String name;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Status status = Status.WARMING;
+        private volatile int connections;
+        private volatile String errorMsg;
+        /**
+         * 挡住压测流量的截止时间，第一笔压测流量开始等待时设置，所有请求共享
+         */
+        private final AtomicLong holdDeadline = new AtomicLong();
+        private final AtomicBoolean holdExpired = new AtomicBoolean();
+
+        private Warmup(String name) {
+            this.name = name;
+        }
+
+        private void finish(Status status, int connections, String errorMsg) {
+            this.status = status;
+            this.connections = connections;
+            this.errorMsg = errorMsg;
+            this.latch.countDown();
+        }
+    }
+
+    /**
+     * 是否开启了影子数据源预热
+     *
+     * @return
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * 单个影子连接池最多预热的连接数
+     *
+     * @return
+     */
+    public static int getMaxConnections() {
+        return MAX_CONNECTIONS;
+    }
+
+    /**
+     * 影子库配置变更后是否需要重新创建并预热对应的影子数据源，配置被删除时不需要
+     *
+     * @param config 变更的影子库配置
+     * @return
+     */
+    public static boolean isWarmupRequired(ShadowDatabaseConfig config) {
+        if (!ENABLED || config == null) {
+            return false;
+        }
+        return GlobalConfig.getInstance().containsShadowDatabaseConfig(DbUrlUtils.getKey(config.getUrl(), config.getUsername()));
+    }
+
+    /**
+     * 提交预热任务，同一个数据源正在预热时不会重复提交
+     *
+     * @param owner 数据源中间对象
+     * @param name  数据源名称，用于状态上报
+     * @param task  预热任务，返回预热的连接数
+     * @return 是否提交成功
+     */
+    public static boolean submit(Object owner, String name, final Callable<Integer> task) {
+        if (!ENABLED || owner == null || task == null) {
+            return false;
+        }
+        final Warmup warmup = new Warmup(name);
+        Warmup old = WARMUPS.get(owner);
+        if (old != null && old.status == Status.WARMING) {
+            return false;
+        }
+        if (old == null) {
+            if (WARMUPS.putIfAbsent(owner, warmup) != null) {
+                return false;
+            }
+        } else if (!WARMUPS.replace(owner, old, warmup)) {
+            return false;
+        }
+        try {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    try {
+                        Integer connections = task.call();
+                        warmup.finish(Status.READY, connections == null ? 0 : connections, null);
+                        if (LOGGER.isInfoEnabled()) {
+                            LOGGER.info("[shadow-warmup] shadow datasource warmed up. name:{}, connections:{}, cost:{}ms", warmup.name, warmup.connections, System.currentTimeMillis() - start);
+                        }
+                    } catch (Throwable e) {
+                        warmup.finish(Status.FAILED, 0, e.getMessage());
+                        LOGGER.error("[shadow-warmup] shadow datasource warm up failed. name:{}", warmup.name, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            warmup.finish(Status.FAILED, 0, e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 压测流量获取连接前调用，开启流量挡板且对应的数据源正在预热时等待预热完成
+     *
+     * @param owner 数据源中间对象
+     */
+    public static void awaitReady(Object owner) {
+        if (!HOLD) {
+            return;
+        }
+        Warmup warmup = WARMUPS.get(owner);
+        if (warmup == null || warmup.status != Status.WARMING || warmup.holdExpired.get()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        warmup.holdDeadline.compareAndSet(0L, now + HOLD_TIMEOUT);
+        long remaining = warmup.holdDeadline.get() - now;
+        try {
+            if (remaining <= 0 || !warmup.latch.await(remaining, TimeUnit.MILLISECONDS)) {
+                if (warmup.holdExpired.compareAndSet(false, true)) {
+                    LOGGER.warn("[shadow-warmup] wait shadow datasource warm up timeout, stop holding pressure traffic. name:{}, timeout:{}ms", warmup.name, HOLD_TIMEOUT);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 预热时从影子连接池获取连接，最多等待 pradar.shadow.datasource.warmup.borrow.timeout，
+     * 超时后抛出异常，之后获取到的连接会直接归还给连接池
+     *
+     * @param borrower 获取连接
+     * @return 连接
+     * @throws Exception
+     */
+    public static Connection borrow(final Callable<Connection> borrower) throws Exception {
+        //获取连接的线程和预热线程谁先设置成功谁决定连接的归属，避免超时后拿到的连接泄漏
+        final AtomicBoolean settled = new AtomicBoolean();
+        Future<Connection> future = getBorrowExecutor().submit(new Callable<Connection>() {
+            @Override
+            public Connection call() throws Exception {
+                Connection connection = borrower.call();
+                if (!settled.compareAndSet(false, true) && connection != null) {
+                    connection.close();
+                    return null;
+                }
+                return connection;
+            }
+        });
+        try {
+            return future.get(BORROW_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!settled.compareAndSet(false, true)) {
+                //连接恰好在超时的同时获取成功，等待结果后归还
+                try {
+                    Connection connection = future.get();
+                    if (connection != null) {
+                        connection.close();
+                    }
+                } catch (Throwable ignore) {
+                }
+            }
+            throw new TimeoutException("borrow shadow connection timeout after " + BORROW_TIMEOUT + "ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 数据源关闭时移除预热状态
+     *
+     * @param owner 数据源中间对象
+     */
+    public static void remove(Object owner) {
+        if (owner == null) {
+            return;
+        }
+        Warmup warmup = WARMUPS.remove(owner);
+        if (warmup != null) {
+            warmup.latch.countDown();
+        }
+    }
+
+    /**
+     * 所有影子数据源是否都已经预热完成，还没有任何影子数据源开始预热时返回 false
+     *
+     * @return
+     */
+    public static boolean isAllReady() {
+        if (WARMUPS.isEmpty()) {
+            return false;
+        }
+        for (Warmup warmup : WARMUPS.values()) {
+            if (warmup.status != Status.READY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取所有影子数据源的预热状态，用于心跳上报
+     *
+     * @return
+     */
+    public static Map<String, String> getStatus() {
+        Map<String, String> result = new HashMap<String, String>();
+        for (Warmup warmup : WARMUPS.values()) {
+            StringBuilder builder = new StringBuilder(warmup.status.name());
+            if (warmup.status == Status.READY) {
+                builder.append(",connections:").append(warmup.connections);
+            } else if (warmup.status == Status.FAILED && warmup.errorMsg != null) {
+                builder.append(",errorMsg:").append(warmup.errorMsg);
+            }
+            result.put(warmup.name, builder.toString());
+        }
+        return result;
+    }
+
+    public static void release() {
+        for (Warmup warmup : WARMUPS.values()) {
+            warmup.latch.countDown();
+        }
+        WARMUPS.clear();
+        ExecutorService service = executor;
+        executor = null;
+        if (service != null) {
+            service.shutdownNow();
+        }
+        ExecutorService borrowService = borrowExecutor;
+        borrowExecutor = null;
+        if (borrowService != null) {
+            borrowService.shutdownNow();
+        }
+    }
+
+    private static ExecutorService getBorrowExecutor() {
+        ExecutorService service = borrowExecutor;
+        if (service == null) {
+            synchronized (ShadowDataSourceWarmer.class) {
+                service = borrowExecutor;
+                if (service == null) {
+                    final AtomicInteger index = new AtomicInteger();
+                    service = Executors.newCachedThreadPool(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "Pradar-Shadow-DataSource-Warmer-Borrow-" + index.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                    borrowExecutor = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    private static ExecutorService getExecutor() {
+        ExecutorService service = executor;
+        if (service == null) {
+            synchronized (ShadowDataSourceWarmer.class) {
+                service = executor;
+                if (service == null) {
+                    final AtomicInteger index = new AtomicInteger();
+                    service = Executors.newFixedThreadPool(THREADS <= 0 ? 1 : THREADS, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "Pradar-Shadow-DataSource-Warmer-" + index.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                    executor = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    private static long getLongProperty(String key, long defaultValue) {
+        String value = getSystemProperty(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String getSystemProperty(String key, String defaultValue) {
+        try {
+            return System.getProperty(key, defaultValue);
+        } catch (Throwable e) {
+            return defaultValue;
+        }
+    }
+}
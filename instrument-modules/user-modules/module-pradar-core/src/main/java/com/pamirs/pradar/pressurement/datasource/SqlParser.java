@@ -116,21 +116,45 @@ public class SqlParser {
 
         );
 
+    /**
+     * sql 指纹缓存，未开启时为 null
+     */
+    private static final SqlRewriteCache rewriteCache = Pradar.isSqlRewriteCacheEnabled()
+        ? new SqlRewriteCache(Pradar.getSqlRewriteCacheMaxWeight()) : null;
+
     public static void clear() {
         cacheSchemaModeBuilder.invalidateAll();
         cacheTableModeBuilder.invalidateAll();
+        if (rewriteCache != null) {
+            rewriteCache.clear();
+        }
     }
 
     public static void release() {
         cacheSchemaModeBuilder.invalidateAll();
         cacheTableModeBuilder.invalidateAll();
         cacheSqlTablesBuilder.invalidateAll();
+        if (rewriteCache != null) {
+            rewriteCache.clear();
+        }
+    }
+
+    /**
+     * 获取 sql 指纹缓存，可以获取命中、未命中、解析耗时等统计信息
+     *
+     * @return 未开启时返回 null
+     */
+    public static SqlRewriteCache getRewriteCache() {
+        return rewriteCache;
     }
 
     public static TableParserResult getTables(String sql, String dbType) {
         String innerDbtype = dbType;
         //影子表压测
         try {
+            if (rewriteCache != null) {
+                return rewriteCache.getTables(sql, innerDbtype);
+            }
             return cacheSqlTablesBuilder.get(sql + "$$$$" + innerDbtype);
         } catch (Throwable e) {
             LOGGER.error("parse sql tables error. sql={}, dbType={} ", sql, dbType, e);
@@ -138,7 +162,7 @@ public class SqlParser {
         }
     }
 
-    private static TableParserResult parseTables(String sql, String dbTypeName) throws SQLException {
+    static TableParserResult parseTables(String sql, String dbTypeName) throws SQLException {
         DbType dbType = DbType.of(dbTypeName);
         boolean isSelect = true;
         List<String> tables = new ArrayList<String>();
@@ -200,6 +224,9 @@ public class SqlParser {
         String innerDbtype = dbType;
         //影子表压测
         try {
+            if (rewriteCache != null) {
+                return rewriteCache.rewrite(sql, key, innerDbtype, SqlRewriteCache.MODE_TABLE);
+            }
             return cacheTableModeBuilder.get(sql + "$$$$" + key + "$$$$" + innerDbtype);
         } catch (Throwable e) {
             LOGGER.error("replace table to shadow table error. sql={}, key={}, dbType={}", sql, dbConnectionKey, dbType,
@@ -228,6 +255,9 @@ public class SqlParser {
         String innerDbtype = dbType;
         //影子表压测
         try {
+            if (rewriteCache != null) {
+                return rewriteCache.rewrite(sql, key, innerDbtype, SqlRewriteCache.MODE_SCHEMA);
+            }
             return cacheSchemaModeBuilder.get(sql + "$$$$" + key + "$$$$" + innerDbtype);
         } catch (Throwable e) {
             LOGGER.error("replace schema to shadow schema error. sql={}, key={}, dbType={}", sql, dbConnectionKey,
@@ -241,6 +271,16 @@ public class SqlParser {
         }
     }
 
+    /**
+     * 按照完整 sql 缓存改写结果，sql 指纹无法模板化时使用
+     */
+    static String replaceByFullSql(String sql, String key, String dbType, int mode) throws Exception {
+        if (mode == SqlRewriteCache.MODE_TABLE) {
+            return cacheTableModeBuilder.get(sql + "$$$$" + key + "$$$$" + dbType);
+        }
+        return cacheSchemaModeBuilder.get(sql + "$$$$" + key + "$$$$" + dbType);
+    }
+
     private static String serializeObject(Object target) {
         if (target == null) {
             return StringUtils.EMPTY;
@@ -359,6 +399,16 @@ public class SqlParser {
      * @throws SQLException
      */
     public static String parseAndReplaceSchema(String sql, String key, String dbTypeName) throws SQLException {
+        return parseAndReplaceSchema(sql, key, dbTypeName, null);
+    }
+
+    /**
+     * 替换 schema
+     *
+     * @param effectiveMapping 不为空时收集改写时实际使用的映射关系
+     */
+    static String parseAndReplaceSchema(String sql, String key, String dbTypeName,
+        Map<String, String> effectiveMapping) throws SQLException {
         ShadowDatabaseConfig config = GlobalConfig.getInstance().getShadowDatabaseConfig(key);
         if (config == null) {
             return sql;
@@ -412,6 +462,9 @@ public class SqlParser {
                     }
                 }
                 visitor.setTableMapping(map);
+                if (effectiveMapping != null) {
+                    effectiveMapping.putAll(map);
+                }
                 sqlStatement.accept(visitor);
             }
         } catch (Throwable e) {
@@ -452,6 +505,16 @@ public class SqlParser {
     }
 
     public static String parseAndReplaceTableNames(String sql, String key, String dbTypeName) throws SQLException {
+        return parseAndReplaceTableNames(sql, key, dbTypeName, null);
+    }
+
+    /**
+     * 替换表名
+     *
+     * @param effectiveMapping 不为空时收集改写时实际使用的映射关系
+     */
+    static String parseAndReplaceTableNames(String sql, String key, String dbTypeName,
+        Map<String, String> effectiveMapping) throws SQLException {
         DbType dbType = DbType.of(dbTypeName);
         Map<String, String> mappingTable = getMappingTables(key);
         if (SqlParser.lowerCase != null && "Y".equals(SqlParser.lowerCase)) {
@@ -539,6 +602,9 @@ public class SqlParser {
                 }
 
                 visitor.setTableMapping(mappingTable);
+                if (effectiveMapping != null) {
+                    effectiveMapping.putAll(mappingTable);
+                }
                 sqlStatement.accept(visitor);
             }
         } catch (Throwable e) {
@@ -0,0 +1,346 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.pamirs.pradar.pressurement.datasource.util.SqlFingerprint;
+import com.shulie.druid.DbType;
+import com.shulie.druid.sql.SQLUtils;
+import com.shulie.druid.sql.ast.SQLStatement;
+import com.shulie.druid.sql.parser.SQLParserUtils;
+import com.shulie.druid.sql.parser.SQLStatementParser;
+import com.shulie.druid.sql.visitor.SQLASTOutputVisitor;
+
+/**
+ * 基于 sql 指纹的影子表/影子库改写缓存
+ * <p>
+ * 缓存的 key 是 sql 指纹(字面量归一化之后的 sql)，value 是需要替换的标识符序号以及替换后的内容。
+ * 未命中时仍然使用 druid 解析改写一次，再把改写结果换算成标识符替换模板，
+ * 只有模板拼接出来的 sql 经过 druid 重新输出后与 druid 的改写结果完全一致时才会使用模板，
+ * 否则该指纹标记为不可模板化，后续回退到原有的按完整 sql 缓存的改写逻辑
+ * <p>
+ * 命中时只需要一次线性分词和字符串拼接，不再解析 sql
+ */
+public final class SqlRewriteCache {
+
+    static final int MODE_TABLE = 1;
+    static final int MODE_SCHEMA = 2;
+
+    /**
+     * 不可模板化的指纹
+     */
+    private final static Template UNSUPPORTED = new Template(new int[0], new String[0], false);
+
+    private final Cache<String, Object> cache;
+
+    /**
+     * 命中次数
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+    /**
+     * 未命中需要解析的次数
+     */
+    private final AtomicLong missCount = new AtomicLong();
+    /**
+     * 回退到完整 sql 改写的次数
+     */
+    private final AtomicLong fallbackCount = new AtomicLong();
+    /**
+     * 未命中时解析、校验 sql 的累计耗时
+     */
+    private final AtomicLong parseTimeNanos = new AtomicLong();
+
+    SqlRewriteCache(long maxWeight) {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxWeight)
+            .weigher(new Weigher<String, Object>() {
+                @Override
+                public int weigh(String key, Object value) {
+                    int weight = key.length() + 16;
+                    if (value instanceof Template) {
+                        weight += ((Template)value).weight;
+                    } else if (value instanceof TableParserResult) {
+                        for (String table : ((TableParserResult)value).getTables()) {
+                            weight += table.length() + 8;
+                        }
+                    }
+                    return weight;
+                }
+            })
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
+    }
+
+    /**
+     * 获取 sql 中的表名
+     */
+    TableParserResult getTables(String sql, String dbType) {
+        SqlFingerprint fingerprint = SqlFingerprint.of(sql, isMysql(dbType));
+        if (fingerprint == null) {
+            fallbackCount.incrementAndGet();
+            return parseTables(sql, dbType);
+        }
+        final String cacheKey = "T\u0001" + dbType + '\u0001' + fingerprint.getFingerprint();
+        Object value = cache.getIfPresent(cacheKey);
+        if (value instanceof TableParserResult) {
+            hitCount.incrementAndGet();
+            return (TableParserResult)value;
+        }
+        missCount.incrementAndGet();
+        TableParserResult result = parseTables(sql, dbType);
+        cache.put(cacheKey, result);
+        return result;
+    }
+
+    private TableParserResult parseTables(String sql, String dbType) {
+        final long start = System.nanoTime();
+        try {
+            return SqlParser.parseTables(sql, dbType);
+        } catch (SQLException e) {
+            return TableParserResult.EMPTY;
+        } finally {
+            parseTimeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 改写 sql 中的表名或者 schema
+     *
+     * @param sql    sql
+     * @param key    数据源 key
+     * @param dbType 数据库类型
+     * @param mode   {@link #MODE_TABLE} 或 {@link #MODE_SCHEMA}
+     * @return 改写后的 sql
+     */
+    String rewrite(String sql, String key, String dbType, int mode) throws Exception {
+        SqlFingerprint fingerprint = SqlFingerprint.of(sql, isMysql(dbType));
+        if (fingerprint == null) {
+            fallbackCount.incrementAndGet();
+            return SqlParser.replaceByFullSql(sql, key, dbType, mode);
+        }
+        final String cacheKey = mode + "\u0001" + dbType + '\u0001' + key + '\u0001' + fingerprint.getFingerprint();
+        Object value = cache.getIfPresent(cacheKey);
+        if (value instanceof Template) {
+            Template template = (Template)value;
+            if (!template.supported) {
+                fallbackCount.incrementAndGet();
+                return SqlParser.replaceByFullSql(sql, key, dbType, mode);
+            }
+            hitCount.incrementAndGet();
+            return fingerprint.splice(template.indexes, template.replacements);
+        }
+
+        missCount.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            Map<String, String> mapping = new HashMap<String, String>();
+            String rewritten = mode == MODE_TABLE
+                ? SqlParser.parseAndReplaceTableNames(sql, key, dbType, mapping)
+                : SqlParser.parseAndReplaceSchema(sql, key, dbType, mapping);
+            Template template = buildTemplate(fingerprint, mapping, rewritten, dbType, true);
+            if (template == null) {
+                template = buildTemplate(fingerprint, mapping, rewritten, dbType, false);
+            }
+            if (template == null) {
+                template = UNSUPPORTED;
+            }
+            cache.put(cacheKey, template);
+            return template.supported ? fingerprint.splice(template.indexes, template.replacements) : rewritten;
+        } finally {
+            parseTimeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 根据 druid 改写时使用的映射关系生成替换模板，并校验拼接结果与 druid 改写结果是否一致
+     *
+     * @param keepQuote 替换带引号的标识符时是否保留引号
+     * @return 校验不通过时返回 null
+     */
+    private static Template buildTemplate(SqlFingerprint fingerprint, Map<String, String> mapping, String rewritten,
+        String dbType, boolean keepQuote) {
+        final int count = fingerprint.getIdentifierCount();
+        int[] indexes = new int[count];
+        String[] replacements = new String[count];
+        int size = 0;
+        if (!mapping.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                final String identifier = fingerprint.getIdentifier(i);
+                if (fingerprint.isQualified(i) && i + 1 < count) {
+                    final String next = fingerprint.getIdentifier(i + 1);
+                    String value = mapping.get(identifier + '.' + next);
+                    if (value == null) {
+                        value = mapping.get(unquote(identifier) + '.' + unquote(next));
+                    }
+                    final int dot = value == null ? -1 : value.indexOf('.');
+                    if (dot > 0 && value.indexOf('.', dot + 1) == -1) {
+                        indexes[size] = i;
+                        replacements[size++] = render(identifier, value.substring(0, dot), keepQuote);
+                        indexes[size] = i + 1;
+                        replacements[size++] = render(next, value.substring(dot + 1), keepQuote);
+                        i++;
+                        continue;
+                    }
+                }
+                String value = mapping.get(identifier);
+                if (value == null) {
+                    value = mapping.get(unquote(identifier));
+                }
+                if (value != null) {
+                    String replacement = render(identifier, value, keepQuote);
+                    if (!replacement.equals(identifier)) {
+                        indexes[size] = i;
+                        replacements[size++] = replacement;
+                    }
+                }
+            }
+        }
+        int[] finalIndexes = new int[size];
+        String[] finalReplacements = new String[size];
+        System.arraycopy(indexes, 0, finalIndexes, 0, size);
+        System.arraycopy(replacements, 0, finalReplacements, 0, size);
+
+        String candidate = fingerprint.splice(finalIndexes, finalReplacements);
+        if (!rewritten.equals(format(candidate, dbType))) {
+            return null;
+        }
+        return new Template(finalIndexes, finalReplacements, true);
+    }
+
+    /**
+     * 使用 druid 重新输出 sql，与改写时的输出格式保持一致
+     */
+    private static String format(String sql, String dbTypeName) {
+        try {
+            SQLStatementParser parser = SQLParserUtils.createSQLStatementParser(sql, dbTypeName);
+            if (parser == null) {
+                return null;
+            }
+            final DbType dbType = DbType.of(dbTypeName);
+            final StringWriter val = new StringWriter();
+            final List<SQLStatement> sqlStatements = parser.parseStatementList();
+            for (final SQLStatement sqlStatement : sqlStatements) {
+                SQLASTOutputVisitor visitor = SQLUtils.createOutputVisitor(val, dbType);
+                sqlStatement.accept(visitor);
+            }
+            return val.toString();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static String render(String identifier, String value, boolean keepQuote) {
+        if (!keepQuote || identifier.length() < 2 || value.length() == 0) {
+            return value;
+        }
+        final char first = identifier.charAt(0);
+        if (first != '`' && first != '"' && first != '[') {
+            return value;
+        }
+        if (value.charAt(0) == first) {
+            return value;
+        }
+        return first + value + identifier.charAt(identifier.length() - 1);
+    }
+
+    private static String unquote(String identifier) {
+        if (identifier.length() < 2) {
+            return identifier;
+        }
+        final char first = identifier.charAt(0);
+        if (first == '`' || first == '"' || first == '[') {
+            return identifier.substring(1, identifier.length() - 1);
+        }
+        return identifier;
+    }
+
+    private static boolean isMysql(String dbType) {
+        return "mysql".equalsIgnoreCase(dbType) || "mariadb".equalsIgnoreCase(dbType);
+    }
+
+    void clear() {
+        cache.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    public long getParseTimeNanos() {
+        return parseTimeNanos.get();
+    }
+
+    /**
+     * 未命中时平均每次解析的耗时
+     */
+    public long getAverageParseTimeNanos() {
+        final long miss = missCount.get();
+        return miss == 0 ? 0 : parseTimeNanos.get() / miss;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        return "SqlRewriteCache{" +
+            "size=" + size() +
+            ", hit=" + getHitCount() +
+            ", miss=" + getMissCount() +
+            ", fallback=" + getFallbackCount() +
+            ", avgParseTimeNanos=" + getAverageParseTimeNanos() +
+            '}';
+    }
+
+    /**
+     * 标识符替换模板
+     */
+    private final static class Template {
+        final int[] indexes;
+        final String[] replacements;
+        final boolean supported;
+        final int weight;
+
+        Template(int[] indexes, String[] replacements, boolean supported) {
+            this.indexes = indexes;
+            this.replacements = replacements;
+            this.supported = supported;
+            int weight = indexes.length * 4;
+            for (String replacement : replacements) {
+                weight += replacement.length();
+            }
+            this.weight = weight;
+        }
+    }
+}
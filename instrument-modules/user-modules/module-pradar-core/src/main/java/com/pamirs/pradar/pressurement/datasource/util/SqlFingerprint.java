@@ -0,0 +1,309 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource.util;
+
+/**
+ * sql 的结构指纹
+ * <p>
+ * 一次扫描完成分词：数字和单引号字符串字面量在指纹中统一替换成 ?，连续的空白压缩成一个空格，
+ * 其余的关键字、标识符、注释、符号都原样保留，所以指纹相同的两条 sql 只有字面量的值不同，
+ * 标识符的个数、顺序、内容都完全一致，可以按照标识符的序号直接替换表名而不需要重新解析
+ * <p>
+ * 字面量中包含反斜杠时不做归一化，避免不同方言对转义处理不一致导致把 sql 结构误判成字面量
+ */
+public final class SqlFingerprint {
+
+    private final String sql;
+    private final String fingerprint;
+    /**
+     * 标识符在 sql 中的开始位置
+     */
+    private final int[] identStarts;
+    /**
+     * 标识符在 sql 中的结束位置(不包含)
+     */
+    private final int[] identEnds;
+    /**
+     * 标识符后面是否紧跟着 . 和下一个标识符，如 schema.table
+     */
+    private final boolean[] qualified;
+    private final int identCount;
+
+    private SqlFingerprint(String sql, String fingerprint, int[] identStarts, int[] identEnds, boolean[] qualified, int identCount) {
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+        this.identStarts = identStarts;
+        this.identEnds = identEnds;
+        this.qualified = qualified;
+        this.identCount = identCount;
+    }
+
+    /**
+     * 计算 sql 的指纹
+     *
+     * @param sql          sql
+     * @param hashComments 是否支持 # 开头的单行注释(mysql)
+     * @return 无法完整分词时(如字符串、注释没有闭合)返回 null
+     */
+    public static SqlFingerprint of(String sql, boolean hashComments) {
+        if (sql == null) {
+            return null;
+        }
+        final int length = sql.length();
+        StringBuilder builder = new StringBuilder(length);
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        boolean[] qualified = new boolean[16];
+        int count = 0;
+        /**
+         * 上一个 token 是否是标识符，以及标识符后面是否紧跟着 .
+         */
+        boolean lastIdent = false;
+        boolean lastDotAfterIdent = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (builder.length() > 0 && i < length) {
+                    builder.append(' ');
+                }
+                lastIdent = false;
+                lastDotAfterIdent = false;
+                continue;
+            }
+            int start = i;
+            if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                if (i < 0) {
+                    return null;
+                }
+                if (containsBackslash(sql, start, i)) {
+                    builder.append(sql, start, i);
+                } else {
+                    builder.append('?');
+                }
+                lastIdent = false;
+                lastDotAfterIdent = false;
+                continue;
+            }
+            if ((c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') || (c == '#' && hashComments)) {
+                i = sql.indexOf('\n', i);
+                if (i < 0) {
+                    i = length;
+                }
+                builder.append(sql, start, i);
+                lastIdent = false;
+                lastDotAfterIdent = false;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i = sql.indexOf("*/", i + 2);
+                if (i < 0) {
+                    return null;
+                }
+                i += 2;
+                builder.append(sql, start, i);
+                lastIdent = false;
+                lastDotAfterIdent = false;
+                continue;
+            }
+            if (c >= '0' && c <= '9') {
+                i = skipNumber(sql, i);
+                if (i < length && isIdentifierPart(sql.charAt(i))) {
+                    /**
+                     * 数字开头的标识符(如 mysql 中的 1user)原样保留，不参与表名替换
+                     */
+                    while (i < length && isIdentifierPart(sql.charAt(i))) {
+                        i++;
+                    }
+                    builder.append(sql, start, i);
+                } else {
+                    builder.append('?');
+                }
+                lastIdent = false;
+                lastDotAfterIdent = false;
+                continue;
+            }
+            if (c == '`' || c == '"' || c == '[' || isIdentifierStart(c)) {
+                if (c == '`' || c == '"') {
+                    i = skipQuoted(sql, i, c);
+                } else if (c == '[') {
+                    i = sql.indexOf(']', i);
+                    i = i < 0 ? -1 : i + 1;
+                } else {
+                    while (i < length && isIdentifierPart(sql.charAt(i))) {
+                        i++;
+                    }
+                }
+                if (i < 0) {
+                    return null;
+                }
+                if (count == starts.length) {
+                    starts = grow(starts);
+                    ends = grow(ends);
+                    boolean[] newQualified = new boolean[qualified.length << 1];
+                    System.arraycopy(qualified, 0, newQualified, 0, qualified.length);
+                    qualified = newQualified;
+                }
+                if (lastDotAfterIdent) {
+                    qualified[count - 1] = true;
+                }
+                starts[count] = start;
+                ends[count] = i;
+                count++;
+                builder.append(sql, start, i);
+                lastIdent = true;
+                lastDotAfterIdent = false;
+                continue;
+            }
+            lastDotAfterIdent = c == '.' && lastIdent;
+            lastIdent = false;
+            builder.append(c);
+            i++;
+        }
+        return new SqlFingerprint(sql, builder.toString(), starts, ends, qualified, count);
+    }
+
+    private static int skipQuoted(String sql, int i, char quote) {
+        final int length = sql.length();
+        i++;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote == '\'') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static boolean containsBackslash(String sql, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (sql.charAt(i) == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipNumber(String sql, int i) {
+        final int length = sql.length();
+        while (i < length && sql.charAt(i) >= '0' && sql.charAt(i) <= '9') {
+            i++;
+        }
+        if (i + 1 < length && sql.charAt(i) == '.' && sql.charAt(i + 1) >= '0' && sql.charAt(i + 1) <= '9') {
+            i++;
+            while (i < length && sql.charAt(i) >= '0' && sql.charAt(i) <= '9') {
+                i++;
+            }
+        }
+        if (i < length && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < length && (sql.charAt(j) == '+' || sql.charAt(j) == '-')) {
+                j++;
+            }
+            if (j < length && sql.charAt(j) >= '0' && sql.charAt(j) <= '9') {
+                i = j;
+                while (i < length && sql.charAt(i) >= '0' && sql.charAt(i) <= '9') {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$' || c == '@';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@' || c == '#';
+    }
+
+    private static int[] grow(int[] src) {
+        int[] dest = new int[src.length << 1];
+        System.arraycopy(src, 0, dest, 0, src.length);
+        return dest;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getIdentifierCount() {
+        return identCount;
+    }
+
+    /**
+     * 获取标识符的原始内容，包含引号
+     *
+     * @param index 标识符序号
+     * @return 标识符
+     */
+    public String getIdentifier(int index) {
+        return sql.substring(identStarts[index], identEnds[index]);
+    }
+
+    /**
+     * 标识符后面是否紧跟着 . 和下一个标识符
+     *
+     * @param index 标识符序号
+     * @return 是否是限定名的一部分
+     */
+    public boolean isQualified(int index) {
+        return qualified[index];
+    }
+
+    /**
+     * 按照标识符序号替换 sql 中的标识符
+     *
+     * @param indexes      需要替换的标识符序号，必须是递增的
+     * @param replacements 替换后的内容
+     * @return 替换后的 sql
+     */
+    public String splice(int[] indexes, String[] replacements) {
+        if (indexes.length == 0) {
+            return sql;
+        }
+        int extra = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            extra += replacements[i].length() - (identEnds[indexes[i]] - identStarts[indexes[i]]);
+        }
+        StringBuilder builder = new StringBuilder(sql.length() + Math.max(extra, 0));
+        int last = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            final int index = indexes[i];
+            builder.append(sql, last, identStarts[index]).append(replacements[i]);
+            last = identEnds[index];
+        }
+        builder.append(sql, last, sql.length());
+        return builder.toString();
+    }
+}
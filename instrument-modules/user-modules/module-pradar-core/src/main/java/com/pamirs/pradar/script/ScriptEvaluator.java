@@ -14,6 +14,7 @@
  */
 package com.pamirs.pradar.script;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,4 +56,24 @@ public interface ScriptEvaluator {
      * @return the return value of the script, if any
      */
     Object evaluate(ClassLoader classLoader, String script, Map<String, Object> arguments);
+
+    /**
+     * Discard the compiled form of the given script, e.g. when the
+     * script has been modified or removed.
+     *
+     * @param script the script content
+     */
+    void invalidate(String script);
+
+    /**
+     * Discard the compiled form of all scripts.
+     */
+    void invalidateAll();
+
+    /**
+     * Return the execution metrics of every compiled script.
+     *
+     * @return the metrics, one per script and class loader
+     */
+    List<ScriptMetrics> getMetrics();
 }
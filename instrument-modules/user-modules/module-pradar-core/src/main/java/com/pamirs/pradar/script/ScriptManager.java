@@ -16,7 +16,9 @@ package com.pamirs.pradar.script;
 
 import com.pamirs.pradar.script.bsh.BshScriptEvaluator;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -50,4 +52,17 @@ public class ScriptManager {
     public ScriptEvaluator getScriptEvaluator(String type) {
         return evaluators.get(type);
     }
+
+    /**
+     * 汇总所有脚本执行器的脚本执行指标
+     *
+     * @return 脚本执行指标，每个脚本、ClassLoader 一条
+     */
+    public List<ScriptMetrics> getMetrics() {
+        List<ScriptMetrics> metrics = new ArrayList<ScriptMetrics>();
+        for (ScriptEvaluator evaluator : evaluators.values()) {
+            metrics.addAll(evaluator.getMetrics());
+        }
+        return metrics;
+    }
 }
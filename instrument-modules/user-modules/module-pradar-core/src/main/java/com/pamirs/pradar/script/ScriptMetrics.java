@@ -0,0 +1,111 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.script;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个已编译脚本的执行统计
+ * <p>
+ * 同一段脚本在不同的 ClassLoader 下会分别编译，所以每个 ClassLoader 下各有一份统计
+ */
+public class ScriptMetrics {
+    /**
+     * 统计中展示的脚本最大长度
+     */
+    private final static int MAX_SCRIPT_LENGTH = 128;
+
+    private final String script;
+    private final String classLoader;
+    private final long compileNanos;
+
+    private final AtomicLong invokeCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private volatile long maxNanos;
+
+    public ScriptMetrics(String script, ClassLoader classLoader, long compileNanos) {
+        this.script = script.length() > MAX_SCRIPT_LENGTH ? script.substring(0, MAX_SCRIPT_LENGTH) + "..." : script;
+        this.classLoader = classLoader == null ? "bootstrap" : classLoader.toString();
+        this.compileNanos = compileNanos;
+    }
+
+    /**
+     * 记录一次执行
+     *
+     * @param costNanos 执行耗时
+     * @param success   是否执行成功
+     */
+    public void record(long costNanos, boolean success) {
+        invokeCount.incrementAndGet();
+        totalNanos.addAndGet(costNanos);
+        if (!success) {
+            errorCount.incrementAndGet();
+        }
+        // 并发更新时可能丢失一次最大值，统计允许这点误差
+        if (costNanos > maxNanos) {
+            maxNanos = costNanos;
+        }
+    }
+
+    /**
+     * 脚本内容，过长时截断
+     */
+    public String getScript() {
+        return script;
+    }
+
+    public String getClassLoader() {
+        return classLoader;
+    }
+
+    public long getCompileNanos() {
+        return compileNanos;
+    }
+
+    public long getInvokeCount() {
+        return invokeCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getAverageNanos() {
+        final long count = invokeCount.get();
+        return count == 0 ? 0 : totalNanos.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptMetrics{" +
+                "script='" + script + '\'' +
+                ", classLoader='" + classLoader + '\'' +
+                ", compileNanos=" + compileNanos +
+                ", invokeCount=" + getInvokeCount() +
+                ", errorCount=" + getErrorCount() +
+                ", avgNanos=" + getAverageNanos() +
+                ", maxNanos=" + maxNanos +
+                '}';
+    }
+}
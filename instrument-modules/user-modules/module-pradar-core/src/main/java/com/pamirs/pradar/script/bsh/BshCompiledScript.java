@@ -0,0 +1,152 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.script.bsh;
+
+import bsh.CallStack;
+import bsh.EvalError;
+import bsh.Interpreter;
+import bsh.NameSpace;
+import bsh.Parser;
+import bsh.Primitive;
+import bsh.UtilEvalError;
+import com.pamirs.pradar.script.ScriptMetrics;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预先解析好语法树的 BeanShell 脚本
+ * <p>
+ * 与 {@link Interpreter#eval(java.io.Reader)} 的执行过程一致，只是把逐行解析出的语法树保留下来，
+ * 每次执行时只新建一个以解释器全局命名空间为父的命名空间存放参数，不再重新创建解释器和解析脚本，
+ * 脚本中声明的变量、方法都落在这个命名空间中，多次执行以及并发执行之间互不影响
+ * <p>
+ * BeanShell 的语法树节点以及 return 的控制对象都是包内可见的，只能通过反射执行
+ */
+final class BshCompiledScript {
+
+    private final static Method EVAL_METHOD;
+    private final static Class<?> RETURN_CONTROL_CLASS;
+    private final static Field RETURN_VALUE_FIELD;
+
+    static {
+        Method evalMethod = null;
+        Class<?> returnControlClass = null;
+        Field returnValueField = null;
+        try {
+            evalMethod = Class.forName("bsh.SimpleNode", false, Interpreter.class.getClassLoader())
+                    .getMethod("eval", CallStack.class, Interpreter.class);
+            evalMethod.setAccessible(true);
+            returnControlClass = Class.forName("bsh.ReturnControl", false, Interpreter.class.getClassLoader());
+            returnValueField = returnControlClass.getField("value");
+            returnValueField.setAccessible(true);
+        } catch (Throwable e) {
+            evalMethod = null;
+        }
+        EVAL_METHOD = evalMethod;
+        RETURN_CONTROL_CLASS = returnControlClass;
+        RETURN_VALUE_FIELD = returnValueField;
+    }
+
+    private final Object[] nodes;
+    private final Interpreter interpreter;
+    private final ScriptMetrics metrics;
+
+    private BshCompiledScript(Object[] nodes, Interpreter interpreter, ScriptMetrics metrics) {
+        this.nodes = nodes;
+        this.interpreter = interpreter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 当前的 BeanShell 版本是否支持执行预先解析的语法树
+     */
+    static boolean isSupported() {
+        return EVAL_METHOD != null;
+    }
+
+    static BshCompiledScript compile(String script, ClassLoader classLoader) throws EvalError {
+        final long start = System.nanoTime();
+        Interpreter interpreter = new Interpreter();
+        interpreter.setClassLoader(classLoader);
+        Parser parser = new Parser(new StringReader(script));
+        List<Object> nodes = new ArrayList<Object>();
+        boolean eof = false;
+        while (!eof) {
+            eof = parser.Line();
+            Object node = parser.popNode();
+            if (node != null) {
+                nodes.add(node);
+            }
+        }
+        return new BshCompiledScript(nodes.toArray(), interpreter,
+                new ScriptMetrics(script, classLoader, System.nanoTime() - start));
+    }
+
+    ScriptMetrics getMetrics() {
+        return metrics;
+    }
+
+    Object eval(Map<String, Object> arguments) throws EvalError, UtilEvalError {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            NameSpace nameSpace = new NameSpace(interpreter.getNameSpace(), "script");
+            if (arguments != null) {
+                for (Map.Entry<String, Object> entry : arguments.entrySet()) {
+                    // 与 Interpreter.set 一致，null 需要转换成 Primitive.NULL
+                    final Object value = entry.getValue();
+                    nameSpace.setVariable(entry.getKey(), value == null ? Primitive.NULL : value, false);
+                }
+            }
+            CallStack callStack = new CallStack(nameSpace);
+            Object result = null;
+            for (Object node : nodes) {
+                result = evalNode(node, callStack);
+                if (RETURN_CONTROL_CLASS.isInstance(result)) {
+                    result = RETURN_VALUE_FIELD.get(result);
+                    break;
+                }
+            }
+            success = true;
+            return Primitive.unwrap(result);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            metrics.record(System.nanoTime() - start, success);
+        }
+    }
+
+    private Object evalNode(Object node, CallStack callStack) throws EvalError, IllegalAccessException {
+        try {
+            return EVAL_METHOD.invoke(node, callStack, interpreter);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof EvalError) {
+                throw (EvalError) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
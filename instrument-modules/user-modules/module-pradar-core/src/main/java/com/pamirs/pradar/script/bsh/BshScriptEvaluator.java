@@ -16,18 +16,45 @@ package com.pamirs.pradar.script.bsh;
 
 import bsh.EvalError;
 import bsh.Interpreter;
+import bsh.UtilEvalError;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.pamirs.pradar.script.ScriptEvaluator;
+import com.pamirs.pradar.script.ScriptMetrics;
 
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author xiaobin.zfb|xiaobin@shulie.io
  * @since 2021/6/18 2:35 下午
  */
 public class BshScriptEvaluator implements ScriptEvaluator {
+    /**
+     * 每个 ClassLoader 下最多缓存的脚本数
+     */
+    private final static int MAX_SCRIPTS_PER_CLASSLOADER = 1024;
+
     private ClassLoader classLoader;
 
+    /**
+     * 已编译的脚本，按 ClassLoader 以及脚本内容缓存，同一段脚本在不同的 ClassLoader 下解析出的类型不同，需要分别编译
+     * <p>
+     * 编译后的脚本通过解释器强引用了 ClassLoader，所以脚本使用软引用并且长时间不用时过期，
+     * 保证 ClassLoader 可以被回收
+     */
+    private final Cache<ClassLoader, Cache<String, BshCompiledScript>> scripts = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * ClassLoader 为 null 时使用的脚本缓存
+     */
+    private final Cache<String, BshCompiledScript> bootstrapScripts = newScriptCache();
+
     /**
      * Construct a new BshScriptEvaluator.
      */
@@ -61,22 +88,92 @@ public class BshScriptEvaluator implements ScriptEvaluator {
 
     @Override
     public Object evaluate(String script, Map<String, Object> arguments) {
+        return evaluate(this.classLoader, script, arguments);
+    }
+
+    @Override
+    public Object evaluate(ClassLoader classLoader, String script, Map<String, Object> arguments) {
+        if (!BshCompiledScript.isSupported()) {
+            return interpret(classLoader, script, arguments);
+        }
         try {
-            Interpreter interpreter = new Interpreter();
-            interpreter.setClassLoader(this.classLoader);
-            if (arguments != null) {
-                for (Map.Entry<String, Object> entry : arguments.entrySet()) {
-                    interpreter.set(entry.getKey(), entry.getValue());
-                }
-            }
-            return interpreter.eval(new StringReader(script));
+            return getCompiledScript(classLoader, script).eval(arguments);
         } catch (EvalError ex) {
             throw new RuntimeException(script, ex);
+        } catch (UtilEvalError ex) {
+            throw new RuntimeException(script, ex);
         }
     }
 
     @Override
-    public Object evaluate(ClassLoader classLoader, String script, Map<String, Object> arguments) {
+    public void invalidate(String script) {
+        bootstrapScripts.invalidate(script);
+        for (Cache<String, BshCompiledScript> cache : scripts.asMap().values()) {
+            cache.invalidate(script);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        bootstrapScripts.invalidateAll();
+        scripts.invalidateAll();
+    }
+
+    @Override
+    public List<ScriptMetrics> getMetrics() {
+        List<ScriptMetrics> metrics = new ArrayList<ScriptMetrics>();
+        for (BshCompiledScript compiledScript : bootstrapScripts.asMap().values()) {
+            metrics.add(compiledScript.getMetrics());
+        }
+        for (Cache<String, BshCompiledScript> cache : scripts.asMap().values()) {
+            for (BshCompiledScript compiledScript : cache.asMap().values()) {
+                metrics.add(compiledScript.getMetrics());
+            }
+        }
+        return metrics;
+    }
+
+    private BshCompiledScript getCompiledScript(ClassLoader classLoader, String script) throws EvalError {
+        Cache<String, BshCompiledScript> cache = getScriptCache(classLoader);
+        BshCompiledScript compiledScript = cache.getIfPresent(script);
+        if (compiledScript == null) {
+            // 并发编译同一段脚本时保留先放入的，保证统计不会丢失
+            compiledScript = BshCompiledScript.compile(script, classLoader);
+            BshCompiledScript old = cache.asMap().putIfAbsent(script, compiledScript);
+            if (old != null) {
+                compiledScript = old;
+            }
+        }
+        return compiledScript;
+    }
+
+    private Cache<String, BshCompiledScript> getScriptCache(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return bootstrapScripts;
+        }
+        Cache<String, BshCompiledScript> cache = scripts.getIfPresent(classLoader);
+        if (cache == null) {
+            cache = newScriptCache();
+            Cache<String, BshCompiledScript> old = scripts.asMap().putIfAbsent(classLoader, cache);
+            if (old != null) {
+                cache = old;
+            }
+        }
+        return cache;
+    }
+
+    private static Cache<String, BshCompiledScript> newScriptCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(MAX_SCRIPTS_PER_CLASSLOADER)
+                .softValues()
+                .expireAfterAccess(30, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 每次新建解释器并解析脚本执行，当前的 BeanShell 版本不支持执行预先解析的语法树时使用
+     */
+    private Object interpret(ClassLoader classLoader, String script, Map<String, Object> arguments) {
         try {
             Interpreter interpreter = new Interpreter();
             interpreter.setClassLoader(classLoader);
@@ -23,10 +23,12 @@ import com.pamirs.pradar.common.ClassUtils;
 import com.pamirs.pradar.debug.DebugHelper;
 import com.pamirs.pradar.internal.GlobalConfigService;
 import com.pamirs.pradar.internal.PradarInternalService;
+import com.pamirs.pradar.metrics.PradarMetrics;
 import com.pamirs.pradar.pressurement.agent.shared.exit.ArbiterHttpExit;
 import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
 import com.pamirs.pradar.pressurement.agent.shared.util.PradarSpringUtil;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
 import com.pamirs.pradar.pressurement.datasource.SqlParser;
 import com.pamirs.pradar.pressurement.datasource.util.SqlMetadataParser;
 import com.pamirs.pradar.upload.uploader.AgentOnlineUploader;
@@ -106,6 +108,7 @@ public class PradarCoreModule extends ModuleLifecycleAdapter implements Extensio
 
         monitorCollector = MonitorCollector.getInstance();
         monitorCollector.start();
+        PradarMetrics.start();
         return true;
     }
 
@@ -116,6 +119,7 @@ public class PradarCoreModule extends ModuleLifecycleAdapter implements Extensio
         if (monitorCollector != null) {
             monitorCollector.stop();
         }
+        PradarMetrics.stop();
         Pradar.shutdown();
     }
 
@@ -128,6 +132,7 @@ public class PradarCoreModule extends ModuleLifecycleAdapter implements Extensio
         PradarSwitcher.destroy();
         ArbiterHttpExit.release();
         SqlParser.release();
+        ShadowDataSourceWarmer.release();
         ClassUtils.release();
         PradarSpringUtil.release();
         SqlMetadataParser.clear();
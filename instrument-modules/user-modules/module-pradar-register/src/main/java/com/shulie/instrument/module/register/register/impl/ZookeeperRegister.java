@@ -56,6 +56,9 @@ import com.pamirs.pradar.event.Event;
 import com.pamirs.pradar.event.PradarSwitchEvent;
 import com.pamirs.pradar.exception.PradarException;
 import com.pamirs.pradar.pressurement.base.util.PropertyUtil;
+import com.pamirs.pradar.pressurement.datasource.ShadowDataSourceWarmer;
+import com.pamirs.pradar.script.ScriptManager;
+import com.pamirs.pradar.script.ScriptMetrics;
 import com.shulie.instrument.module.register.NodeRegisterModule;
 import com.shulie.instrument.module.register.register.Register;
 import com.shulie.instrument.module.register.register.RegisterOptions;
@@ -136,6 +139,14 @@ public class ZookeeperRegister implements Register {
         } else {
             map.put("agentStatus", "INSTALLED");
         }
+        if (ShadowDataSourceWarmer.isEnabled()) {
+            map.put("shadowDataSourceReady", String.valueOf(ShadowDataSourceWarmer.isAllReady()));
+            map.put("shadowDataSourceWarmupDetail", JSON.toJSONString(ShadowDataSourceWarmer.getStatus()));
+        }
+        List<ScriptMetrics> scriptMetrics = ScriptManager.getInstance().getMetrics();
+        if (!scriptMetrics.isEmpty()) {
+            map.put("scriptMetrics", JSON.toJSONString(scriptMetrics));
+        }
         map.put("moduleLoadResult", String.valueOf(getModuleLoadResult()));
         map.put("moduleLoadDetail",
             JSON.toJSONString(NodeRegisterModule.moduleLoadInfoManager.getModuleLoadInfos().values()));
@@ -182,6 +182,7 @@ public class DataSourceWrapUtil {
                             target.hashCode(), target.getDriverUrl(), target.getUser(), ptDataSource.getDriverUrl(),
                             ptDataSource.getUser());
                 }
+                dataSource.prewarm();
             } catch (Throwable t) {
                 logger.error("[proxool] init datasource err!", t);
                 ErrorReporter.buildError()
@@ -56,10 +56,21 @@ public class ProxoolMediaDataSource extends WrappedDbMediatorDataSource<ProxoolD
         return datasource.getDriver();
     }
 
+    @Override
+    protected int getMinIdle(ProxoolDataSource datasource) {
+        return datasource.getMinimumConnectionCount();
+    }
+
+    @Override
+    protected int getMaxActive(ProxoolDataSource datasource) {
+        return datasource.getMaximumConnectionCount();
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         if (Pradar.isClusterTest()) {
             try {
+                awaitWarmup();
                 init();
                 if (useTable) {
                     //影子表
@@ -104,5 +115,6 @@ public class ProxoolMediaDataSource extends WrappedDbMediatorDataSource<ProxoolD
 
     @Override
     public void close() {
+        releaseWarmup();
     }
 }
@@ -21,7 +21,7 @@ import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.interceptor.ParametersWrapperInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
-import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.util.CacheKeyRewriter;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
@@ -58,15 +58,13 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
             return args;
         }
 
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-
         if (RedisUtils.EVAL_METHOD_NAME.contains(methodName)) {
-            return processEvalMethodName(args, whiteList);
+            return processEvalMethodName(args);
         }
 
         //String methodSign = getMethodSign(methodName,args);
         if (RedisUtils.METHOD_MORE_KEYS.containsKey(methodName)) {
-            return processMoreKeys(methodName, args, whiteList);
+            return processMoreKeys(methodName, args);
         }
 
         //jedis db非0时候选择不做处理
@@ -75,33 +73,32 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         }
 
         if ("xread".equals(advice.getBehaviorName())) {
-            return processXRead(args, whiteList);
+            return processXRead(args);
         }
 
         if ("xreadGroup".equals(advice.getBehaviorName())) {
-            return processXReadGroup(args, whiteList);
+            return processXReadGroup(args);
         }
 
         if ("mset".equals(advice.getBehaviorName())||"msetnx".equals(advice.getBehaviorName())) {
-            return processMset(args, whiteList);
+            return processMset(args);
         }
 
-        return process(args, whiteList);
+        return process(args);
     }
 
-    private Object[] processMset(Object[] args, Collection<String> whiteList) {
+    private Object[] processMset(Object[] args) {
         Object params = args[0];
         if (params instanceof String[]) {
             String[] data = (String[]) params;
             for (int i = 0; i < data.length; i=i+2) {
-                data[i] = fetchKeyString(data[i], whiteList);
+                data[i] = fetchKeyString(data[i]);
             }
             return args;
         } else if (params instanceof byte[][]) {
             byte[][] data = (byte[][]) params;
             for (int i = 0; i < data.length; i = i + 2) {
-                String key = fetchKeyString(new String(data[i]), whiteList);
-                data[i] = key.getBytes();
+                data[i] = CacheKeyRewriter.toClusterTestKey(data[i]);
             }
             return args;
         }
@@ -109,7 +106,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         throw new PressureMeasureError("Jedis not support mset key deserialize !");
     }
 
-    private Object[] processXRead(Object[] args, Collection<String> whiteList) {
+    private Object[] processXRead(Object[] args) {
         if (args.length != 3) {
             return args;
         }
@@ -153,7 +150,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return args;
     }
 
-    private Object[] processXReadGroup(Object[] args, Collection<String> whiteList) {
+    private Object[] processXReadGroup(Object[] args) {
         if (args.length != 6) {
             return args;
         }
@@ -197,38 +194,38 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return args;
     }
 
-    private Object[] process(Object[] args, Collection<String> whiteList) {
+    private Object[] process(Object[] args) {
         //遍历顺序获取一下几个类型值
         for (int i = 0; i < args.length; i++) {
             if (args[i] instanceof String) {
-                return processKeyString(args, whiteList, i);
+                return processKeyString(args, i);
             } else if (args[i] instanceof String[]) {
-                return processKeyStringArray(args, whiteList, i);
+                return processKeyStringArray(args, i);
             } else if (args[i] instanceof byte[]) {
-                return processKeyByte(args, whiteList, i);
+                return processKeyByte(args, i);
             } else if (args[i] instanceof byte[][]) {
-                return processKeyByteArray(args, whiteList, i);
+                return processKeyByteArray(args, i);
             }
         }
 
         throw new PressureMeasureError("Jedis not support key deserialize !");
     }
 
-    private Object[] processIndex(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private Object[] processIndex(Object[] args, int keyIndex) {
         if (args[keyIndex] instanceof String) {
-            return processKeyString(args, whiteList, keyIndex);
+            return processKeyString(args, keyIndex);
         } else if (args[keyIndex] instanceof String[]) {
-            return processKeyStringArray(args, whiteList, keyIndex);
+            return processKeyStringArray(args, keyIndex);
         } else if (args[keyIndex] instanceof byte[]) {
-            return processKeyByte(args, whiteList, keyIndex);
+            return processKeyByte(args, keyIndex);
         } else if (args[keyIndex] instanceof byte[][]) {
-            return processKeyByteArray(args, whiteList, keyIndex);
+            return processKeyByteArray(args, keyIndex);
         } else {
             throw new PressureMeasureError("Jedis not support key deserialize !");
         }
     }
 
-    private Object[] processKeyStringArray(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private Object[] processKeyStringArray(Object[] args, int keyIndex) {
         int keysIndex = keyIndex;
         String[] keys = (String[]) args[keysIndex];
         for (int i = 0; i < keys.length; i++) {
@@ -238,14 +235,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
                 continue;
             }
 
-            //白名单 忽略
-            if (whiteListValidate(whiteList, key)) {
-                continue;
-            }
-            if (!Pradar.isClusterTestPrefix(key)) {
-                key = Pradar.addClusterTestPrefix(key);
-                keys[i] = key;
-            }
+            keys[i] = CacheKeyRewriter.toClusterTestKey(key);
         }
 
         args[keysIndex] = keys;
@@ -260,48 +250,32 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return false;
     }
 
-    private Object[] processMoreKeys(String methodName, Object[] args, Collection<String> whiteList) {
+    private Object[] processMoreKeys(String methodName, Object[] args) {
         List<Integer> keyIndexes = RedisUtils.METHOD_MORE_KEYS.get(methodName);
         //如果出现枚举的值比方法参数数量大的，则进行判断单个key逻辑处理
         for (int i = 0; i < keyIndexes.size(); i++) {
             if (args.length < (keyIndexes.get(i) + 1)) {
-                return process(args, whiteList);
+                return process(args);
             }
         }
 
         for (int i = 0; i < keyIndexes.size(); i++) {
-            processIndex(args, whiteList, keyIndexes.get(i));
+            processIndex(args, keyIndexes.get(i));
         }
         return args;
     }
 
-    private Object[] processKeyString(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private Object[] processKeyString(Object[] args, int keyIndex) {
         String key = (String) args[keyIndex];
-        args[keyIndex] = fetchKeyString(key, whiteList);
+        args[keyIndex] = fetchKeyString(key);
         return args;
     }
 
-    private String fetchKeyString(String key, Collection<String> whiteList) {
-        if (whiteListValidate(whiteList, key)) {
-            return key;
-        }
-
-        if (!Pradar.isClusterTestPrefix(key)) {
-            return Pradar.addClusterTestPrefix(key);
-        }
-        return key;
-    }
-
-    private boolean whiteListValidate(Collection<String> whiteList, String key) {
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
+    private String fetchKeyString(String key) {
+        return CacheKeyRewriter.toClusterTestKey(key);
     }
 
-    private Object[] processEvalMethodName(Object[] args, Collection<String> whiteList) {
+    private Object[] processEvalMethodName(Object[] args) {
         if (args.length != 3) {
             return args;
         }
@@ -323,23 +297,10 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
                     if (RedisUtils.IGNORE_NAME.contains(key)) {
                         continue;
                     }
-                    boolean contains = false;
-                    for (String white : whiteList) {
-                        if (key.startsWith(white)) {
-                            contains = true;
-                            break;
-                        }
-                    }
-                    if (contains) {
-                        continue;
-                    }
-                    if (Pradar.isClusterTestPrefix(key)) {
-                        continue;
-                    }
-                    if (params[i] instanceof String) {
-                        params[i] = Pradar.addClusterTestPrefix(key);
+                    if (data instanceof String) {
+                        params[i] = CacheKeyRewriter.toClusterTestKey(key);
                     } else {
-                        params[i] = (Pradar.addClusterTestPrefix(key)).getBytes();
+                        params[i] = CacheKeyRewriter.toClusterTestKey((byte[]) data);
                     }
                 }
             }
@@ -358,20 +319,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
                     if (RedisUtils.IGNORE_NAME.contains(key)) {
                         continue;
                     }
-                    boolean contains = false;
-                    for (String white : whiteList) {
-                        if (key.startsWith(white)) {
-                            contains = true;
-                            break;
-                        }
-                    }
-                    if (contains) {
-                        continue;
-                    }
-                    if (Pradar.isClusterTestPrefix(key)) {
-                        continue;
-                    }
-                    params[i] = (Pradar.addClusterTestPrefix(key)).getBytes();
+                    params[i] = CacheKeyRewriter.toClusterTestKey(data);
                 }
             }
         } else if (args[1] instanceof java.util.List) {
@@ -403,43 +351,20 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return args;
     }
 
-    private Object[] processKeyByte(Object[] args, Collection<String> whiteList, int keyIndex) {
-        int keysIndex = keyIndex;
-        String key = new String((byte[]) args[keysIndex]);
-
-        //白名单 忽略
-        if (ignore(whiteList, key)) {
-            return args;
-        }
-
-        if (!Pradar.isClusterTestPrefix(key)) {
-            key = Pradar.addClusterTestPrefix(key);
-            args[keysIndex] = key.getBytes();
-            return args;
-        }
-
+    private Object[] processKeyByte(Object[] args, int keyIndex) {
+        args[keyIndex] = CacheKeyRewriter.toClusterTestKey((byte[]) args[keyIndex]);
         return args;
     }
 
-    private Object[] processKeyByteArray(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private Object[] processKeyByteArray(Object[] args, int keyIndex) {
         int keysIndex = keyIndex;
         byte[][] keyBytes = (byte[][]) args[keysIndex];
 
         for (int i = 0; i < keyBytes.length; i++) {
-            String key = new String(keyBytes[i]);
-
-            if (isNumeric(key)) {
-                continue;
-            }
-
-            //白名单 忽略
-            if (whiteListValidate(whiteList, key)) {
+            if (CacheKeyRewriter.isNumeric(keyBytes[i])) {
                 continue;
             }
-            if (!Pradar.isClusterTestPrefix(key)) {
-                key = Pradar.addClusterTestPrefix(key);
-                keyBytes[i] = key.getBytes();
-            }
+            keyBytes[i] = CacheKeyRewriter.toClusterTestKey(keyBytes[i]);
         }
 
         args[keysIndex] = keyBytes;
@@ -451,23 +376,23 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
             return null;
         }
         if (key instanceof byte[]) {
-            return getBytes((byte[]) key);
+            return CacheKeyRewriter.toClusterTestKey((byte[]) key);
         }
 
         if (key instanceof byte[][]) {
-            return getBytesArray((byte[][]) key);
+            return CacheKeyRewriter.toClusterTestKeys((byte[][]) key);
         }
 
         if (key instanceof char[]) {
-            return getChars((char[]) key);
+            return CacheKeyRewriter.toClusterTestKey((char[]) key);
         }
 
         if (key instanceof char[][]) {
-            return getCharsArray((char[][]) key);
+            return CacheKeyRewriter.toClusterTestKeys((char[][]) key);
         }
 
         if (key instanceof String) {
-            return getString((String) key);
+            return CacheKeyRewriter.toClusterTestKey((String) key);
         }
 
         if (key instanceof List) {
@@ -527,95 +452,6 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
             return keys;
         }
 
-        String str = key.toString();
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
-            return str;
-        }
-        if (!Pradar.isClusterTestPrefix(str)) {
-            str = Pradar.addClusterTestPrefix(str);
-        }
-        return str;
-
-    }
-
-    private String getString(String key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, key)) {
-            return key;
-        }
-        String str = key;
-        if (!Pradar.isClusterTestPrefix(str)) {
-            str = Pradar.addClusterTestPrefix(str);
-        }
-        return str;
-    }
-
-    private char[][] getCharsArray(char[][] key) {
-        char[][] datas = key;
-        for (int i = 0, len = datas.length; i < len; i++) {
-            String str = new String(datas[i]);
-            Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-            if (ignore(whiteList, str)) {
-                continue;
-            }
-            if (!Pradar.isClusterTestPrefix(str)) {
-                str = Pradar.addClusterTestPrefix(str);
-            }
-            datas[i] = str.toCharArray();
-        }
-        return datas;
-    }
-
-    private char[] getChars(char[] key) {
-        String str = new String(key);
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
-            return key;
-        }
-        if (!Pradar.isClusterTestPrefix(str)) {
-            str = Pradar.addClusterTestPrefix(str);
-        }
-        return str.toCharArray();
-    }
-
-    private byte[][] getBytesArray(byte[][] key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        byte[][] datas = key;
-        for (int i = 0, len = datas.length; i < len; i++) {
-            String str = new String(datas[i]);
-            if (ignore(whiteList, str)) {
-                continue;
-            }
-            if (!Pradar.isClusterTestPrefix(str)) {
-                str = Pradar.addClusterTestPrefix(str);
-            }
-            datas[i] = str.getBytes();
-        }
-        return datas;
-    }
-
-    private boolean ignore(Collection<String> whiteList, String key) {
-        //白名单 忽略
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private byte[] getBytes(byte[] key) {
-        String str = new String(key);
-
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
-            return key;
-        }
-
-        if (!Pradar.isClusterTestPrefix(str)) {
-            str = Pradar.addClusterTestPrefix(str);
-        }
-        return str.getBytes();
+        return CacheKeyRewriter.toClusterTestKey(key.toString());
     }
 }
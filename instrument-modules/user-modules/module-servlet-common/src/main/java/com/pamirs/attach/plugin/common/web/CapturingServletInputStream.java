@@ -0,0 +1,194 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.common.web;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import com.pamirs.pradar.Pradar;
+
+/**
+ * 请求体旁路采集流
+ * <p>
+ * 业务读取请求体时直接从原始流中读取，同时把读到的前 limit 个字节复制一份，
+ * 供记录 trace 时使用，请求体不会被整体读入内存，业务没有读取的部分也不会被采集
+ * <p>
+ * 非线程安全，与原始的 ServletInputStream 一样只能由一个线程读取
+ */
+public class CapturingServletInputStream extends ServletInputStream {
+
+    /**
+     * 请求体采集模式，buffer 为读取整个请求体后再交给业务的原有方式，请求体可以重复读取
+     */
+    public static final String CAPTURE_MODE = "plugin.request.body.capture.mode";
+    /**
+     * 请求体最多采集的字节数，默认为 plugin.request.size 的 4 倍，保证多字节字符也能填满 trace 中的请求长度
+     */
+    public static final String CAPTURE_SIZE = "plugin.request.body.capture.size";
+
+    private static final String MODE_BUFFER = "buffer";
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final ServletInputStream in;
+    private final int limit;
+    private byte[] captured;
+    private int count;
+
+    /**
+     * @param in            原始的请求输入流
+     * @param limit         最多采集的字节数
+     * @param contentLength 请求体长度，未知时为 -1，用于确定采集缓冲区的初始大小
+     */
+    public CapturingServletInputStream(ServletInputStream in, int limit, long contentLength) {
+        this.in = in;
+        this.limit = Math.max(0, limit);
+        int capacity = contentLength >= 0 ? (int) Math.min(contentLength, this.limit)
+            : Math.min(INITIAL_CAPACITY, this.limit);
+        this.captured = new byte[capacity];
+    }
+
+    /**
+     * 是否使用读取整个请求体的采集方式
+     */
+    public static boolean isBufferMode() {
+        return MODE_BUFFER.equals(Pradar.getProperty(CAPTURE_MODE));
+    }
+
+    /**
+     * 请求体最多采集的字节数
+     */
+    public static int getCaptureLimit() {
+        Integer size = Pradar.getIntProperty(CAPTURE_SIZE);
+        if (size != null) {
+            return size;
+        }
+        return Pradar.getPluginRequestSize() * 4;
+    }
+
+    /**
+     * 获取已经采集到的请求体
+     *
+     * @return 业务已经读取的请求体的前 limit 个字节
+     */
+    public byte[] getCaptured() {
+        return Arrays.copyOf(captured, count);
+    }
+
+    private void capture(int b) {
+        if (count >= limit) {
+            return;
+        }
+        ensureCapacity(count + 1);
+        captured[count++] = (byte) b;
+    }
+
+    private void capture(byte[] b, int off, int len) {
+        final int n = Math.min(len, limit - count);
+        if (n <= 0) {
+            return;
+        }
+        ensureCapacity(count + n);
+        System.arraycopy(b, off, captured, count, n);
+        count += n;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > captured.length) {
+            int newCapacity = Math.max(captured.length << 1, INITIAL_CAPACITY);
+            captured = Arrays.copyOf(captured, Math.min(limit, Math.max(newCapacity, capacity)));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            capture(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            capture(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public int readLine(byte[] b, int off, int len) throws IOException {
+        int read = in.readLine(b, off, len);
+        if (read > 0) {
+            capture(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return in.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * 以下方法在 Servlet 3.1 中才出现，低版本容器的输入流没有实现时返回与原来一样的默认值
+     */
+    @Override
+    public boolean isFinished() {
+        try {
+            return in.isFinished();
+        } catch (AbstractMethodError e) {
+            return false;
+        } catch (NoSuchMethodError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        try {
+            return in.isReady();
+        } catch (AbstractMethodError e) {
+            return false;
+        } catch (NoSuchMethodError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void setReadListener(ReadListener readListener) {
+        try {
+            in.setReadListener(readListener);
+        } catch (AbstractMethodError e) {
+            // ignore
+        } catch (NoSuchMethodError e) {
+            // ignore
+        }
+    }
+}
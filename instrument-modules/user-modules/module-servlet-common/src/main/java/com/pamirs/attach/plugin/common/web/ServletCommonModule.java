@@ -53,6 +53,16 @@ public class ServletCommonModule extends ModuleLifecycleAdapter implements Exten
         if (responseOn != null) {
             System.setProperty("plugin.response.on", String.valueOf(responseOn));
         }
+
+        String captureMode = simulatorConfig.getProperty(CapturingServletInputStream.CAPTURE_MODE);
+        if (captureMode != null) {
+            System.setProperty(CapturingServletInputStream.CAPTURE_MODE, captureMode);
+        }
+
+        Integer captureSize = simulatorConfig.getIntProperty(CapturingServletInputStream.CAPTURE_SIZE);
+        if (captureSize != null) {
+            System.setProperty(CapturingServletInputStream.CAPTURE_SIZE, String.valueOf(captureSize));
+        }
         return true;
     }
 }
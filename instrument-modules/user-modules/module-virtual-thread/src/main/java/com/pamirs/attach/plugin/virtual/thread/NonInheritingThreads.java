@@ -0,0 +1,69 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.virtual.thread;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 记录关闭了 InheritableThreadLocal 继承的虚拟线程入口
+ * <p>
+ * 虚拟线程默认在创建时继承 TTL 中的上下文，不需要包装任务。只有调用了 inheritInheritableThreadLocals(false) 的 builder、
+ * 由这些 builder 创建的 ThreadFactory，以及使用这些 ThreadFactory 的 ThreadPerTaskExecutor、StructuredTaskScope
+ * 需要在提交任务时捕获上下文快照。对象以弱引用保存，没有登记过任何对象时不加锁
+ * </p>
+ */
+public final class NonInheritingThreads {
+    private final static Map<Object, Boolean> OWNERS = Collections.synchronizedMap(new WeakHashMap<Object, Boolean>());
+
+    /**
+     * 是否登记过对象，大部分应用不会关闭继承，提交任务时只需要读一次 volatile
+     */
+    private static volatile boolean used = false;
+
+    private NonInheritingThreads() {
+    }
+
+    public static void register(Object owner) {
+        if (owner == null) {
+            return;
+        }
+        OWNERS.put(owner, Boolean.TRUE);
+        used = true;
+    }
+
+    public static void unregister(Object owner) {
+        if (owner == null || !used) {
+            return;
+        }
+        OWNERS.remove(owner);
+    }
+
+    /**
+     * 判断通过该对象创建的虚拟线程是否不会继承上下文
+     *
+     * @param owner builder、ThreadFactory、执行器或 StructuredTaskScope
+     * @return TRUE:不会继承，需要包装任务；FALSE：会继承
+     */
+    public static boolean isRegistered(Object owner) {
+        return used && owner != null && OWNERS.containsKey(owner);
+    }
+
+    public static void clear() {
+        OWNERS.clear();
+        used = false;
+    }
+}
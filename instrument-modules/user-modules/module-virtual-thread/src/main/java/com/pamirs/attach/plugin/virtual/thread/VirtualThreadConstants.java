@@ -0,0 +1,36 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.virtual.thread;
+
+public final class VirtualThreadConstants {
+    public final static String PLUGIN_NAME = "virtual-thread";
+
+    /**
+     * 是否开启虚拟线程上下文传递，默认关闭，仅在 JDK 21 及以上版本生效
+     */
+    public final static String VIRTUAL_THREAD_PROPAGATION_ENABLED = "pradar.virtual.thread.propagation.enabled";
+
+    /**
+     * Thread.ofVirtual() 的 builder，start(Runnable) 也是通过 unstarted(Runnable) 创建线程
+     */
+    public final static String VIRTUAL_THREAD_BUILDER_CLASS_NAME = "java.lang.ThreadBuilders$VirtualThreadBuilder";
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor()/newThreadPerTaskExecutor(ThreadFactory) 返回的执行器
+     */
+    public final static String THREAD_PER_TASK_EXECUTOR_CLASS_NAME = "java.util.concurrent.ThreadPerTaskExecutor";
+
+    public final static String STRUCTURED_TASK_SCOPE_CLASS_NAME = "java.util.concurrent.StructuredTaskScope";
+}
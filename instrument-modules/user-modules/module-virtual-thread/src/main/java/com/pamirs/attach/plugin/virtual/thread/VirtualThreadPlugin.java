@@ -0,0 +1,103 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.virtual.thread;
+
+import com.pamirs.attach.plugin.virtual.thread.interceptor.InheritInheritableThreadLocalsInterceptor;
+import com.pamirs.attach.plugin.virtual.thread.interceptor.NonInheritingFactoryInterceptor;
+import com.pamirs.attach.plugin.virtual.thread.interceptor.NonInheritingOwnerInterceptor;
+import com.pamirs.attach.plugin.virtual.thread.interceptor.VirtualThreadTaskInterceptor;
+import com.pamirs.pradar.VirtualThreads;
+import com.shulie.instrument.simulator.api.ExtensionModule;
+import com.shulie.instrument.simulator.api.ModuleInfo;
+import com.shulie.instrument.simulator.api.ModuleLifecycleAdapter;
+import com.shulie.instrument.simulator.api.instrument.EnhanceCallback;
+import com.shulie.instrument.simulator.api.instrument.InstrumentClass;
+import com.shulie.instrument.simulator.api.instrument.InstrumentMethod;
+import com.shulie.instrument.simulator.api.listener.Listeners;
+import org.kohsuke.MetaInfServices;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 虚拟线程上下文传递
+ * <p>
+ * 上下文保存在可继承的 TTL 中，Thread.ofVirtual()、Executors.newVirtualThreadPerTaskExecutor()、StructuredTaskScope
+ * 创建虚拟线程时已经会继承提交线程的上下文，不需要包装。
+ * 只有 Thread.ofVirtual().inheritInheritableThreadLocals(false) 关闭了继承时，才在一个任务对应一个虚拟线程的提交入口上
+ * 捕获上下文快照并包装任务：builder 的 unstarted()/start()，以及使用它的 factory() 的 ThreadPerTaskExecutor 的 execute/submit、
+ * StructuredTaskScope.fork()。关闭继承的对象登记在 {@link NonInheritingThreads} 中
+ * </p>
+ */
+@MetaInfServices(ExtensionModule.class)
+@ModuleInfo(id = VirtualThreadConstants.PLUGIN_NAME, version = "1.0.0", author = "xiaobin@shulie.io", description = "jdk 虚拟线程上下文传递支持")
+public class VirtualThreadPlugin extends ModuleLifecycleAdapter implements ExtensionModule {
+    private final static Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPlugin.class);
+
+    @Override
+    public boolean onActive() throws Throwable {
+        if (!VirtualThreads.isSupported()) {
+            return true;
+        }
+        if (!Boolean.parseBoolean(System.getProperty(VirtualThreadConstants.VIRTUAL_THREAD_PROPAGATION_ENABLED, "false"))) {
+            LOGGER.info("virtual thread context propagation is disabled, set {}=true to enable it.", VirtualThreadConstants.VIRTUAL_THREAD_PROPAGATION_ENABLED);
+            return true;
+        }
+        enhanceTemplate.enhance(this, VirtualThreadConstants.VIRTUAL_THREAD_BUILDER_CLASS_NAME, new EnhanceCallback() {
+            @Override
+            public void doEnhance(InstrumentClass target) {
+                target.includeBootstrap();
+                final InstrumentMethod inheritMethod = target.getDeclaredMethod("inheritInheritableThreadLocals", "boolean");
+                inheritMethod.addInterceptor(Listeners.of(InheritInheritableThreadLocalsInterceptor.class));
+                final InstrumentMethod factoryMethod = target.getDeclaredMethod("factory");
+                factoryMethod.addInterceptor(Listeners.of(NonInheritingFactoryInterceptor.class));
+                final InstrumentMethod method = target.getDeclaredMethod("unstarted", "java.lang.Runnable");
+                method.addInterceptor(Listeners.of(VirtualThreadTaskInterceptor.class));
+            }
+        });
+        enhanceTemplate.enhance(this, VirtualThreadConstants.THREAD_PER_TASK_EXECUTOR_CLASS_NAME, new EnhanceCallback() {
+            @Override
+            public void doEnhance(InstrumentClass target) {
+                target.includeBootstrap();
+                final InstrumentMethod constructor = target.getConstructor("java.util.concurrent.ThreadFactory");
+                constructor.addInterceptor(Listeners.of(NonInheritingOwnerInterceptor.class));
+                /**
+                 * submit(Runnable) 会转成 submit(Callable)，只拦截 execute(Runnable) 和 submit(Callable)
+                 */
+                final InstrumentMethod executeMethod = target.getDeclaredMethod("execute", "java.lang.Runnable");
+                executeMethod.addInterceptor(Listeners.of(VirtualThreadTaskInterceptor.class));
+                final InstrumentMethod submitMethod = target.getDeclaredMethod("submit", "java.util.concurrent.Callable");
+                submitMethod.addInterceptor(Listeners.of(VirtualThreadTaskInterceptor.class));
+            }
+        });
+        enhanceTemplate.enhance(this, VirtualThreadConstants.STRUCTURED_TASK_SCOPE_CLASS_NAME, new EnhanceCallback() {
+            @Override
+            public void doEnhance(InstrumentClass target) {
+                target.includeBootstrap();
+                final InstrumentMethod constructor = target.getConstructor("java.lang.String", "java.util.concurrent.ThreadFactory");
+                constructor.addInterceptor(Listeners.of(NonInheritingOwnerInterceptor.class));
+                final InstrumentMethod method = target.getDeclaredMethod("fork", "java.util.concurrent.Callable");
+                method.addInterceptor(Listeners.of(VirtualThreadTaskInterceptor.class));
+            }
+        });
+        VirtualThreads.setPropagationEnabled(true);
+        return true;
+    }
+
+    @Override
+    public void onFrozen() throws Throwable {
+        VirtualThreads.setPropagationEnabled(false);
+        NonInheritingThreads.clear();
+    }
+}
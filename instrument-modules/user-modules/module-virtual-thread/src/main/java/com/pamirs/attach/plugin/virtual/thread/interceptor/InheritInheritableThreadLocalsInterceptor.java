@@ -0,0 +1,38 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.virtual.thread.interceptor;
+
+import com.pamirs.attach.plugin.virtual.thread.NonInheritingThreads;
+import com.pamirs.pradar.interceptor.AroundInterceptor;
+import com.shulie.instrument.simulator.api.listener.ext.Advice;
+
+/**
+ * 虚拟线程 builder 调用 inheritInheritableThreadLocals 后，登记或取消登记该 builder
+ */
+public class InheritInheritableThreadLocalsInterceptor extends AroundInterceptor {
+
+    @Override
+    public void doAfter(Advice advice) throws Throwable {
+        final Object[] args = advice.getParameterArray();
+        if (args == null || args.length == 0 || !(args[0] instanceof Boolean)) {
+            return;
+        }
+        if ((Boolean) args[0]) {
+            NonInheritingThreads.unregister(advice.getTarget());
+        } else {
+            NonInheritingThreads.register(advice.getTarget());
+        }
+    }
+}
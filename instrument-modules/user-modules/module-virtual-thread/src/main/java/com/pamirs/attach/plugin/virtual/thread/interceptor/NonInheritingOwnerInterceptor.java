@@ -0,0 +1,41 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.virtual.thread.interceptor;
+
+import java.util.concurrent.ThreadFactory;
+
+import com.pamirs.attach.plugin.virtual.thread.NonInheritingThreads;
+import com.pamirs.pradar.interceptor.AroundInterceptor;
+import com.shulie.instrument.simulator.api.listener.ext.Advice;
+
+/**
+ * ThreadPerTaskExecutor、StructuredTaskScope 使用已登记的 ThreadFactory 构造时，登记该执行器或 StructuredTaskScope
+ */
+public class NonInheritingOwnerInterceptor extends AroundInterceptor {
+
+    @Override
+    public void doAfter(Advice advice) throws Throwable {
+        final Object[] args = advice.getParameterArray();
+        if (args == null) {
+            return;
+        }
+        for (Object arg : args) {
+            if (arg instanceof ThreadFactory && NonInheritingThreads.isRegistered(arg)) {
+                NonInheritingThreads.register(advice.getTarget());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.virtual.thread.interceptor;
+
+import java.util.concurrent.Callable;
+
+import com.pamirs.attach.plugin.virtual.thread.NonInheritingThreads;
+import com.pamirs.attach.plugin.virtual.thread.wrapper.ContextSnapshotCallable;
+import com.pamirs.attach.plugin.virtual.thread.wrapper.ContextSnapshotRunnable;
+import com.pamirs.pradar.InvokeContextSnapshot;
+import com.pamirs.pradar.VirtualThreads;
+import com.pamirs.pradar.interceptor.ParametersWrapperInterceptorAdaptor;
+import com.shulie.instrument.simulator.api.listener.ext.Advice;
+
+/**
+ * 向关闭了继承的虚拟线程入口提交任务时捕获当前线程的上下文快照，并包装第一个参数上的任务
+ * <p>
+ * 没有登记在 {@link NonInheritingThreads} 中的入口创建的虚拟线程会继承上下文，不做包装。
+ * 只拦截一个任务对应一个新线程的入口，ThreadFactory#newThread 不拦截，
+ * 否则池化执行器的工作线程会把第一次提交任务的上下文带给后续无关的任务
+ * </p>
+ */
+public class VirtualThreadTaskInterceptor extends ParametersWrapperInterceptorAdaptor {
+
+    @Override
+    protected Object[] getParameter0(Advice advice) throws Throwable {
+        final Object[] args = advice.getParameterArray();
+        if (!VirtualThreads.isPropagationEnabled() || args == null || args.length == 0) {
+            return args;
+        }
+        if (!NonInheritingThreads.isRegistered(advice.getTarget())) {
+            return args;
+        }
+        final Object task = args[0];
+        if (task instanceof ContextSnapshotRunnable || task instanceof ContextSnapshotCallable) {
+            return args;
+        }
+        if (!(task instanceof Runnable) && !(task instanceof Callable)) {
+            return args;
+        }
+        final InvokeContextSnapshot snapshot = InvokeContextSnapshot.capture();
+        /**
+         * 没有上下文时不包装
+         */
+        if (snapshot == null) {
+            return args;
+        }
+        if (task instanceof Runnable) {
+            args[0] = new ContextSnapshotRunnable((Runnable) task, snapshot);
+        } else {
+            args[0] = new ContextSnapshotCallable((Callable) task, snapshot);
+        }
+        return args;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.virtual.thread.wrapper;
+
+import com.pamirs.pradar.InvokeContext;
+import com.pamirs.pradar.InvokeContextSnapshot;
+
+/**
+ * 在执行线程上还原上下文快照的任务包装
+ */
+public final class ContextSnapshotRunnable implements Runnable {
+    private final Runnable task;
+    private final InvokeContextSnapshot snapshot;
+
+    public ContextSnapshotRunnable(Runnable task, InvokeContextSnapshot snapshot) {
+        this.task = task;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void run() {
+        final InvokeContext backup = snapshot.attach();
+        try {
+            task.run();
+        } finally {
+            InvokeContextSnapshot.detach(backup);
+        }
+    }
+
+    public Runnable getTask() {
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return task.toString();
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 不会持有事件对象的事件处理器
+ * 声明后事件处理器在 onEvent 返回之后不能再引用事件对象，开启事件复用时事件对象会被回收给后续调用使用
+ *
+ * @see com.shulie.instrument.simulator.api.listener.EventListener#isHoldEvent()
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface NonHoldEvent {
+}
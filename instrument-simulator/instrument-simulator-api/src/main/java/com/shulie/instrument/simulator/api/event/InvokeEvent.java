@@ -49,6 +49,17 @@ public abstract class InvokeEvent extends Event {
         this.invokeId = invokeId;
     }
 
+    /**
+     * 重置调用事件，供可复用的事件对象在重新派发前使用
+     *
+     * @param processId 调用过程ID
+     * @param invokeId  调用ID
+     */
+    protected void reset(int processId, int invokeId) {
+        this.processId = processId;
+        this.invokeId = invokeId;
+    }
+
     public int getProcessId() {
         return processId;
     }
@@ -62,6 +62,27 @@ public class ReturnEvent extends InvokeEvent {
         this.returnObj = returnObj;
     }
 
+    /**
+     * 重置RETURN事件，供可复用的事件对象在重新派发前使用
+     *
+     * @param processId 调用过程ID
+     * @param invokeId  调用ID
+     * @param returnObj 调用返回值(void方法返回值为null)
+     */
+    protected void reset(final int processId,
+                         final int invokeId,
+                         final Object returnObj) {
+        reset(processId, invokeId);
+        this.returnObj = returnObj;
+    }
+
+    /**
+     * 清理事件持有的返回值引用
+     */
+    protected void clear() {
+        this.returnObj = null;
+    }
+
     public Object getReturnObj() {
         return returnObj;
     }
@@ -69,6 +69,27 @@ public class ThrowsEvent extends InvokeEvent {
 
     }
 
+    /**
+     * 重置THROWS事件，供可复用的事件对象在重新派发前使用
+     *
+     * @param processId 调用过程ID
+     * @param invokeId  调用ID
+     * @param throwable 抛出的异常/错误信息
+     */
+    protected void reset(final int processId,
+                         final int invokeId,
+                         final Throwable throwable) {
+        reset(processId, invokeId);
+        this.throwable = throwable;
+    }
+
+    /**
+     * 清理事件持有的异常引用
+     */
+    protected void clear() {
+        this.throwable = null;
+    }
+
     public Throwable getThrowable() {
         return throwable;
     }
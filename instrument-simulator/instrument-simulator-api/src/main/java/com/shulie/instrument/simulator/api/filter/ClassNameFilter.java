@@ -26,7 +26,7 @@ import java.util.List;
  * @author xiaobin.zfb|xiaobin@shulie.io
  * @since 2020/9/30 11:32 下午
  */
-public class ClassNameFilter implements ExtFilter {
+public class ClassNameFilter implements ClassNamePatternFilter {
     private String className;
     private boolean isIncludeSubClasses;
     private boolean isIncludeBootstrap;
@@ -56,6 +56,14 @@ public class ClassNameFilter implements ExtFilter {
         return StringUtil.equals(javaClassName, className);
     }
 
+    @Override
+    public String[] getClassNameWildcards() {
+        if (isIncludeSubClasses) {
+            return null;
+        }
+        return className == null ? new String[0] : new String[]{className};
+    }
+
     @Override
     public boolean doClassFilter(ClassDescriptor classDescriptor) {
         return StringUtil.equals(classDescriptor.getClassName(), className);
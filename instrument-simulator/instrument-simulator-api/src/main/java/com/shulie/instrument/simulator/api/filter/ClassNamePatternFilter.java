@@ -0,0 +1,35 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.filter;
+
+import com.shulie.instrument.simulator.api.util.StringUtil;
+
+/**
+ * 可以描述类名匹配模式的增强过滤器
+ * <p>
+ * 容器会根据这些模式为所有观察建立类名索引，类加载时只需要一次索引查找即可排除掉不可能匹配的类，
+ * 不再需要对每个观察都解析一次类结构；未实现此接口的过滤器对每个加载的类都会调用{@link #doClassNameFilter(String)}
+ * </p>
+ */
+public interface ClassNamePatternFilter extends ExtFilter {
+
+    /**
+     * 获取类名的通配符匹配模式，匹配语义与{@link StringUtil#matching(String, String)}保持一致，
+     * 任意一个模式匹配即认为类名可能匹配，最终结果仍以{@link #doClassNameFilter(String)}为准
+     *
+     * @return 通配符匹配模式，无法使用通配符描述时(如正则表达式、需要匹配子类)返回 null
+     */
+    String[] getClassNameWildcards();
+}
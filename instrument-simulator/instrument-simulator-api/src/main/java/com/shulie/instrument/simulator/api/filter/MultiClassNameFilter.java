@@ -26,7 +26,7 @@ import java.util.List;
  * @author xiaobin.zfb|xiaobin@shulie.io
  * @since 2020/9/30 11:32 下午
  */
-public class MultiClassNameFilter implements ExtFilter {
+public class MultiClassNameFilter implements ClassNamePatternFilter {
     /**
      * 类名列表
      */
@@ -72,6 +72,14 @@ public class MultiClassNameFilter implements ExtFilter {
         return classNames.contains(javaClassName);
     }
 
+    @Override
+    public String[] getClassNameWildcards() {
+        if (isIncludeSubClasses) {
+            return null;
+        }
+        return classNames.toArray(new String[0]);
+    }
+
     @Override
     public List<BuildingForListeners> getAllListeners() {
         return Collections.EMPTY_LIST;
@@ -26,7 +26,7 @@ import java.util.List;
  * @author xiaobin.zfb|xiaobin@shulie.io
  * @since 2020/9/30 11:32 下午
  */
-public class NameRegexFilter implements ExtFilter {
+public class NameRegexFilter implements ClassNamePatternFilter {
 
     /**
      * 类名正则表达式
@@ -70,6 +70,14 @@ public class NameRegexFilter implements ExtFilter {
         return StringUtil.matching(javaClassName, javaNameRegex);
     }
 
+    @Override
+    public String[] getClassNameWildcards() {
+        if (isIncludeSubClasses) {
+            return null;
+        }
+        return javaNameRegex == null ? new String[0] : new String[]{javaNameRegex};
+    }
+
     @Override
     public boolean doClassFilter(ClassDescriptor classDescriptor) {
         return StringUtil.matching(classDescriptor.getClassName(), javaNameRegex);
@@ -18,6 +18,7 @@ import java.lang.ref.WeakReference;
 
 import com.shulie.instrument.simulator.api.ProcessControlEntity;
 import com.shulie.instrument.simulator.api.ProcessController;
+import com.shulie.instrument.simulator.api.annotation.NonHoldEvent;
 import com.shulie.instrument.simulator.api.event.Event;
 import com.shulie.instrument.simulator.message.Result;
 
@@ -36,6 +37,11 @@ public abstract class EventListener implements BizClassLoaderWrapper {
 
     private WeakReference<ClassLoader> bizClassLoaderHolder;
 
+    /**
+     * 类上是否没有 {@link NonHoldEvent} 注解，创建监听器时确定，派发事件时不再反射读取注解
+     */
+    private final boolean holdEvent = !getClass().isAnnotationPresent(NonHoldEvent.class);
+
     @Override
     public void setBizClassLoader(ClassLoader classLoader) {
         if (classLoader != null) {
@@ -86,6 +92,18 @@ public abstract class EventListener implements BizClassLoaderWrapper {
         return ProcessControlEntity.none();
     }
 
+    /**
+     * 是否会在 {@link #onEvent(Event)} 返回之后继续持有事件对象的引用
+     * <p>
+     * 返回 FALSE 时事件对象在派发结束后可以被回收复用，默认根据类上是否有 {@link NonHoldEvent} 注解判断，
+     * 没有注解时认为会持有，即不做复用。每次派发事件都会调用，覆盖时不要在这里做反射等耗时操作
+     *
+     * @return TRUE:会持有;FALSE:不会持有
+     */
+    public boolean isHoldEvent() {
+        return holdEvent;
+    }
+
     /**
      * 清理 EventListener
      */
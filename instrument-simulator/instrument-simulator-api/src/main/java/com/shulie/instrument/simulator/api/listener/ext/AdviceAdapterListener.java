@@ -66,6 +66,14 @@ public class AdviceAdapterListener extends EventListener implements Interruptabl
 
     }
 
+    /**
+     * 事件中的数据在 BEFORE 时已经全部转移到 {@link Advice} 中，不会持有事件对象
+     */
+    @Override
+    public boolean isHoldEvent() {
+        return false;
+    }
+
     @Override
     public void clean() {
         opStackRef.remove();
@@ -16,7 +16,7 @@ package com.shulie.instrument.simulator.api.listener.ext;
 
 
 import com.shulie.instrument.simulator.api.filter.ClassDescriptor;
-import com.shulie.instrument.simulator.api.filter.ExtFilter;
+import com.shulie.instrument.simulator.api.filter.ClassNamePatternFilter;
 import com.shulie.instrument.simulator.api.filter.Filter;
 import com.shulie.instrument.simulator.api.filter.MethodDescriptor;
 import com.shulie.instrument.simulator.api.resource.ModuleEventWatcher;
@@ -283,7 +283,7 @@ class ClassMatchBuilder implements IClassMatchBuilder {
     private EventWatchCondition toEventWatchCondition() {
         final List<Filter> filters = new ArrayList<Filter>();
 
-        final Filter filter = new ExtFilter() {
+        final Filter filter = new ClassNamePatternFilter() {
 
             @Override
             public boolean isIncludeSubClasses() {
@@ -300,6 +300,14 @@ class ClassMatchBuilder implements IClassMatchBuilder {
                 return patternMatching(javaClassName, pattern, patternType);
             }
 
+            @Override
+            public String[] getClassNameWildcards() {
+                /**
+                 * 匹配子类时子类的类名不受模式限制，只能检查所有的类
+                 */
+                return patternType == WILDCARD && !isIncludeSubClasses ? pattern : null;
+            }
+
             @Override
             public boolean doClassFilter(ClassDescriptor classDescriptor) {
                 if ((classDescriptor.getAccess() & getWithAccess()) != getWithAccess()) {
@@ -97,7 +97,7 @@ class WatchingMatchBuilder implements IWatchingMatchBuilder {
     }
 
     private Filter toFilter() {
-        return new ExtFilter() {
+        return new ClassNamePatternFilter() {
 
             @Override
             public boolean isIncludeSubClasses() {
@@ -117,6 +117,14 @@ class WatchingMatchBuilder implements IWatchingMatchBuilder {
                 return patternMatching(javaClassName, bfClass.getPattern(), patternType);
             }
 
+            @Override
+            public String[] getClassNameWildcards() {
+                /**
+                 * 匹配子类时子类的类名不受模式限制，只能检查所有的类
+                 */
+                return patternType == WILDCARD && !bfClass.isIncludeSubClasses() ? bfClass.getPattern() : null;
+            }
+
             @Override
             public boolean doClassFilter(ClassDescriptor classDescriptor) {
                 if ((classDescriptor.getAccess() & bfClass.getWithAccess()) != bfClass.getWithAccess()) {
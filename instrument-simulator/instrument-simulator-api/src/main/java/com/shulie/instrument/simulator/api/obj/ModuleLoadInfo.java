@@ -22,6 +22,24 @@ public class ModuleLoadInfo {
     private String moduleId;
     private ModuleLoadStatusEnum status;
     private String errorMsg;
+    /**
+     * 模块激活耗时(毫秒)
+     */
+    private long activeCost;
+    /**
+     * 准备及发现模块的线程
+     */
+    private String loadThread;
+    /**
+     * 模块准备(创建类加载器、发现模块实例)的开始与结束时间
+     */
+    private long prepareStartTime;
+    private long prepareEndTime;
+    /**
+     * 模块加载(注入资源、生命周期回调及激活)的开始与结束时间
+     */
+    private long loadStartTime;
+    private long loadEndTime;
 
     public String getModuleId() {
         return moduleId;
@@ -45,6 +63,54 @@ public class ModuleLoadInfo {
 
 
 
+    public long getActiveCost() {
+        return activeCost;
+    }
+
+    public void setActiveCost(long activeCost) {
+        this.activeCost = activeCost;
+    }
+
+    public String getLoadThread() {
+        return loadThread;
+    }
+
+    public void setLoadThread(String loadThread) {
+        this.loadThread = loadThread;
+    }
+
+    public long getPrepareStartTime() {
+        return prepareStartTime;
+    }
+
+    public void setPrepareStartTime(long prepareStartTime) {
+        this.prepareStartTime = prepareStartTime;
+    }
+
+    public long getPrepareEndTime() {
+        return prepareEndTime;
+    }
+
+    public void setPrepareEndTime(long prepareEndTime) {
+        this.prepareEndTime = prepareEndTime;
+    }
+
+    public long getLoadStartTime() {
+        return loadStartTime;
+    }
+
+    public void setLoadStartTime(long loadStartTime) {
+        this.loadStartTime = loadStartTime;
+    }
+
+    public long getLoadEndTime() {
+        return loadEndTime;
+    }
+
+    public void setLoadEndTime(long loadEndTime) {
+        this.loadEndTime = loadEndTime;
+    }
+
     public void setErrorMsg(ModuleLoadStatusEnum status, String errorMsg){
         this.status = status;
         this.errorMsg = errorMsg;
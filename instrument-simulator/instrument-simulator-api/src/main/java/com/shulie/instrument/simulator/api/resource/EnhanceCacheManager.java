@@ -0,0 +1,74 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.resource;
+
+/**
+ * 增强字节码缓存
+ * <p>
+ * 开启后类的增强结果会按照原始字节码、命中的监听器以及模块版本持久化到磁盘上，
+ * 应用重启后相同的类可以直接使用缓存的增强结果，跳过类结构解析、匹配以及字节码增强
+ * </p>
+ */
+public interface EnhanceCacheManager {
+
+    /**
+     * 是否开启了增强字节码缓存
+     *
+     * @return 是否开启
+     */
+    boolean isEnabled();
+
+    /**
+     * 获取缓存所在目录
+     *
+     * @return 缓存目录
+     */
+    String getCachePath();
+
+    /**
+     * 获取缓存命中次数
+     *
+     * @return 命中次数
+     */
+    long getHitCount();
+
+    /**
+     * 获取缓存未命中次数
+     *
+     * @return 未命中次数
+     */
+    long getMissCount();
+
+    /**
+     * 获取命中缓存时读取缓存的总耗时
+     *
+     * @return 耗时，单位毫秒
+     */
+    long getHitCostMillis();
+
+    /**
+     * 获取未命中缓存时匹配及增强的总耗时
+     *
+     * @return 耗时，单位毫秒
+     */
+    long getMissCostMillis();
+
+    /**
+     * 估算缓存节省的增强耗时，即命中次数乘以未命中时的平均耗时再减去读取缓存的耗时
+     *
+     * @return 耗时，单位毫秒
+     */
+    long getSavedCostMillis();
+}
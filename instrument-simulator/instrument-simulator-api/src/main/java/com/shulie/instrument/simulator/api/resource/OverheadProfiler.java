@@ -0,0 +1,74 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.resource;
+
+import java.util.List;
+
+/**
+ * 监听器开销统计
+ * <p>
+ * 开启后按照监听器及被拦截的方法统计仿真器自身在 BEFORE/RETURN/THROWS 事件上的调用次数、累计耗时，
+ * 以及可选的线程分配字节数，用于在线上定位是哪个插件带来了额外的延迟
+ * </p>
+ */
+public interface OverheadProfiler {
+
+    /**
+     * 是否开启了开销统计
+     *
+     * @return 是否开启
+     */
+    boolean isEnabled();
+
+    /**
+     * 开启或关闭开销统计，关闭后已有的统计数据保留
+     *
+     * @param enabled 是否开启
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * 当前 JVM 是否支持统计线程分配字节数
+     *
+     * @return 是否支持
+     */
+    boolean isAllocationSupported();
+
+    /**
+     * 是否统计分配字节数
+     *
+     * @return 是否统计
+     */
+    boolean isAllocationEnabled();
+
+    /**
+     * 开启或关闭分配字节数统计，JVM 不支持时开启无效
+     *
+     * @param enabled 是否开启
+     */
+    void setAllocationEnabled(boolean enabled);
+
+    /**
+     * 获取所有的统计记录
+     *
+     * @return 统计记录
+     */
+    List<OverheadRecord> getRecords();
+
+    /**
+     * 清空所有的统计数据
+     */
+    void reset();
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.resource;
+
+/**
+ * 一个监听器在一个被拦截方法上的开销统计
+ */
+public class OverheadRecord {
+    /**
+     * 监听器ID
+     */
+    private final int listenerId;
+    /**
+     * 监听器类名
+     */
+    private final String listenerClassName;
+    /**
+     * 被拦截的类名
+     */
+    private final String className;
+    /**
+     * 被拦截的方法名
+     */
+    private final String methodName;
+    /**
+     * 被拦截的方法描述
+     */
+    private final String methodDesc;
+    /**
+     * 调用次数，即 BEFORE 事件的次数
+     */
+    private final long invokeCount;
+    /**
+     * BEFORE 及 RETURN/THROWS 事件处理的累计耗时，单位纳秒
+     */
+    private final long totalNanos;
+    /**
+     * 事件处理过程中累计分配的字节数，未开启分配统计时为 0
+     */
+    private final long allocatedBytes;
+
+    public OverheadRecord(int listenerId, String listenerClassName, String className, String methodName,
+                          String methodDesc, long invokeCount, long totalNanos, long allocatedBytes) {
+        this.listenerId = listenerId;
+        this.listenerClassName = listenerClassName;
+        this.className = className;
+        this.methodName = methodName;
+        this.methodDesc = methodDesc;
+        this.invokeCount = invokeCount;
+        this.totalNanos = totalNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public int getListenerId() {
+        return listenerId;
+    }
+
+    public String getListenerClassName() {
+        return listenerClassName;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getMethodDesc() {
+        return methodDesc;
+    }
+
+    public long getInvokeCount() {
+        return invokeCount;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructure;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructureFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 类结构的构造开销
+ * <p>
+ * asm 为类定义时通过字节码构造的路径，jdk 为重新形变已加载类时通过 Class 构造的路径，
+ * 构造之后与匹配时一样取出整个家族的类型以及所有的行为，这两步都是延迟计算的
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClassStructureFactoryBenchmark {
+
+    private static final Class<?>[] CLASSES = new Class<?>[] {
+        String.class,
+        java.util.HashMap.class,
+        java.util.ArrayList.class,
+        ConcurrentHashMap.class,
+        ThreadPoolExecutor.class,
+        java.util.Properties.class,
+        java.net.URLClassLoader.class,
+        java.io.BufferedReader.class
+    };
+
+    private byte[][] classBytes;
+    private ClassLoader loader;
+
+    @Setup
+    public void setup() throws IOException {
+        loader = getClass().getClassLoader();
+        classBytes = new byte[CLASSES.length][];
+        for (int i = 0; i < CLASSES.length; i++) {
+            final String resource = CLASSES[i].getName().replace('.', '/') + ".class";
+            final InputStream in = ClassLoader.getSystemResourceAsStream(resource);
+            if (in == null) {
+                throw new IllegalStateException("class file not found: " + resource);
+            }
+            classBytes[i] = read(in);
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public void asm(Blackhole blackhole) {
+        for (byte[] bytes : classBytes) {
+            consume(ClassStructureFactory.createClassStructure(bytes, loader), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void jdk(Blackhole blackhole) {
+        for (Class<?> clazz : CLASSES) {
+            consume(ClassStructureFactory.createClassStructure(clazz), blackhole);
+        }
+    }
+
+    private static void consume(ClassStructure classStructure, Blackhole blackhole) {
+        blackhole.consume(classStructure.getFamilyTypeClassStructures());
+        blackhole.consume(classStructure.getBehaviorStructures());
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.shulie.instrument.simulator.api.event.EventType;
+import com.shulie.instrument.simulator.api.listener.ext.AdviceAdapterListener;
+import com.shulie.instrument.simulator.api.listener.ext.AdviceListener;
+import com.shulie.instrument.simulator.core.enhance.weaver.EventListenerHandler;
+import com.shulie.instrument.simulator.message.Messager;
+import com.shulie.instrument.simulator.message.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 同一个方法上叠加 5 个监听器时一次 BEFORE/RETURN 的派发开销
+ * <p>
+ * stacked 模拟每个监听器各自织入调用点，每个调用点都要获取执行标记并经过一次守护检查和处理器查找；
+ * composite 模拟组合后的单个调用点，由 {@link EventListenerHandler} 依次派发给 5 个成员
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompositeListenerBenchmark {
+
+    private static final int LISTENER_COUNT = 5;
+    private static final int FIRST_LISTENER_ID = 1024;
+    private static final int LISTENER_TAG = 0;
+    private static final String LISTENER_CLASS_NAME = "BenchmarkListener";
+
+    @Param({"false", "true"})
+    public boolean eventPoolEnabled;
+
+    private EventListenerHandler handler;
+    private int[] listenerIds;
+    private int compositeId;
+    private Object[] argumentArray;
+    private Object returnObj;
+
+    @Setup
+    public void setup() {
+        handler = new EventListenerHandler(eventPoolEnabled);
+        listenerIds = new int[LISTENER_COUNT];
+        for (int i = 0; i < LISTENER_COUNT; i++) {
+            listenerIds[i] = FIRST_LISTENER_ID + i;
+            handler.active(listenerIds[i], new AdviceAdapterListener(new AdviceListener()),
+                new int[] {EventType.BEFORE, EventType.RETURN, EventType.THROWS});
+        }
+        compositeId = handler.compose(listenerIds);
+        argumentArray = new Object[] {"arg0", 1};
+        returnObj = "result";
+    }
+
+    @TearDown
+    public void tearDown() {
+        handler.destroy();
+    }
+
+    @Benchmark
+    public Result stacked() throws Throwable {
+        Result result = Result.RESULT_NONE;
+        for (int i = 0; i < LISTENER_COUNT; i++) {
+            handler.handleOnBefore(listenerIds[i], argumentArray, Target.class, "invoke",
+                "(Ljava/lang/String;I)Ljava/lang/String;", null, LISTENER_CLASS_NAME, LISTENER_TAG,
+                Messager.getExecutionTag(LISTENER_TAG));
+        }
+        // 嵌套织入时外层的 RETURN 先执行
+        for (int i = LISTENER_COUNT - 1; i >= 0; i--) {
+            result = handler.handleOnReturn(listenerIds[i], Target.class, returnObj, LISTENER_CLASS_NAME,
+                LISTENER_TAG, Messager.getExecutionTag(LISTENER_TAG));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Result composite() throws Throwable {
+        final int executionTag = Messager.getExecutionTag(LISTENER_TAG);
+        handler.handleOnBefore(compositeId, argumentArray, Target.class, "invoke",
+            "(Ljava/lang/String;I)Ljava/lang/String;", null, LISTENER_CLASS_NAME, LISTENER_TAG, executionTag);
+        return handler.handleOnReturn(compositeId, Target.class, returnObj, LISTENER_CLASS_NAME, LISTENER_TAG,
+            executionTag);
+    }
+
+    /**
+     * 被增强的目标类
+     */
+    public static class Target {
+        public static String invoke(String arg0, int arg1) {
+            return arg0 + arg1;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.shulie.instrument.simulator.api.event.EventType;
+import com.shulie.instrument.simulator.api.listener.ext.AdviceAdapterListener;
+import com.shulie.instrument.simulator.api.listener.ext.AdviceListener;
+import com.shulie.instrument.simulator.core.enhance.weaver.EventListenerHandler;
+import com.shulie.instrument.simulator.message.ExecutionTagSupplier;
+import com.shulie.instrument.simulator.message.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 一次被增强方法的 BEFORE/RETURN、BEFORE/THROWS 派发开销
+ * <p>
+ * eventPoolEnabled=false 为原有的每次新建事件的路径，eventPoolEnabled=true 为复用线程内事件对象的路径，
+ * 配合 -prof gc 可以对比每次调用的分配量
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventListenerHandlerBenchmark {
+
+    private static final int LISTENER_ID = 1024;
+    private static final String LISTENER_CLASS_NAME = "BenchmarkListener";
+
+    @Param({"false", "true"})
+    public boolean eventPoolEnabled;
+
+    private EventListenerHandler handler;
+    private Object[] argumentArray;
+    private Object returnObj;
+    private Throwable throwable;
+
+    @Setup
+    public void setup() {
+        handler = new EventListenerHandler(eventPoolEnabled);
+        handler.active(LISTENER_ID, new AdviceAdapterListener(new AdviceListener()),
+            new int[] {EventType.BEFORE, EventType.RETURN, EventType.THROWS});
+        argumentArray = new Object[] {"arg0", 1};
+        returnObj = "result";
+        throwable = new IllegalStateException("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        handler.destroy();
+    }
+
+    @Benchmark
+    public Result beforeAndReturn() throws Throwable {
+        handler.handleOnBefore(LISTENER_ID, argumentArray, Target.class, "invoke",
+            "(Ljava/lang/String;I)Ljava/lang/String;", null, LISTENER_CLASS_NAME, 0,
+            ExecutionTagSupplier.EXECUTION_CONTINUE);
+        return handler.handleOnReturn(LISTENER_ID, Target.class, returnObj, LISTENER_CLASS_NAME, 0,
+            ExecutionTagSupplier.EXECUTION_CONTINUE);
+    }
+
+    @Benchmark
+    public Result beforeAndThrows() throws Throwable {
+        handler.handleOnBefore(LISTENER_ID, argumentArray, Target.class, "invoke",
+            "(Ljava/lang/String;I)Ljava/lang/String;", null, LISTENER_CLASS_NAME, 0,
+            ExecutionTagSupplier.EXECUTION_CONTINUE);
+        return handler.handleOnThrows(LISTENER_ID, Target.class, throwable, LISTENER_CLASS_NAME, 0,
+            ExecutionTagSupplier.EXECUTION_CONTINUE);
+    }
+
+    /**
+     * 被增强的目标类
+     */
+    public static class Target {
+        public static String invoke(String arg0, int arg1) {
+            return arg0 + arg1;
+        }
+    }
+}
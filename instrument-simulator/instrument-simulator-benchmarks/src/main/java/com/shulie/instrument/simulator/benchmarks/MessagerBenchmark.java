@@ -0,0 +1,107 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.shulie.instrument.simulator.api.event.EventType;
+import com.shulie.instrument.simulator.api.listener.ext.AdviceAdapterListener;
+import com.shulie.instrument.simulator.api.listener.ext.AdviceListener;
+import com.shulie.instrument.simulator.core.enhance.weaver.EventListenerHandler;
+import com.shulie.instrument.simulator.message.Messager;
+import com.shulie.instrument.simulator.message.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 被增强方法织入的 Messager 调用开销
+ * <p>
+ * 按照织入字节码的调用顺序，先取执行 tag，再经过 Messager 派发 BEFORE/RETURN 到 EventListenerHandler，
+ * 与 {@link EventListenerHandlerBenchmark} 相比多了 Messager 的静态入口这一层
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessagerBenchmark {
+
+    private static final int LISTENER_ID = 2048;
+    private static final int LISTENER_TAG = 0;
+    private static final String LISTENER_CLASS_NAME = "BenchmarkListener";
+    private static final String METHOD_DESC = "(Ljava/lang/String;I)Ljava/lang/String;";
+
+    @Param({"false", "true"})
+    public boolean eventPoolEnabled;
+
+    private EventListenerHandler handler;
+    private Object[] argumentArray;
+    private Object returnObj;
+    private Throwable throwable;
+
+    @Setup
+    public void setup() {
+        handler = new EventListenerHandler(eventPoolEnabled);
+        handler.active(LISTENER_ID, new AdviceAdapterListener(new AdviceListener()),
+            new int[] {EventType.BEFORE, EventType.RETURN, EventType.THROWS});
+        Messager.init(handler);
+        argumentArray = new Object[] {"arg0", 1};
+        returnObj = "result";
+        throwable = new IllegalStateException("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        Messager.clean();
+    }
+
+    @Benchmark
+    public Result beforeAndReturn() throws Throwable {
+        final int executionTag = Messager.getExecutionTag(LISTENER_TAG);
+        Messager.invokeOnBefore(argumentArray, LISTENER_ID, LISTENER_CLASS_NAME, LISTENER_TAG, executionTag,
+            Target.class, "invoke", METHOD_DESC, null);
+        return Messager.invokeOnReturn(returnObj, Target.class, LISTENER_ID, LISTENER_CLASS_NAME, LISTENER_TAG,
+            executionTag);
+    }
+
+    @Benchmark
+    public Result beforeAndThrows() throws Throwable {
+        final int executionTag = Messager.getExecutionTag(LISTENER_TAG);
+        Messager.invokeOnBefore(argumentArray, LISTENER_ID, LISTENER_CLASS_NAME, LISTENER_TAG, executionTag,
+            Target.class, "invoke", METHOD_DESC, null);
+        return Messager.invokeOnThrows(throwable, Target.class, LISTENER_ID, LISTENER_CLASS_NAME, LISTENER_TAG,
+            executionTag);
+    }
+
+    /**
+     * 被增强的目标类
+     */
+    public static class Target {
+        public static String invoke(String arg0, int arg1) {
+            return arg0 + arg1;
+        }
+    }
+}
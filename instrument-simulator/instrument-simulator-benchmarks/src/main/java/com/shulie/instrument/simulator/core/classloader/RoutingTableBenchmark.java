@@ -0,0 +1,107 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.classloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.shulie.instrument.simulator.core.classloader.RoutingURLClassLoader.Routing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 模块类加载器的路由匹配开销
+ * <p>
+ * 使用与 ModuleClassLoader 相同的路由规则，对一批绝大多数不命中路由的类名做路由匹配，
+ * 对比逐个规则做通配符匹配(compiled=false)与编译后的路由表(compiled=true)的耗时
+ * <p>
+ * 由于路由和路由表都是包内可见的，所以基准测试放在与类加载器相同的包下
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingTableBenchmark {
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    /**
+     * 路由表缓存容量，0 表示只使用编译后的路由表
+     */
+    @Param({"0", "4096"})
+    public int cacheSize;
+
+    private final List<String> classNames = new ArrayList<String>();
+    private Routing[] routingArray;
+    private RoutingTable routingTable;
+
+    @Setup
+    public void setup() {
+        routingArray = new Routing[]{
+                new Routing(getClass().getClassLoader(),
+                        "com.shulie.instrument.simulator.api.*",
+                        "com.shulie.instrument.simulator.spi.*",
+                        "com.shulie.instrument.simulator.message.*",
+                        "org.apache.commons.lang.*",
+                        "org.slf4j.*",
+                        "com.shulie.instrument.simulator.dependencies.ch.qos.logback.*",
+                        "org.objectweb.asm.*",
+                        "javax.annotation.Resource*",
+                        "com.pamirs.pradar.*Manager",
+                        "com.pamirs.pradar.Pradar")
+        };
+        System.setProperty(RoutingTable.ROUTING_CACHE_SIZE, String.valueOf(cacheSize));
+        routingTable = RoutingTable.compile(routingArray);
+
+        final String[] packages = {
+                "com.alibaba.dubbo.rpc.", "org.apache.kafka.clients.producer.", "com.mysql.jdbc.",
+                "org.springframework.beans.factory.", "com.shulie.instrument.simulator.api.listener.",
+                "org.slf4j.", "io.netty.channel.", "com.pamirs.pradar."
+        };
+        for (int i = 0; i < 1000; i++) {
+            classNames.add(packages[i % packages.length] + "Class" + i);
+        }
+    }
+
+    @Benchmark
+    public int match() {
+        int hits = 0;
+        for (final String className : classNames) {
+            if (compiled) {
+                hits += routingTable.match(className).length;
+            } else {
+                for (final Routing routing : routingArray) {
+                    if (routing.isHit(className)) {
+                        hits++;
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import com.shulie.instrument.simulator.api.event.EventType;
+import com.shulie.instrument.simulator.api.filter.ClassDescriptor;
+import com.shulie.instrument.simulator.api.filter.ClassNamePatternFilter;
+import com.shulie.instrument.simulator.api.filter.MethodDescriptor;
+import com.shulie.instrument.simulator.api.listener.Listeners;
+import com.shulie.instrument.simulator.api.listener.ext.AdviceListener;
+import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.api.util.StringUtil;
+import com.shulie.instrument.simulator.core.CoreModule;
+import com.shulie.instrument.simulator.core.util.matcher.ExtFilterMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 应用启动阶段类加载的形变开销
+ * <p>
+ * 从 classpath 的 jar 中取出数千个类的字节码模拟一次应用启动时的类定义，
+ * 每个模块的观察只命中其中极少数的类，对比每个观察单独注册形变器(shared=false)
+ * 与所有观察共用一个带类名索引的形变器(shared=true)时，定义完所有类的总耗时
+ * <p>
+ * 由于形变器的构造方法是包内可见的，所以基准测试放在与形变器相同的包下
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassFileTransformerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean shared;
+
+    /**
+     * 模块观察数
+     */
+    @Param({"70"})
+    public int watchCount;
+
+    /**
+     * 应用启动时定义的类数
+     */
+    @Param({"5000"})
+    public int classCount;
+
+    private final List<String> classNames = new ArrayList<String>();
+    private final List<byte[]> classBytes = new ArrayList<byte[]>();
+    private ClassLoader loader;
+    private List<ClassFileTransformer> transformers;
+
+    @Setup
+    public void setup() throws IOException {
+        loadClasses();
+        loader = getClass().getClassLoader();
+
+        final List<DefaultSimulatorClassFileTransformer> watches = new ArrayList<DefaultSimulatorClassFileTransformer>();
+        for (int i = 0; i < watchCount; i++) {
+            final ModuleSpec moduleSpec = new ModuleSpec();
+            moduleSpec.setModuleId("benchmark-module-" + i);
+            final CoreModule coreModule = new CoreModule(moduleSpec, null, null, null, null);
+
+            final List<String> patterns = new ArrayList<String>();
+            patterns.add("com.example.plugin" + i + ".Client");
+            patterns.add("com.example.plugin" + i + ".*Interceptor");
+            // 每隔几个模块命中一个真实存在的类
+            if (i % 10 == 0) {
+                patterns.add(classNames.get((i * 31) % classNames.size()).replace('/', '.'));
+            }
+            watches.add(new DefaultSimulatorClassFileTransformer(null, i, coreModule,
+                new ExtFilterMatcher(new PluginFilter(patterns.toArray(new String[0]))), false));
+        }
+
+        if (shared) {
+            final SharedSimulatorClassFileTransformer sharedTransformer = new SharedSimulatorClassFileTransformer(false);
+            for (DefaultSimulatorClassFileTransformer watch : watches) {
+                sharedTransformer.register(watch);
+            }
+            transformers = Collections.<ClassFileTransformer>singletonList(sharedTransformer);
+        } else {
+            transformers = new ArrayList<ClassFileTransformer>(watches);
+        }
+    }
+
+    private void loadClasses() throws IOException {
+        final String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+        for (String path : paths) {
+            if (!path.endsWith(".jar")) {
+                continue;
+            }
+            final JarFile jarFile = new JarFile(path);
+            try {
+                final Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements() && classNames.size() < classCount) {
+                    final JarEntry entry = entries.nextElement();
+                    final String name = entry.getName();
+                    if (!name.endsWith(".class")
+                        || name.startsWith("META-INF/")
+                        || name.startsWith("com/shulie/")
+                        || name.endsWith("module-info.class")) {
+                        continue;
+                    }
+                    classNames.add(name.substring(0, name.length() - ".class".length()));
+                    classBytes.add(read(jarFile.getInputStream(entry)));
+                }
+            } finally {
+                jarFile.close();
+            }
+        }
+        if (classNames.isEmpty()) {
+            throw new IllegalStateException("no classes found in java.class.path, run with the shaded benchmarks.jar");
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public int defineClasses() throws Exception {
+        int transformed = 0;
+        for (int i = 0; i < classNames.size(); i++) {
+            // JVM 会把上一个形变器的结果交给下一个形变器
+            byte[] bytes = classBytes.get(i).clone();
+            for (ClassFileTransformer transformer : transformers) {
+                final byte[] result = transformer.transform(loader, classNames.get(i), null, null, bytes);
+                if (result != null) {
+                    bytes = result;
+                    transformed++;
+                }
+            }
+        }
+        return transformed;
+    }
+
+    /**
+     * 模拟插件模块的观察，按类名命中后增强所有方法
+     */
+    private static class PluginFilter implements ClassNamePatternFilter {
+
+        private final String[] patterns;
+        private final List<BuildingForListeners> listeners;
+
+        PluginFilter(String[] patterns) {
+            this.patterns = patterns;
+            this.listeners = Collections.singletonList(new BuildingForListeners(Listeners.of(AdviceListener.class),
+                EventType.BEFORE, EventType.RETURN, EventType.THROWS));
+        }
+
+        @Override
+        public String[] getClassNameWildcards() {
+            return patterns;
+        }
+
+        @Override
+        public boolean isIncludeSubClasses() {
+            return false;
+        }
+
+        @Override
+        public boolean isIncludeBootstrap() {
+            return false;
+        }
+
+        @Override
+        public boolean doClassNameFilter(String javaClassName) {
+            for (String pattern : patterns) {
+                if (StringUtil.matching(javaClassName, pattern)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean doClassFilter(ClassDescriptor classDescriptor) {
+            return doClassNameFilter(classDescriptor.getClassName());
+        }
+
+        @Override
+        public List<BuildingForListeners> doMethodFilter(MethodDescriptor methodDescriptor) {
+            return listeners;
+        }
+
+        @Override
+        public List<BuildingForListeners> getAllListeners() {
+            return listeners;
+        }
+    }
+}
@@ -54,7 +54,7 @@ public interface ClassLoaderService {
     void unload(String moduleName, ClassLoaderFactory moduleClassLoader);
 
     /**
-     * 加载模块
+     * 加载模块，登记模块导出的类和资源，导出冲突时先登记的模块生效，需要按照模块的加载顺序串行调用
      *
      * @param moduleSpec        描述描述
      * @param moduleClassLoader 模块类加载器工厂
@@ -165,12 +165,7 @@ public class ModuleClassLoader extends ModuleRoutingURLClassLoader {
                 } catch (Throwable cause) {
                     logger.warn("SIMULATOR: close ModuleClassLoader[file={}] failed. JDK7+", moduleJarFile, cause);
                 }
-                if (routingArray != null) {
-                    for (Routing routing : routingArray) {
-                        routing.clean();
-                    }
-                    routingArray = null;
-                }
+                releaseRouting();
                 releaseClasses();
                 return;
             }
@@ -199,12 +194,7 @@ public class ModuleClassLoader extends ModuleRoutingURLClassLoader {
                     }
                 }
 
-                if (routingArray != null) {
-                    for (Routing routing : routingArray) {
-                        routing.clean();
-                    }
-                    routingArray = null;
-                }
+                releaseRouting();
                 releaseClasses();
             } catch (Throwable cause) {
                 logger.warn("SIMULATOR: close ModuleClassLoader[file={}] failed. probably not a HOTSPOT VM", moduleJarFile, cause);
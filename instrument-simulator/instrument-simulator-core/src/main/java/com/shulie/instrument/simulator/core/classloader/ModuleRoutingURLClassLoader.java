@@ -16,7 +16,6 @@ package com.shulie.instrument.simulator.core.classloader;
 
 import com.shulie.instrument.simulator.core.util.CompoundEnumeration;
 import com.shulie.instrument.simulator.core.util.EmptyEnumeration;
-import org.apache.commons.lang.ArrayUtils;
 
 import java.io.IOException;
 import java.net.JarURLConnection;
@@ -35,6 +34,7 @@ import java.util.jar.JarFile;
 public abstract class ModuleRoutingURLClassLoader extends RoutingURLClassLoader {
     protected static final String CLASS_RESOURCE_SUFFIX = ".class";
     protected Routing[] routingArray;
+    protected volatile RoutingTable routingTable;
     protected final ClassLoaderService classLoaderService;
     protected final String moduleId;
 
@@ -53,6 +53,7 @@ public abstract class ModuleRoutingURLClassLoader extends RoutingURLClassLoader
         this.moduleId = moduleId;
         this.classLoaderService = classLoaderService;
         this.routingArray = routingArray;
+        this.routingTable = RoutingTable.compile(routingArray);
     }
 
     public ModuleRoutingURLClassLoader(final String moduleId,
@@ -64,6 +65,7 @@ public abstract class ModuleRoutingURLClassLoader extends RoutingURLClassLoader
         this.moduleId = moduleId;
         this.classLoaderService = classLoaderService;
         this.routingArray = routingArray;
+        this.routingTable = RoutingTable.compile(routingArray);
     }
 
     /**
@@ -246,23 +248,23 @@ public abstract class ModuleRoutingURLClassLoader extends RoutingURLClassLoader
      */
     @Override
     protected Class<?> resolveRouting(final String javaClassName, final boolean resolve) {
-        // 优先查询类加载路由表,如果命中路由规则,则优先从路由表中的ClassLoader完成类加载
-        if (ArrayUtils.isNotEmpty(routingArray)) {
-            for (final Routing routing : routingArray) {
-                if (!routing.isHit(javaClassName)) {
-                    continue;
-                }
-                final ClassLoader routingClassLoader = routing.classLoader;
-                try {
-                    return routingClassLoader.loadClass(javaClassName);
-                } catch (Exception cause) {
-                    // 如果在当前routingClassLoader中找不到应该优先加载的类(应该不可能，但不排除有就是故意命名成同名类)
-                    // 此时应该忽略异常，继续往下加载
-                    // ignore...
-                }
+        return resolveRouting(routingTable, javaClassName);
+    }
+
+    @Override
+    protected void releaseRouting() {
+        final RoutingTable routingTable = this.routingTable;
+        this.routingTable = null;
+        if (routingTable != null) {
+            routingTable.clear();
+        }
+        if (routingArray != null) {
+            for (Routing routing : routingArray) {
+                routing.clean();
             }
+            routingArray = null;
         }
-        return null;
+        super.releaseRouting();
     }
 
     /**
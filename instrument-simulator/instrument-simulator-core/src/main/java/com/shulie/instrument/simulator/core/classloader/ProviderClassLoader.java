@@ -66,12 +66,7 @@ public class ProviderClassLoader extends RoutingURLClassLoader {
                 } catch (Throwable cause) {
                     logger.warn("SIMULATOR: close ProviderClassLoader[file={}] failed. JDK7+", providerJarFile, cause);
                 }
-                if (routingArray != null) {
-                    for (Routing routing : routingArray) {
-                        routing.clean();
-                    }
-                    routingArray = null;
-                }
+                releaseRouting();
                 releaseClasses();
                 return;
             }
@@ -100,12 +95,7 @@ public class ProviderClassLoader extends RoutingURLClassLoader {
                     }
                 }
 
-                if (routingArray != null) {
-                    for (Routing routing : routingArray) {
-                        routing.clean();
-                    }
-                    routingArray = null;
-                }
+                releaseRouting();
 
                 releaseClasses();
             } catch (Throwable cause) {
@@ -0,0 +1,299 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.classloader;
+
+import com.shulie.instrument.simulator.core.classloader.RoutingURLClassLoader.Routing;
+import org.apache.commons.lang.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 编译后的类加载路由表
+ * <p>
+ * 构造时将所有 {@link Routing} 的匹配规则按形态拆分：不含通配符的规则放入类名精确匹配表，
+ * 仅以 '*' 结尾的规则按字面前缀放入前缀树，其余规则保留为通配符回退匹配。
+ * 一次查找只需一次哈希查找加上沿类名走一遍前缀树，不再需要对每个规则逐个做通配符匹配
+ * <p>
+ * 查找结果会缓存在当前类加载器内，路由决策缓存记录类名命中的路由，
+ * 解析缓存记录类名最终由哪个路由加载成功(正向)或者没有任何路由命中(负向)。
+ * 两个缓存都有容量上限，超出时整体清空，模块卸载时随类加载器一同失效
+ */
+final class RoutingTable {
+
+    /**
+     * 每个类加载器路由缓存的容量，小于等于0则不缓存
+     */
+    static final String ROUTING_CACHE_SIZE = "simulator.classloader.routing.cache.size";
+
+    private static final Routing[] EMPTY_ROUTINGS = new Routing[0];
+    private static final int[] EMPTY_INDICES = new int[0];
+
+    private final Logger logger = LoggerFactory.getLogger(RoutingTable.class);
+
+    private final Routing[] routingArray;
+
+    /**
+     * 类名 -> 精确命中的路由下标
+     */
+    private final Map<String, int[]> exactIndices = new HashMap<String, int[]>();
+
+    /**
+     * 以 '*' 结尾的规则按字面前缀构成的前缀树
+     */
+    private final Node prefixRoot = new Node();
+
+    /**
+     * 无法编译的规则，回退到通配符匹配
+     */
+    private final List<FallbackRule> fallbackRules = new ArrayList<FallbackRule>();
+
+    private final int cacheSize;
+    private final ConcurrentMap<String, Routing[]> matchCache;
+    private final ConcurrentMap<String, Routing[]> resolveCache;
+
+    private RoutingTable(final Routing[] routingArray, final int cacheSize) {
+        this.routingArray = routingArray;
+        this.cacheSize = cacheSize;
+        this.matchCache = cacheSize > 0 ? new ConcurrentHashMap<String, Routing[]>() : null;
+        this.resolveCache = cacheSize > 0 ? new ConcurrentHashMap<String, Routing[]>() : null;
+        for (int i = 0; i < routingArray.length; i++) {
+            if (routingArray[i] == null || routingArray[i].regexExpresses == null) {
+                continue;
+            }
+            for (final String regexExpress : routingArray[i].regexExpresses) {
+                compile(i, regexExpress);
+            }
+        }
+    }
+
+    /**
+     * 编译路由表，路由为空时返回 null
+     *
+     * @param routingArray 路由数组
+     * @return 路由表
+     */
+    static RoutingTable compile(final Routing[] routingArray) {
+        if (ArrayUtils.isEmpty(routingArray)) {
+            return null;
+        }
+        return new RoutingTable(routingArray, Integer.getInteger(ROUTING_CACHE_SIZE, 4096));
+    }
+
+    private void compile(final int index, final String regexExpress) {
+        if (regexExpress == null) {
+            return;
+        }
+        // 与 Routing#matching 保持一致: 不含 '*' 的规则做全匹配
+        if (regexExpress.indexOf('*') == -1) {
+            exactIndices.put(regexExpress, append(exactIndices.get(regexExpress), index));
+            return;
+        }
+        int end = regexExpress.length();
+        while (end > 0 && regexExpress.charAt(end - 1) == '*') {
+            end--;
+        }
+        final String prefix = regexExpress.substring(0, end);
+        if (prefix.indexOf('*') != -1 || prefix.indexOf('?') != -1 || prefix.indexOf('\\') != -1) {
+            fallbackRules.add(new FallbackRule(index, regexExpress));
+            return;
+        }
+        Node node = prefixRoot;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrCreate(prefix.charAt(i));
+        }
+        node.indices = append(node.indices, index);
+    }
+
+    /**
+     * 获取类名命中的所有路由，顺序与路由数组保持一致
+     *
+     * @param javaClassName 类名
+     * @return 命中的路由，没有命中时返回空数组
+     */
+    Routing[] match(final String javaClassName) {
+        if (matchCache == null) {
+            return doMatch(javaClassName);
+        }
+        Routing[] routings = matchCache.get(javaClassName);
+        if (routings == null) {
+            routings = doMatch(javaClassName);
+            cache(matchCache, javaClassName, routings);
+        }
+        return routings;
+    }
+
+    private Routing[] doMatch(final String javaClassName) {
+        final boolean[] hits = new boolean[routingArray.length];
+        int hitCount = mark(hits, exactIndices.get(javaClassName));
+
+        Node node = prefixRoot;
+        hitCount += mark(hits, node.indices);
+        for (int i = 0; i < javaClassName.length(); i++) {
+            node = node.get(javaClassName.charAt(i));
+            if (node == null) {
+                break;
+            }
+            hitCount += mark(hits, node.indices);
+        }
+
+        for (final FallbackRule rule : fallbackRules) {
+            if (hits[rule.index]) {
+                continue;
+            }
+            try {
+                if (routingArray[rule.index].matching(javaClassName, rule.regexExpress)) {
+                    hits[rule.index] = true;
+                    hitCount++;
+                }
+            } catch (Throwable cause) {
+                logger.warn("SIMULATOR: routing {} failed, regex-express={}.", javaClassName, rule.regexExpress, cause);
+            }
+        }
+
+        if (hitCount == 0) {
+            return EMPTY_ROUTINGS;
+        }
+        final Routing[] routings = new Routing[hitCount];
+        for (int i = 0, j = 0; i < hits.length; i++) {
+            if (hits[i]) {
+                routings[j++] = routingArray[i];
+            }
+        }
+        return routings;
+    }
+
+    /**
+     * 获取类名的解析结果
+     *
+     * @param javaClassName 类名
+     * @return null 表示没有解析过，空数组表示没有任何路由可以加载该类，否则为成功加载该类的路由
+     */
+    Routing[] getResolved(final String javaClassName) {
+        return resolveCache == null ? null : resolveCache.get(javaClassName);
+    }
+
+    /**
+     * 记录类名的解析结果
+     *
+     * @param javaClassName 类名
+     * @param routing       成功加载该类的路由，为 null 则表示没有任何路由命中
+     */
+    void resolved(final String javaClassName, final Routing routing) {
+        if (resolveCache == null) {
+            return;
+        }
+        cache(resolveCache, javaClassName, routing == null ? EMPTY_ROUTINGS : new Routing[]{routing});
+    }
+
+    /**
+     * 清空缓存，模块卸载时调用
+     */
+    void clear() {
+        if (matchCache != null) {
+            matchCache.clear();
+        }
+        if (resolveCache != null) {
+            resolveCache.clear();
+        }
+    }
+
+    private void cache(final ConcurrentMap<String, Routing[]> cache, final String javaClassName, final Routing[] routings) {
+        if (cache.size() >= cacheSize) {
+            cache.clear();
+        }
+        cache.put(javaClassName, routings);
+    }
+
+    private static int mark(final boolean[] hits, final int[] indices) {
+        if (indices == null) {
+            return 0;
+        }
+        int count = 0;
+        for (final int index : indices) {
+            if (!hits[index]) {
+                hits[index] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int[] append(final int[] indices, final int index) {
+        if (indices == null) {
+            return new int[]{index};
+        }
+        for (final int i : indices) {
+            if (i == index) {
+                return indices;
+            }
+        }
+        final int[] newIndices = new int[indices.length + 1];
+        System.arraycopy(indices, 0, newIndices, 0, indices.length);
+        newIndices[indices.length] = index;
+        return newIndices;
+    }
+
+    /**
+     * 前缀树节点，子节点数量通常很少，直接线性查找
+     */
+    private static final class Node {
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private int[] indices = EMPTY_INDICES;
+
+        Node get(final char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrCreate(final char c) {
+            Node child = get(c);
+            if (child != null) {
+                return child;
+            }
+            child = new Node();
+            final char[] newChars = new char[chars.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, chars.length);
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            newChars[chars.length] = c;
+            newChildren[children.length] = child;
+            chars = newChars;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    private static final class FallbackRule {
+        private final int index;
+        private final String regexExpress;
+
+        FallbackRule(final int index, final String regexExpress) {
+            this.index = index;
+            this.regexExpress = regexExpress;
+        }
+    }
+}
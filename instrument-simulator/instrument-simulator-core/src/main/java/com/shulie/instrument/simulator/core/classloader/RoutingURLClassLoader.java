@@ -35,6 +35,7 @@ public class RoutingURLClassLoader extends URLClassLoader {
     protected final boolean isDebugEnabled = logger.isDebugEnabled();
     protected final ClassLoader parent;
     protected Routing[] routingArray;
+    protected volatile RoutingTable routingTable;
 
     static {
         try {
@@ -52,6 +53,7 @@ public class RoutingURLClassLoader extends URLClassLoader {
          */
         super(urls, null);
         this.routingArray = routingArray;
+        this.routingTable = RoutingTable.compile(routingArray);
         this.parent = null;
     }
 
@@ -60,6 +62,7 @@ public class RoutingURLClassLoader extends URLClassLoader {
                                  final Routing... routingArray) {
         super(urls, parent);
         this.routingArray = routingArray;
+        this.routingTable = RoutingTable.compile(routingArray);
         this.parent = parent;
     }
 
@@ -100,11 +103,9 @@ public class RoutingURLClassLoader extends URLClassLoader {
             className = StringUtils.substring(className, 0, className.length() - 6);
         }
         // 优先查询类加载路由表,如果命中路由规则,则优先从路由表中的ClassLoader完成类加载
-        if (ArrayUtils.isNotEmpty(routingArray)) {
-            for (final Routing routing : routingArray) {
-                if (!routing.isHit(className)) {
-                    continue;
-                }
+        final RoutingTable routingTable = this.routingTable;
+        if (routingTable != null) {
+            for (final Routing routing : routingTable.match(className)) {
                 final ClassLoader routingClassLoader = routing.classLoader;
                 try {
                     URL url = routingClassLoader.getResource(resourceName);
@@ -177,11 +178,9 @@ public class RoutingURLClassLoader extends URLClassLoader {
             className = StringUtils.substring(className, 0, className.length() - 6);
         }
         // 优先查询类加载路由表,如果命中路由规则,则优先从路由表中的ClassLoader完成类加载
-        if (ArrayUtils.isNotEmpty(routingArray)) {
-            for (final Routing routing : routingArray) {
-                if (!routing.isHit(className)) {
-                    continue;
-                }
+        final RoutingTable routingTable = this.routingTable;
+        if (routingTable != null) {
+            for (final Routing routing : routingTable.match(className)) {
                 final ClassLoader routingClassLoader = routing.classLoader;
                 try {
                     Enumeration<URL> enumerations = routingClassLoader.getResources(resourceName);
@@ -206,25 +205,70 @@ public class RoutingURLClassLoader extends URLClassLoader {
      * @return
      */
     protected Class<?> resolveRouting(final String javaClassName, final boolean resolve) {
+        return resolveRouting(routingTable, javaClassName);
+    }
+
+    /**
+     * 从路由表中加载，优先使用解析缓存中记录的路由
+     *
+     * @param routingTable  路由表
+     * @param javaClassName 类名
+     * @return 路由加载到的类，没有命中路由或者路由中加载不到时返回 null
+     */
+    protected Class<?> resolveRouting(final RoutingTable routingTable, final String javaClassName) {
+        if (routingTable == null) {
+            return null;
+        }
+        final Routing[] resolved = routingTable.getResolved(javaClassName);
+        if (resolved != null) {
+            if (resolved.length == 0) {
+                return null;
+            }
+            try {
+                return resolved[0].classLoader.loadClass(javaClassName);
+            } catch (Throwable cause) {
+                // 缓存的路由已经加载不到，重新走一遍路由表
+            }
+        }
+
         // 优先查询类加载路由表,如果命中路由规则,则优先从路由表中的ClassLoader完成类加载
-        if (ArrayUtils.isNotEmpty(routingArray)) {
-            for (final Routing routing : routingArray) {
-                if (!routing.isHit(javaClassName)) {
-                    continue;
-                }
-                final ClassLoader routingClassLoader = routing.classLoader;
-                try {
-                    return routingClassLoader.loadClass(javaClassName);
-                } catch (Throwable cause) {
-                    // 如果在当前routingClassLoader中找不到应该优先加载的类(应该不可能，但不排除有就是故意命名成同名类)
-                    // 此时应该忽略异常，继续往下加载
-                    // ignore...
-                }
+        final Routing[] routings = routingTable.match(javaClassName);
+        for (final Routing routing : routings) {
+            final ClassLoader routingClassLoader = routing.classLoader;
+            try {
+                final Class<?> clazz = routingClassLoader.loadClass(javaClassName);
+                routingTable.resolved(javaClassName, routing);
+                return clazz;
+            } catch (Throwable cause) {
+                // 如果在当前routingClassLoader中找不到应该优先加载的类(应该不可能，但不排除有就是故意命名成同名类)
+                // 此时应该忽略异常，继续往下加载
+                // ignore...
             }
         }
+        // 只有没有命中任何路由时才记录负向结果，命中路由却加载失败时不缓存，避免把偶发的加载错误固化下来
+        if (routings.length == 0) {
+            routingTable.resolved(javaClassName, null);
+        }
         return null;
     }
 
+    /**
+     * 释放路由表以及路由，模块卸载时调用
+     */
+    protected void releaseRouting() {
+        final RoutingTable routingTable = this.routingTable;
+        this.routingTable = null;
+        if (routingTable != null) {
+            routingTable.clear();
+        }
+        if (routingArray != null) {
+            for (Routing routing : routingArray) {
+                routing.clean();
+            }
+            routingArray = null;
+        }
+    }
+
     /**
      * Load classpath class
      *
@@ -329,7 +373,7 @@ public class RoutingURLClassLoader extends URLClassLoader {
          * @param wildcard 通配符匹配模版
          * @return true:目标字符串符合匹配模版;false:目标字符串不符合匹配模版
          */
-        private boolean matching(final String string, final String wildcard) {
+        boolean matching(final String string, final String wildcard) {
             if ("*".equals(wildcard)) {
                 return true;
             }
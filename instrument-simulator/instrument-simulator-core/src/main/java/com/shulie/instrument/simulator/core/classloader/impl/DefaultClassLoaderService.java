@@ -27,9 +27,9 @@ import org.slf4j.LoggerFactory;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * ClassLoader Service Implementation
@@ -45,7 +45,7 @@ public class DefaultClassLoaderService implements ClassLoaderService {
     private ConcurrentHashMap<String, ClassLoaderFactory> exportPrefixPackagesClassLoaderMap = new ConcurrentHashMap<String, ClassLoaderFactory>();
     private ConcurrentHashMap<String, ClassLoaderFactory> exportSuffixPackagesClassLoaderMap = new ConcurrentHashMap<String, ClassLoaderFactory>();
 
-    /* export cache and classloader relationship cache */
+    /* export cache and classloader relationship cache, 查找方直接遍历返回的列表，卸载模块时可能同时修改 */
     private ConcurrentHashMap<String, List<ClassLoaderFactory>> exportExactlyResourceClassLoaderMap = new ConcurrentHashMap<String, List<ClassLoaderFactory>>();
     private ConcurrentHashMap<String, List<ClassLoaderFactory>> exportPrefixResourceClassLoaderMap = new ConcurrentHashMap<String, List<ClassLoaderFactory>>();
     private ConcurrentHashMap<String, List<ClassLoaderFactory>> exportSuffixResourceClassLoaderMap = new ConcurrentHashMap<String, List<ClassLoaderFactory>>();
@@ -141,6 +141,9 @@ public class DefaultClassLoaderService implements ClassLoaderService {
 
     /**
      * 加载导出类和资源缓存
+     * <p>
+     * 多个模块导出同一个类或包时先登记的模块生效，调用方需要按照模块的加载顺序串行登记
+     * </p>
      *
      * @param moduleSpec         模块描述
      * @param classLoaderFactory 模块类加载器
@@ -165,7 +168,7 @@ public class DefaultClassLoaderService implements ClassLoaderService {
         for (String resource : moduleSpec.getExportResources()) {
             List<ClassLoaderFactory> moduleClassLoaders = exportExactlyResourceClassLoaderMap.get(resource);
             if (moduleClassLoaders == null) {
-                moduleClassLoaders = new LinkedList<ClassLoaderFactory>();
+                moduleClassLoaders = new CopyOnWriteArrayList<ClassLoaderFactory>();
                 List<ClassLoaderFactory> list = exportExactlyResourceClassLoaderMap.putIfAbsent(resource, moduleClassLoaders);
                 if (list != null) {
                     moduleClassLoaders = list;
@@ -177,7 +180,7 @@ public class DefaultClassLoaderService implements ClassLoaderService {
         for (String resource : moduleSpec.getExportPrefixResources()) {
             List<ClassLoaderFactory> moduleClassLoaders = exportPrefixResourceClassLoaderMap.get(resource);
             if (moduleClassLoaders == null) {
-                moduleClassLoaders = new LinkedList<ClassLoaderFactory>();
+                moduleClassLoaders = new CopyOnWriteArrayList<ClassLoaderFactory>();
                 List<ClassLoaderFactory> list = exportPrefixResourceClassLoaderMap.putIfAbsent(resource, moduleClassLoaders);
                 if (list != null) {
                     moduleClassLoaders = list;
@@ -189,7 +192,7 @@ public class DefaultClassLoaderService implements ClassLoaderService {
         for (String resource : moduleSpec.getExportSuffixResources()) {
             List<ClassLoaderFactory> moduleClassLoaders = exportSuffixResourceClassLoaderMap.get(resource);
             if (moduleClassLoaders == null) {
-                moduleClassLoaders = new LinkedList<ClassLoaderFactory>();
+                moduleClassLoaders = new CopyOnWriteArrayList<ClassLoaderFactory>();
                 List<ClassLoaderFactory> list = exportSuffixResourceClassLoaderMap.putIfAbsent(resource, moduleClassLoaders);
                 if (list != null) {
                     moduleClassLoaders = list;
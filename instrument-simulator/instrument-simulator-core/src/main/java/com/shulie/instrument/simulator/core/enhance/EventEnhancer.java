@@ -15,6 +15,7 @@
 package com.shulie.instrument.simulator.core.enhance;
 
 import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.core.enhance.weaver.ListenerComposer;
 import com.shulie.instrument.simulator.core.enhance.weaver.asm.AsmCodeEnhancer;
 import com.shulie.instrument.simulator.core.util.AsmUtils;
 import org.objectweb.asm.ClassReader;
@@ -29,6 +30,33 @@ import static org.objectweb.asm.Opcodes.ASM7;
 public class EventEnhancer implements Enhancer {
     private final static int CLASS_VERSION_15 = 49;
 
+    /**
+     * 监听器组合器，为 null 时同一个行为上的多个监听器各自织入调用点
+     */
+    private final ListenerComposer composer;
+
+    /**
+     * 最近一次增强织入的组合调用点数量
+     */
+    private int compositeSiteCount;
+
+    public EventEnhancer() {
+        this(null);
+    }
+
+    public EventEnhancer(final ListenerComposer composer) {
+        this.composer = composer;
+    }
+
+    /**
+     * 组合调用点上的组合监听器ID只在本次启动内有效，织入了组合调用点的字节码不能写入增强缓存
+     *
+     * @return 最近一次增强是否织入了组合调用点
+     */
+    public boolean isComposited() {
+        return compositeSiteCount > 0;
+    }
+
     private int getClassMajorVersion(byte[] data) {
         return (short) (((data[6] & 0xFF) << 8) | (data[6 + 1] & 0xFF));
     }
@@ -58,14 +86,14 @@ public class EventEnhancer implements Enhancer {
                                   final Map<String, Set<BuildingForListeners>> signCodes) {
         final ClassReader cr = new ClassReader(byteCodeArray);
         final ClassWriter cw = createClassWriter(targetClassLoader, cr, byteCodeArray);
-        cr.accept(
-                new AsmCodeEnhancer(
-                        ASM7, cw,
-                        cr.getClassName(),
-                        signCodes
-                ),
-                EXPAND_FRAMES
+        final AsmCodeEnhancer codeEnhancer = new AsmCodeEnhancer(
+                ASM7, cw,
+                cr.getClassName(),
+                signCodes,
+                composer
         );
+        cr.accept(codeEnhancer, EXPAND_FRAMES);
+        compositeSiteCount = codeEnhancer.getCompositeSiteCount();
 
         return cw.toByteArray();
     }
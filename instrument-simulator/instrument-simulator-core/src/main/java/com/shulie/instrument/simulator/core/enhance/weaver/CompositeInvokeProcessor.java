@@ -0,0 +1,150 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+/**
+ * 组合调用流程处理器
+ * <p>
+ * 一个组合调用点对应一组固定顺序的成员监听器，成员的事件处理器保存在写时复制的数组中，
+ * 数组下标与成员顺序一一对应，成员未激活或已冻结时对应位置为 null。
+ * 每个成员仍然使用自己的 {@link InvokeProcessor} 维护调用栈及流程控制状态，
+ * 组合处理器只额外记录每次调用有多少个成员已经进入，保证 RETURN/THROWS 只派发给已经进入的成员
+ * </p>
+ */
+class CompositeInvokeProcessor {
+
+    /**
+     * 组合监听器 ID
+     */
+    final int compositeId;
+
+    /**
+     * 成员监听器 ID，顺序固定
+     */
+    final int[] listenerIds;
+
+    /**
+     * 成员事件处理器，激活、冻结时整体替换
+     */
+    volatile InvokeProcessor[] processors;
+
+    private final ThreadLocal<CompositeProcess> processRef = new ThreadLocal<CompositeProcess>();
+
+    CompositeInvokeProcessor(final int compositeId, final int[] listenerIds) {
+        this.compositeId = compositeId;
+        this.listenerIds = listenerIds;
+        this.processors = new InvokeProcessor[listenerIds.length];
+    }
+
+    /**
+     * 是否包含成员监听器
+     *
+     * @param listenerId 监听器 ID
+     * @return TRUE:包含；FALSE：不包含
+     */
+    boolean contains(final int listenerId) {
+        for (int id : listenerIds) {
+            if (id == listenerId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从处理器映射表中重新获取所有成员的事件处理器
+     *
+     * @param table 处理器映射表
+     */
+    void refresh(final InvokeProcessorTable table) {
+        final InvokeProcessor[] newProcessors = new InvokeProcessor[listenerIds.length];
+        for (int i = 0; i < listenerIds.length; i++) {
+            newProcessors[i] = table.get(listenerIds[i]);
+        }
+        this.processors = newProcessors;
+    }
+
+    final CompositeProcess getOrCreate() {
+        CompositeProcess process = processRef.get();
+        if (process == null) {
+            process = new CompositeProcess();
+            processRef.set(process);
+        }
+        return process;
+    }
+
+    final CompositeProcess get() {
+        return processRef.get();
+    }
+
+    /**
+     * clean if empty
+     */
+    final void cleanIfEmpty() {
+        final CompositeProcess process = get();
+        if (process != null && process.isEmpty()) {
+            processRef.remove();
+        }
+    }
+
+    final void clean() {
+        this.processors = new InvokeProcessor[listenerIds.length];
+        processRef.remove();
+    }
+
+    /**
+     * 一个线程上组合调用点的调用过程
+     */
+    static class CompositeProcess {
+
+        /**
+         * 每一层调用已经进入的成员数量
+         */
+        private final InvokeProcessor.IntStack entered = new InvokeProcessor.IntStack();
+
+        /**
+         * 组合调用点主动抛出的异常会再次进入本调用点的 THROWS，此时成员已经处理过，需要忽略
+         */
+        private boolean isExceptionFromImmediately = false;
+
+        final void pushEntered(final int count) {
+            entered.push(count);
+        }
+
+        final int popEntered() {
+            return entered.pop();
+        }
+
+        final boolean isEmptyStack() {
+            return entered.isEmpty();
+        }
+
+        final void markExceptionFromImmediately() {
+            isExceptionFromImmediately = true;
+        }
+
+        final boolean rollingIsExceptionFromImmediately() {
+            if (isExceptionFromImmediately) {
+                isExceptionFromImmediately = false;
+                return true;
+            }
+            return false;
+        }
+
+        final boolean isEmpty() {
+            return entered.isEmpty() && !isExceptionFromImmediately;
+        }
+    }
+}
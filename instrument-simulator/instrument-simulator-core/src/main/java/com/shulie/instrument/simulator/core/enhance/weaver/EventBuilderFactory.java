@@ -23,6 +23,104 @@ import com.shulie.instrument.simulator.api.event.*;
  */
 class EventBuilderFactory {
 
+    /**
+     * 是否开启事件对象复用
+     */
+    private final boolean isEventPoolEnabled;
+
+    /**
+     * 线程内的事件对象池，只有开启事件对象复用时才会使用
+     */
+    private final ThreadLocal<EventPool> eventPoolRef = new ThreadLocal<EventPool>() {
+        @Override
+        protected EventPool initialValue() {
+            return new EventPool();
+        }
+    };
+
+    EventBuilderFactory() {
+        this(false);
+    }
+
+    EventBuilderFactory(final boolean isEventPoolEnabled) {
+        this.isEventPoolEnabled = isEventPoolEnabled;
+    }
+
+    /**
+     * 是否开启了事件对象复用
+     *
+     * @return TRUE:开启;FALSE:未开启
+     */
+    boolean isEventPoolEnabled() {
+        return isEventPoolEnabled;
+    }
+
+    /**
+     * 构建 BEFORE 事件，reusable 为 TRUE 时从线程内的事件池中借出事件对象，
+     * 派发结束后需要调用 {@link #recycle(Event)} 归还
+     *
+     * @param reusable 事件是否可以复用
+     * @see #buildBeforeEvent(int, int, ClassLoader, Class, String, String, Object, Object[])
+     */
+    public BeforeEvent buildBeforeEvent(final boolean reusable,
+                                        final int processId,
+                                        final int invokeId,
+                                        final ClassLoader javaClassLoader,
+                                        final Class clazz,
+                                        final String javaMethodName,
+                                        final String javaMethodDesc,
+                                        final Object target,
+                                        final Object[] argumentArray) {
+        if (reusable && isEventPoolEnabled) {
+            return eventPoolRef.get().borrowBeforeEvent(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+        }
+        return buildBeforeEvent(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+    }
+
+    /**
+     * 构建返回事件，reusable 为 TRUE 时从线程内的事件池中借出事件对象
+     *
+     * @param reusable 事件是否可以复用
+     * @see #buildReturnEvent(int, int, Object)
+     */
+    public ReturnEvent buildReturnEvent(final boolean reusable,
+                                        final int processId,
+                                        final int invokeId,
+                                        final Object returnObj) {
+        if (reusable && isEventPoolEnabled) {
+            return eventPoolRef.get().borrowReturnEvent(processId, invokeId, returnObj);
+        }
+        return buildReturnEvent(processId, invokeId, returnObj);
+    }
+
+    /**
+     * 构建抛出异常事件，reusable 为 TRUE 时从线程内的事件池中借出事件对象
+     *
+     * @param reusable 事件是否可以复用
+     * @see #buildThrowsEvent(int, int, Throwable)
+     */
+    public ThrowsEvent buildThrowsEvent(final boolean reusable,
+                                        final int processId,
+                                        final int invokeId,
+                                        final Throwable throwable) {
+        if (reusable && isEventPoolEnabled) {
+            return eventPoolRef.get().borrowThrowsEvent(processId, invokeId, throwable);
+        }
+        return buildThrowsEvent(processId, invokeId, throwable);
+    }
+
+    /**
+     * 归还派发结束的事件，非池化的事件直接忽略
+     *
+     * @param event 事件
+     */
+    public void recycle(final Event event) {
+        if (!isEventPoolEnabled || event == null) {
+            return;
+        }
+        eventPoolRef.get().release(event);
+    }
+
     /**
      * 构建 BEFORE 事件
      *
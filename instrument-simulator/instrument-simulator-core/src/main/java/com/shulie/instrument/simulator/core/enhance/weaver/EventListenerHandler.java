@@ -14,8 +14,9 @@
  */
 package com.shulie.instrument.simulator.core.enhance.weaver;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -28,6 +29,7 @@ import com.shulie.instrument.simulator.api.event.InvokeEvent;
 import com.shulie.instrument.simulator.api.executors.ExecutorServiceFactory;
 import com.shulie.instrument.simulator.api.guard.SimulatorGuard;
 import com.shulie.instrument.simulator.api.listener.EventListener;
+import com.shulie.instrument.simulator.api.resource.OverheadProfiler;
 import com.shulie.instrument.simulator.core.classloader.BizClassLoaderHolder;
 import com.shulie.instrument.simulator.core.util.ReflectUtils;
 import com.shulie.instrument.simulator.core.util.matcher.structure.AsmClassStructure;
@@ -48,7 +50,7 @@ import static com.shulie.instrument.simulator.message.Result.newThrows;
 /**
  * 事件处理
  */
-public class EventListenerHandler implements MessageHandler {
+public class EventListenerHandler implements MessageHandler, ListenerComposer {
     protected static final Logger TIME_CONSUMING_LOGGER = LoggerFactory.getLogger("TIME-CONSUMING-LOGGER");
     private static boolean costEnabled = Boolean.parseBoolean(
         System.getProperty("simulator.messager.cost.enabled", "false"));
@@ -59,14 +61,25 @@ public class EventListenerHandler implements MessageHandler {
     private final AtomicInteger invokeIdSequencer = new AtomicInteger(1000);
 
     // 全局处理器ID:处理器映射集合
-    private final Map<Integer/*LISTENER_ID*/, InvokeProcessor> mappingOfEventProcessor
-        = new ConcurrentHashMap<Integer, InvokeProcessor>();
+    private final InvokeProcessorTable mappingOfEventProcessor = new InvokeProcessorTable();
+
+    /**
+     * 组合监听器，组合ID从 -1 开始递减，-1 对应下标 0，只在 compositeLock 内修改并整体替换。
+     * compositesByMembers 只缓存成员都没有被冻结过的组合监听器，用于织入时复用组合ID
+     */
+    private volatile CompositeInvokeProcessor[] composites = new CompositeInvokeProcessor[0];
+    private final Map<String, CompositeInvokeProcessor> compositesByMembers = new HashMap<String, CompositeInvokeProcessor>();
+    private final Object compositeLock = new Object();
+
+    /**
+     * 监听器开销统计
+     */
+    private final OverheadAccounting overheadAccounting = new OverheadAccounting();
 
     /**
      * 事件工厂，一个流程有一个单独的事件工厂
      */
-    private final EventBuilderFactory eventFactory
-        = new EventBuilderFactory();
+    private final EventBuilderFactory eventFactory;
 
     private ExceptionHandler exceptionHandler;
 
@@ -81,6 +94,19 @@ public class EventListenerHandler implements MessageHandler {
     ;
 
     public EventListenerHandler() {
+        this(Boolean.parseBoolean(System.getProperty("simulator.event.pool.enabled", "false")));
+    }
+
+    /**
+     * @param isEventPoolEnabled 是否开启事件对象复用，开启后不会持有事件的监听器
+     *                           ({@link EventListener#isHoldEvent()} 为 FALSE)在 BEFORE、RETURN、THROWS
+     *                           事件上会复用线程内的事件对象
+     */
+    public EventListenerHandler(final boolean isEventPoolEnabled) {
+        this.eventFactory = new EventBuilderFactory(isEventPoolEnabled);
+        if (isInfoEnabled && isEventPoolEnabled) {
+            logger.info("SIMULATOR: event pool is enabled.");
+        }
         this.exceptionHandler = Messager.getExceptionHandler();
         ExecutorServiceFactory.getFactory().scheduleWithFixedDelay(new Runnable() {
             @Override
@@ -94,6 +120,15 @@ public class EventListenerHandler implements MessageHandler {
         }, 10, 10, TimeUnit.SECONDS);
     }
 
+    /**
+     * 获取监听器开销统计
+     *
+     * @return 监听器开销统计
+     */
+    public OverheadProfiler getOverheadProfiler() {
+        return overheadAccounting;
+    }
+
     /**
      * 注册事件处理器
      *
@@ -104,7 +139,24 @@ public class EventListenerHandler implements MessageHandler {
     public void active(final int listenerId,
         final EventListener listener,
         final int[] eventEventTypes) {
-        mappingOfEventProcessor.put(listenerId, new InvokeProcessor(listenerId, listener, eventEventTypes));
+        active(listenerId, listener.getClass().getName(), listener, eventEventTypes);
+    }
+
+    /**
+     * 注册事件处理器
+     *
+     * @param listenerId        事件监听器ID
+     * @param listenerClassName 事件监听器类名，监听器为代理时使用被代理的监听器类名
+     * @param listener          事件监听器
+     * @param eventEventTypes   监听事件集合
+     */
+    public void active(final int listenerId,
+        final String listenerClassName,
+        final EventListener listener,
+        final int[] eventEventTypes) {
+        mappingOfEventProcessor.put(listenerId,
+            new InvokeProcessor(listenerId, listenerClassName, listener, eventEventTypes));
+        refreshComposites(listenerId);
         if (isInfoEnabled) {
             logger.info("SIMULATOR: activated listener[id={};target={};] event={}",
                 listenerId,
@@ -121,6 +173,7 @@ public class EventListenerHandler implements MessageHandler {
      */
     public void frozen(int listenerId) {
         final InvokeProcessor processor = mappingOfEventProcessor.remove(listenerId);
+        evictComposites(listenerId);
         if (null == processor) {
             if (isDebugEnabled) {
                 logger.debug("SIMULATOR: ignore frozen listener={}, because not found.", listenerId);
@@ -140,6 +193,79 @@ public class EventListenerHandler implements MessageHandler {
         processor.clean();
     }
 
+    @Override
+    public int compose(final int[] listenerIds) {
+        final String key = Arrays.toString(listenerIds);
+        synchronized (compositeLock) {
+            CompositeInvokeProcessor composite = compositesByMembers.get(key);
+            if (composite != null) {
+                return composite.compositeId;
+            }
+            final CompositeInvokeProcessor[] oldComposites = this.composites;
+            composite = new CompositeInvokeProcessor(-(oldComposites.length + 1), listenerIds.clone());
+            composite.refresh(mappingOfEventProcessor);
+            final CompositeInvokeProcessor[] newComposites = Arrays.copyOf(oldComposites, oldComposites.length + 1);
+            newComposites[oldComposites.length] = composite;
+            compositesByMembers.put(key, composite);
+            this.composites = newComposites;
+            if (isInfoEnabled) {
+                logger.info("SIMULATOR: composed listener[id={};members={};]", composite.compositeId, key);
+            }
+            return composite.compositeId;
+        }
+    }
+
+    /**
+     * 成员激活或者冻结后刷新包含该成员的组合监听器
+     *
+     * @param listenerId 成员监听器ID
+     */
+    private void refreshComposites(final int listenerId) {
+        synchronized (compositeLock) {
+            for (CompositeInvokeProcessor composite : composites) {
+                if (composite.contains(listenerId)) {
+                    composite.refresh(mappingOfEventProcessor);
+                }
+            }
+        }
+    }
+
+    /**
+     * 成员冻结后把包含该成员的组合监听器从缓存中移除，之后织入时重新组合，不再复用旧的组合ID。
+     * 已经织入旧组合ID的类依然可以找到组合监听器，被冻结的成员不再派发，模块重新激活时成员会被重新挂上
+     *
+     * @param listenerId 被冻结的成员监听器ID
+     */
+    private void evictComposites(final int listenerId) {
+        synchronized (compositeLock) {
+            for (CompositeInvokeProcessor composite : composites) {
+                if (composite.contains(listenerId)) {
+                    composite.refresh(mappingOfEventProcessor);
+                    final String key = Arrays.toString(composite.listenerIds);
+                    if (compositesByMembers.get(key) == composite) {
+                        compositesByMembers.remove(key);
+                        if (isInfoEnabled) {
+                            logger.info("SIMULATOR: evicted composed listener[id={};members={};]",
+                                composite.compositeId, key);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取组合监听器
+     *
+     * @param compositeId 组合监听器ID
+     * @return 组合监听器，不存在时返回 null
+     */
+    private CompositeInvokeProcessor getComposite(final int compositeId) {
+        final CompositeInvokeProcessor[] composites = this.composites;
+        final int index = -compositeId - 1;
+        return index < composites.length ? composites[index] : null;
+    }
+
     /**
      * 调用出发事件处理&调用执行流程控制
      *
@@ -449,6 +575,13 @@ public class EventListenerHandler implements MessageHandler {
                 return Result.RESULT_NONE;
             }
 
+            /**
+             * 组合监听器依次派发给各个成员
+             */
+            if (listenerId < 0) {
+                return handleCompositeOnBefore(listenerId, argumentArray, clazz, javaMethodName, javaMethodDesc, target);
+            }
+
             /**
              * 获取事件处理器
              */
@@ -464,66 +597,250 @@ public class EventListenerHandler implements MessageHandler {
                 return Result.RESULT_NONE;
             }
 
-            if (!processor.isRunning()) {
+            return handleOnBefore(listenerId, processor, argumentArray, clazz, javaMethodName, javaMethodDesc, target);
+        } finally {
+            endTimeRecord(startTimeRecord, listenerClassName, "handleOnBefore");
+        }
+    }
+
+    private Result handleOnBefore(final int listenerId,
+        final InvokeProcessor processor,
+        final Object[] argumentArray,
+        final Class clazz,
+        final String javaMethodName,
+        final String javaMethodDesc,
+        final Object target) throws Throwable {
+        if (!processor.isRunning()) {
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: listener={} EventProcessor is closed, ignore processing before-event.",
+                    listenerId);
+            }
+            return Result.RESULT_NONE;
+        }
+
+        /**
+         * 获取调用流程
+         */
+        final InvokeProcessor.InvokeProcess invokeProcess = processor.getOrCreate();
+
+        try {
+            /**
+             * 如果当前处理ID被忽略，则立即返回
+             */
+            if (invokeProcess.isIgnoreProcess()) {
                 if (isDebugEnabled) {
-                    logger.debug("SIMULATOR: listener={} EventProcessor is closed, ignore processing before-event.",
-                        listenerId);
+                    logger.debug("SIMULATOR: listener={} is marked ignore process!", listenerId);
                 }
                 return Result.RESULT_NONE;
             }
 
             /**
-             * 获取调用流程
+             * BEFORE 事件时产生新的 invokeId
+             */
+            int invokeId = invokeIdSequencer.getAndIncrement();
+            invokeProcess.pushInvokeId(invokeId);
+
+            /**
+             * 开启开销统计时计数器挂在当前调用上，RETURN/THROWS 时直接取用
              */
-            final InvokeProcessor.InvokeProcess invokeProcess = processor.getOrCreate();
+            final OverheadCounter overheadCounter = overheadAccounting.isEnabled()
+                ? overheadAccounting.counterOf(listenerId, processor.listenerClassName, clazz, javaMethodName,
+                javaMethodDesc)
+                : null;
+            final long overheadStartNanos = overheadCounter != null ? System.nanoTime() : 0L;
+            final long overheadStartBytes = overheadCounter != null ? overheadAccounting.allocatedBytes() : 0L;
+            if (overheadCounter != null) {
+                invokeProcess.attach(overheadCounter);
+            }
 
+            /**
+             * 调用过程ID
+             */
+            final int processId = invokeProcess.getProcessId();
+
+            ClassLoader javaClassLoader = clazz.getClassLoader();
+            /**
+             * 放置业务类加载器
+             */
+            BizClassLoaderHolder.setBizClassLoader(javaClassLoader);
+            final BeforeEvent event = eventFactory.buildBeforeEvent(
+                !processor.listener.isHoldEvent(),
+                processId,
+                invokeId,
+                javaClassLoader,
+                clazz,
+                javaMethodName,
+                javaMethodDesc,
+                target,
+                argumentArray
+            );
             try {
-                /**
-                 * 如果当前处理ID被忽略，则立即返回
-                 */
-                if (invokeProcess.isIgnoreProcess()) {
-                    if (isDebugEnabled) {
-                        logger.debug("SIMULATOR: listener={} is marked ignore process!", listenerId);
-                    }
-                    return Result.RESULT_NONE;
+                return handleEvent(listenerId, processId, invokeId, clazz, event, processor);
+            } finally {
+                eventFactory.recycle(event);
+                BizClassLoaderHolder.clearBizClassLoader();
+                if (overheadCounter != null) {
+                    overheadAccounting.record(overheadCounter, true, overheadStartNanos, overheadStartBytes);
                 }
+            }
+        } finally {
+            processor.cleanIfEmpty();
+        }
+    }
 
-                /**
-                 * BEFORE 事件时产生新的 invokeId
-                 */
-                int invokeId = invokeIdSequencer.getAndIncrement();
-                invokeProcess.pushInvokeId(invokeId);
-
-                /**
-                 * 调用过程ID
-                 */
-                final int processId = invokeProcess.getProcessId();
+    /**
+     * 组合调用点的 BEFORE 事件
+     * <p>
+     * 与每个监听器单独织入调用点时的嵌套顺序保持一致：成员按顺序处理 BEFORE，
+     * 某个成员要求立即返回时，之后的成员不再进入，之前已经进入的成员按相反顺序收到 RETURN；
+     * 某个成员要求立即抛出异常时，异常会进入组合调用点的 THROWS，由该成员及之前的成员按相反顺序处理
+     * </p>
+     */
+    private Result handleCompositeOnBefore(final int compositeId,
+        final Object[] argumentArray,
+        final Class clazz,
+        final String javaMethodName,
+        final String javaMethodDesc,
+        final Object target) throws Throwable {
+        final CompositeInvokeProcessor composite = getComposite(compositeId);
+        if (null == composite) {
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: composite listener={} is not found, ignore processing before-event.", compositeId);
+            }
+            return Result.RESULT_NONE;
+        }
 
-                ClassLoader javaClassLoader = clazz.getClassLoader();
-                /**
-                 * 放置业务类加载器
-                 */
-                BizClassLoaderHolder.setBizClassLoader(javaClassLoader);
-                final BeforeEvent event = eventFactory.buildBeforeEvent(
-                    processId,
-                    invokeId,
-                    javaClassLoader,
-                    clazz,
-                    javaMethodName,
-                    javaMethodDesc,
-                    target,
-                    argumentArray
-                );
-                try {
-                    return handleEvent(listenerId, processId, invokeId, clazz, event, processor);
-                } finally {
-                    BizClassLoaderHolder.clearBizClassLoader();
+        final InvokeProcessor[] processors = composite.processors;
+        int entered = 0;
+        try {
+            for (int i = 0; i < processors.length; i++) {
+                final InvokeProcessor processor = processors[i];
+                entered = i + 1;
+                if (null == processor) {
+                    continue;
+                }
+                final Result result = handleOnBefore(processor.listenerId, processor, argumentArray, clazz,
+                    javaMethodName, javaMethodDesc, target);
+                if (result.state == Result.RESULT_STATE_RETURN) {
+                    /**
+                     * 立即返回不会再经过方法出口，之前已经进入的成员在这里补上 RETURN
+                     */
+                    final Result outcome;
+                    BizClassLoaderHolder.setBizClassLoader(clazz.getClassLoader());
+                    try {
+                        outcome = unwindComposite(processors, i - 1, clazz, result);
+                    } finally {
+                        BizClassLoaderHolder.clearBizClassLoader();
+                    }
+                    if (outcome.state == Result.RESULT_STATE_THROWS) {
+                        composite.getOrCreate().markExceptionFromImmediately();
+                    }
+                    return outcome;
+                }
+                if (result.state == Result.RESULT_STATE_THROWS) {
+                    composite.getOrCreate().pushEntered(entered);
+                    return result;
                 }
-            } finally {
-                processor.cleanIfEmpty();
             }
+        } catch (Throwable cause) {
+            composite.getOrCreate().pushEntered(entered);
+            throw cause;
+        }
+        composite.getOrCreate().pushEntered(processors.length);
+        return Result.RESULT_NONE;
+    }
+
+    /**
+     * 组合调用点的 RETURN/THROWS 事件
+     */
+    private Result handleCompositeOnEnd(final int compositeId,
+        final Class clazz,
+        final Object object,
+        final boolean isReturn) {
+        final CompositeInvokeProcessor composite = getComposite(compositeId);
+        if (null == composite) {
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: composite listener={} is not found, ignore processing return-event|throws-event.",
+                    compositeId);
+            }
+            return Result.RESULT_NONE;
+        }
+        final CompositeInvokeProcessor.CompositeProcess process = composite.get();
+        if (null == process) {
+            return Result.RESULT_NONE;
+        }
+        try {
+            // 异常是组合调用点自身在成员处理完成后抛出的，不再重复派发
+            if (!isReturn && process.rollingIsExceptionFromImmediately()) {
+                return Result.RESULT_NONE;
+            }
+            if (process.isEmptyStack()) {
+                return Result.RESULT_NONE;
+            }
+            final int entered = process.popEntered();
+            final Result origin = isReturn ? Result.newReturn(object) : newThrows((Throwable)object);
+            final Result outcome = unwindComposite(composite.processors, entered - 1, clazz, origin);
+            if (outcome == origin) {
+                return Result.RESULT_NONE;
+            }
+            if (isReturn && outcome.state == Result.RESULT_STATE_THROWS) {
+                process.markExceptionFromImmediately();
+            }
+            return outcome;
         } finally {
-            endTimeRecord(startTimeRecord, listenerClassName, "handleOnBefore");
+            composite.cleanIfEmpty();
+        }
+    }
+
+    /**
+     * 按相反顺序把方法的结束状态派发给已经进入的成员，成员改变的返回值或异常会传递给之后的成员
+     *
+     * @param processors 成员事件处理器
+     * @param top        最后一个已经进入的成员下标
+     * @param clazz      目标类
+     * @param outcome    方法的结束状态
+     * @return 所有成员处理后最终的结束状态
+     */
+    private Result unwindComposite(final InvokeProcessor[] processors,
+        final int top,
+        final Class clazz,
+        Result outcome) {
+        for (int i = Math.min(top, processors.length - 1); i >= 0; i--) {
+            final InvokeProcessor processor = processors[i];
+            if (null == processor) {
+                continue;
+            }
+            if (outcome.state == Result.RESULT_STATE_RETURN) {
+                final Result result = handleOnEndQuietly(processor, clazz, outcome.result, true);
+                if (result.state == Result.RESULT_STATE_NONE) {
+                    continue;
+                }
+                outcome = result;
+                if (result.state == Result.RESULT_STATE_THROWS) {
+                    // 单独织入时出口处抛出的异常仍在该成员自己的 try 范围内，会再进入一次它的 THROWS
+                    final Result rethrow = handleOnEndQuietly(processor, clazz, result.result, false);
+                    if (rethrow.state != Result.RESULT_STATE_NONE) {
+                        outcome = rethrow;
+                    }
+                }
+            } else {
+                final Result result = handleOnEndQuietly(processor, clazz, outcome.result, false);
+                if (result.state != Result.RESULT_STATE_NONE) {
+                    outcome = result;
+                }
+            }
+        }
+        return outcome;
+    }
+
+    private Result handleOnEndQuietly(final InvokeProcessor processor,
+        final Class clazz,
+        final Object object,
+        final boolean isReturn) {
+        try {
+            return handleOnEnd(processor.listenerId, processor, clazz, object, isReturn);
+        } catch (Throwable cause) {
+            return newThrows(cause);
         }
     }
 
@@ -561,10 +878,17 @@ public class EventListenerHandler implements MessageHandler {
 
     @Override
     public void destroy() {
-        for (Map.Entry<Integer, InvokeProcessor> entry : mappingOfEventProcessor.entrySet()) {
-            entry.getValue().clean();
+        for (InvokeProcessor processor : mappingOfEventProcessor.values()) {
+            processor.clean();
         }
         this.mappingOfEventProcessor.clear();
+        synchronized (compositeLock) {
+            for (CompositeInvokeProcessor composite : composites) {
+                composite.clean();
+            }
+            this.composites = new CompositeInvokeProcessor[0];
+            this.compositesByMembers.clear();
+        }
         AsmClassStructure.clear();
         exceptionHandler = null;
     }
@@ -585,6 +909,10 @@ public class EventListenerHandler implements MessageHandler {
             return Result.RESULT_NONE;
         }
 
+        if (listenerId < 0) {
+            return handleCompositeOnEnd(listenerId, clazz, object, isReturn);
+        }
+
         final InvokeProcessor processor = mappingOfEventProcessor.get(listenerId);
 
         /**
@@ -598,6 +926,14 @@ public class EventListenerHandler implements MessageHandler {
             return Result.RESULT_NONE;
         }
 
+        return handleOnEnd(listenerId, processor, clazz, object, isReturn);
+    }
+
+    private Result handleOnEnd(final int listenerId,
+        final InvokeProcessor processor,
+        final Class clazz,
+        final Object object,
+        final boolean isReturn) throws Throwable {
         if (!processor.isRunning()) {
             if (isDebugEnabled) {
                 logger.debug("SIMULATOR: listener={} EventProcessor is closed, ignore processing before-event.", listenerId);
@@ -624,6 +960,7 @@ public class EventListenerHandler implements MessageHandler {
 
             // 继续异常处理
             final int processId = invokeProcess.getProcessId();
+            final Object attachment = invokeProcess.getAttachment();
             final int invokeId = invokeProcess.popInvokeId();
 
             // 忽略事件处理
@@ -642,11 +979,23 @@ public class EventListenerHandler implements MessageHandler {
                 );
             }
 
+            final boolean reusable = !processor.listener.isHoldEvent();
             final Event event = isReturn
-                ? eventFactory.buildReturnEvent(processId, invokeId, object)
-                : eventFactory.buildThrowsEvent(processId, invokeId, (Throwable)object);
+                ? eventFactory.buildReturnEvent(reusable, processId, invokeId, object)
+                : eventFactory.buildThrowsEvent(reusable, processId, invokeId, (Throwable)object);
 
-            return handleEvent(listenerId, processId, invokeId, clazz, event, processor);
+            final OverheadCounter overheadCounter = attachment instanceof OverheadCounter
+                && overheadAccounting.isEnabled() ? (OverheadCounter)attachment : null;
+            final long overheadStartNanos = overheadCounter != null ? System.nanoTime() : 0L;
+            final long overheadStartBytes = overheadCounter != null ? overheadAccounting.allocatedBytes() : 0L;
+            try {
+                return handleEvent(listenerId, processId, invokeId, clazz, event, processor);
+            } finally {
+                eventFactory.recycle(event);
+                if (overheadCounter != null) {
+                    overheadAccounting.record(overheadCounter, false, overheadStartNanos, overheadStartBytes);
+                }
+            }
         } finally {
             processor.cleanIfEmpty();
         }
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+import com.shulie.instrument.simulator.api.event.BeforeEvent;
+import com.shulie.instrument.simulator.api.event.ReturnEvent;
+import com.shulie.instrument.simulator.api.event.ThrowsEvent;
+
+/**
+ * 线程内的事件对象池
+ * <p>
+ * 一个线程上的事件派发总是嵌套进行的(监听器处理事件时可能再次触发被增强的方法)，
+ * 所以事件的借出与归还满足后进先出，按照嵌套深度使用对应槽位上的事件对象即可，
+ * 超过最大深度的事件不再池化，直接创建新的对象
+ * <p>
+ * 非线程安全，只能在所属线程内使用
+ */
+class EventPool {
+
+    /**
+     * 每种事件最大的池化深度
+     */
+    private final static int MAX_DEEP = 32;
+
+    private final static int DEFAULT_DEEP = 4;
+
+    private PooledBeforeEvent[] beforeEvents = new PooledBeforeEvent[DEFAULT_DEEP];
+    private int beforeDeep = 0;
+
+    private PooledReturnEvent[] returnEvents = new PooledReturnEvent[DEFAULT_DEEP];
+    private int returnDeep = 0;
+
+    private PooledThrowsEvent[] throwsEvents = new PooledThrowsEvent[DEFAULT_DEEP];
+    private int throwsDeep = 0;
+
+    BeforeEvent borrowBeforeEvent(final int processId,
+                                  final int invokeId,
+                                  final ClassLoader javaClassLoader,
+                                  final Class clazz,
+                                  final String javaMethodName,
+                                  final String javaMethodDesc,
+                                  final Object target,
+                                  final Object[] argumentArray) {
+        if (beforeDeep >= MAX_DEEP) {
+            return new BeforeEvent(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+        }
+        if (beforeDeep == beforeEvents.length) {
+            beforeEvents = grow(beforeEvents, new PooledBeforeEvent[Math.min(beforeDeep << 1, MAX_DEEP)]);
+        }
+        PooledBeforeEvent event = beforeEvents[beforeDeep];
+        if (event == null) {
+            event = beforeEvents[beforeDeep] = new PooledBeforeEvent();
+        }
+        beforeDeep++;
+        event.reset(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+        return event;
+    }
+
+    ReturnEvent borrowReturnEvent(final int processId,
+                                  final int invokeId,
+                                  final Object returnObj) {
+        if (returnDeep >= MAX_DEEP) {
+            return new ReturnEvent(processId, invokeId, returnObj);
+        }
+        if (returnDeep == returnEvents.length) {
+            returnEvents = grow(returnEvents, new PooledReturnEvent[Math.min(returnDeep << 1, MAX_DEEP)]);
+        }
+        PooledReturnEvent event = returnEvents[returnDeep];
+        if (event == null) {
+            event = returnEvents[returnDeep] = new PooledReturnEvent();
+        }
+        returnDeep++;
+        event.reset(processId, invokeId, returnObj);
+        return event;
+    }
+
+    ThrowsEvent borrowThrowsEvent(final int processId,
+                                  final int invokeId,
+                                  final Throwable throwable) {
+        if (throwsDeep >= MAX_DEEP) {
+            return new ThrowsEvent(processId, invokeId, throwable);
+        }
+        if (throwsDeep == throwsEvents.length) {
+            throwsEvents = grow(throwsEvents, new PooledThrowsEvent[Math.min(throwsDeep << 1, MAX_DEEP)]);
+        }
+        PooledThrowsEvent event = throwsEvents[throwsDeep];
+        if (event == null) {
+            event = throwsEvents[throwsDeep] = new PooledThrowsEvent();
+        }
+        throwsDeep++;
+        event.reset(processId, invokeId, throwable);
+        return event;
+    }
+
+    /**
+     * 归还事件，只有位于当前栈顶的池化事件才会被回收，其他的事件直接忽略
+     *
+     * @param event 派发结束的事件
+     */
+    void release(final Object event) {
+        if (event instanceof PooledBeforeEvent) {
+            if (beforeDeep > 0 && beforeEvents[beforeDeep - 1] == event) {
+                beforeEvents[--beforeDeep].clear();
+            }
+        } else if (event instanceof PooledReturnEvent) {
+            if (returnDeep > 0 && returnEvents[returnDeep - 1] == event) {
+                returnEvents[--returnDeep].clear();
+            }
+        } else if (event instanceof PooledThrowsEvent) {
+            if (throwsDeep > 0 && throwsEvents[throwsDeep - 1] == event) {
+                throwsEvents[--throwsDeep].clear();
+            }
+        }
+    }
+
+    private static <T> T[] grow(T[] src, T[] dest) {
+        System.arraycopy(src, 0, dest, 0, src.length);
+        return dest;
+    }
+
+    private static final class PooledBeforeEvent extends BeforeEvent {
+
+        PooledBeforeEvent() {
+            super(0, 0, null, null, null, null, null, null);
+        }
+
+        @Override
+        protected void reset(int processId, int invokeId, ClassLoader javaClassLoader, Class clazz,
+                             String javaMethodName, String javaMethodDesc, Object target, Object[] argumentArray) {
+            super.reset(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+        }
+
+        @Override
+        protected void clear() {
+            super.clear();
+        }
+    }
+
+    private static final class PooledReturnEvent extends ReturnEvent {
+
+        PooledReturnEvent() {
+            super(0, 0, null);
+        }
+
+        @Override
+        protected void reset(int processId, int invokeId, Object returnObj) {
+            super.reset(processId, invokeId, returnObj);
+        }
+
+        @Override
+        protected void clear() {
+            super.clear();
+        }
+    }
+
+    private static final class PooledThrowsEvent extends ThrowsEvent {
+
+        PooledThrowsEvent() {
+            super(0, 0, null);
+        }
+
+        @Override
+        protected void reset(int processId, int invokeId, Throwable throwable) {
+            super.reset(processId, invokeId, throwable);
+        }
+
+        @Override
+        protected void clear() {
+            super.clear();
+        }
+    }
+}
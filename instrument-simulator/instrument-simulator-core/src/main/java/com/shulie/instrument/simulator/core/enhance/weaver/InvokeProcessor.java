@@ -14,9 +14,9 @@
  */
 package com.shulie.instrument.simulator.core.enhance.weaver;
 
+import java.util.NoSuchElementException;
+
 import com.shulie.instrument.simulator.api.listener.EventListener;
-import com.shulie.instrument.simulator.api.util.SimulatorStack;
-import com.shulie.instrument.simulator.api.util.ThreadUnsafeSimulatorStack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +33,10 @@ class InvokeProcessor {
      * 事件监听器 ID
      */
     final int listenerId;
+    /**
+     * 事件监听器类名
+     */
+    final String listenerClassName;
     /**
      * 事件监听器
      */
@@ -55,15 +59,18 @@ class InvokeProcessor {
     /**
      * 调用流程处理器构建器
      *
-     * @param listenerId      调用流程 ID
-     * @param listener        监听器
-     * @param eventEventTypes 支持的事件列表
+     * @param listenerId        调用流程 ID
+     * @param listenerClassName 监听器类名
+     * @param listener          监听器
+     * @param eventEventTypes   支持的事件列表
      */
     InvokeProcessor(final int listenerId,
+                    final String listenerClassName,
                     final EventListener listener,
                     final int[] eventEventTypes) {
 
         this.listenerId = listenerId;
+        this.listenerClassName = listenerClassName;
         this.eventEventTypes = eventEventTypes;
         this.listener = listener;
     }
@@ -124,10 +131,9 @@ class InvokeProcessor {
     class InvokeProcess {
 
         /**
-         * 一次方法调用流程的堆栈
+         * 一次方法调用流程的堆栈，直接使用原生 int 数组，避免 invokeId 装箱
          */
-        private final SimulatorStack<Integer> stack
-                = new ThreadUnsafeSimulatorStack<Integer>();
+        private final IntStack stack = new IntStack();
 
         /**
          * 是否需要忽略整个调用过程
@@ -140,6 +146,11 @@ class InvokeProcessor {
          */
         private boolean isExceptionFromImmediately = false;
 
+        /**
+         * 与调用堆栈对齐的附加数据，下标为调用所在的深度，只在需要时创建
+         */
+        private Object[] attachments;
+
         /**
          * 压入调用ID
          * 当压入的第一个调用 ID 即为流程 ID，在 BEFORE 事件中产生
@@ -164,9 +175,13 @@ class InvokeProcessor {
          * @return 调用ID
          */
         final int popInvokeId() {
+            if (attachments != null && stack.deep() > 0 && stack.deep() <= attachments.length) {
+                attachments[stack.deep() - 1] = null;
+            }
             final int invokeId = stack.pop();
             if (isDebugEnabled) {
-                final int processId = stack.peekLast();
+                // 最后一个 invokeId 弹出后堆栈为空，此时弹出的即为 processId
+                final int processId = stack.isEmpty() ? invokeId : stack.peekLast();
                 logger.debug("SIMULATOR: pop process-stack, process-id={};invoke-id={};deep={};listener={};",
                         processId,
                         invokeId,
@@ -183,6 +198,36 @@ class InvokeProcessor {
             return invokeId;
         }
 
+        /**
+         * 在当前调用上附加数据，调用ID弹出时一并清除
+         *
+         * @param attachment 附加数据
+         */
+        final void attach(Object attachment) {
+            final int deep = stack.deep();
+            if (attachments == null || deep > attachments.length) {
+                final Object[] newAttachments = new Object[Math.max(deep + (deep >> 1), IntStack.DEFAULT_STACK_DEEP)];
+                if (attachments != null) {
+                    System.arraycopy(attachments, 0, newAttachments, 0, attachments.length);
+                }
+                attachments = newAttachments;
+            }
+            attachments[deep - 1] = attachment;
+        }
+
+        /**
+         * 获取当前调用上的附加数据
+         *
+         * @return 附加数据，没有时返回 null
+         */
+        final Object getAttachment() {
+            final int deep = stack.deep();
+            if (attachments == null || deep == 0 || deep > attachments.length) {
+                return null;
+            }
+            return attachments[deep - 1];
+        }
+
         /**
          * 获取调用ID
          *
@@ -247,4 +292,53 @@ class InvokeProcessor {
             isExceptionFromImmediately = true;
         }
     }
+
+    /**
+     * 线程不安全的 int 堆栈，栈底元素即为调用过程 ID
+     */
+    static final class IntStack {
+
+        private final static int DEFAULT_STACK_DEEP = 12;
+
+        private int[] elementArray = new int[DEFAULT_STACK_DEEP];
+        private int index = -1;
+
+        void push(int e) {
+            if (index + 1 >= elementArray.length) {
+                final int[] newElementArray = new int[elementArray.length + (elementArray.length >> 1)];
+                System.arraycopy(elementArray, 0, newElementArray, 0, elementArray.length);
+                this.elementArray = newElementArray;
+            }
+            elementArray[++index] = e;
+        }
+
+        int pop() {
+            checkForPopOrPeek();
+            return elementArray[index--];
+        }
+
+        int peek() {
+            checkForPopOrPeek();
+            return elementArray[index];
+        }
+
+        int peekLast() {
+            checkForPopOrPeek();
+            return elementArray[0];
+        }
+
+        boolean isEmpty() {
+            return index == -1;
+        }
+
+        int deep() {
+            return index + 1;
+        }
+
+        private void checkForPopOrPeek() {
+            if (index == -1) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
 }
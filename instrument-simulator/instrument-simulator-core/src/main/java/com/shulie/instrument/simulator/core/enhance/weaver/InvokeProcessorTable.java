@@ -0,0 +1,125 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监听器 ID 到事件处理器的映射表
+ * <p>
+ * 监听器 ID 是 BuildingForListeners 的 identityHashCode，分布稀疏，没办法直接作为数组下标，
+ * 所以这里使用原生 int 作为 key 的开放寻址数组，读取时无锁且不需要装箱；
+ * 激活、冻结只在模块加载卸载时发生，写入时加锁并整体重建数组后替换
+ */
+class InvokeProcessorTable {
+
+    private final static int MIN_CAPACITY = 16;
+
+    /**
+     * 写入时使用的完整映射，只在锁内访问
+     */
+    private final Map<Integer, InvokeProcessor> processors = new HashMap<Integer, InvokeProcessor>();
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    /**
+     * 获取事件处理器
+     *
+     * @param listenerId 监听器 ID
+     * @return 事件处理器，不存在时返回 null
+     */
+    InvokeProcessor get(final int listenerId) {
+        final Table t = table;
+        final int[] keys = t.keys;
+        final InvokeProcessor[] values = t.values;
+        int index = hash(listenerId) & t.mask;
+        while (true) {
+            final InvokeProcessor processor = values[index];
+            if (processor == null) {
+                return null;
+            }
+            if (keys[index] == listenerId) {
+                return processor;
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    synchronized InvokeProcessor put(final int listenerId, final InvokeProcessor processor) {
+        final InvokeProcessor old = processors.put(listenerId, processor);
+        rebuild();
+        return old;
+    }
+
+    synchronized InvokeProcessor remove(final int listenerId) {
+        final InvokeProcessor old = processors.remove(listenerId);
+        if (old != null) {
+            rebuild();
+        }
+        return old;
+    }
+
+    synchronized List<InvokeProcessor> values() {
+        return new ArrayList<InvokeProcessor>(processors.values());
+    }
+
+    synchronized void clear() {
+        processors.clear();
+        rebuild();
+    }
+
+    /**
+     * 负载因子保持在 0.5 以下，保证查找时一定能遇到空槽
+     */
+    private void rebuild() {
+        int capacity = MIN_CAPACITY;
+        while (capacity < processors.size() * 2) {
+            capacity <<= 1;
+        }
+        final Table t = new Table(capacity);
+        for (Map.Entry<Integer, InvokeProcessor> entry : processors.entrySet()) {
+            final int listenerId = entry.getKey();
+            int index = hash(listenerId) & t.mask;
+            while (t.values[index] != null) {
+                index = (index + 1) & t.mask;
+            }
+            t.keys[index] = listenerId;
+            t.values[index] = entry.getValue();
+        }
+        this.table = t;
+    }
+
+    private static int hash(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private final static class Table {
+        final int[] keys;
+        final InvokeProcessor[] values;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new InvokeProcessor[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+}
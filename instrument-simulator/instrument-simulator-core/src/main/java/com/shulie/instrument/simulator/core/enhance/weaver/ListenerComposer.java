@@ -0,0 +1,33 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+/**
+ * 监听器组合器
+ * <p>
+ * 同一个方法被多个监听器增强时，织入时只织入一个调用点，调用点上使用组合后的监听器ID，
+ * 由组合器负责把组合ID派发到各个成员监听器上
+ * </p>
+ */
+public interface ListenerComposer {
+
+    /**
+     * 组合多个监听器，相同的成员及顺序返回相同的组合ID，任一成员被冻结后会重新分配组合ID
+     *
+     * @param listenerIds 成员监听器ID，顺序即为 BEFORE 事件的派发顺序，RETURN/THROWS 事件按相反顺序派发
+     * @return 组合监听器ID，始终为负数，不会与普通监听器ID冲突
+     */
+    int compose(int[] listenerIds);
+}
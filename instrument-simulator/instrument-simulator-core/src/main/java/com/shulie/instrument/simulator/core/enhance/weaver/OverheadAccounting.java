@@ -0,0 +1,331 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.shulie.instrument.simulator.api.resource.OverheadProfiler;
+import com.shulie.instrument.simulator.api.resource.OverheadRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 监听器开销统计
+ * <p>
+ * 按照 监听器ID + 被拦截的类 + 方法 统计，计数器在 BEFORE 事件时查找，并挂在调用栈上，
+ * RETURN/THROWS 事件直接使用同一个计数器，不需要再次查找。
+ * 查找时使用线程内复用的探针 key，命中已有计数器时不产生任何分配。
+ * 计数器数量超过上限后，新的方法统一累计到该监听器的溢出计数器上
+ * </p>
+ */
+public class OverheadAccounting implements OverheadProfiler {
+
+    /**
+     * 是否在启动时开启开销统计
+     */
+    public final static String ENABLED_OVERHEAD = "simulator.overhead.enabled";
+
+    /**
+     * 是否在启动时开启分配字节数统计
+     */
+    public final static String ENABLED_OVERHEAD_ALLOCATION = "simulator.overhead.allocation.enabled";
+
+    /**
+     * 计数器数量上限
+     */
+    public final static String OVERHEAD_MAX_KEYS = "simulator.overhead.max.keys";
+
+    private final static String OVERFLOW_CLASS_NAME = "__overflow__";
+    private final static String EMPTY = "";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private volatile boolean isEnabled;
+    private volatile boolean isAllocationEnabled;
+    private final int maxKeys;
+
+    private final ConcurrentHashMap<Key, OverheadCounter> counters = new ConcurrentHashMap<Key, OverheadCounter>();
+    private final AtomicInteger counterSize = new AtomicInteger();
+
+    private final ThreadLocal<Key> probes = new ThreadLocal<Key>() {
+        @Override
+        protected Key initialValue() {
+            return new Key();
+        }
+    };
+
+    public OverheadAccounting() {
+        this(Boolean.parseBoolean(System.getProperty(ENABLED_OVERHEAD, "false")),
+            Boolean.parseBoolean(System.getProperty(ENABLED_OVERHEAD_ALLOCATION, "false")),
+            Integer.getInteger(OVERHEAD_MAX_KEYS, 4096));
+    }
+
+    public OverheadAccounting(final boolean isEnabled, final boolean isAllocationEnabled, final int maxKeys) {
+        this.maxKeys = maxKeys;
+        this.isEnabled = isEnabled;
+        this.isAllocationEnabled = isAllocationEnabled && AllocationMeter.isSupported();
+        updateAllocationMeter();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        if (this.isEnabled != enabled) {
+            this.isEnabled = enabled;
+            updateAllocationMeter();
+            logger.info("SIMULATOR: listener overhead profiler is {}.", enabled ? "enabled" : "disabled");
+        }
+    }
+
+    @Override
+    public boolean isAllocationSupported() {
+        return AllocationMeter.isSupported();
+    }
+
+    @Override
+    public boolean isAllocationEnabled() {
+        return isAllocationEnabled;
+    }
+
+    @Override
+    public void setAllocationEnabled(final boolean enabled) {
+        this.isAllocationEnabled = enabled && AllocationMeter.isSupported();
+        updateAllocationMeter();
+    }
+
+    /**
+     * 线程分配字节数统计是 JVM 全局的开关，只在开销统计和分配字节数统计都开启时打开，
+     * 关闭时恢复为打开之前的状态
+     */
+    private synchronized void updateAllocationMeter() {
+        if (isEnabled && isAllocationEnabled) {
+            AllocationMeter.enable();
+        } else {
+            AllocationMeter.disable();
+        }
+    }
+
+    /**
+     * 获取当前线程已分配的字节数，未开启分配统计时返回 0
+     *
+     * @return 已分配的字节数
+     */
+    long allocatedBytes() {
+        return isAllocationEnabled ? AllocationMeter.currentThreadAllocatedBytes() : 0L;
+    }
+
+    /**
+     * 查找或者创建计数器
+     *
+     * @param listenerId        监听器ID
+     * @param listenerClassName 监听器类名
+     * @param clazz             被拦截的类
+     * @param methodName        被拦截的方法名
+     * @param methodDesc        被拦截的方法描述
+     * @return 计数器
+     */
+    OverheadCounter counterOf(final int listenerId,
+                              final String listenerClassName,
+                              final Class clazz,
+                              final String methodName,
+                              final String methodDesc) {
+        final Key probe = probes.get();
+        probe.set(listenerId, clazz.getName(), methodName, methodDesc);
+        final OverheadCounter counter = counters.get(probe);
+        if (counter != null) {
+            return counter;
+        }
+        if (counterSize.get() >= maxKeys) {
+            probe.set(listenerId, OVERFLOW_CLASS_NAME, EMPTY, EMPTY);
+            final OverheadCounter overflow = counters.get(probe);
+            if (overflow != null) {
+                return overflow;
+            }
+        }
+        return create(probe.copy(), listenerClassName);
+    }
+
+    private OverheadCounter create(final Key key, final String listenerClassName) {
+        final OverheadCounter counter = new OverheadCounter(key.listenerId, listenerClassName, key.className,
+            key.methodName, key.methodDesc);
+        final OverheadCounter old = counters.putIfAbsent(key, counter);
+        if (old != null) {
+            return old;
+        }
+        counterSize.incrementAndGet();
+        return counter;
+    }
+
+    /**
+     * 记录一次事件处理
+     *
+     * @param counter    计数器
+     * @param isInvoke   是否是 BEFORE 事件
+     * @param startNanos 开始时间
+     * @param startBytes 开始时当前线程已分配的字节数
+     */
+    void record(final OverheadCounter counter,
+                final boolean isInvoke,
+                final long startNanos,
+                final long startBytes) {
+        final long nanos = System.nanoTime() - startNanos;
+        long bytes = 0L;
+        if (startBytes > 0) {
+            final long endBytes = allocatedBytes();
+            if (endBytes > startBytes) {
+                bytes = endBytes - startBytes;
+            }
+        }
+        counter.record(isInvoke, nanos, bytes);
+    }
+
+    @Override
+    public List<OverheadRecord> getRecords() {
+        final List<OverheadRecord> records = new ArrayList<OverheadRecord>(counters.size());
+        for (OverheadCounter counter : counters.values()) {
+            records.add(new OverheadRecord(counter.listenerId, counter.listenerClassName, counter.className,
+                counter.methodName, counter.methodDesc, counter.getInvokeCount(), counter.getTotalNanos(),
+                counter.getAllocatedBytes()));
+        }
+        return records;
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+        counterSize.set(0);
+    }
+
+    /**
+     * 计数器的 key
+     */
+    private static final class Key {
+        private int listenerId;
+        private String className;
+        private String methodName;
+        private String methodDesc;
+        private int hash;
+
+        void set(final int listenerId, final String className, final String methodName, final String methodDesc) {
+            this.listenerId = listenerId;
+            this.className = className;
+            this.methodName = methodName;
+            this.methodDesc = methodDesc;
+            int h = listenerId;
+            h = 31 * h + className.hashCode();
+            h = 31 * h + methodName.hashCode();
+            h = 31 * h + methodDesc.hashCode();
+            this.hash = h;
+        }
+
+        Key copy() {
+            final Key key = new Key();
+            key.set(listenerId, className, methodName, methodDesc);
+            return key;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return listenerId == that.listenerId
+                && hash == that.hash
+                && className.equals(that.className)
+                && methodName.equals(that.methodName)
+                && methodDesc.equals(that.methodDesc);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 线程分配字节数，依赖 com.sun.management.ThreadMXBean，不支持的 JVM 上不可用
+     */
+    private static final class AllocationMeter {
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = init();
+
+        private static com.sun.management.ThreadMXBean init() {
+            try {
+                final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+                if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+                    return null;
+                }
+                final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (!bean.isThreadAllocatedMemorySupported()) {
+                    return null;
+                }
+                return bean;
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        /**
+         * 是否由这里打开了统计，只有自己打开的才在关闭时恢复
+         */
+        private static boolean isEnabledByMeter;
+
+        static boolean isSupported() {
+            return THREAD_MX_BEAN != null;
+        }
+
+        static void enable() {
+            if (THREAD_MX_BEAN == null || isEnabledByMeter) {
+                return;
+            }
+            try {
+                if (!THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled()) {
+                    THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+                    isEnabledByMeter = true;
+                }
+            } catch (Throwable e) {
+                // 无法打开时 getThreadAllocatedBytes 返回 -1，统计结果为 0
+            }
+        }
+
+        static void disable() {
+            if (THREAD_MX_BEAN == null || !isEnabledByMeter) {
+                return;
+            }
+            try {
+                THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(false);
+            } catch (Throwable e) {
+                // ignore
+            }
+            isEnabledByMeter = false;
+        }
+
+        static long currentThreadAllocatedBytes() {
+            return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一个监听器在一个被拦截方法上的开销计数器
+ * <p>
+ * 计数按照线程 ID 分散到多个条带上，每个条带独占一个缓存行，记录时只做无锁的 addAndGet，读取时再把所有条带累加
+ * </p>
+ */
+final class OverheadCounter {
+
+    /**
+     * 条带数，必须是 2 的幂
+     */
+    private final static int STRIPES = 8;
+    private final static int STRIPE_MASK = STRIPES - 1;
+
+    /**
+     * 每个条带占 8 个 long，即 64 字节，避免不同条带之间伪共享
+     */
+    private final static int STRIPE_WIDTH = 8;
+    private final static int INVOKE_COUNT = 0;
+    private final static int TOTAL_NANOS = 1;
+    private final static int ALLOCATED_BYTES = 2;
+
+    final int listenerId;
+    final String listenerClassName;
+    final String className;
+    final String methodName;
+    final String methodDesc;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * STRIPE_WIDTH);
+
+    OverheadCounter(final int listenerId,
+                    final String listenerClassName,
+                    final String className,
+                    final String methodName,
+                    final String methodDesc) {
+        this.listenerId = listenerId;
+        this.listenerClassName = listenerClassName;
+        this.className = className;
+        this.methodName = methodName;
+        this.methodDesc = methodDesc;
+    }
+
+    /**
+     * 记录一次事件处理
+     *
+     * @param isInvoke       是否是一次新的调用(BEFORE 事件)
+     * @param nanos          耗时
+     * @param allocatedBytes 分配的字节数
+     */
+    void record(final boolean isInvoke, final long nanos, final long allocatedBytes) {
+        final int base = ((int) Thread.currentThread().getId() & STRIPE_MASK) * STRIPE_WIDTH;
+        if (isInvoke) {
+            cells.incrementAndGet(base + INVOKE_COUNT);
+        }
+        cells.addAndGet(base + TOTAL_NANOS, nanos);
+        if (allocatedBytes > 0) {
+            cells.addAndGet(base + ALLOCATED_BYTES, allocatedBytes);
+        }
+    }
+
+    long getInvokeCount() {
+        return sum(INVOKE_COUNT);
+    }
+
+    long getTotalNanos() {
+        return sum(TOTAL_NANOS);
+    }
+
+    long getAllocatedBytes() {
+        return sum(ALLOCATED_BYTES);
+    }
+
+    private long sum(final int offset) {
+        long sum = 0L;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * STRIPE_WIDTH + offset);
+        }
+        return sum;
+    }
+}
@@ -17,6 +17,7 @@ package com.shulie.instrument.simulator.core.enhance.weaver.asm;
 import com.shulie.instrument.simulator.api.event.EventType;
 import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
 import com.shulie.instrument.simulator.core.enhance.weaver.CodeLock;
+import com.shulie.instrument.simulator.core.enhance.weaver.ListenerComposer;
 import com.shulie.instrument.simulator.core.util.SimulatorStringUtils;
 import com.shulie.instrument.simulator.message.Result;
 import org.objectweb.asm.*;
@@ -25,9 +26,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.apache.commons.lang.ArrayUtils.add;
 import static org.apache.commons.lang.ArrayUtils.contains;
 
 
@@ -45,64 +49,168 @@ public class AsmCodeEnhancer extends ClassVisitor implements Opcodes, AsmTypes,
     private final String targetJavaClassName;
     private final Map<String/*BehaviorStructure#getSignCode()*/, Set<BuildingForListeners>> signCodes;
 
+    /**
+     * 监听器组合器，为 null 时每个监听器单独织入一个调用点
+     */
+    private final ListenerComposer composer;
+
+    /**
+     * 已织入的组合调用点数量
+     */
+    private int compositeSiteCount;
+
     public AsmCodeEnhancer(final int api,
                            final ClassVisitor cv,
                            final String targetClassInternalName,
                            final Map<String/*BehaviorStructure#getSignCode()*/, Set<BuildingForListeners>> signCodes) {
+        this(api, cv, targetClassInternalName, signCodes, null);
+    }
+
+    public AsmCodeEnhancer(final int api,
+                           final ClassVisitor cv,
+                           final String targetClassInternalName,
+                           final Map<String/*BehaviorStructure#getSignCode()*/, Set<BuildingForListeners>> signCodes,
+                           final ListenerComposer composer) {
         super(api, cv);
         this.targetJavaClassName = SimulatorStringUtils.toJavaClassName(targetClassInternalName);
         this.signCodes = signCodes;
+        this.composer = composer;
+    }
 
+    /**
+     * 获取已织入的组合调用点数量
+     *
+     * @return 组合调用点数量
+     */
+    public int getCompositeSiteCount() {
+        return compositeSiteCount;
     }
 
     /**
      * 判断监听器是否开启 call 事件
      *
-     * @param listeners
+     * @param eventTypes
      * @return
      */
-    private boolean isCallEnable(BuildingForListeners listeners) {
-        return hasCallBefore(listeners) || hasCallReturn(listeners) || hasCallThrows(listeners);
+    private boolean isCallEnable(int[] eventTypes) {
+        return hasCallBefore(eventTypes) || hasCallReturn(eventTypes) || hasCallThrows(eventTypes);
     }
 
     /**
      * 判断监听器是否开启 call throws 事件
      *
-     * @param listeners
+     * @param eventTypes
      * @return
      */
-    private boolean hasCallThrows(BuildingForListeners listeners) {
-        return contains(listeners.getEventTypes(), EventType.CALL_THROWS);
+    private boolean hasCallThrows(int[] eventTypes) {
+        return contains(eventTypes, EventType.CALL_THROWS);
     }
 
     /**
      * 判断监听器是否开启 call return 事件
      *
-     * @param listeners
+     * @param eventTypes
      * @return
      */
-    private boolean hasCallReturn(BuildingForListeners listeners) {
-        return contains(listeners.getEventTypes(), EventType.CALL_RETURN);
+    private boolean hasCallReturn(int[] eventTypes) {
+        return contains(eventTypes, EventType.CALL_RETURN);
     }
 
     /**
      * 判断监听器是否开启 call before 事件
      *
-     * @param listeners
+     * @param eventTypes
      * @return
      */
-    private boolean hasCallBefore(BuildingForListeners listeners) {
-        return contains(listeners.getEventTypes(), EventType.CALL_BEFORE);
+    private boolean hasCallBefore(int[] eventTypes) {
+        return contains(eventTypes, EventType.CALL_BEFORE);
     }
 
     /**
      * 判断监听器是否开启行调用事件
      *
+     * @param eventTypes
+     * @return
+     */
+    private boolean isLineEnable(int[] eventTypes) {
+        return contains(eventTypes, EventType.LINE);
+    }
+
+    /**
+     * 只有 BEFORE/RETURN/THROWS 类事件的监听器可以合并到一个调用点，
+     * CALL、LINE 事件依赖于每个监听器自己的织入位置
+     *
      * @param listeners
      * @return
      */
-    private boolean isLineEnable(BuildingForListeners listeners) {
-        return contains(listeners.getEventTypes(), EventType.LINE);
+    private boolean isComposable(BuildingForListeners listeners) {
+        return !isCallEnable(listeners.getEventTypes()) && !isLineEnable(listeners.getEventTypes());
+    }
+
+    /**
+     * 将行为上的监听器转换成需要织入的调用点
+     * <p>
+     * 开启组合时，可以合并且 listenerTag 相同的监听器(共用同一个执行标记)合并为一个调用点，
+     * 调用点位于第一个成员原本的位置，成员保持原有的顺序
+     * </p>
+     *
+     * @param listenersSet 行为上的监听器
+     * @return 调用点列表，顺序即为原先的织入顺序
+     */
+    private List<WeavingSite> toWeavingSites(final Set<BuildingForListeners> listenersSet) {
+        final List<WeavingSite> sites = new ArrayList<WeavingSite>(listenersSet.size());
+        if (composer == null || listenersSet.size() < 2) {
+            for (BuildingForListeners buildingForListeners : listenersSet) {
+                sites.add(new WeavingSite(buildingForListeners));
+            }
+            return sites;
+        }
+
+        final List<List<BuildingForListeners>> groups = new ArrayList<List<BuildingForListeners>>(listenersSet.size());
+        final Map<Integer, List<BuildingForListeners>> groupsByTag = new LinkedHashMap<Integer, List<BuildingForListeners>>();
+        for (BuildingForListeners buildingForListeners : listenersSet) {
+            List<BuildingForListeners> group;
+            if (isComposable(buildingForListeners)) {
+                final int listenerTag = buildingForListeners.getListeners().getListenersTag();
+                group = groupsByTag.get(listenerTag);
+                if (group == null) {
+                    group = new ArrayList<BuildingForListeners>();
+                    groupsByTag.put(listenerTag, group);
+                    groups.add(group);
+                }
+            } else {
+                group = new ArrayList<BuildingForListeners>(1);
+                groups.add(group);
+            }
+            group.add(buildingForListeners);
+        }
+
+        for (List<BuildingForListeners> group : groups) {
+            if (group.size() == 1) {
+                sites.add(new WeavingSite(group.get(0)));
+                continue;
+            }
+            final int[] listenerIds = new int[group.size()];
+            final StringBuilder listenerClassNames = new StringBuilder("composite:");
+            int[] eventTypes = new int[0];
+            for (int i = 0; i < group.size(); i++) {
+                final BuildingForListeners buildingForListeners = group.get(i);
+                listenerIds[i] = buildingForListeners.getListenerId();
+                if (i > 0) {
+                    listenerClassNames.append(',');
+                }
+                listenerClassNames.append(buildingForListeners.getListeners().getClassName());
+                for (int eventType : buildingForListeners.getEventTypes()) {
+                    if (!contains(eventTypes, eventType)) {
+                        eventTypes = add(eventTypes, eventType);
+                    }
+                }
+            }
+            sites.add(new WeavingSite(composer.compose(listenerIds), listenerClassNames.toString(),
+                    group.get(0).getListeners().getListenersTag(), eventTypes));
+            compositeSiteCount++;
+        }
+        return sites;
     }
 
     /**
@@ -181,15 +289,15 @@ public class AsmCodeEnhancer extends ClassVisitor implements Opcodes, AsmTypes,
         }
 
         MethodVisitor methodVisitor = mv;
-        for (BuildingForListeners buildingForListeners : getBuildingForListeners(signCode)) {
-            final int listenerId = buildingForListeners.getListenerId();
-            final String listenerClassName = buildingForListeners.getListeners().getClassName();
-            final int listenerTag = buildingForListeners.getListeners().getListenersTag();
-            final boolean isCallEnable = isCallEnable(buildingForListeners);
-            final boolean isLineEnable = isLineEnable(buildingForListeners);
-            final boolean hasCallBefore = hasCallBefore(buildingForListeners);
-            final boolean hasCallThrows = hasCallThrows(buildingForListeners);
-            final boolean hasCallReturn = hasCallReturn(buildingForListeners);
+        for (WeavingSite site : toWeavingSites(getBuildingForListeners(signCode))) {
+            final int listenerId = site.listenerId;
+            final String listenerClassName = site.listenerClassName;
+            final int listenerTag = site.listenerTag;
+            final boolean isCallEnable = isCallEnable(site.eventTypes);
+            final boolean isLineEnable = isLineEnable(site.eventTypes);
+            final boolean hasCallBefore = hasCallBefore(site.eventTypes);
+            final boolean hasCallThrows = hasCallThrows(site.eventTypes);
+            final boolean hasCallReturn = hasCallReturn(site.eventTypes);
             methodVisitor = new ReWriteMethod(api, new JSRInlinerAdapter(methodVisitor, access, name, desc, signature, exceptions), access, name, desc) {
 
                 private final Label beginLabel = new Label();
@@ -517,4 +625,28 @@ public class AsmCodeEnhancer extends ClassVisitor implements Opcodes, AsmTypes,
         return methodVisitor;
 
     }
+
+    /**
+     * 织入的调用点，对应一个监听器或者一组组合后的监听器
+     */
+    private static final class WeavingSite {
+        private final int listenerId;
+        private final String listenerClassName;
+        private final int listenerTag;
+        private final int[] eventTypes;
+
+        WeavingSite(final BuildingForListeners buildingForListeners) {
+            this(buildingForListeners.getListenerId(),
+                    buildingForListeners.getListeners().getClassName(),
+                    buildingForListeners.getListeners().getListenersTag(),
+                    buildingForListeners.getEventTypes());
+        }
+
+        WeavingSite(final int listenerId, final String listenerClassName, final int listenerTag, final int[] eventTypes) {
+            this.listenerId = listenerId;
+            this.listenerClassName = listenerClassName;
+            this.listenerTag = listenerTag;
+            this.eventTypes = eventTypes;
+        }
+    }
 }
@@ -0,0 +1,368 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.listener.ext.Progress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 类重新增强器
+ * <p>
+ * 按批次调用 {@link Instrumentation#retransformClasses(Class[])}，减少重新增强引起的安全点次数，
+ * 批次失败时退化为逐个类重新增强，保证单个类的失败不影响同批次的其他类。
+ * </p>
+ * <p>
+ * 在收集期间({@link #begin()} 与 {@link #end()} 之间)，同一线程发起的观察不会立即重新增强，
+ * 而是把需要重新增强的类合并起来，在最外层的收集结束时统一分批重新增强。
+ * 模块激活以及模块重置时使用收集模式，多个观察命中的同一个类只需要重新增强一次
+ * </p>
+ */
+public class ClassReTransformer {
+
+    /**
+     * 每批次重新增强的类个数，为 1 时逐个类重新增强
+     */
+    public final static String RETRANSFORM_BATCH_SIZE = "simulator.retransform.batch.size";
+
+    /**
+     * 是否开启模块激活时合并重新增强
+     */
+    public final static String ENABLED_DEFERRED_RETRANSFORM = "simulator.retransform.deferred.enabled";
+
+    private final Logger logger = LoggerFactory.getLogger(ClassReTransformer.class);
+    private final boolean isInfoEnabled = logger.isInfoEnabled();
+
+    private final Instrumentation inst;
+    private final int batchSize;
+    private final boolean isDeferredEnabled;
+
+    /**
+     * 收集模式的嵌套深度以及开启收集的线程
+     */
+    private int depth;
+    private Thread owner;
+
+    /**
+     * 收集期间延迟执行的观察
+     */
+    private List<DeferredWatch> deferredWatches = new ArrayList<DeferredWatch>();
+
+    /**
+     * 累计重新增强的类个数、批次数以及耗时
+     */
+    private final AtomicLong reTransformClassCount = new AtomicLong();
+    private final AtomicLong reTransformBatchCount = new AtomicLong();
+    private final AtomicLong reTransformCostNanos = new AtomicLong();
+
+    public ClassReTransformer(final Instrumentation inst) {
+        this(inst,
+                Integer.getInteger(RETRANSFORM_BATCH_SIZE, 64),
+                Boolean.parseBoolean(System.getProperty(ENABLED_DEFERRED_RETRANSFORM, "true")));
+    }
+
+    public ClassReTransformer(final Instrumentation inst, final int batchSize, final boolean isDeferredEnabled) {
+        this.inst = inst;
+        this.batchSize = Math.max(1, batchSize);
+        this.isDeferredEnabled = isDeferredEnabled;
+    }
+
+    /**
+     * 重新增强回调，用于汇报每个类的重新增强结果
+     */
+    interface Callback {
+
+        void onSuccess(Class<?> clazz);
+
+        void onFailed(Class<?> clazz, Throwable cause);
+
+    }
+
+    /**
+     * 延迟执行的观察
+     */
+    static class DeferredWatch {
+        final String moduleId;
+        final int watchId;
+        final List<Class<?>> classes;
+        final Progress progress;
+        final Runnable completion;
+        int index;
+
+        /**
+         * @param moduleId   模块ID
+         * @param watchId    观察ID
+         * @param classes    需要重新增强的类
+         * @param progress   进度
+         * @param completion 重新增强完成后执行的收尾动作(结束进度、激活监听器)
+         */
+        DeferredWatch(final String moduleId,
+                      final int watchId,
+                      final List<Class<?>> classes,
+                      final Progress progress,
+                      final Runnable completion) {
+            this.moduleId = moduleId;
+            this.watchId = watchId;
+            this.classes = classes;
+            this.progress = progress;
+            this.completion = completion;
+        }
+    }
+
+    /**
+     * 开始收集，支持嵌套，只有最外层的 {@link #end()} 才会真正执行重新增强
+     */
+    public synchronized void begin() {
+        final Thread current = Thread.currentThread();
+        if (depth > 0 && owner != current) {
+            return;
+        }
+        owner = current;
+        depth++;
+    }
+
+    /**
+     * 结束收集，最外层结束时统一重新增强收集到的类
+     */
+    public void end() {
+        synchronized (this) {
+            if (depth == 0 || owner != Thread.currentThread()) {
+                return;
+            }
+            if (--depth > 0) {
+                return;
+            }
+            owner = null;
+        }
+        flush();
+    }
+
+    /**
+     * 当前线程是否处于收集模式
+     *
+     * @return 处于收集模式时返回 true
+     */
+    synchronized boolean isCollecting() {
+        return isDeferredEnabled && depth > 0 && owner == Thread.currentThread();
+    }
+
+    /**
+     * 收集一个观察，等待收集结束时统一重新增强
+     *
+     * @param deferredWatch 延迟执行的观察
+     */
+    synchronized void defer(final DeferredWatch deferredWatch) {
+        deferredWatches.add(deferredWatch);
+    }
+
+    /**
+     * 立即重新增强已经收集到的类，删除观察之前需要调用，避免删除尚未生效的观察
+     */
+    public void flush() {
+        final List<DeferredWatch> watches;
+        synchronized (this) {
+            if (deferredWatches.isEmpty()) {
+                return;
+            }
+            watches = deferredWatches;
+            deferredWatches = new ArrayList<DeferredWatch>();
+        }
+
+        // 合并所有观察需要重新增强的类，同一个类只重新增强一次
+        final Set<Class<?>> merged = new LinkedHashSet<Class<?>>();
+        final Map<Class<?>, List<DeferredWatch>> owners = new IdentityHashMap<Class<?>, List<DeferredWatch>>();
+        for (final DeferredWatch watch : watches) {
+            for (final Class<?> clazz : watch.classes) {
+                merged.add(clazz);
+                List<DeferredWatch> list = owners.get(clazz);
+                if (list == null) {
+                    list = new ArrayList<DeferredWatch>(1);
+                    owners.put(clazz, list);
+                }
+                list.add(watch);
+            }
+        }
+
+        if (isInfoEnabled) {
+            logger.info("SIMULATOR: flush {} deferred watches, reTransform {} classes with batch size {}.",
+                    watches.size(), merged.size(), batchSize);
+        }
+
+        try {
+            reTransform(new ArrayList<Class<?>>(merged), new Callback() {
+                @Override
+                public void onSuccess(Class<?> clazz) {
+                    for (final DeferredWatch watch : owners.get(clazz)) {
+                        progressOnSuccess(watch.moduleId, watch.watchId, watch.progress, clazz, ++watch.index);
+                    }
+                }
+
+                @Override
+                public void onFailed(Class<?> clazz, Throwable cause) {
+                    for (final DeferredWatch watch : owners.get(clazz)) {
+                        progressOnFailed(watch.moduleId, watch.watchId, watch.progress, clazz, ++watch.index, cause);
+                    }
+                }
+            });
+        } finally {
+            for (final DeferredWatch watch : watches) {
+                try {
+                    watch.completion.run();
+                } catch (Throwable cause) {
+                    logger.warn("SIMULATOR: complete deferred watch={} in module={} failed.", watch.watchId, watch.moduleId, cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * 立即重新增强一组类，并汇报进度
+     *
+     * @param moduleId 模块ID
+     * @param watchId  观察ID
+     * @param classes  需要重新增强的类
+     * @param progress 进度
+     */
+    void reTransform(final String moduleId,
+                     final int watchId,
+                     final List<Class<?>> classes,
+                     final Progress progress) {
+        final int[] index = new int[1];
+        reTransform(classes, new Callback() {
+            @Override
+            public void onSuccess(Class<?> clazz) {
+                progressOnSuccess(moduleId, watchId, progress, clazz, ++index[0]);
+            }
+
+            @Override
+            public void onFailed(Class<?> clazz, Throwable cause) {
+                logger.warn("SIMULATOR: watch={} in module={} reTransform {} failed, at index={};total={}. ignore this class.",
+                        watchId, moduleId, clazz, index[0], classes.size(), cause);
+                progressOnFailed(moduleId, watchId, progress, clazz, ++index[0], cause);
+            }
+        });
+    }
+
+    /**
+     * 分批重新增强，批次失败时对该批次逐个类重新增强
+     */
+    private void reTransform(final List<Class<?>> classes, final Callback callback) {
+        final long start = System.nanoTime();
+        int batchCount = 0;
+        for (int from = 0; from < classes.size(); from += batchSize) {
+            final List<Class<?>> batch = classes.subList(from, Math.min(from + batchSize, classes.size()));
+            final List<Class<?>> modifiableClasses = new ArrayList<Class<?>>(batch.size());
+            for (final Class<?> clazz : batch) {
+                if (inst.isModifiableClass(clazz)) {
+                    modifiableClasses.add(clazz);
+                } else {
+                    logger.info("SIMULATOR: reTransform {} class not supported, ignore this class.", clazz);
+                    callback.onSuccess(clazz);
+                }
+            }
+            if (modifiableClasses.isEmpty()) {
+                continue;
+            }
+            batchCount++;
+            if (modifiableClasses.size() > 1) {
+                try {
+                    inst.retransformClasses(modifiableClasses.toArray(new Class<?>[modifiableClasses.size()]));
+                    for (final Class<?> clazz : modifiableClasses) {
+                        callback.onSuccess(clazz);
+                    }
+                    continue;
+                } catch (Throwable cause) {
+                    // 批次重新增强是原子的，失败时整批均未生效，逐个类重试以隔离出失败的类
+                    logger.warn("SIMULATOR: batch reTransform {} classes failed, retry one by one. cause={}",
+                            modifiableClasses.size(), cause.toString());
+                }
+            }
+            for (final Class<?> clazz : modifiableClasses) {
+                try {
+                    inst.retransformClasses(clazz);
+                    callback.onSuccess(clazz);
+                } catch (Throwable cause) {
+                    callback.onFailed(clazz, cause);
+                }
+            }
+        }
+        reTransformClassCount.addAndGet(classes.size());
+        reTransformBatchCount.addAndGet(batchCount);
+        reTransformCostNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private void progressOnSuccess(final String moduleId, final int watchId, final Progress progress,
+                                   final Class<?> clazz, final int index) {
+        if (null == progress) {
+            return;
+        }
+        try {
+            progress.progressOnSuccess(clazz, index);
+        } catch (Throwable cause) {
+            // 在进行进度汇报的过程中抛出异常,直接进行忽略,因为不影响形变的主体流程
+            logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnSuccess occur exception at index={};",
+                    watchId, moduleId, clazz, index, cause);
+        }
+    }
+
+    private void progressOnFailed(final String moduleId, final int watchId, final Progress progress,
+                                  final Class<?> clazz, final int index, final Throwable throwable) {
+        if (null == progress) {
+            return;
+        }
+        try {
+            progress.progressOnFailed(clazz, index, throwable);
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnFailed occur exception, at index={};",
+                    watchId, moduleId, clazz, index, cause);
+        }
+    }
+
+    /**
+     * 累计重新增强的类个数
+     *
+     * @return 类个数
+     */
+    public long getReTransformClassCount() {
+        return reTransformClassCount.get();
+    }
+
+    /**
+     * 累计调用 {@link Instrumentation#retransformClasses(Class[])} 的批次数
+     *
+     * @return 批次数
+     */
+    public long getReTransformBatchCount() {
+        return reTransformBatchCount.get();
+    }
+
+    /**
+     * 累计重新增强耗时
+     *
+     * @return 耗时(纳秒)
+     */
+    public long getReTransformCostNanos() {
+        return reTransformCostNanos.get();
+    }
+}
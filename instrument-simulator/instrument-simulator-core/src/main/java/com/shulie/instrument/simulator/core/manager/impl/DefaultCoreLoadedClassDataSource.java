@@ -42,10 +42,27 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
     private final Instrumentation inst;
     private final boolean isEnableUnsafe;
 
+    /**
+     * 已加载类目录，未开启时为 null
+     */
+    private final LoadedClassCatalog catalog;
+
     public DefaultCoreLoadedClassDataSource(final Instrumentation inst,
                                             final boolean isEnableUnsafe) {
         this.inst = inst;
         this.isEnableUnsafe = isEnableUnsafe;
+        this.catalog = Boolean.parseBoolean(System.getProperty(LoadedClassCatalog.ENABLED_CLASS_CATALOG, "true"))
+                ? new LoadedClassCatalog(inst)
+                : null;
+    }
+
+    /**
+     * 获取已加载类目录
+     *
+     * @return 已加载类目录，未开启时返回 null
+     */
+    public LoadedClassCatalog getLoadedClassCatalog() {
+        return catalog;
     }
 
     @Override
@@ -101,22 +118,7 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
             if (null == className) {
                 return classes;
             }
-
-            for (Class<?> clazz : getAllForLoadedClasses()) {
-                // 过滤掉Simulator家族的类
-                if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
-                    continue;
-                }
-
-                try {
-                    if (clazz.getName().equals(className)) {
-                        classes.add(clazz);
-                    }
-                } catch (Throwable cause) {
-                    // 当解析类出现异常的时候，直接认为根本没有这个类即可
-                    logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
-                }
-            }
+            findByName(className, classes);
             return classes;
 
         } finally {
@@ -129,35 +131,7 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
         if (ArrayUtils.isEmpty(classNames)) {
             return Collections.EMPTY_LIST;
         }
-        SimulatorGuard.getInstance().enter();
-        try {
-            final List<Class<?>> classes = new ArrayList<Class<?>>();
-            for (String className : classNames) {
-                if (null == className) {
-                    return classes;
-                }
-
-                for (Class<?> clazz : getAllForLoadedClasses()) {
-                    // 过滤掉Simulator家族的类
-                    if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
-                        continue;
-                    }
-
-                    try {
-                        if (clazz.getName().equals(className)) {
-                            classes.add(clazz);
-                        }
-                    } catch (Throwable cause) {
-                        // 当解析类出现异常的时候，直接认为根本没有这个类即可
-                        logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
-                    }
-                }
-            }
-            return classes;
-
-        } finally {
-            SimulatorGuard.getInstance().exit();
-        }
+        return findForReTransform(Arrays.asList(classNames));
     }
 
     @Override
@@ -172,22 +146,7 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
                 if (null == className) {
                     return classes;
                 }
-
-                for (Class<?> clazz : getAllForLoadedClasses()) {
-                    // 过滤掉Simulator家族的类
-                    if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
-                        continue;
-                    }
-
-                    try {
-                        if (clazz.getName().equals(className)) {
-                            classes.add(clazz);
-                        }
-                    } catch (Throwable cause) {
-                        // 当解析类出现异常的时候，直接认为根本没有这个类即可
-                        logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
-                    }
-                }
+                findByName(className, classes);
             }
             return classes;
 
@@ -196,6 +155,56 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
         }
     }
 
+    /**
+     * 按类名查找已加载的类，开启已加载类目录时直接从目录中查找
+     *
+     * @param className 类名
+     * @param classes   查找结果
+     */
+    private void findByName(final String className, final List<Class<?>> classes) {
+        final Collection<Class<?>> candidates = catalog != null
+                ? catalog.getClasses(className)
+                : Arrays.<Class<?>>asList(getAllForLoadedClasses());
+        for (Class<?> clazz : candidates) {
+            // 过滤掉Simulator家族的类
+            if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
+                continue;
+            }
+
+            try {
+                if (clazz.getName().equals(className)) {
+                    classes.add(clazz);
+                }
+            } catch (Throwable cause) {
+                // 当解析类出现异常的时候，直接认为根本没有这个类即可
+                logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
+            }
+        }
+    }
+
+    /**
+     * 获取匹配器需要检查的候选类
+     * <p>
+     * 匹配器可以用类名通配符描述时，从已加载类目录中只取出类名可能匹配的类，
+     * 否则需要检查所有已加载的类
+     * </p>
+     *
+     * @param matcher 匹配器
+     * @return 候选类
+     */
+    private Collection<Class<?>> getCandidates(final Matcher matcher) {
+        if (catalog != null) {
+            final String[] wildcards = matcher.getClassNameWildcards();
+            if (wildcards != null) {
+                final List<Class<?>> candidates = catalog.findCandidates(wildcards);
+                if (candidates != null) {
+                    return candidates;
+                }
+            }
+        }
+        return Arrays.<Class<?>>asList(getAllForLoadedClasses());
+    }
+
     private List<Class<?>> find(final Matcher matcher,
                                 final boolean isRemoveUnsupported) {
 
@@ -207,7 +216,7 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
                 return classes;
             }
 
-            for (Class<?> clazz : getAllForLoadedClasses()) {
+            for (Class<?> clazz : getCandidates(matcher)) {
                 // 过滤掉对于JVM认为不可修改的类
                 if (isRemoveUnsupported
                         && !inst.isModifiableClass(clazz)) {
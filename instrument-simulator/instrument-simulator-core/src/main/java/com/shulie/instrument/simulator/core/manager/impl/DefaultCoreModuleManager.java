@@ -55,6 +55,7 @@ import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 import static com.shulie.instrument.simulator.api.ModuleException.ErrorCode.*;
 import static com.shulie.instrument.simulator.core.manager.impl.ModuleLifeCycleType.*;
@@ -72,6 +73,22 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
     private CoreConfigure config;
     private Instrumentation inst;
     private ClassFileTransformer defaultClassFileTransformer;
+
+    /**
+     * 所有模块共享的类形变器，未开启时为 null
+     */
+    private SharedSimulatorClassFileTransformer sharedClassFileTransformer;
+    private ClassFileTransformer sharedClassFileTransformerProxy;
+
+    /**
+     * 增强字节码缓存
+     */
+    private DefaultEnhanceCacheManager enhanceCacheManager;
+
+    /**
+     * 所有模块共享的类重新增强器，模块激活期间合并各个观察的重新增强
+     */
+    private ClassReTransformer classReTransformer;
     private ClassInjector classInjector;
     private CoreLoadedClassDataSource classDataSource;
     private ProviderManager providerManager;
@@ -158,6 +175,20 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         this.disabledModules = config.getDisabledModules();
         this.classInjector = new ModuleJarClassInjector(this.simulatorConfig);
         this.eventListenerHandler = eventListenerHandler;
+        this.enhanceCacheManager = new DefaultEnhanceCacheManager(this.simulatorConfig);
+        this.classReTransformer = new ClassReTransformer(inst);
+        if (this.simulatorConfig.getBooleanProperty(SharedSimulatorClassFileTransformer.ENABLED_SHARED_TRANSFORMER, true)) {
+            final boolean isCompositeEnabled = this.simulatorConfig.getBooleanProperty(SharedSimulatorClassFileTransformer.ENABLED_COMPOSITE_LISTENER, false);
+            this.sharedClassFileTransformer = new SharedSimulatorClassFileTransformer(config.isEnableUnsafe(), getEnhanceCache(),
+                    isCompositeEnabled ? eventListenerHandler : null);
+        }
+    }
+
+    /**
+     * 未开启增强缓存时返回 null，形变器不再计算缓存 key
+     */
+    private DefaultEnhanceCacheManager getEnhanceCache() {
+        return enhanceCacheManager.isEnabled() ? enhanceCacheManager : null;
     }
 
     @Override
@@ -166,9 +197,23 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         /**
          * 针对需要开放给业务类加载器的类文件转换器，这个类文件转换器中负责对业务类加载器进行 jar 包的注入
          */
-        this.defaultClassFileTransformer = new InternalClassFileTransformer(classInjector);
+        this.defaultClassFileTransformer = new InternalClassFileTransformer(classInjector,
+                classDataSource instanceof DefaultCoreLoadedClassDataSource
+                        ? ((DefaultCoreLoadedClassDataSource) classDataSource).getLoadedClassCatalog()
+                        : null);
         this.inst.addTransformer(this.defaultClassFileTransformer);
 
+        /**
+         * 所有模块的观察共用一个类形变器
+         */
+        if (this.sharedClassFileTransformer != null) {
+            this.sharedClassFileTransformerProxy = CostDumpTransformer.wrap(BytecodeDumpTransformer.wrap(sharedClassFileTransformer, simulatorConfig), simulatorConfig);
+            this.inst.addTransformer(this.sharedClassFileTransformerProxy, true);
+            if (isInfoEnabled) {
+                logger.info("SIMULATOR: shared class file transformer is enabled.");
+            }
+        }
+
         /**
          * 如果已经加载的类则直接执行注入操作
          */
@@ -186,10 +231,15 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
     public void onShutdown() {
         this.providerManager.onShutdown(simulatorConfig);
         this.inst.removeTransformer(this.defaultClassFileTransformer);
+        if (this.sharedClassFileTransformerProxy != null) {
+            this.inst.removeTransformer(this.sharedClassFileTransformerProxy);
+        }
         this.switcherManager.close();
         this.config = null;
         this.inst = null;
         this.defaultClassFileTransformer = null;
+        this.sharedClassFileTransformer = null;
+        this.sharedClassFileTransformerProxy = null;
         this.classInjector.destroy();
         this.classInjector = null;
         this.classDataSource = null;
@@ -201,6 +251,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         this.moduleCommandInvoker = null;
         this.disabledModules = null;
         this.eventListenerHandler = null;
+        this.classReTransformer = null;
         this.loadedModuleMap.clear();
         this.loadedModuleMap = null;
         this.waitLoadModules.clear();
@@ -372,6 +423,26 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             return;
         }
 
+        final ModuleLoadInfo moduleLoadInfo = getModuleLoadInfo(moduleSpec.getModuleId());
+        if (moduleLoadInfo != null) {
+            moduleLoadInfo.setLoadStartTime(System.currentTimeMillis());
+        }
+        try {
+            load0(moduleSpec, module, moduleJarFile, classLoaderFactory);
+        } finally {
+            if (moduleLoadInfo != null) {
+                moduleLoadInfo.setLoadEndTime(System.currentTimeMillis());
+            }
+        }
+    }
+
+    private void load0(final ModuleSpec moduleSpec,
+                       final ExtensionModule module,
+                       final File moduleJarFile,
+                       final ClassLoaderFactory classLoaderFactory) throws ModuleException {
+        // 模块升级后清理该模块之前的增强缓存
+        enhanceCacheManager.onModuleLoad(moduleSpec, moduleJarFile);
+
         if (isInfoEnabled) {
             logger.info("SIMULATOR: loading module, module={};class={};module-jar={};",
                     moduleSpec,
@@ -412,7 +483,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
                 new ReleaseResource<ModuleEventWatcher>(
                         SimulatorGuard.getInstance().doGuard(
                                 ModuleEventWatcher.class,
-                                new DefaultModuleEventWatcher(inst, classDataSource, coreModule, config.isEnableUnsafe(), eventListenerHandler)
+                                new DefaultModuleEventWatcher(inst, classDataSource, coreModule, config.isEnableUnsafe(), eventListenerHandler, sharedClassFileTransformer, getEnhanceCache(), classReTransformer)
                         )
                 ) {
                     @Override
@@ -485,6 +556,25 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
                             true
                     );
                 }
+                // EnhanceCacheManager对象注入
+                else if (EnhanceCacheManager.class.isAssignableFrom(fieldType)) {
+                    writeField(
+                            resourceField,
+                            target,
+                            enhanceCacheManager,
+                            true
+                    );
+                }
+
+                // OverheadProfiler对象注入
+                else if (OverheadProfiler.class.isAssignableFrom(fieldType)) {
+                    writeField(
+                            resourceField,
+                            target,
+                            eventListenerHandler.getOverheadProfiler(),
+                            true
+                    );
+                }
 
                 // ModuleEventWatcher对象注入
                 else if (ModuleEventWatcher.class.isAssignableFrom(fieldType)) {
@@ -590,6 +680,26 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
                     );
                 }
 
+                // EnhanceCacheManager对象注入
+                else if (EnhanceCacheManager.class.isAssignableFrom(fieldType)) {
+                    writeField(
+                            resourceField,
+                            target,
+                            null,
+                            true
+                    );
+                }
+
+                // OverheadProfiler对象注入
+                else if (OverheadProfiler.class.isAssignableFrom(fieldType)) {
+                    writeField(
+                            resourceField,
+                            target,
+                            null,
+                            true
+                    );
+                }
+
                 // ModuleEventWatcher对象注入
                 else if (ModuleEventWatcher.class.isAssignableFrom(fieldType)) {
                     writeField(
@@ -860,27 +970,54 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             );
         }
 
-        // 通知生命周期
-        callAndFireModuleLifeCycle(coreModule, MODULE_ACTIVE);
-
-        // 激活所有监听器
-        for (final SimulatorClassFileTransformer simulatorClassFileTransformer : coreModule.getSimulatorClassFileTransformers()) {
-            List<BuildingForListeners> list = simulatorClassFileTransformer.getAllListeners();
-            if (CollectionUtils.isNotEmpty(list)) {
-                for (BuildingForListeners buildingForListeners : list) {
-                    eventListenerHandler.active(
-                            buildingForListeners.getListenerId(),
-                            simulatorClassFileTransformer.getEventListeners().get(buildingForListeners.getListenerId()),
-                            buildingForListeners.getEventTypes()
-                    );
+        final long startNanos = System.nanoTime();
+        // 激活期间模块发起的观察只收集需要重新增强的类，激活结束后统一分批重新增强
+        classReTransformer.begin();
+        try {
+            // 通知生命周期
+            callAndFireModuleLifeCycle(coreModule, MODULE_ACTIVE);
+
+            // 激活所有监听器
+            for (final SimulatorClassFileTransformer simulatorClassFileTransformer : coreModule.getSimulatorClassFileTransformers()) {
+                List<BuildingForListeners> list = simulatorClassFileTransformer.getAllListeners();
+                if (CollectionUtils.isNotEmpty(list)) {
+                    for (BuildingForListeners buildingForListeners : list) {
+                        eventListenerHandler.active(
+                                buildingForListeners.getListenerId(),
+                                buildingForListeners.getListeners().getClassName(),
+                                simulatorClassFileTransformer.getEventListeners().get(buildingForListeners.getListenerId()),
+                                buildingForListeners.getEventTypes()
+                        );
+                    }
                 }
-            }
 
 
+            }
+
+            // 标记模块为：已激活
+            coreModule.markActivated(true);
+        } finally {
+            classReTransformer.end();
+            recordActiveCost(coreModule.getModuleId(), startNanos);
         }
+    }
 
-        // 标记模块为：已激活
-        coreModule.markActivated(true);
+    /**
+     * 记录模块激活耗时
+     * 模块重置时所有模块的重新增强合并到全部模块加载完成后进行，此时不计入单个模块的激活耗时
+     *
+     * @param moduleId   模块ID
+     * @param startNanos 激活开始时间
+     */
+    private void recordActiveCost(final String moduleId, final long startNanos) {
+        final long costMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        final ModuleLoadInfo moduleLoadInfo = getModuleLoadInfo(moduleId);
+        if (moduleLoadInfo != null) {
+            moduleLoadInfo.setActiveCost(costMillis);
+        }
+        if (isInfoEnabled) {
+            logger.info("SIMULATOR: active module {} cost {}ms.", moduleId, costMillis);
+        }
     }
 
     @Override
@@ -1127,6 +1264,32 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         }
     }
 
+    /**
+     * 加载已经发现的模块
+     *
+     * @param moduleSpec      模块描述
+     * @param moduleJarLoader 已经发现模块的加载器，为 null 或者模块类加载器已经被替换时重新发现模块
+     */
+    private void loadModule(final ModuleSpec moduleSpec, final ModuleJarLoader moduleJarLoader) {
+        if (moduleJarLoader == null
+                || moduleJarLoader.getClassLoaderFactory() != classLoaderService.getModuleClassLoaderFactory(moduleSpec.getModuleId())) {
+            loadModule(moduleSpec);
+            return;
+        }
+        if (moduleSpec.isLoaded()) {
+            return;
+        }
+        try {
+            moduleJarLoader.commit(simulatorConfig, new InnerModuleLoadCallback());
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: loading module-jar occur error! module-jar={};", moduleSpec.getFile(), cause);
+        }
+    }
+
+    private ModuleLoadInfo getModuleLoadInfo(final String moduleId) {
+        return DefaultModuleLoadInfoManagerUtils.getDefaultModuleLoadInfoManager().getModuleLoadInfos().get(moduleId);
+    }
+
     /**
      * 模块加载
      *
@@ -1134,6 +1297,22 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
      * @param action
      */
     private void loadModule(final ModuleSpec moduleSpec, String action) {
+        final ClassLoaderFactory moduleClassLoader = prepareModule(moduleSpec, action);
+        if (moduleClassLoader != null) {
+            registerModule(moduleSpec, moduleClassLoader);
+            startModule(moduleSpec, null);
+        }
+    }
+
+    /**
+     * 模块加载准备: 校验模块并创建模块类加载器，不依赖其他模块，可以在多个线程中并行执行
+     *
+     * @param moduleSpec 模块描述
+     * @param action     加载动作
+     * @return 模块类加载器，模块不能继续加载时返回 null
+     */
+    private ClassLoaderFactory prepareModule(final ModuleSpec moduleSpec, String action) {
+        final long startTime = System.currentTimeMillis();
         if (isInfoEnabled) {
             logger.info("SIMULATOR: prepare to load module {} ,file={}", moduleSpec.getModuleId(), moduleSpec.getFile().getAbsolutePath());
         }
@@ -1141,7 +1320,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             moduleSpec.setValid(false);
             logger.warn("SIMULATOR: {} modules[{}]: module-lib can not access, cause by file is not exists or can't read. module-lib={}, exists={}, canRead={}",
                     action, moduleSpec.getModuleId(), moduleSpec.getFile(), moduleSpec.getFile().exists(), moduleSpec.getFile().canRead());
-            return;
+            return null;
         }
 
         /**
@@ -1151,7 +1330,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             moduleSpec.setValid(false);
             logger.warn("SIMULATOR: {} modules[{}]: module is not enabled, cause by module version is not support simulator version, will be ignored. module-lib={}, simulator-version:{} module-support-version:{}-{}",
                     action, moduleSpec.getModuleId(), moduleSpec.getFile(), simulatorConfig.getSimulatorVersion(), moduleSpec.getSinceVersion(), moduleSpec.getUntilVersion());
-            return;
+            return null;
         }
 
         /**
@@ -1161,26 +1340,77 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             if (disabledModules.contains(moduleSpec.getModuleId())) {
                 moduleSpec.setValid(false);
                 logger.warn("SIMULATOR: {} modules[{}]: module is disabled, will be ignored. module-lib={}", action, moduleSpec.getModuleId(), moduleSpec.getFile());
-                return;
+                return null;
             }
         }
 
+        final ClassLoaderFactory moduleClassLoader;
         try {
-            final ClassLoaderFactory moduleClassLoader = new ClassLoaderFactoryImpl(classLoaderService, config, moduleSpec.getFile(), moduleSpec.getModuleId(), moduleSpec.isMiddlewareModule());
-            classLoaderService.load(moduleSpec, moduleClassLoader);
+            moduleClassLoader = new ClassLoaderFactoryImpl(classLoaderService, config, moduleSpec.getFile(), moduleSpec.getModuleId(), moduleSpec.isMiddlewareModule());
         } catch (Throwable e) {
             logger.info("load module [{}] fail, set module invalid", moduleSpec.getModuleId(), e);
             moduleSpec.setValid(false);
+            return null;
         }
         if (isInfoEnabled) {
             logger.info("SIMULATOR: {} modules[{}]: load module success. module-lib={}", action, moduleSpec.getModuleId(), moduleSpec.getFile());
         }
+        final ModuleLoadInfo moduleLoadInfo = getModuleLoadInfo(moduleSpec.getModuleId());
+        if (moduleLoadInfo != null) {
+            moduleLoadInfo.setLoadThread(Thread.currentThread().getName());
+            moduleLoadInfo.setPrepareStartTime(startTime);
+            moduleLoadInfo.setPrepareEndTime(System.currentTimeMillis());
+        }
+        return moduleClassLoader;
+    }
+
+    /**
+     * 登记模块导出的类和资源，导出冲突时先登记的模块生效，需要按照模块的加载顺序串行执行
+     *
+     * @param moduleSpec        模块描述
+     * @param moduleClassLoader 模块类加载器
+     */
+    private void registerModule(final ModuleSpec moduleSpec, final ClassLoaderFactory moduleClassLoader) {
+        try {
+            classLoaderService.load(moduleSpec, moduleClassLoader);
+        } catch (Throwable e) {
+            logger.info("load module [{}] fail, set module invalid", moduleSpec.getModuleId(), e);
+            moduleSpec.setValid(false);
+        }
+    }
+
+    /**
+     * 发现模块实例，要求依赖的模块已经加载完成，可以在多个线程中并行执行
+     *
+     * @param moduleSpec 模块描述
+     * @return 发现模块的加载器，发现失败时返回 null
+     */
+    private ModuleJarLoader discoverModule(final ModuleSpec moduleSpec) {
+        if (moduleSpec.isLoaded()) {
+            return null;
+        }
+        final ModuleJarLoader moduleJarLoader = new ModuleLibLoader(moduleSpec, config.getLaunchMode(), classLoaderService)
+                .discover(simulatorConfig, new InnerModuleJarLoadCallback());
+        final ModuleLoadInfo moduleLoadInfo = getModuleLoadInfo(moduleSpec.getModuleId());
+        if (moduleLoadInfo != null) {
+            moduleLoadInfo.setPrepareEndTime(System.currentTimeMillis());
+        }
+        return moduleJarLoader;
+    }
+
+    /**
+     * 模块依赖的开关都已经开启时直接加载模块，否则等待开关开启时再加载
+     *
+     * @param moduleSpec      模块描述
+     * @param moduleJarLoader 已经发现模块的加载器，为 null 时重新发现模块
+     */
+    private void startModule(final ModuleSpec moduleSpec, final ModuleJarLoader moduleJarLoader) {
         if (CollectionUtils.isNotEmpty(moduleSpec.getDependencies())) {
             /**
              * 如果开关已经是开启状态，则直接执行即可
              */
             if (switcherManager.isAllSwitchOn(moduleSpec.getDependencies())) {
-                loadModule(moduleSpec);
+                loadModule(moduleSpec, moduleJarLoader);
                 if (isInfoEnabled) {
                     logger.info("SIMULATOR: load module {} successful,file={}", moduleSpec.getModuleId(), moduleSpec.getFile().getAbsolutePath());
                 }
@@ -1192,7 +1422,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
                          * 当开启状态时执行加载
                          */
                         if (switcherManager.isAllSwitchOn(moduleSpec.getDependencies())) {
-                            loadModule(moduleSpec);
+                            loadModule(moduleSpec, moduleJarLoader);
                             if (isInfoEnabled) {
                                 logger.info("SIMULATOR: load module {} successful,file={}", moduleSpec.getModuleId(), moduleSpec.getFile().getAbsolutePath());
                             }
@@ -1208,7 +1438,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
 
 
         } else {
-            loadModule(moduleSpec);
+            loadModule(moduleSpec, moduleJarLoader);
             if (isInfoEnabled) {
                 logger.info("SIMULATOR: load module {} successful,file={}", moduleSpec.getModuleId(), moduleSpec.getFile().getAbsolutePath());
             }
@@ -1249,11 +1479,51 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         initAllModuleInfos(systemModuleSpecs);
         initAllModuleInfos(userModuleSpecs);
 
-        //加载
-        loadModules(systemModuleSpecs, "load");
-        loadModules(userModuleSpecs, "load");
+        //加载，所有模块激活时需要重新增强的类合并到全部加载完成后统一分批重新增强
+        final long startNanos = System.nanoTime();
+        final long startReTransformClassCount = classReTransformer.getReTransformClassCount();
+        final long startReTransformBatchCount = classReTransformer.getReTransformBatchCount();
+        classReTransformer.begin();
+        try {
+            final int parallelism = simulatorConfig.getIntProperty(ParallelModuleLoader.MODULE_LOAD_PARALLELISM,
+                    Math.min(4, Runtime.getRuntime().availableProcessors()));
+            if (parallelism > 1) {
+                final List<ModuleSpec> moduleSpecs = new ArrayList<ModuleSpec>(systemModuleSpecs);
+                moduleSpecs.addAll(userModuleSpecs);
+                new ParallelModuleLoader(parallelism, new ParallelModuleLoader.Stage() {
+                    @Override
+                    public ClassLoaderFactory prepare(ModuleSpec moduleSpec) {
+                        return prepareModule(moduleSpec, "load");
+                    }
+
+                    @Override
+                    public void register(ModuleSpec moduleSpec, ClassLoaderFactory classLoaderFactory) {
+                        registerModule(moduleSpec, classLoaderFactory);
+                    }
+
+                    @Override
+                    public ModuleJarLoader discover(ModuleSpec moduleSpec) {
+                        return discoverModule(moduleSpec);
+                    }
+
+                    @Override
+                    public void commit(ModuleSpec moduleSpec, ModuleJarLoader moduleJarLoader) {
+                        startModule(moduleSpec, moduleJarLoader);
+                    }
+                }).load(moduleSpecs);
+            } else {
+                loadModules(systemModuleSpecs, "load");
+                loadModules(userModuleSpecs, "load");
+            }
+        } finally {
+            classReTransformer.end();
+        }
         if (isInfoEnabled) {
-            logger.info("SIMULATOR: resetting all loaded modules finished :{}", loadedModuleMap.keySet());
+            logger.info("SIMULATOR: resetting all loaded modules finished :{}, cost {}ms, reTransform {} classes in {} batches.",
+                    loadedModuleMap.keySet(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                    classReTransformer.getReTransformClassCount() - startReTransformClassCount,
+                    classReTransformer.getReTransformBatchCount() - startReTransformBatchCount);
         }
         return this;
     }
@@ -0,0 +1,588 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.api.resource.EnhanceCacheManager;
+import com.shulie.instrument.simulator.api.resource.SimulatorConfig;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 增强字节码的磁盘缓存
+ * <p>
+ * 缓存的 key 由原始字节码的摘要、候选观察的模块版本以及监听器签名共同组成，任意一项变化都不会命中。
+ * 增强后的字节码中织入了监听器ID，而监听器ID是{@link BuildingForListeners}的 identityHashCode，
+ * 每次启动都不相同，所以缓存中同时记录了旧的监听器ID在候选监听器中的位置，
+ * 命中时直接改写常量池中对应的 CONSTANT_Integer 为本次启动的监听器ID，不需要重新解析和增强。
+ * 为了保证改写是安全的，监听器ID无法通过常量池改写(如原始类中本身就存在相同的整数常量)时不会写入缓存
+ * </p>
+ */
+public class DefaultEnhanceCacheManager implements EnhanceCacheManager {
+
+    /**
+     * 是否开启增强字节码缓存
+     */
+    public final static String ENABLED_ENHANCE_CACHE = "simulator.enhance.cache.enabled";
+
+    /**
+     * 增强字节码缓存目录，默认为 ${SIMULATOR_HOME}/cache/enhance
+     */
+    public final static String ENHANCE_CACHE_PATH = "simulator.enhance.cache.path";
+
+    private final static int MAGIC = 0x53454e43;
+    private final static int FORMAT_VERSION = 1;
+    private final static String MODULES_FILE = "modules.properties";
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final boolean isDebugEnabled = logger.isDebugEnabled();
+
+    private final boolean isEnabled;
+    private final File cacheDir;
+    private final String simulatorVersion;
+
+    /**
+     * 缓存目录中记录的模块签名，模块签名变化时清空缓存
+     */
+    private final Properties moduleSignatures = new Properties();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong hitCostNanos = new AtomicLong();
+    private final AtomicLong missCostNanos = new AtomicLong();
+
+    public DefaultEnhanceCacheManager(final SimulatorConfig simulatorConfig) {
+        this.simulatorVersion = simulatorConfig.getSimulatorVersion();
+        this.cacheDir = new File(simulatorConfig.getProperty(ENHANCE_CACHE_PATH,
+                simulatorConfig.getSimulatorHome() + File.separator + "cache" + File.separator + "enhance"));
+        boolean isEnabled = simulatorConfig.getBooleanProperty(ENABLED_ENHANCE_CACHE, false);
+        if (isEnabled && !cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            logger.warn("SIMULATOR: enhance cache is disabled, can't create cache dir {}.", cacheDir);
+            isEnabled = false;
+        }
+        this.isEnabled = isEnabled;
+        if (isEnabled) {
+            loadModuleSignatures();
+            logger.info("SIMULATOR: enhance cache is enabled, cache dir={}.", cacheDir);
+        }
+    }
+
+    private void loadModuleSignatures() {
+        final File file = new File(cacheDir, MODULES_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            moduleSignatures.load(in);
+        } catch (IOException e) {
+            logger.warn("SIMULATOR: load enhance cache module signatures failed. file={}", file, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 模块加载时检查模块是否发生了升级，升级后缓存中的增强结果全部失效
+     *
+     * @param moduleSpec    模块描述
+     * @param moduleJarFile 模块 jar 包
+     */
+    synchronized void onModuleLoad(final ModuleSpec moduleSpec, final File moduleJarFile) {
+        if (!isEnabled) {
+            return;
+        }
+        final String signature = toModuleSignature(moduleSpec, moduleJarFile);
+        final String last = moduleSignatures.getProperty(moduleSpec.getModuleId());
+        if (signature.equals(last)) {
+            return;
+        }
+        if (last != null) {
+            logger.info("SIMULATOR: module {} upgraded from {} to {}, clear enhance cache.", moduleSpec.getModuleId(), last, signature);
+            clear();
+        }
+        moduleSignatures.setProperty(moduleSpec.getModuleId(), signature);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(new File(cacheDir, MODULES_FILE));
+            moduleSignatures.store(out, "enhance cache module signatures");
+        } catch (IOException e) {
+            logger.warn("SIMULATOR: store enhance cache module signatures failed. dir={}", cacheDir, e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * 清空缓存的增强结果
+     */
+    private void clear() {
+        final File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    static String toModuleSignature(final ModuleSpec moduleSpec, final File moduleJarFile) {
+        final StringBuilder builder = new StringBuilder().append(moduleSpec.getVersion());
+        if (moduleJarFile != null) {
+            builder.append('/').append(moduleJarFile.length()).append('/').append(moduleJarFile.lastModified());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 计算缓存 key
+     *
+     * @param loader            类加载器
+     * @param internalClassName 类名
+     * @param srcByteCodeArray  原始字节码
+     * @param candidates        类名预匹配通过的观察
+     * @return 缓存 key，未开启缓存时返回 null
+     */
+    String toKey(final ClassLoader loader,
+                 final String internalClassName,
+                 final byte[] srcByteCodeArray,
+                 final List<DefaultSimulatorClassFileTransformer> candidates) {
+        if (!isEnabled) {
+            return null;
+        }
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        final StringBuilder builder = new StringBuilder(256)
+                .append(FORMAT_VERSION).append('|')
+                .append(simulatorVersion).append('|')
+                .append(internalClassName).append('|')
+                .append(loader == null ? "bootstrap" : loader.getClass().getName());
+        for (final DefaultSimulatorClassFileTransformer candidate : candidates) {
+            builder.append('|').append(candidate.getModuleId())
+                    .append('@').append(candidate.getModuleSignature())
+                    .append('#').append(candidate.getWatchId())
+                    .append('#').append(candidate.isEnableUnsafe());
+            for (final BuildingForListeners listeners : candidate.getAllListeners()) {
+                builder.append(';').append(listeners.getListeners().getClassName())
+                        .append(':').append(listeners.getListeners().getListenersTag())
+                        .append(':').append(Arrays.toString(listeners.getEventTypes()));
+            }
+        }
+        digest.update(builder.toString().getBytes(UTF_8));
+        digest.update(srcByteCodeArray);
+        final byte[] bytes = digest.digest();
+        final StringBuilder key = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    private File toFile(final String key) {
+        return new File(new File(cacheDir, key.substring(0, 2)), key.substring(2));
+    }
+
+    /**
+     * 读取缓存的增强结果
+     *
+     * @param key        缓存 key
+     * @param candidates 计算 key 时使用的观察
+     * @return 缓存的增强结果，未命中时返回 null
+     */
+    Entry get(final String key, final List<DefaultSimulatorClassFileTransformer> candidates) {
+        final File file = toFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        final List<BuildingForListeners> listeners = flatten(candidates);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final int listenerCount = in.readInt();
+            if (listenerCount != listeners.size()) {
+                return null;
+            }
+            // 只有织入到字节码中的监听器才需要改写
+            final Map<Integer, Integer> listenerIds = new HashMap<Integer, Integer>();
+            for (int i = 0; i < listenerCount; i++) {
+                final boolean isWoven = in.readBoolean();
+                final int listenerId = in.readInt();
+                if (isWoven) {
+                    listenerIds.put(listenerId, listeners.get(i).getListenerId());
+                }
+            }
+
+            final Entry entry = new Entry();
+            final int matchedCount = in.readInt();
+            for (int i = 0; i < matchedCount; i++) {
+                entry.transformers.add(candidates.get(in.readInt()));
+                final Map<String, Set<BuildingForListeners>> signCodes = new HashMap<String, Set<BuildingForListeners>>();
+                final int signCodeCount = in.readInt();
+                for (int j = 0; j < signCodeCount; j++) {
+                    final String signCode = in.readUTF();
+                    final Set<BuildingForListeners> set = new LinkedHashSet<BuildingForListeners>();
+                    final int count = in.readInt();
+                    for (int k = 0; k < count; k++) {
+                        set.add(listeners.get(in.readInt()));
+                    }
+                    signCodes.put(signCode, set);
+                }
+                entry.signCodes.add(signCodes);
+            }
+            final int length = in.readInt();
+            if (length >= 0) {
+                final byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                replaceIntConstants(bytes, listenerIds);
+                entry.byteCodeArray = bytes;
+            }
+            return entry;
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: read enhance cache failed, will ignore it. file={}", file, e);
+            FileUtils.deleteQuietly(file);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 写入增强结果
+     *
+     * @param key                 缓存 key
+     * @param candidates          计算 key 时使用的观察
+     * @param matchedTransformers 匹配上的观察
+     * @param matchedSignCodes    匹配上的观察对应增强的行为
+     * @param srcByteCodeArray    原始字节码
+     * @param toByteCodeArray     增强后的字节码，没有增强时为 null
+     */
+    private void put(final String key,
+                     final List<DefaultSimulatorClassFileTransformer> candidates,
+                     final List<DefaultSimulatorClassFileTransformer> matchedTransformers,
+                     final List<Map<String, Set<BuildingForListeners>>> matchedSignCodes,
+                     final byte[] srcByteCodeArray,
+                     final byte[] toByteCodeArray) {
+        final List<BuildingForListeners> listeners = flatten(candidates);
+        // BuildingForListeners 的 equals 按内容比较，这里需要按实例区分
+        final Map<BuildingForListeners, Integer> positions = new IdentityHashMap<BuildingForListeners, Integer>();
+        for (int i = 0; i < listeners.size(); i++) {
+            if (!positions.containsKey(listeners.get(i))) {
+                positions.put(listeners.get(i), i);
+            }
+        }
+
+        final Set<BuildingForListeners> wovenListeners = Collections.newSetFromMap(new IdentityHashMap<BuildingForListeners, Boolean>());
+        for (final Map<String, Set<BuildingForListeners>> signCodes : matchedSignCodes) {
+            for (final Set<BuildingForListeners> set : signCodes.values()) {
+                wovenListeners.addAll(set);
+            }
+        }
+        if (!positions.keySet().containsAll(wovenListeners)
+                || (toByteCodeArray != null && !isRelocatable(srcByteCodeArray, wovenListeners))) {
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: enhance cache ignore {}, listener id can't be relocated.", key);
+            }
+            return;
+        }
+
+        final File file = toFile(key);
+        final File tmpFile = new File(file.getParentFile(), file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                return;
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(listeners.size());
+            for (final BuildingForListeners buildingForListeners : listeners) {
+                out.writeBoolean(wovenListeners.contains(buildingForListeners));
+                out.writeInt(buildingForListeners.getListenerId());
+            }
+            out.writeInt(matchedTransformers.size());
+            for (int i = 0; i < matchedTransformers.size(); i++) {
+                out.writeInt(candidates.indexOf(matchedTransformers.get(i)));
+                final Map<String, Set<BuildingForListeners>> signCodes = matchedSignCodes.get(i);
+                out.writeInt(signCodes.size());
+                for (final Map.Entry<String, Set<BuildingForListeners>> entry : signCodes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (final BuildingForListeners buildingForListeners : entry.getValue()) {
+                        out.writeInt(positions.get(buildingForListeners));
+                    }
+                }
+            }
+            if (toByteCodeArray == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(toByteCodeArray.length);
+                out.write(toByteCodeArray);
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                FileUtils.deleteQuietly(tmpFile);
+            }
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: write enhance cache failed. file={}", file, e);
+            FileUtils.deleteQuietly(tmpFile);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private static List<BuildingForListeners> flatten(final List<DefaultSimulatorClassFileTransformer> candidates) {
+        final List<BuildingForListeners> listeners = new ArrayList<BuildingForListeners>();
+        for (final DefaultSimulatorClassFileTransformer candidate : candidates) {
+            listeners.addAll(candidate.getAllListeners());
+        }
+        return listeners;
+    }
+
+    /**
+     * 监听器ID是否可以通过改写常量池重新定位
+     * <p>
+     * ASM 只会把超出 short 范围的整数放入常量池，监听器ID之间不能重复，
+     * 原始类的常量池中也不能存在与监听器ID相同的整数常量
+     * </p>
+     */
+    private static boolean isRelocatable(final byte[] srcByteCodeArray,
+                                         final Set<BuildingForListeners> listeners) {
+        final Set<Integer> listenerIds = new HashSet<Integer>();
+        for (final BuildingForListeners buildingForListeners : listeners) {
+            final int listenerId = buildingForListeners.getListenerId();
+            if (listenerId >= Short.MIN_VALUE && listenerId <= Short.MAX_VALUE) {
+                return false;
+            }
+            if (!listenerIds.add(listenerId)) {
+                return false;
+            }
+        }
+        for (final int offset : intConstantOffsets(srcByteCodeArray)) {
+            if (listenerIds.contains(readInt(srcByteCodeArray, offset))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void replaceIntConstants(final byte[] byteCodeArray, final Map<Integer, Integer> values) {
+        for (final int offset : intConstantOffsets(byteCodeArray)) {
+            final Integer value = values.get(readInt(byteCodeArray, offset));
+            if (value != null) {
+                byteCodeArray[offset] = (byte) (value >>> 24);
+                byteCodeArray[offset + 1] = (byte) (value >>> 16);
+                byteCodeArray[offset + 2] = (byte) (value >>> 8);
+                byteCodeArray[offset + 3] = (byte) value.intValue();
+            }
+        }
+    }
+
+    /**
+     * 获取常量池中所有 CONSTANT_Integer 常量值的偏移
+     */
+    private static List<Integer> intConstantOffsets(final byte[] b) {
+        final List<Integer> offsets = new ArrayList<Integer>();
+        final int count = readUnsignedShort(b, 8);
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            final int tag = b[offset] & 0xFF;
+            switch (tag) {
+                case 1:
+                    offset += 3 + readUnsignedShort(b, offset + 1);
+                    break;
+                case 3:
+                    offsets.add(offset + 1);
+                    offset += 5;
+                    break;
+                case 5:
+                case 6:
+                    offset += 9;
+                    i++;
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    offset += 3;
+                    break;
+                case 15:
+                    offset += 4;
+                    break;
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    offset += 5;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown constant pool tag " + tag);
+            }
+        }
+        return offsets;
+    }
+
+    private static int readUnsignedShort(final byte[] b, final int offset) {
+        return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(final byte[] b, final int offset) {
+        return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16) | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+
+    /**
+     * 使用命中的增强结果，并补充各个观察的影响统计
+     *
+     * @param entry             命中的增强结果
+     * @param loader            类加载器
+     * @param internalClassName 类名
+     * @param startNanos        开始查找缓存的时间
+     * @return 增强后的字节码，不需要增强时返回 null
+     */
+    byte[] applyHit(final Entry entry,
+                    final ClassLoader loader,
+                    final String internalClassName,
+                    final long startNanos) {
+        if (entry.byteCodeArray != null) {
+            for (int i = 0; i < entry.transformers.size(); i++) {
+                entry.transformers.get(i).getAffectStatistic().statisticAffect(loader, internalClassName, entry.signCodes.get(i));
+            }
+        }
+        hitCount.incrementAndGet();
+        hitCostNanos.addAndGet(System.nanoTime() - startNanos);
+        if (isDebugEnabled) {
+            logger.debug("SIMULATOR: transform {} hit enhance cache in loader={}", internalClassName, loader);
+        }
+        return entry.byteCodeArray;
+    }
+
+    /**
+     * 未命中缓存时记录本次的增强结果
+     *
+     * @param key                 缓存 key
+     * @param candidates          计算 key 时使用的观察
+     * @param matchedTransformers 匹配上的观察
+     * @param matchedSignCodes    匹配上的观察对应增强的行为
+     * @param srcByteCodeArray    原始字节码
+     * @param toByteCodeArray     增强后的字节码，没有增强时为 null
+     * @param startNanos          开始查找缓存的时间
+     */
+    void applyMiss(final String key,
+                   final List<DefaultSimulatorClassFileTransformer> candidates,
+                   final List<DefaultSimulatorClassFileTransformer> matchedTransformers,
+                   final List<Map<String, Set<BuildingForListeners>>> matchedSignCodes,
+                   final byte[] srcByteCodeArray,
+                   final byte[] toByteCodeArray,
+                   final long startNanos) {
+        missCount.incrementAndGet();
+        missCostNanos.addAndGet(System.nanoTime() - startNanos);
+        put(key, candidates, matchedTransformers, matchedSignCodes, srcByteCodeArray, toByteCodeArray);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    @Override
+    public String getCachePath() {
+        return cacheDir.getAbsolutePath();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getHitCostMillis() {
+        return hitCostNanos.get() / 1000000L;
+    }
+
+    @Override
+    public long getMissCostMillis() {
+        return missCostNanos.get() / 1000000L;
+    }
+
+    @Override
+    public long getSavedCostMillis() {
+        final long missCount = this.missCount.get();
+        if (missCount == 0) {
+            return 0;
+        }
+        final long saved = hitCount.get() * (missCostNanos.get() / missCount) - hitCostNanos.get();
+        return Math.max(saved, 0) / 1000000L;
+    }
+
+    /**
+     * 缓存的增强结果
+     */
+    static final class Entry {
+        /**
+         * 增强后的字节码，为 null 时表示不需要增强
+         */
+        byte[] byteCodeArray;
+        final List<DefaultSimulatorClassFileTransformer> transformers = new ArrayList<DefaultSimulatorClassFileTransformer>();
+        final List<Map<String, Set<BuildingForListeners>>> signCodes = new ArrayList<Map<String, Set<BuildingForListeners>>>();
+    }
+}
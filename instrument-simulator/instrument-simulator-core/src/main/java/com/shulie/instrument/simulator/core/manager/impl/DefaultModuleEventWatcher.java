@@ -55,6 +55,21 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
     private CoreModule coreModule;
     private final boolean isEnableUnsafe;
 
+    /**
+     * 共享类形变器，为 null 时每个观察单独向 JVM 注册形变器
+     */
+    private SharedSimulatorClassFileTransformer sharedClassFileTransformer;
+
+    /**
+     * 增强字节码缓存，为 null 时不使用缓存
+     */
+    private DefaultEnhanceCacheManager enhanceCacheManager;
+
+    /**
+     * 类重新增强器，负责分批重新增强以及模块激活期间的合并重新增强
+     */
+    private ClassReTransformer classReTransformer;
+
     // 观察ID序列生成器
     private final Sequencer watchIdSequencer = new Sequencer();
     private EventListenerHandler eventListenerHandler;
@@ -65,11 +80,35 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
                               final CoreModule coreModule,
                               final boolean isEnableUnsafe,
                               final EventListenerHandler eventListenerHandler) {
+        this(inst, classDataSource, coreModule, isEnableUnsafe, eventListenerHandler, null, null);
+    }
+
+    DefaultModuleEventWatcher(final Instrumentation inst,
+                              final CoreLoadedClassDataSource classDataSource,
+                              final CoreModule coreModule,
+                              final boolean isEnableUnsafe,
+                              final EventListenerHandler eventListenerHandler,
+                              final SharedSimulatorClassFileTransformer sharedClassFileTransformer,
+                              final DefaultEnhanceCacheManager enhanceCacheManager) {
+        this(inst, classDataSource, coreModule, isEnableUnsafe, eventListenerHandler, sharedClassFileTransformer, enhanceCacheManager, new ClassReTransformer(inst));
+    }
+
+    DefaultModuleEventWatcher(final Instrumentation inst,
+                              final CoreLoadedClassDataSource classDataSource,
+                              final CoreModule coreModule,
+                              final boolean isEnableUnsafe,
+                              final EventListenerHandler eventListenerHandler,
+                              final SharedSimulatorClassFileTransformer sharedClassFileTransformer,
+                              final DefaultEnhanceCacheManager enhanceCacheManager,
+                              final ClassReTransformer classReTransformer) {
         this.inst = inst;
         this.classDataSource = classDataSource;
         this.coreModule = coreModule;
         this.isEnableUnsafe = isEnableUnsafe;
         this.eventListenerHandler = eventListenerHandler;
+        this.sharedClassFileTransformer = sharedClassFileTransformer;
+        this.enhanceCacheManager = enhanceCacheManager;
+        this.classReTransformer = classReTransformer;
     }
 
     // 开始进度
@@ -127,83 +166,11 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
                     waitingReTransformClasses, coreModule.getModuleId(), watchId);
         }
 
-        int index = 0;
-        for (final Class<?> waitingReTransformClass : waitingReTransformClasses) {
-            index++;
-            try {
-                if (null != progress) {
-                    try {
-                        progress.progressOnSuccess(waitingReTransformClass, index);
-                    } catch (Throwable cause) {
-                        // 在进行进度汇报的过程中抛出异常,直接进行忽略,因为不影响形变的主体流程
-                        // 仅仅只是一个汇报作用而已
-                        logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnSuccess occur exception at index={};total={};",
-                                watchId, coreModule.getModuleId(), waitingReTransformClass,
-                                index - 1, total,
-                                cause
-                        );
-                    }
-                }
-                if (!inst.isModifiableClass(waitingReTransformClass)) {
-                    logger.info("SIMULATOR: watch={} in module={} single reTransform {} class not supported, at index={};total={};",
-                            watchId, coreModule.getModuleId(), waitingReTransformClass,
-                            index - 1, total
-                    );
-                    continue;
-                }
-                if (isInfoEnabled) {
-                    logger.info("SIMULATOR: pre{} watch={} in module={} single reTransform {}, at index={};total={};",
-                            delete ? " delete reTransformClasses" : "",
-                            watchId, coreModule.getModuleId(), waitingReTransformClass,
-                            index - 1, total
-                    );
-                }
-                inst.retransformClasses(waitingReTransformClass);
-                if (isInfoEnabled) {
-                    logger.info("SIMULATOR: {}watch={} in module={} single reTransform {} success, at index={};total={};",
-                            delete ? "successful delete reTransformClasses " : "",
-                            watchId, coreModule.getModuleId(), waitingReTransformClass,
-                            index - 1, total
-                    );
-                }
-            } catch (UnsupportedOperationException e) {
-                logger.warn("SIMULATOR: watch={} in module={} single reTransform {} failed, at index={};total={}.",
-                        watchId, coreModule.getModuleId(), waitingReTransformClass,
-                        index - 1, total,
-                        e
-                );
-                if (null != progress) {
-                    try {
-                        progress.progressOnFailed(waitingReTransformClass, index, e);
-                    } catch (Throwable cause) {
-                        logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnFailed occur exception, at index={};total={};",
-                                watchId, coreModule.getModuleId(), waitingReTransformClass,
-                                index - 1, total,
-                                cause
-                        );
-                    }
-                }
-            } catch (Throwable causeOfReTransform) {
-                logger.warn("SIMULATOR: watch={} in module={} single reTransform {} failed, at index={};total={}. ignore this class.",
-                        watchId, coreModule.getModuleId(), waitingReTransformClass,
-                        index - 1, total,
-                        causeOfReTransform
-                );
-                if (null != progress) {
-                    try {
-                        progress.progressOnFailed(waitingReTransformClass, index, causeOfReTransform);
-                    } catch (Throwable cause) {
-                        logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnFailed occur exception, at index={};total={};",
-                                watchId, coreModule.getModuleId(), waitingReTransformClass,
-                                index - 1, total,
-                                cause
-                        );
-                    }
-                }
-                //如果报错先忽略掉 TODO
-            }
-        }//for
-
+        if (isInfoEnabled) {
+            logger.info("SIMULATOR: {}watch={} in module={} reTransform {} classes.",
+                    delete ? "delete " : "", watchId, coreModule.getModuleId(), total);
+        }
+        classReTransformer.reTransform(coreModule.getModuleId(), watchId, waitingReTransformClasses, progress);
     }
 
     @Override
@@ -215,14 +182,14 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
     @Override
     public int watch(final Filter filter,
                      final Progress progress) {
-        return watch(new ExtFilterMatcher(make(filter)), progress);
+        return watch(new ExtFilterMatcher(make(filter)), progress, true);
     }
 
 
     @Override
     public int watch(final EventWatchCondition condition,
                      final Progress progress) {
-        return watch(ExtFilterMatcher.toOrGroupMatcher(condition.getOrFilterArray()), progress);
+        return watch(ExtFilterMatcher.toOrGroupMatcher(condition.getOrFilterArray()), progress, true);
     }
 
 
@@ -272,20 +239,36 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
         return dump(new ExtFilterMatcher(make(filter)), progress);
     }
 
-    // 这里是用matcher重制过后的watch
+    /**
+     * 这里是用matcher重制过后的watch
+     *
+     * @param matcher      匹配器
+     * @param progress     进度
+     * @param isDeferrable 模块激活期间是否可以延迟到激活结束时统一重新增强
+     * @return 观察ID
+     */
     private int watch(final Matcher matcher,
-                      final Progress progress) {
+                      final Progress progress,
+                      final boolean isDeferrable) {
         final int watchId = watchIdSequencer.next();
         // 给对应的模块追加ClassFileTransformer
-        final SimulatorClassFileTransformer transformer = new DefaultSimulatorClassFileTransformer(this,
-                watchId, coreModule, matcher, isEnableUnsafe);
-
-        SimulatorClassFileTransformer proxy = CostDumpTransformer.wrap(BytecodeDumpTransformer.wrap(transformer, coreModule.getSimulatorConfig()), coreModule.getSimulatorConfig());
-        // 注册到CoreModule中
-        coreModule.getSimulatorClassFileTransformers().add(proxy);
-
-        //这里addTransformer后，接下来引起的类加载都会经过sandClassFileTransformer 每个enhanceTemplate.enhance都是单独的一个transformer
-        inst.addTransformer(proxy, true);
+        final DefaultSimulatorClassFileTransformer transformer = new DefaultSimulatorClassFileTransformer(this,
+                watchId, coreModule, matcher, isEnableUnsafe, enhanceCacheManager);
+
+        final SimulatorClassFileTransformer proxy;
+        if (sharedClassFileTransformer != null) {
+            // 注册到共享形变器中，字节码及耗时的 dump 由共享形变器统一处理
+            proxy = transformer;
+            coreModule.getSimulatorClassFileTransformers().add(proxy);
+            sharedClassFileTransformer.register(transformer);
+        } else {
+            proxy = CostDumpTransformer.wrap(BytecodeDumpTransformer.wrap(transformer, coreModule.getSimulatorConfig()), coreModule.getSimulatorConfig());
+            // 注册到CoreModule中
+            coreModule.getSimulatorClassFileTransformers().add(proxy);
+
+            //这里addTransformer后，接下来引起的类加载都会经过sandClassFileTransformer 每个enhanceTemplate.enhance都是单独的一个transformer
+            inst.addTransformer(proxy, true);
+        }
 
         // 查找需要渲染的类集合
         final List<Class<?>> waitingReTransformClasses = classDataSource.findForReTransform(matcher);
@@ -297,43 +280,73 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
             );
         }
 
-        int effectClassCount = 0, effectMethodCount = 0;
-
         // 进度通知启动
         beginProgress(progress, waitingReTransformClasses.size());
-        try {
 
+        final boolean isActivated = coreModule.isActivated();
+        final Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                completeWatch(proxy, progress, isActivated);
+            }
+        };
+
+        // 模块激活期间只收集需要重新增强的类，激活结束时与其他观察合并后统一重新增强
+        if (isDeferrable && classReTransformer.isCollecting()) {
+            classReTransformer.defer(new ClassReTransformer.DeferredWatch(
+                    coreModule.getModuleId(), watchId, waitingReTransformClasses, progress, completion));
+            return watchId;
+        }
+
+        try {
             // 应用JVM
             reTransformClasses(watchId, waitingReTransformClasses, progress);
+        } catch (Throwable e) {
+            logger.error("watch class error. waitingReTransformClasses={}, matchers={}", waitingReTransformClasses, matcher, e);
+        } finally {
+            completion.run();
+        }
 
-            // 计数
-            effectClassCount += proxy.getAffectStatistic().getEffectClassCount();
-            effectMethodCount += proxy.getAffectStatistic().getEffectMethodCount();
-
+        return watchId;
+    }
 
+    /**
+     * 重新增强完成后激活增强类并结束进度
+     *
+     * @param proxy       类形变器
+     * @param progress    进度
+     * @param isActivated 观察时模块是否已经激活，未激活时由模块激活统一激活监听器
+     */
+    private void completeWatch(final SimulatorClassFileTransformer proxy,
+                               final Progress progress,
+                               final boolean isActivated) {
+        // 计数
+        final int effectClassCount = proxy.getAffectStatistic().getEffectClassCount();
+        final int effectMethodCount = proxy.getAffectStatistic().getEffectMethodCount();
+        try {
             // 激活增强类
-            if (coreModule.isActivated()) {
+            if (isActivated) {
                 List<BuildingForListeners> listeners = proxy.getAllListeners();
                 if (CollectionUtils.isNotEmpty(listeners)) {
                     for (BuildingForListeners buildingForListeners : listeners) {
-                        eventListenerHandler.active(buildingForListeners.getListenerId(), proxy.getEventListeners().get(buildingForListeners.getListenerId()), buildingForListeners.getEventTypes());
+                        eventListenerHandler.active(buildingForListeners.getListenerId(), buildingForListeners.getListeners().getClassName(), proxy.getEventListeners().get(buildingForListeners.getListenerId()), buildingForListeners.getEventTypes());
                     }
                 }
             }
-
         } catch (Throwable e) {
-            logger.error("watch class error. waitingReTransformClasses={}, matchers={}", waitingReTransformClasses, matcher, e);
+            logger.error("active listeners error. watch={}, module={}", proxy.getWatchId(), coreModule.getModuleId(), e);
         } finally {
             finishProgress(progress, effectClassCount, effectMethodCount);
         }
-
-        return watchId;
     }
 
     @Override
     public void delete(final int watcherId,
                        final Progress progress) {
 
+        // 先让尚未生效的观察生效，避免待删除的观察在删除之后才被重新增强
+        classReTransformer.flush();
+
         final Set<Matcher> waitingRemoveMatcherSet = new LinkedHashSet<Matcher>();
 
         // 找出待删除的SimulatorClassFileTransformer
@@ -352,8 +365,11 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
                 }
 
 
-                // 在JVM中移除掉命中的ClassFileTransformer
-                inst.removeTransformer(simulatorClassFileTransformer);
+                // 在共享形变器或JVM中移除掉命中的ClassFileTransformer
+                if (sharedClassFileTransformer == null
+                        || !sharedClassFileTransformer.unregister(simulatorClassFileTransformer)) {
+                    inst.removeTransformer(simulatorClassFileTransformer);
+                }
 
                 // 计数
                 cCnt += simulatorClassFileTransformer.getAffectStatistic().getEffectClassCount();
@@ -404,6 +420,9 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
     @Override
     public void close() {
         eventListenerHandler = null;
+        sharedClassFileTransformer = null;
+        enhanceCacheManager = null;
+        classReTransformer = null;
         inst = null;
         classDataSource = null;
         coreModule = null;
@@ -415,7 +434,8 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
                          final Progress wProgress,
                          final WatchCallback watchCb,
                          final Progress dProgress) throws Throwable {
-        final int watchId = watch(new ExtFilterMatcher(make(filter)), wProgress);
+        // 回调需要在重新增强生效之后执行，不能延迟
+        final int watchId = watch(new ExtFilterMatcher(make(filter)), wProgress, false);
         try {
             watchCb.watchCompleted();
         } finally {
@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.ProtectionDomain;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,7 +46,7 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final boolean isDebugEnabled = logger.isDebugEnabled();
     private final boolean isInfoEnabled = logger.isInfoEnabled();
-    private final static int CLASS_VERSION_15 = 49;
+    final static int CLASS_VERSION_15 = 49;
     private final static byte CLASS_VERSION_15_6 = 0;
     private final static byte CLASS_VERSION_15_7 = 49;
 
@@ -58,17 +59,34 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
     private final Map<Integer, EventListener> eventListeners = new HashMap<Integer, EventListener>();
     private final List<BuildingForListeners> listeners;
     private final DefaultModuleEventWatcher watcher;
+    private final String moduleSignature;
+
+    /**
+     * 增强字节码缓存，为 null 时不使用缓存
+     */
+    private final DefaultEnhanceCacheManager enhanceCacheManager;
 
     DefaultSimulatorClassFileTransformer(final DefaultModuleEventWatcher watcher,
                                          final int watchId,
                                          final CoreModule coreModule,
                                          final Matcher matcher,
                                          final boolean isEnableUnsafe) {
+        this(watcher, watchId, coreModule, matcher, isEnableUnsafe, null);
+    }
+
+    DefaultSimulatorClassFileTransformer(final DefaultModuleEventWatcher watcher,
+                                         final int watchId,
+                                         final CoreModule coreModule,
+                                         final Matcher matcher,
+                                         final boolean isEnableUnsafe,
+                                         final DefaultEnhanceCacheManager enhanceCacheManager) {
         this.watcher = watcher;
         this.watchId = watchId;
         this.moduleId = coreModule.getModuleId();
+        this.moduleSignature = DefaultEnhanceCacheManager.toModuleSignature(coreModule.getModuleSpec(), coreModule.getJarFile());
         this.matcher = matcher;
         this.isEnableUnsafe = isEnableUnsafe;
+        this.enhanceCacheManager = enhanceCacheManager;
         List<BuildingForListeners> listeners = matcher.getAllListeners();
         for (BuildingForListeners listener : listeners) {
             eventListeners.put(listener.getListenerId(), new LazyEventListenerProxy(coreModule, listener.getListeners()));
@@ -87,9 +105,9 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
     }
 
     // 获取当前类结构
-    private ClassStructure getClassStructure(final ClassLoader loader,
-                                             final Class<?> classBeingRedefined,
-                                             final byte[] srcByteCodeArray) {
+    static ClassStructure getClassStructure(final ClassLoader loader,
+                                            final Class<?> classBeingRedefined,
+                                            final byte[] srcByteCodeArray) {
         return null == classBeingRedefined
                 ? ClassStructureFactory.createClassStructure(srcByteCodeArray, loader)
                 : ClassStructureFactory.createClassStructure(classBeingRedefined);
@@ -145,8 +163,9 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
             return null;
         }
 
-        final ClassStructure classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
+        ClassStructure classStructure = null;
         if (internalClassName == null) {
+            classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
             internalClassName = classStructure.getJavaClassName();
         }
 
@@ -157,13 +176,29 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
             return null;
         }
 
-        final MatchingResult matchingResult = new UnsupportedMatcher(loader, isEnableUnsafe).and(matcher).matching(classStructure);
-        final Map<String, Set<BuildingForListeners>> behaviorSignCodes = matchingResult.getBehaviorSignCodeMap();
+        // 优先使用上次启动缓存的增强结果
+        final long startNanos = System.nanoTime();
+        final List<DefaultSimulatorClassFileTransformer> candidates = Collections.singletonList(this);
+        final String cacheKey = enhanceCacheManager == null
+                ? null
+                : enhanceCacheManager.toKey(loader, internalClassName, srcByteCodeArray, candidates);
+        if (cacheKey != null) {
+            final DefaultEnhanceCacheManager.Entry entry = enhanceCacheManager.get(cacheKey, candidates);
+            if (entry != null) {
+                return enhanceCacheManager.applyHit(entry, loader, internalClassName, startNanos);
+            }
+        }
+
+        if (classStructure == null) {
+            classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
+        }
+        final Map<String, Set<BuildingForListeners>> behaviorSignCodes = matching(loader, internalClassName, classStructure);
 
         // 如果一个行为都没匹配上也不用继续了
-        if (!matchingResult.isMatched() || behaviorSignCodes.isEmpty()) {
-            if (isDebugEnabled) {
-                logger.debug("SIMULATOR: transform ignore {}, no behaviors matched in loader={}", internalClassName, loader);
+        if (behaviorSignCodes == null) {
+            if (cacheKey != null) {
+                enhanceCacheManager.applyMiss(cacheKey, candidates, Collections.<DefaultSimulatorClassFileTransformer>emptyList(),
+                        Collections.<Map<String, Set<BuildingForListeners>>>emptyList(), srcByteCodeArray, null, startNanos);
             }
             return null;
         }
@@ -192,6 +227,11 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
             // statistic affect
             affectStatistic.statisticAffect(loader, internalClassName, behaviorSignCodes);
 
+            if (cacheKey != null) {
+                enhanceCacheManager.applyMiss(cacheKey, candidates, candidates,
+                        Collections.singletonList(behaviorSignCodes), srcByteCodeArray, toByteCodeArray, startNanos);
+            }
+
             if (isInfoEnabled) {
                 logger.info("SIMULATOR: transform {} finished, by module={} in loader={}", internalClassName, moduleId, loader);
             }
@@ -202,6 +242,28 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
         }
     }
 
+    /**
+     * 匹配类结构中需要增强的行为
+     *
+     * @param loader            类加载器
+     * @param internalClassName 类名
+     * @param classStructure    类结构
+     * @return 需要增强的行为及其对应的监听器，一个行为都没匹配上时返回 null
+     */
+    Map<String, Set<BuildingForListeners>> matching(final ClassLoader loader,
+                                                    final String internalClassName,
+                                                    final ClassStructure classStructure) {
+        final MatchingResult matchingResult = new UnsupportedMatcher(loader, isEnableUnsafe).and(matcher).matching(classStructure);
+        final Map<String, Set<BuildingForListeners>> behaviorSignCodes = matchingResult.getBehaviorSignCodeMap();
+        if (!matchingResult.isMatched() || behaviorSignCodes.isEmpty()) {
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: transform ignore {}, no behaviors matched in loader={}", internalClassName, loader);
+            }
+            return null;
+        }
+        return behaviorSignCodes;
+    }
+
     /**
      * 获取 class 的编译的平台版本号
      * 46 -> 1.2
@@ -215,7 +277,7 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
      * @param data
      * @return
      */
-    private int getClassMajorVersion(byte[] data) {
+    static int getClassMajorVersion(byte[] data) {
         return (short) (((data[6] & 0xFF) << 8) | (data[6 + 1] & 0xFF));
     }
 
@@ -225,12 +287,34 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
      * @param data
      * @return
      */
-    private byte[] resetClassVersionToJava5(byte[] data) {
+    static byte[] resetClassVersionToJava5(byte[] data) {
         data[6] = CLASS_VERSION_15_6;
         data[7] = CLASS_VERSION_15_7;
         return data;
     }
 
+    /**
+     * 获取所属的模块ID
+     *
+     * @return 模块ID
+     */
+    String getModuleId() {
+        return moduleId;
+    }
+
+    /**
+     * 获取所属模块的签名，由模块版本和模块 jar 包信息组成
+     *
+     * @return 模块签名
+     */
+    String getModuleSignature() {
+        return moduleSignature;
+    }
+
+    boolean isEnableUnsafe() {
+        return isEnableUnsafe;
+    }
+
     /**
      * 获取观察ID
      *
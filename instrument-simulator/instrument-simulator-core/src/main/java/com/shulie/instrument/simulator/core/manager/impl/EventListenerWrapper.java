@@ -50,6 +50,11 @@ public class EventListenerWrapper extends EventListener {
         return eventListener.onEvent(event);
     }
 
+    @Override
+    public boolean isHoldEvent() {
+        return eventListener.isHoldEvent();
+    }
+
     @Override
     public void clean() {
         if (destroyed != null) {
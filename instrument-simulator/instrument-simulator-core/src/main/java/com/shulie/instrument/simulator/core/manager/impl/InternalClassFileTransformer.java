@@ -29,12 +29,25 @@ import java.security.ProtectionDomain;
 public class InternalClassFileTransformer implements ClassFileTransformer {
     private ClassInjector classInjector;
 
+    /**
+     * 已加载类目录，类首次加载时登记到目录中，为 null 时不登记
+     */
+    private LoadedClassCatalog loadedClassCatalog;
+
     public InternalClassFileTransformer(ClassInjector classInjector) {
+        this(classInjector, null);
+    }
+
+    public InternalClassFileTransformer(ClassInjector classInjector, LoadedClassCatalog loadedClassCatalog) {
         this.classInjector = classInjector;
+        this.loadedClassCatalog = loadedClassCatalog;
     }
 
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+        if (loadedClassCatalog != null && classBeingRedefined == null) {
+            loadedClassCatalog.onClassLoading(className);
+        }
         injectJar(loader, className);
         return null;
     }
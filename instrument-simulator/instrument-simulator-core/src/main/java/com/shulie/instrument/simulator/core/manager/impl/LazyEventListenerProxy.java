@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.shulie.instrument.simulator.api.ModuleException;
 import com.shulie.instrument.simulator.api.ProcessControlEntity;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
+import com.shulie.instrument.simulator.api.annotation.NonHoldEvent;
 import com.shulie.instrument.simulator.api.event.Event;
 import com.shulie.instrument.simulator.api.event.EventType;
 import com.shulie.instrument.simulator.api.listener.Destroyed;
@@ -73,11 +74,41 @@ public class LazyEventListenerProxy extends EventListener implements Interruptab
      */
     private boolean listenerCostEnabled;
 
+    /**
+     * 是否会持有事件对象，注册时根据监听器类判断，保证第一次调用之前就已经确定
+     */
+    private volatile boolean isHoldEvent;
+
     public LazyEventListenerProxy(final CoreModule coreModule, final Listeners listeners) {
         this.coreModule = coreModule;
         this.listeners = listeners;
         this.eventListeners = new ConcurrentHashMap<Integer, EventListenerWrapper>();
         this.listenerCostEnabled = Boolean.parseBoolean(System.getProperty("simulator.listener.cost.enabled", "false"));
+        this.isHoldEvent = resolveHoldEvent();
+    }
+
+    /**
+     * 根据监听器类判断是否会持有事件对象。AdviceListener 会被 AdviceAdapterListener 包装，
+     * 事件数据在 BEFORE 时已经转移到 Advice 中，不会持有；EventListener 通过 {@link NonHoldEvent} 声明。
+     * 无法加载监听器类时按持有处理
+     *
+     * @return 是否会持有事件对象
+     */
+    private boolean resolveHoldEvent() {
+        if (listeners == null || StringUtils.isBlank(listeners.getClassName())) {
+            return true;
+        }
+        try {
+            Class<?> clazz = coreModule.getClassLoaderFactory().getDefaultClassLoader().loadClass(listeners.getClassName());
+            if (AdviceListener.class.isAssignableFrom(clazz)) {
+                return false;
+            }
+            return !clazz.isAnnotationPresent(NonHoldEvent.class);
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: can't found class {} by ModuleClassLoader:{}, event will not be reused.",
+                listeners.getClassName(), coreModule.getClassLoaderFactory().getDefaultClassLoader(), e);
+            return true;
+        }
     }
 
     @Override
@@ -218,6 +249,12 @@ public class LazyEventListenerProxy extends EventListener implements Interruptab
                         eventListener = new AdviceAdapterListener(adviceListener);
                     }
                     eventListenerWrapper.setEventListener(eventListener);
+                    /**
+                     * 实例覆盖了 isHoldEvent 声明会持有事件时，后续事件不再复用
+                     */
+                    if (eventListener != null && eventListener.isHoldEvent()) {
+                        this.isHoldEvent = true;
+                    }
 
                     Destroyable destroyable = listener.getClass().getAnnotation(Destroyable.class);
                     if (destroyable != null) {
@@ -242,6 +279,11 @@ public class LazyEventListenerProxy extends EventListener implements Interruptab
         return eventListenerWrapper;
     }
 
+    @Override
+    public boolean isHoldEvent() {
+        return isHoldEvent;
+    }
+
     @Override
     public boolean isInterrupted() {
         if (isInitInterrupt.get()) {
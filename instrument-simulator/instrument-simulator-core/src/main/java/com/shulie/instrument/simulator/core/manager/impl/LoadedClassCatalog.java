@@ -0,0 +1,315 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.core.util.matcher.ClassNameIndex;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已加载类目录
+ * <p>
+ * 按类名有序索引已加载的类，同名的类(不同类加载器加载)挂在同一个类名下，
+ * 支持按类名精确查找以及按类名前缀、包名范围查找，检索时不再需要遍历 {@link Instrumentation#getAllLoadedClasses()}。
+ * 目录在第一次查询时全量构建，之后由类形变器在类加载时登记新加载的类名，
+ * 只有查询命中了待同步的类名时才会重新同步一次已加载类。类使用弱引用持有，不影响类的卸载
+ * </p>
+ */
+public class LoadedClassCatalog {
+
+    /**
+     * 是否开启已加载类目录，关闭时检索退化为遍历所有已加载类
+     */
+    public final static String ENABLED_CLASS_CATALOG = "simulator.class.catalog.enabled";
+
+    /**
+     * 待同步类名的上限，超过后放弃增量同步，下次查询时全量重建
+     */
+    private final static int MAX_PENDING_SIZE = 8192;
+
+    /**
+     * 待同步类名的保留时长，超过该时长仍然找不到的类认为定义失败
+     */
+    private final static long PENDING_EXPIRE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Instrumentation inst;
+
+    /**
+     * 类名 -> 该类名下的所有类
+     */
+    private final TreeMap<String, List<WeakReference<Class<?>>>> classes = new TreeMap<String, List<WeakReference<Class<?>>>>();
+
+    /**
+     * 已经开始加载但尚未同步到目录中的类名 -> 登记时间
+     */
+    private final ConcurrentHashMap<String, Long> pendingClassNames = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * 目录是否需要全量重建
+     */
+    private volatile boolean isStale = true;
+
+    public LoadedClassCatalog(final Instrumentation inst) {
+        this.inst = inst;
+    }
+
+    /**
+     * 登记正在加载的类，由类形变器在类首次加载时调用
+     *
+     * @param internalClassName 内部类名
+     */
+    public void onClassLoading(final String internalClassName) {
+        if (isStale || internalClassName == null) {
+            return;
+        }
+        if (pendingClassNames.size() >= MAX_PENDING_SIZE) {
+            isStale = true;
+            return;
+        }
+        pendingClassNames.put(internalClassName.replace('/', '.'), System.nanoTime());
+    }
+
+    /**
+     * 按类名精确查找
+     *
+     * @param javaClassName 类名
+     * @return 该类名下所有已加载的类
+     */
+    public synchronized List<Class<?>> getClasses(final String javaClassName) {
+        final List<Class<?>> result = new ArrayList<Class<?>>();
+        if (javaClassName == null) {
+            return result;
+        }
+        syncIfNecessary(javaClassName, null);
+        collect(javaClassName, classes.get(javaClassName), result);
+        return result;
+    }
+
+    /**
+     * 按类名前缀查找
+     *
+     * @param prefix 类名前缀
+     * @return 类名以该前缀开头的所有已加载的类
+     */
+    public synchronized List<Class<?>> getClassesByPrefix(final String prefix) {
+        final List<Class<?>> result = new ArrayList<Class<?>>();
+        syncIfNecessary(null, prefix);
+        collectByPrefix(prefix, result);
+        return result;
+    }
+
+    /**
+     * 按包名查找，不包含子包中的类
+     *
+     * @param packageName 包名
+     * @return 该包下所有已加载的类
+     */
+    public synchronized List<Class<?>> getClassesByPackage(final String packageName) {
+        final String prefix = packageName.concat(".");
+        final List<Class<?>> result = new ArrayList<Class<?>>();
+        for (final Class<?> clazz : getClassesByPrefix(prefix)) {
+            if (clazz.getName().indexOf('.', prefix.length()) == -1) {
+                result.add(clazz);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按类名通配符模式查找候选类，通配符模式与{@link ClassNameIndex}一致
+     *
+     * @param wildcards 通配符模式
+     * @return 类名可能匹配的类，候选仍需要经过匹配器确认；
+     * 存在无法缩小范围的模式(字面量前缀为空)时返回 null，此时需要遍历所有已加载类
+     */
+    public synchronized List<Class<?>> findCandidates(final String[] wildcards) {
+        for (final String wildcard : wildcards) {
+            if (wildcard != null && ClassNameIndex.literalPrefixLength(wildcard) == 0) {
+                return null;
+            }
+        }
+        final Set<String> exacts = new HashSet<String>();
+        final List<String> prefixes = new ArrayList<String>();
+        for (final String wildcard : wildcards) {
+            if (wildcard == null) {
+                continue;
+            }
+            final int length = ClassNameIndex.literalPrefixLength(wildcard);
+            if (length == wildcard.length()) {
+                exacts.add(wildcard);
+            } else {
+                prefixes.add(wildcard.substring(0, length));
+            }
+        }
+
+        if (isStale || hitPending(exacts, prefixes)) {
+            sync();
+        }
+
+        final List<Class<?>> result = new ArrayList<Class<?>>();
+        for (final String prefix : prefixes) {
+            collectByPrefix(prefix, result);
+        }
+        for (final String exact : exacts) {
+            // 已经被前缀覆盖的类名不再重复收集
+            if (!isCovered(exact, prefixes)) {
+                collect(exact, classes.get(exact), result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 目录中的类名个数
+     *
+     * @return 类名个数
+     */
+    public synchronized int size() {
+        return classes.size();
+    }
+
+    private static boolean isCovered(final String className, final List<String> prefixes) {
+        for (final String prefix : prefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collectByPrefix(final String prefix, final List<Class<?>> result) {
+        final NavigableMap<String, List<WeakReference<Class<?>>>> range = classes.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        final Iterator<Map.Entry<String, List<WeakReference<Class<?>>>>> it = range.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, List<WeakReference<Class<?>>>> entry = it.next();
+            if (!collect(null, entry.getValue(), result)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 收集引用中仍然存活的类，同时清理已经被卸载的类
+     *
+     * @return 该类名下是否还有存活的类
+     */
+    private boolean collect(final String javaClassName,
+                            final List<WeakReference<Class<?>>> refs,
+                            final List<Class<?>> result) {
+        if (refs == null) {
+            return false;
+        }
+        final Iterator<WeakReference<Class<?>>> it = refs.iterator();
+        while (it.hasNext()) {
+            final Class<?> clazz = it.next().get();
+            if (clazz == null) {
+                it.remove();
+            } else {
+                result.add(clazz);
+            }
+        }
+        if (refs.isEmpty() && javaClassName != null) {
+            classes.remove(javaClassName);
+        }
+        return !refs.isEmpty();
+    }
+
+    private void syncIfNecessary(final String exact, final String prefix) {
+        if (isStale) {
+            sync();
+            return;
+        }
+        for (final String className : pendingClassNames.keySet()) {
+            if ((exact != null && exact.equals(className))
+                    || (prefix != null && className.startsWith(prefix))) {
+                sync();
+                return;
+            }
+        }
+    }
+
+    private boolean hitPending(final Set<String> exacts, final List<String> prefixes) {
+        for (final String className : pendingClassNames.keySet()) {
+            if (exacts.contains(className) || isCovered(className, prefixes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 同步已加载类，目录过期时全量重建，否则只把待同步的类名补充进目录
+     */
+    private void sync() {
+        if (isStale) {
+            // 先清空待同步类名再标记为最新，重建期间加载的类仍然会被登记，不会遗漏
+            pendingClassNames.clear();
+            isStale = false;
+            classes.clear();
+            for (final Class<?> clazz : inst.getAllLoadedClasses()) {
+                add(clazz);
+            }
+            return;
+        }
+
+        final Map<String, Long> pending = new HashMap<String, Long>(pendingClassNames);
+        if (pending.isEmpty()) {
+            return;
+        }
+        final Set<String> found = new HashSet<String>();
+        for (final Class<?> clazz : inst.getAllLoadedClasses()) {
+            final String className = clazz.getName();
+            if (pending.containsKey(className)) {
+                add(clazz);
+                found.add(className);
+            }
+        }
+        final long now = System.nanoTime();
+        for (final Map.Entry<String, Long> entry : pending.entrySet()) {
+            // 只移除本次同步时登记的记录，同步期间重新登记的类名保留到下一次同步
+            if (found.contains(entry.getKey())
+                    || now - entry.getValue() > PENDING_EXPIRE_NANOS) {
+                pendingClassNames.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void add(final Class<?> clazz) {
+        final String className = clazz.getName();
+        List<WeakReference<Class<?>>> refs = classes.get(className);
+        if (refs == null) {
+            refs = new ArrayList<WeakReference<Class<?>>>(1);
+            classes.put(className, refs);
+        }
+        for (final WeakReference<Class<?>> ref : refs) {
+            if (ref.get() == clazz) {
+                return;
+            }
+        }
+        refs.add(new WeakReference<Class<?>>(clazz));
+    }
+}
@@ -50,6 +50,11 @@ class ModuleJarLoader {
     private final ModuleSpec moduleSpec;
     private final ClassLoaderService classLoaderService;
 
+    /**
+     * 模块类加载器工厂，发现模块时获取
+     */
+    private ClassLoaderFactory classLoaderFactory;
+
     ModuleJarLoader(final ModuleSpec moduleSpec,
                     final int loadMode,
                     final ClassLoaderService classLoaderService) {
@@ -76,9 +81,13 @@ class ModuleJarLoader {
         return builder.toString();
     }
 
-    private boolean loadingModules(final SimulatorConfig simulatorConfig,
-                                   final ClassLoaderFactory moduleClassLoader,
-                                   final ModuleLoadCallback moduleLoadCallback) {
+    /**
+     * 发现模块jar中的模块实例，模块jar中有且只能有一个模块
+     *
+     * @param moduleClassLoader 模块类加载器
+     * @return 是否成功发现模块
+     */
+    private boolean discoverModules(final ClassLoaderFactory moduleClassLoader) {
         final ServiceLoader<ExtensionModule> moduleServiceLoader = ServiceLoader.load(ExtensionModule.class, moduleClassLoader.getDefaultClassLoader());
         final Iterator<ExtensionModule> it = moduleServiceLoader.iterator();
         List<ExtensionModule> moduleList = new ArrayList<ExtensionModule>();
@@ -126,27 +135,36 @@ class ModuleJarLoader {
             return false;
         }
 
+        final ExtensionModule module = moduleList.get(0);
+        final Class<?> classOfModule = module.getClass();
+        final ModuleInfo info = classOfModule.getAnnotation(ModuleInfo.class);
+        moduleSpec.setClassOfModule(classOfModule);
+        moduleSpec.setModule(module);
+        moduleSpec.loadModuleInfo(info);
+        return true;
+    }
+
+    /**
+     * 将已经发现的模块交给回调完成加载
+     *
+     * @return 是否加载成功
+     */
+    private boolean loadingModules(final SimulatorConfig simulatorConfig,
+                                   final ClassLoaderFactory moduleClassLoader,
+                                   final ModuleLoadCallback moduleLoadCallback) {
         boolean loadingSuccess = false;
-        for (ExtensionModule module : moduleList) {
-            final Class<?> classOfModule = module.getClass();
-            final ModuleInfo info = classOfModule.getAnnotation(ModuleInfo.class);
-            moduleSpec.setClassOfModule(classOfModule);
-            moduleSpec.setModule(module);
-            moduleSpec.loadModuleInfo(info);
-            try {
-                if (null != moduleLoadCallback) {
-                    moduleLoadCallback.onLoad(simulatorConfig, moduleSpec, moduleSpec.getClassOfModule(), moduleSpec.getModule(), moduleJarFile, moduleClassLoader);
-                }
-                loadingSuccess = true;
-            } catch (Throwable cause) {
-                logger.warn("SIMULATOR: loading module instance failed: MODULE-LOADER-PROVIDER denied, will be ignored. module={};class={};module-jar={};",
-                        moduleSpec.getModuleId(),
-                        moduleSpec.getClassOfModule(),
-                        moduleJarFile,
-                        cause
-                );
-                continue;
+        try {
+            if (null != moduleLoadCallback) {
+                moduleLoadCallback.onLoad(simulatorConfig, moduleSpec, moduleSpec.getClassOfModule(), moduleSpec.getModule(), moduleJarFile, moduleClassLoader);
             }
+            loadingSuccess = true;
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: loading module instance failed: MODULE-LOADER-PROVIDER denied, will be ignored. module={};class={};module-jar={};",
+                    moduleSpec.getModuleId(),
+                    moduleSpec.getClassOfModule(),
+                    moduleJarFile,
+                    cause
+            );
         }
 
         if (isInfoEnabled) {
@@ -160,9 +178,19 @@ class ModuleJarLoader {
 
 
     void load(final SimulatorConfig simulatorConfig, final ModuleLoadCallback moduleLoadCallback) throws IOException {
+        if (discover()) {
+            commit(simulatorConfig, moduleLoadCallback);
+        }
+    }
 
-        boolean hasModuleLoadedSuccessFlag = false;
-        ClassLoaderFactory classLoaderFactory = null;
+    /**
+     * 发现模块实例，不执行模块的加载回调，可以在并行加载的工作线程中执行
+     *
+     * @return 是否发现模块，未发现时模块类加载器已经被关闭
+     */
+    boolean discover() {
+
+        boolean hasModuleDiscoveredFlag = false;
         if (isInfoEnabled) {
             logger.info("SIMULATOR: prepare loading module-jar={};", moduleJarFile);
         }
@@ -177,19 +205,52 @@ class ModuleJarLoader {
             Thread.currentThread().setContextClassLoader(moduleClassLoader);
 
             try {
-                hasModuleLoadedSuccessFlag = loadingModules(simulatorConfig, classLoaderFactory, moduleLoadCallback);
+                hasModuleDiscoveredFlag = discoverModules(classLoaderFactory);
             } finally {
                 Thread.currentThread().setContextClassLoader(contextClassLoader);
             }
 
         } finally {
-            if (!hasModuleLoadedSuccessFlag
+            if (!hasModuleDiscoveredFlag
                     && null != classLoaderFactory) {
                 logger.warn("SIMULATOR: loading module-jar completed, but NONE module loaded, will be close ModuleClassLoader. module-jar={};", moduleJarFile);
                 classLoaderFactory.release();
             }
         }
+        return hasModuleDiscoveredFlag;
+    }
+
+    /**
+     * 加载已经发现的模块，需要在{@link #discover()}成功之后调用
+     *
+     * @param simulatorConfig    仿真器配置
+     * @param moduleLoadCallback 模块加载回调
+     */
+    void commit(final SimulatorConfig simulatorConfig, final ModuleLoadCallback moduleLoadCallback) {
+        boolean hasModuleLoadedSuccessFlag = false;
+        try {
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            Thread.currentThread().setContextClassLoader(classLoaderFactory.getDefaultClassLoader());
+            try {
+                hasModuleLoadedSuccessFlag = loadingModules(simulatorConfig, classLoaderFactory, moduleLoadCallback);
+            } finally {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        } finally {
+            if (!hasModuleLoadedSuccessFlag) {
+                logger.warn("SIMULATOR: loading module-jar completed, but NONE module loaded, will be close ModuleClassLoader. module-jar={};", moduleJarFile);
+                classLoaderFactory.release();
+            }
+        }
+    }
 
+    /**
+     * 获取模块类加载器工厂，{@link #discover()}之后可用
+     *
+     * @return 模块类加载器工厂
+     */
+    ClassLoaderFactory getClassLoaderFactory() {
+        return classLoaderFactory;
     }
 
     /**
@@ -63,6 +63,23 @@ class ModuleLibLoader {
 
     }
 
+    /**
+     * 只发现模块实例而不加载，加载由返回的{@link ModuleJarLoader#commit}完成
+     *
+     * @param moduleJarLoadCallback 模块文件加载回调
+     * @return 发现模块的加载器，发现失败时返回 null
+     */
+    ModuleJarLoader discover(final SimulatorConfig simulatorConfig, final ModuleJarLoadCallback moduleJarLoadCallback) {
+        try {
+            moduleJarLoadCallback.onLoad(simulatorConfig, moduleSpec, moduleSpec.getFile());
+            final ModuleJarLoader moduleJarLoader = new ModuleJarLoader(moduleSpec, loadMode, classLoaderService);
+            return moduleJarLoader.discover() ? moduleJarLoader : null;
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: loading module-jar occur error! module-jar={};", moduleSpec.getFile(), cause);
+            return null;
+        }
+    }
+
     /**
      * 模块文件加载回调
      */
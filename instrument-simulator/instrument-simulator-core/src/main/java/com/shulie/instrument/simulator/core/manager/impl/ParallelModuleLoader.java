@@ -0,0 +1,354 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import com.shulie.instrument.simulator.api.guard.SimulatorGuard;
+import com.shulie.instrument.simulator.core.classloader.ClassLoaderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模块并行加载器
+ * <p>
+ * 根据模块声明的依赖({@link ModuleSpec#getDependencies()})构建有向无环图，模块加载拆分为四个阶段:
+ * 1. 准备: 校验模块并创建模块类加载器(拷贝及校验模块jar)，所有模块直接在线程池中并行执行；
+ * 2. 登记: 登记模块导出的类和资源，导出冲突时先登记的模块生效，所以按照拓扑顺序在调用线程中串行执行，
+ * 与顺序加载一样，每个模块发现时都能看到排在它前面的模块的导出；
+ * 3. 发现: 实例化模块，需要等待模块自身登记完成并且本批次内依赖的模块已经加载完成，在线程池中并行执行；
+ * 4. 加载: 注入资源、触发模块生命周期以及增强观察，按照依赖的拓扑顺序在调用线程中串行执行。
+ * 依赖的模块不在本批次中时视为外部开关，仍然由开关管理器控制加载时机
+ * </p>
+ */
+class ParallelModuleLoader {
+
+    /**
+     * 模块并行加载的线程数，小于等于 1 时按顺序加载
+     */
+    final static String MODULE_LOAD_PARALLELISM = "simulator.module.load.parallelism";
+
+    private final Logger logger = LoggerFactory.getLogger(ParallelModuleLoader.class);
+    private final boolean isInfoEnabled = logger.isInfoEnabled();
+
+    private final int parallelism;
+    private final Stage stage;
+
+    /**
+     * 模块加载的各个阶段
+     */
+    interface Stage {
+
+        /**
+         * 准备模块，在工作线程中执行
+         *
+         * @param moduleSpec 模块描述
+         * @return 模块类加载器，模块不能继续加载时返回 null
+         */
+        ClassLoaderFactory prepare(ModuleSpec moduleSpec);
+
+        /**
+         * 登记模块导出的类和资源，在调用线程中按照拓扑顺序串行执行
+         *
+         * @param moduleSpec         模块描述
+         * @param classLoaderFactory 准备阶段创建的模块类加载器
+         */
+        void register(ModuleSpec moduleSpec, ClassLoaderFactory classLoaderFactory);
+
+        /**
+         * 发现模块实例，在工作线程中执行
+         *
+         * @param moduleSpec 模块描述
+         * @return 发现模块的加载器，发现失败时返回 null
+         */
+        ModuleJarLoader discover(ModuleSpec moduleSpec);
+
+        /**
+         * 加载模块，在调用线程中串行执行
+         *
+         * @param moduleSpec      模块描述
+         * @param moduleJarLoader 发现模块的加载器
+         */
+        void commit(ModuleSpec moduleSpec, ModuleJarLoader moduleJarLoader);
+
+    }
+
+    ParallelModuleLoader(final int parallelism, final Stage stage) {
+        this.parallelism = parallelism;
+        this.stage = stage;
+    }
+
+    /**
+     * 有向无环图中的模块节点
+     */
+    private static class Node {
+        final ModuleSpec moduleSpec;
+        final int index;
+        final List<Node> dependencies = new ArrayList<Node>();
+        final List<Node> dependents = new ArrayList<Node>();
+        final CountDownLatch prepared = new CountDownLatch(1);
+        final CountDownLatch discovered = new CountDownLatch(1);
+
+        /**
+         * 开始发现之前需要等待的事件数: 自身登记完成 + 每个依赖模块加载完成
+         */
+        final AtomicInteger pending = new AtomicInteger();
+        volatile ClassLoaderFactory classLoaderFactory;
+        volatile boolean isPrepared;
+        volatile ModuleJarLoader moduleJarLoader;
+
+        Node(final ModuleSpec moduleSpec, final int index) {
+            this.moduleSpec = moduleSpec;
+            this.index = index;
+        }
+    }
+
+    /**
+     * 加载一批模块，方法返回时所有模块均已经完成加载(或已经登记到开关回调中)
+     *
+     * @param moduleSpecs 模块列表，列表顺序作为没有依赖关系的模块之间的加载顺序
+     */
+    void load(final List<ModuleSpec> moduleSpecs) {
+        final List<Node> nodes = sort(build(moduleSpecs));
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "simulator-module-loader-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (final Node node : nodes) {
+                node.pending.set(node.dependencies.size() + 1);
+            }
+            for (final Node node : nodes) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        SimulatorGuard.getInstance().enter();
+                        try {
+                            node.classLoaderFactory = stage.prepare(node.moduleSpec);
+                        } catch (Throwable cause) {
+                            logger.warn("SIMULATOR: prepare module {} failed.", node.moduleSpec.getModuleId(), cause);
+                        } finally {
+                            SimulatorGuard.getInstance().exit();
+                            node.prepared.countDown();
+                        }
+                    }
+                });
+            }
+
+            // 登记和加载都需要串行执行，登记按拓扑顺序进行，期间已经发现完成的模块按顺序先加载
+            int committed = 0;
+            for (final Node node : nodes) {
+                awaitUninterruptibly(node.prepared);
+                register(node);
+                release(executor, node);
+                while (committed < nodes.size() && nodes.get(committed).discovered.getCount() == 0) {
+                    commit(executor, nodes.get(committed++));
+                }
+            }
+            // 依赖的模块总是先于依赖它的模块加载
+            while (committed < nodes.size()) {
+                final Node node = nodes.get(committed++);
+                awaitUninterruptibly(node.discovered);
+                commit(executor, node);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void register(final Node node) {
+        if (node.classLoaderFactory == null) {
+            return;
+        }
+        try {
+            stage.register(node.moduleSpec, node.classLoaderFactory);
+            node.isPrepared = true;
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: register module {} failed.", node.moduleSpec.getModuleId(), cause);
+        }
+    }
+
+    private void commit(final ExecutorService executor, final Node node) {
+        try {
+            if (node.isPrepared) {
+                if (node.moduleJarLoader != null) {
+                    stage.commit(node.moduleSpec, node.moduleJarLoader);
+                } else {
+                    logger.warn("SIMULATOR: module {} not found any module instance, ignore load it.", node.moduleSpec.getModuleId());
+                }
+            }
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: load module {} failed.", node.moduleSpec.getModuleId(), cause);
+        } finally {
+            for (final Node dependent : node.dependents) {
+                release(executor, dependent);
+            }
+        }
+    }
+
+    /**
+     * 释放一个等待事件，全部释放后开始发现模块
+     */
+    private void release(final ExecutorService executor, final Node node) {
+        if (node.pending.decrementAndGet() != 0) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SimulatorGuard.getInstance().enter();
+                try {
+                    if (node.isPrepared) {
+                        node.moduleJarLoader = stage.discover(node.moduleSpec);
+                    }
+                } catch (Throwable cause) {
+                    logger.warn("SIMULATOR: discover module {} failed.", node.moduleSpec.getModuleId(), cause);
+                } finally {
+                    SimulatorGuard.getInstance().exit();
+                    node.discovered.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * 根据模块声明的依赖构建有向图
+     */
+    private List<Node> build(final List<ModuleSpec> moduleSpecs) {
+        final List<Node> nodes = new ArrayList<Node>(moduleSpecs.size());
+        final Map<String, Node> nodeMap = new HashMap<String, Node>();
+        for (final ModuleSpec moduleSpec : moduleSpecs) {
+            final Node node = new Node(moduleSpec, nodes.size());
+            nodes.add(node);
+            if (!nodeMap.containsKey(moduleSpec.getModuleId())) {
+                nodeMap.put(moduleSpec.getModuleId(), node);
+            }
+        }
+        for (final Node node : nodes) {
+            if (node.moduleSpec.getDependencies() == null) {
+                continue;
+            }
+            for (final String dependency : node.moduleSpec.getDependencies()) {
+                final Node dependencyNode = nodeMap.get(dependency);
+                if (dependencyNode == null || dependencyNode == node || node.dependencies.contains(dependencyNode)) {
+                    continue;
+                }
+                node.dependencies.add(dependencyNode);
+                dependencyNode.dependents.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * 拓扑排序，没有依赖关系的模块之间保持原有顺序。
+     * 存在循环依赖时，环上的模块按原有顺序排在最后，并忽略指向后面模块的依赖，保证加载过程不会互相等待
+     */
+    private List<Node> sort(final List<Node> nodes) {
+        final Map<Node, Integer> inDegrees = new HashMap<Node, Integer>();
+        final PriorityQueue<Node> ready = new PriorityQueue<Node>(Math.max(1, nodes.size()), new Comparator<Node>() {
+            @Override
+            public int compare(Node o1, Node o2) {
+                return o1.index - o2.index;
+            }
+        });
+        for (final Node node : nodes) {
+            inDegrees.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) {
+                ready.add(node);
+            }
+        }
+        final List<Node> sorted = new ArrayList<Node>(nodes.size());
+        while (!ready.isEmpty()) {
+            final Node node = ready.poll();
+            sorted.add(node);
+            for (final Node dependent : node.dependents) {
+                final int inDegree = inDegrees.get(dependent) - 1;
+                inDegrees.put(dependent, inDegree);
+                if (inDegree == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (sorted.size() < nodes.size()) {
+            final Map<Node, Integer> positions = new HashMap<Node, Integer>();
+            for (final Node node : sorted) {
+                positions.put(node, positions.size());
+            }
+            for (final Node node : nodes) {
+                if (!positions.containsKey(node)) {
+                    logger.warn("SIMULATOR: module {} has cyclic dependencies {}, load it by declared order.",
+                            node.moduleSpec.getModuleId(), node.moduleSpec.getDependencies());
+                    positions.put(node, positions.size());
+                    sorted.add(node);
+                }
+            }
+            for (final Node node : sorted) {
+                final int position = positions.get(node);
+                for (final Node dependency : new ArrayList<Node>(node.dependencies)) {
+                    if (positions.get(dependency) > position) {
+                        node.dependencies.remove(dependency);
+                        dependency.dependents.remove(node);
+                    }
+                }
+            }
+        }
+
+        if (isInfoEnabled) {
+            final List<String> moduleIds = new ArrayList<String>(sorted.size());
+            for (final Node node : sorted) {
+                moduleIds.add(node.moduleSpec.getModuleId());
+            }
+            logger.info("SIMULATOR: parallel loading {} modules with {} threads, load order={}", sorted.size(), parallelism, moduleIds);
+        }
+        return sorted;
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    latch.await();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
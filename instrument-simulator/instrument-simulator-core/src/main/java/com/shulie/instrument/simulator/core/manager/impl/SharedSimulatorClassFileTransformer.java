@@ -0,0 +1,405 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.guard.SimulatorGuard;
+import com.shulie.instrument.simulator.api.listener.EventListener;
+import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.core.enhance.EventEnhancer;
+import com.shulie.instrument.simulator.core.enhance.weaver.ListenerComposer;
+import com.shulie.instrument.simulator.core.manager.AffectStatistic;
+import com.shulie.instrument.simulator.core.manager.SimulatorClassFileTransformer;
+import com.shulie.instrument.simulator.core.util.SimulatorClassUtils;
+import com.shulie.instrument.simulator.core.util.matcher.ClassNameIndex;
+import com.shulie.instrument.simulator.core.util.matcher.Matcher;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.shulie.instrument.simulator.core.manager.impl.DefaultSimulatorClassFileTransformer.CLASS_VERSION_15;
+import static com.shulie.instrument.simulator.core.manager.impl.DefaultSimulatorClassFileTransformer.getClassMajorVersion;
+import static com.shulie.instrument.simulator.core.manager.impl.DefaultSimulatorClassFileTransformer.getClassStructure;
+import static com.shulie.instrument.simulator.core.manager.impl.DefaultSimulatorClassFileTransformer.resetClassVersionToJava5;
+
+/**
+ * 所有模块共享的类形变器
+ * <p>
+ * 原先每个观察都会单独注册一个{@link DefaultSimulatorClassFileTransformer}，每加载一个类，
+ * 每个观察都要解析一次类结构并且单独进行一次字节码增强，模块较多时启动阶段的开销会成倍放大。
+ * 开启共享形变器后，所有观察只注册到这个形变器中，由它统一向 JVM 注册一次:
+ * 先通过{@link ClassNameIndex}按类名排除不可能匹配的观察，类结构最多只解析一次，
+ * 再将所有观察匹配到的行为合并后进行一次增强
+ * </p>
+ */
+public class SharedSimulatorClassFileTransformer extends SimulatorClassFileTransformer {
+
+    /**
+     * 是否开启共享类形变器，默认开启，关闭后恢复为每个观察单独注册形变器
+     */
+    public final static String ENABLED_SHARED_TRANSFORMER = "simulator.transformer.shared.enabled";
+
+    /**
+     * 是否开启组合监听器，默认关闭，开启后同一个方法上的多个监听器只织入一个调用点
+     */
+    public final static String ENABLED_COMPOSITE_LISTENER = "simulator.listener.composite.enabled";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final boolean isDebugEnabled = logger.isDebugEnabled();
+    private final boolean isInfoEnabled = logger.isInfoEnabled();
+
+    private final boolean isEnableUnsafe;
+    private final AffectStatistic affectStatistic = new AffectStatistic();
+
+    /**
+     * 增强字节码缓存，为 null 时不使用缓存
+     */
+    private final DefaultEnhanceCacheManager enhanceCacheManager;
+
+    /**
+     * 监听器组合器，为 null 时不组合
+     */
+    private final ListenerComposer composer;
+
+    /**
+     * 已注册的观察形变器，只在锁内修改
+     */
+    private final List<DefaultSimulatorClassFileTransformer> transformers = new ArrayList<DefaultSimulatorClassFileTransformer>();
+
+    /**
+     * 形变时使用的只读快照，注册或注销时整体替换
+     */
+    private volatile Snapshot snapshot = new Snapshot(Collections.<DefaultSimulatorClassFileTransformer>emptyList());
+
+    public SharedSimulatorClassFileTransformer(final boolean isEnableUnsafe) {
+        this(isEnableUnsafe, null);
+    }
+
+    public SharedSimulatorClassFileTransformer(final boolean isEnableUnsafe,
+                                               final DefaultEnhanceCacheManager enhanceCacheManager) {
+        this(isEnableUnsafe, enhanceCacheManager, null);
+    }
+
+    /**
+     * @param isEnableUnsafe      是否开启 unsafe
+     * @param enhanceCacheManager 增强字节码缓存，为 null 时不使用缓存
+     * @param composer            监听器组合器，不为 null 时多个观察匹配到同一个行为的监听器会合并为一个调用点
+     */
+    public SharedSimulatorClassFileTransformer(final boolean isEnableUnsafe,
+                                               final DefaultEnhanceCacheManager enhanceCacheManager,
+                                               final ListenerComposer composer) {
+        this.isEnableUnsafe = isEnableUnsafe;
+        this.enhanceCacheManager = enhanceCacheManager;
+        this.composer = composer;
+    }
+
+    /**
+     * 注册观察形变器
+     *
+     * @param transformer 观察形变器
+     */
+    synchronized void register(final DefaultSimulatorClassFileTransformer transformer) {
+        transformers.add(transformer);
+        this.snapshot = new Snapshot(transformers);
+    }
+
+    /**
+     * 注销观察形变器
+     *
+     * @param transformer 观察形变器
+     * @return 是否注销成功
+     */
+    synchronized boolean unregister(final SimulatorClassFileTransformer transformer) {
+        for (int i = 0; i < transformers.size(); i++) {
+            if (transformers.get(i) == transformer) {
+                transformers.remove(i);
+                this.snapshot = new Snapshot(transformers);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String internalClassName,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] srcByteCodeArray) {
+        final Snapshot snapshot = this.snapshot;
+        if (snapshot.transformers.length == 0) {
+            return null;
+        }
+        SimulatorGuard.getInstance().enter();
+        try {
+
+            // 这里过滤掉Simulator所需要的类|来自SimulatorClassLoader所加载的类|来自ModuleJarClassLoader加载的类
+            // 防止ClassCircularityError的发生
+            if (SimulatorClassUtils.isComeFromSimulatorFamily(internalClassName, loader)) {
+                return null;
+            }
+
+            return _transform(
+                    snapshot,
+                    loader,
+                    internalClassName,
+                    classBeingRedefined,
+                    srcByteCodeArray
+            );
+
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: simulator shared transform {} in loader={}; failed, will ignore this transform.",
+                    internalClassName,
+                    loader,
+                    cause
+            );
+            return null;
+        } finally {
+            SimulatorGuard.getInstance().exit();
+        }
+    }
+
+    private byte[] _transform(final Snapshot snapshot,
+                              final ClassLoader loader,
+                              String internalClassName,
+                              final Class<?> classBeingRedefined,
+                              byte[] srcByteCodeArray) {
+        // 如果未开启unsafe开关，是不允许增强来自BootStrapClassLoader的类
+        if (!isEnableUnsafe
+                && null == loader) {
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: transform ignore {}, class from bootstrap but unsafe.enable=false.", internalClassName);
+            }
+            return null;
+        }
+
+        ClassStructure classStructure = null;
+        if (internalClassName == null) {
+            classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
+            internalClassName = classStructure.getJavaClassName();
+        }
+        final String javaClassName = internalClassName.replace('/', '.');
+
+        final BitSet candidates = snapshot.index.lookup(javaClassName);
+        if (candidates == null) {
+            return null;
+        }
+
+        final List<DefaultSimulatorClassFileTransformer> preMatchedTransformers = new ArrayList<DefaultSimulatorClassFileTransformer>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            final DefaultSimulatorClassFileTransformer transformer = snapshot.transformers[i];
+            try {
+                if (transformer.getMatcher().preMatching(javaClassName)) {
+                    preMatchedTransformers.add(transformer);
+                }
+            } catch (Throwable cause) {
+                logger.warn("SIMULATOR: simulator transform {} in loader={}; failed, module={} at watch={}, will ignore this transform.",
+                        internalClassName,
+                        loader,
+                        transformer.getModuleId(),
+                        transformer.getWatchId(),
+                        cause
+                );
+            }
+        }
+        if (preMatchedTransformers.isEmpty()) {
+            return null;
+        }
+
+        // 优先使用上次启动缓存的增强结果
+        final long startNanos = System.nanoTime();
+        final String cacheKey = enhanceCacheManager == null
+                ? null
+                : enhanceCacheManager.toKey(loader, internalClassName, srcByteCodeArray, preMatchedTransformers);
+        if (cacheKey != null) {
+            final DefaultEnhanceCacheManager.Entry entry = enhanceCacheManager.get(cacheKey, preMatchedTransformers);
+            if (entry != null) {
+                if (!entry.signCodes.isEmpty()) {
+                    affectStatistic.statisticAffect(loader, internalClassName, merge(entry.signCodes));
+                }
+                return enhanceCacheManager.applyHit(entry, loader, internalClassName, startNanos);
+            }
+        }
+
+        // 任意一个观察匹配失败时结果不完整，不能写入缓存
+        boolean isCompleted = true;
+        final List<DefaultSimulatorClassFileTransformer> matchedTransformers = new ArrayList<DefaultSimulatorClassFileTransformer>(preMatchedTransformers.size());
+        final List<Map<String, Set<BuildingForListeners>>> matchedSignCodes = new ArrayList<Map<String, Set<BuildingForListeners>>>(preMatchedTransformers.size());
+        for (final DefaultSimulatorClassFileTransformer transformer : preMatchedTransformers) {
+            try {
+                if (classStructure == null) {
+                    classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
+                }
+                final Map<String, Set<BuildingForListeners>> signCodes = transformer.matching(loader, internalClassName, classStructure);
+                if (signCodes != null) {
+                    matchedTransformers.add(transformer);
+                    matchedSignCodes.add(signCodes);
+                }
+            } catch (Throwable cause) {
+                isCompleted = false;
+                logger.warn("SIMULATOR: simulator transform {} in loader={}; failed, module={} at watch={}, will ignore this transform.",
+                        internalClassName,
+                        loader,
+                        transformer.getModuleId(),
+                        transformer.getWatchId(),
+                        cause
+                );
+            }
+        }
+
+        // 如果一个行为都没匹配上也不用继续了
+        if (matchedTransformers.isEmpty()) {
+            if (cacheKey != null && isCompleted) {
+                enhanceCacheManager.applyMiss(cacheKey, preMatchedTransformers, matchedTransformers, matchedSignCodes, srcByteCodeArray, null, startNanos);
+            }
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: transform ignore {}, no behaviors matched in loader={}", internalClassName, loader);
+            }
+            return null;
+        }
+
+        final Map<String, Set<BuildingForListeners>> behaviorSignCodes = merge(matchedSignCodes);
+
+        /**
+         * ASM增强中使用到了 LDC 命令，LDC命令在 java5(49)才支持，所以当类版本低于此版本时，强制将类版本设置为 java5(49)
+         */
+        if (getClassMajorVersion(srcByteCodeArray) < CLASS_VERSION_15) {
+            srcByteCodeArray = resetClassVersionToJava5(srcByteCodeArray);
+        }
+
+        try {
+            final EventEnhancer enhancer = new EventEnhancer(composer);
+            byte[] toByteCodeArray = enhancer.toByteCodeArray(
+                    loader,
+                    srcByteCodeArray,
+                    behaviorSignCodes
+            );
+            if (srcByteCodeArray == toByteCodeArray) {
+                if (isDebugEnabled) {
+                    logger.debug("SIMULATOR: transform ignore {}, nothing changed in loader={}", internalClassName, loader);
+                }
+                return null;
+            }
+
+            // statistic affect
+            for (int i = 0; i < matchedTransformers.size(); i++) {
+                matchedTransformers.get(i).getAffectStatistic().statisticAffect(loader, internalClassName, matchedSignCodes.get(i));
+            }
+            affectStatistic.statisticAffect(loader, internalClassName, behaviorSignCodes);
+
+            if (cacheKey != null && isCompleted && !enhancer.isComposited()) {
+                enhanceCacheManager.applyMiss(cacheKey, preMatchedTransformers, matchedTransformers, matchedSignCodes, srcByteCodeArray, toByteCodeArray, startNanos);
+            }
+
+            if (isInfoEnabled) {
+                logger.info("SIMULATOR: transform {} finished, by modules={} in loader={}", internalClassName, toModuleIds(matchedTransformers), loader);
+            }
+            return toByteCodeArray;
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: transform {} failed, by modules={} in loader={}", internalClassName, toModuleIds(matchedTransformers), loader, cause);
+            return null;
+        }
+    }
+
+    /**
+     * 合并多个观察匹配到的行为，同一个行为上的监听器取并集
+     */
+    private Map<String, Set<BuildingForListeners>> merge(final List<Map<String, Set<BuildingForListeners>>> signCodesList) {
+        if (signCodesList.size() == 1) {
+            return signCodesList.get(0);
+        }
+        final Map<String, Set<BuildingForListeners>> behaviorSignCodes = new HashMap<String, Set<BuildingForListeners>>();
+        for (final Map<String, Set<BuildingForListeners>> signCodes : signCodesList) {
+            for (final Map.Entry<String, Set<BuildingForListeners>> entry : signCodes.entrySet()) {
+                Set<BuildingForListeners> listeners = behaviorSignCodes.get(entry.getKey());
+                if (listeners == null) {
+                    listeners = new LinkedHashSet<BuildingForListeners>();
+                    behaviorSignCodes.put(entry.getKey(), listeners);
+                }
+                listeners.addAll(entry.getValue());
+            }
+        }
+        return behaviorSignCodes;
+    }
+
+    private Set<String> toModuleIds(final List<DefaultSimulatorClassFileTransformer> transformers) {
+        final Set<String> moduleIds = new LinkedHashSet<String>();
+        for (final DefaultSimulatorClassFileTransformer transformer : transformers) {
+            moduleIds.add(transformer.getModuleId());
+        }
+        return moduleIds;
+    }
+
+    /**
+     * 共享形变器不属于任何观察
+     *
+     * @return -1
+     */
+    @Override
+    public int getWatchId() {
+        return -1;
+    }
+
+    @Override
+    public Map<Integer, EventListener> getEventListeners() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public List<BuildingForListeners> getAllListeners() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Object getMatcher() {
+        return null;
+    }
+
+    /**
+     * 获取所有观察合并之后的影响统计
+     *
+     * @return 影响统计
+     */
+    @Override
+    public AffectStatistic getAffectStatistic() {
+        return affectStatistic;
+    }
+
+    /**
+     * 已注册观察的只读快照
+     */
+    private static final class Snapshot {
+        private final DefaultSimulatorClassFileTransformer[] transformers;
+        private final ClassNameIndex index;
+
+        Snapshot(final List<DefaultSimulatorClassFileTransformer> transformers) {
+            this.transformers = transformers.toArray(new DefaultSimulatorClassFileTransformer[0]);
+            final List<Matcher> matchers = new ArrayList<Matcher>(this.transformers.length);
+            for (final DefaultSimulatorClassFileTransformer transformer : this.transformers) {
+                matchers.add(transformer.getMatcher());
+            }
+            this.index = new ClassNameIndex(matchers);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.util.matcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 类名索引
+ * <p>
+ * 将多个匹配器的类名通配符模式合并为一个索引，通过一次查找得到类名可能匹配的匹配器下标:
+ * 不含 '*' 的模式按全名精确匹配；含有 '*' 的模式取第一个通配符之前的字面量前缀放入前缀树，
+ * 查找时沿着类名逐字符下行即可拿到所有前缀命中的模式；无法描述类名的匹配器则每次都作为候选。
+ * 索引只保证不漏掉可能匹配的匹配器，候选结果仍需要经过{@link Matcher#preMatching(String)}确认
+ * </p>
+ * 索引构建完成后只读，可以在多线程间共享
+ */
+public class ClassNameIndex {
+
+    /**
+     * 精确类名对应的匹配器下标
+     */
+    private final Map<String, int[]> exactIndexes = new HashMap<String, int[]>();
+
+    /**
+     * 类名前缀树
+     */
+    private final Node root = new Node();
+
+    /**
+     * 每次都需要作为候选的匹配器下标
+     */
+    private final BitSet fallbackIndexes = new BitSet();
+
+    private final int size;
+
+    /**
+     * 构建类名索引
+     *
+     * @param matchers 匹配器列表，匹配器在列表中的下标即为查找结果中的下标
+     */
+    public ClassNameIndex(final List<? extends Matcher> matchers) {
+        this.size = matchers.size();
+        final Map<String, List<Integer>> exacts = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < matchers.size(); i++) {
+            final String[] wildcards = matchers.get(i).getClassNameWildcards();
+            if (wildcards == null) {
+                fallbackIndexes.set(i);
+                continue;
+            }
+            for (final String wildcard : wildcards) {
+                if (wildcard == null) {
+                    continue;
+                }
+                if (wildcard.indexOf('*') == -1) {
+                    List<Integer> indexes = exacts.get(wildcard);
+                    if (indexes == null) {
+                        indexes = new ArrayList<Integer>(1);
+                        exacts.put(wildcard, indexes);
+                    }
+                    indexes.add(i);
+                } else {
+                    root.add(wildcard, literalPrefixLength(wildcard), i);
+                }
+            }
+        }
+        for (final Map.Entry<String, List<Integer>> entry : exacts.entrySet()) {
+            final List<Integer> indexes = entry.getValue();
+            final int[] array = new int[indexes.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = indexes.get(i);
+            }
+            exactIndexes.put(entry.getKey(), array);
+        }
+    }
+
+    /**
+     * 通配符模式中字面量前缀的长度，'?'、'\' 以及 '*' 均视为前缀结束
+     */
+    public static int literalPrefixLength(final String wildcard) {
+        for (int i = 0; i < wildcard.length(); i++) {
+            final char c = wildcard.charAt(i);
+            if (c == '*' || c == '?' || c == '\\') {
+                return i;
+            }
+        }
+        return wildcard.length();
+    }
+
+    /**
+     * 索引中的匹配器个数
+     *
+     * @return 匹配器个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查找类名可能匹配的匹配器
+     *
+     * @param javaClassName 类名
+     * @return 可能匹配的匹配器下标集合，没有候选时返回 null
+     */
+    public BitSet lookup(final String javaClassName) {
+        BitSet candidates = null;
+        if (!fallbackIndexes.isEmpty()) {
+            candidates = (BitSet) fallbackIndexes.clone();
+        }
+        final int[] exacts = exactIndexes.get(javaClassName);
+        if (exacts != null) {
+            candidates = set(candidates, exacts);
+        }
+        Node node = root;
+        int i = 0;
+        while (node != null) {
+            if (node.indexes != null) {
+                candidates = set(candidates, node.indexes);
+            }
+            if (i >= javaClassName.length()) {
+                break;
+            }
+            node = node.child(javaClassName.charAt(i++));
+        }
+        return candidates;
+    }
+
+    private static BitSet set(BitSet candidates, final int[] indexes) {
+        if (candidates == null) {
+            candidates = new BitSet();
+        }
+        for (final int index : indexes) {
+            candidates.set(index);
+        }
+        return candidates;
+    }
+
+    /**
+     * 前缀树节点，子节点数量通常很少，使用数组线性查找
+     */
+    private static final class Node {
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private int[] indexes;
+
+        Node child(final char c) {
+            final char[] chars = this.chars;
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void add(final String prefix, final int length, final int index) {
+            Node node = this;
+            for (int i = 0; i < length; i++) {
+                final char c = prefix.charAt(i);
+                Node child = node.child(c);
+                if (child == null) {
+                    child = new Node();
+                    final int n = node.chars.length;
+                    final char[] chars = new char[n + 1];
+                    final Node[] children = new Node[n + 1];
+                    System.arraycopy(node.chars, 0, chars, 0, n);
+                    System.arraycopy(node.children, 0, children, 0, n);
+                    chars[n] = c;
+                    children[n] = child;
+                    node.chars = chars;
+                    node.children = children;
+                }
+                node = child;
+            }
+            if (node.indexes == null) {
+                node.indexes = new int[]{index};
+            } else {
+                final int n = node.indexes.length;
+                final int[] indexes = new int[n + 1];
+                System.arraycopy(node.indexes, 0, indexes, 0, n);
+                indexes[n] = index;
+                node.indexes = indexes;
+            }
+        }
+    }
+}
@@ -111,6 +111,14 @@ public class ExtFilterMatcher implements Matcher {
         return extFilter.doClassNameFilter(javaClassName);
     }
 
+    @Override
+    public String[] getClassNameWildcards() {
+        if (extFilter instanceof ClassNamePatternFilter) {
+            return ((ClassNamePatternFilter) extFilter).getClassNameWildcards();
+        }
+        return null;
+    }
+
     @Override
     public MatchingResult matching(final ClassStructure classStructure) {
 
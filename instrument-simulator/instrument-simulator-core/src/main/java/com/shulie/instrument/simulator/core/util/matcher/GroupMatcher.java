@@ -60,6 +60,23 @@ public abstract class GroupMatcher implements Matcher {
             return false;
         }
 
+        @Override
+        public String[] getClassNameWildcards() {
+            final List<String> wildcards = new ArrayList<String>();
+            if (ArrayUtils.isEmpty(matcherArray)) {
+                return new String[0];
+            }
+            for (Matcher matcher : matcherArray) {
+                final String[] subWildcards = matcher.getClassNameWildcards();
+                // 任意一个无法描述则整体无法描述
+                if (subWildcards == null) {
+                    return null;
+                }
+                wildcards.addAll(Arrays.asList(subWildcards));
+            }
+            return wildcards.toArray(new String[0]);
+        }
+
         @Override
         public MatchingResult matching(final ClassStructure classStructure) {
             if (ArrayUtils.isEmpty(matcherArray)) {
@@ -123,6 +140,21 @@ public abstract class GroupMatcher implements Matcher {
             return true;
         }
 
+        @Override
+        public String[] getClassNameWildcards() {
+            if (ArrayUtils.isEmpty(matcherArray)) {
+                return new String[0];
+            }
+            // 需要全部匹配，任意一个能描述的即可作为索引
+            for (Matcher matcher : matcherArray) {
+                final String[] subWildcards = matcher.getClassNameWildcards();
+                if (subWildcards != null) {
+                    return subWildcards;
+                }
+            }
+            return null;
+        }
+
         @Override
         public MatchingResult matching(ClassStructure classStructure) {
             boolean isFirst = true;
@@ -41,6 +41,14 @@ public interface Matcher {
      */
     boolean preMatching(String javaClassName);
 
+    /**
+     * 获取类名的通配符匹配模式，用于建立类名索引
+     * 索引命中的类名仍需要经过{@link #preMatching(String)}确认
+     *
+     * @return 通配符匹配模式，无法使用通配符描述时返回 null，此时每个类名都需要经过预匹配
+     */
+    String[] getClassNameWildcards();
+
     /**
      * 匹配类结构
      *
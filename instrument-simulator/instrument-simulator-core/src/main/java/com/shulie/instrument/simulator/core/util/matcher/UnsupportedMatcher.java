@@ -143,6 +143,11 @@ public class UnsupportedMatcher implements Matcher {
         return true;
     }
 
+    @Override
+    public String[] getClassNameWildcards() {
+        return null;
+    }
+
     @Override
     public MatchingResult matching(final ClassStructure classStructure) {
         if (isUnsupportedClass(classStructure)
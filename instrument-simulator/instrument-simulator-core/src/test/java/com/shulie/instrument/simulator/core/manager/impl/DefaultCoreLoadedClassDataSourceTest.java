@@ -0,0 +1,126 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+
+import com.shulie.instrument.simulator.api.filter.ClassNameFilter;
+import com.shulie.instrument.simulator.api.listener.ext.EventWatchBuilder;
+import com.shulie.instrument.simulator.api.listener.ext.EventWatchCondition;
+import com.shulie.instrument.simulator.api.resource.ModuleEventWatcher;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 匹配子类的观察不能只按类名从已加载类目录中取候选类，观察注册之前已经加载的子类也需要被找到
+ */
+public class DefaultCoreLoadedClassDataSourceTest {
+
+    public static class Base {
+    }
+
+    public static class Sub extends Base {
+    }
+
+    public static class Other {
+    }
+
+    @Test
+    public void findsSubClassLoadedBeforeWatchFromBuilder() {
+        final DefaultCoreLoadedClassDataSource dataSource = newDataSource();
+        final EventWatchCondition[] captured = new EventWatchCondition[1];
+        new EventWatchBuilder(capturingWatcher(captured))
+                .onClass(Base.class.getName())
+                .includeSubClasses()
+                .onWatch();
+
+        assertEquals(1, captured[0].getOrFilterArray().length);
+        assertFound(dataSource.find(captured[0].getOrFilterArray()[0]));
+    }
+
+    @Test
+    public void findsSubClassLoadedBeforeWatchFromFilter() {
+        final DefaultCoreLoadedClassDataSource dataSource = newDataSource();
+        final ClassNameFilter filter = new ClassNameFilter(Base.class.getName(), false, true);
+
+        assertNull(filter.getClassNameWildcards());
+        assertFound(dataSource.find(filter));
+    }
+
+    @Test
+    public void usesCatalogWithoutSubClasses() {
+        final DefaultCoreLoadedClassDataSource dataSource = newDataSource();
+        final Set<Class<?>> classes = dataSource.find(new ClassNameFilter(Base.class.getName(), false, false));
+
+        assertTrue(classes.contains(Base.class));
+        assertFalse(classes.contains(Sub.class));
+        assertFalse(classes.contains(Other.class));
+    }
+
+    private static void assertFound(Set<Class<?>> classes) {
+        assertTrue(classes.contains(Base.class));
+        assertTrue(classes.contains(Sub.class));
+        assertFalse(classes.contains(Other.class));
+    }
+
+    /**
+     * 子类在创建数据源(即注册观察)之前已经加载
+     */
+    private static DefaultCoreLoadedClassDataSource newDataSource() {
+        final Class<?>[] loaded = new Class<?>[]{Base.class, Sub.class, Other.class};
+        final Instrumentation inst = (Instrumentation) Proxy.newProxyInstance(
+                DefaultCoreLoadedClassDataSourceTest.class.getClassLoader(),
+                new Class<?>[]{Instrumentation.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getAllLoadedClasses".equals(method.getName())) {
+                            return loaded.clone();
+                        }
+                        if (method.getReturnType() == boolean.class) {
+                            return Boolean.TRUE;
+                        }
+                        return null;
+                    }
+                });
+        return new DefaultCoreLoadedClassDataSource(inst, false);
+    }
+
+    private static ModuleEventWatcher capturingWatcher(final EventWatchCondition[] captured) {
+        return (ModuleEventWatcher) Proxy.newProxyInstance(
+                DefaultCoreLoadedClassDataSourceTest.class.getClassLoader(),
+                new Class<?>[]{ModuleEventWatcher.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (args != null && args.length > 0 && args[0] instanceof EventWatchCondition) {
+                            captured[0] = (EventWatchCondition) args[0];
+                        }
+                        if (method.getReturnType() == int.class) {
+                            return 1;
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import com.shulie.instrument.simulator.core.classloader.ClassLoaderFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 模块导出按照拓扑顺序在调用线程中登记，与模块准备完成的先后无关
+ */
+public class ParallelModuleLoaderTest {
+
+    @Test
+    public void registersExportsInTopologicalOrderOnCallingThread() {
+        final ModuleSpec a = new ModuleSpec().setModuleId("a");
+        final ModuleSpec b = new ModuleSpec().setModuleId("b");
+        b.setDependencies(new HashSet<String>(Collections.singletonList("a")));
+        final ModuleSpec c = new ModuleSpec().setModuleId("c");
+
+        final Thread caller = Thread.currentThread();
+        final List<String> registered = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> committed = new ArrayList<String>();
+        final List<String> violations = Collections.synchronizedList(new ArrayList<String>());
+
+        new ParallelModuleLoader(3, new ParallelModuleLoader.Stage() {
+            @Override
+            public ClassLoaderFactory prepare(ModuleSpec moduleSpec) {
+                // 排在前面的模块最后准备完成
+                sleep("a".equals(moduleSpec.getModuleId()) ? 200L : "b".equals(moduleSpec.getModuleId()) ? 100L : 0L);
+                return newClassLoaderFactory();
+            }
+
+            @Override
+            public void register(ModuleSpec moduleSpec, ClassLoaderFactory classLoaderFactory) {
+                if (Thread.currentThread() != caller) {
+                    violations.add("register " + moduleSpec.getModuleId() + " on " + Thread.currentThread().getName());
+                }
+                registered.add(moduleSpec.getModuleId());
+            }
+
+            @Override
+            public ModuleJarLoader discover(ModuleSpec moduleSpec) {
+                if (!registered.contains(moduleSpec.getModuleId())) {
+                    violations.add("discover " + moduleSpec.getModuleId() + " before register");
+                }
+                return null;
+            }
+
+            @Override
+            public void commit(ModuleSpec moduleSpec, ModuleJarLoader moduleJarLoader) {
+                committed.add(moduleSpec.getModuleId());
+            }
+        }).load(Arrays.asList(b, a, c));
+
+        assertTrue(violations.toString(), violations.isEmpty());
+        assertEquals(Arrays.asList("a", "b", "c"), registered);
+        // 没有发现模块实例的模块不会加载
+        assertTrue(committed.isEmpty());
+    }
+
+    private static ClassLoaderFactory newClassLoaderFactory() {
+        return (ClassLoaderFactory) Proxy.newProxyInstance(
+                ParallelModuleLoaderTest.class.getClassLoader(),
+                new Class<?>[]{ClassLoaderFactory.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
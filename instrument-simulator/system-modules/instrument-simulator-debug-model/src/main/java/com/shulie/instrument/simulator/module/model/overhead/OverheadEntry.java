@@ -0,0 +1,146 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.module.model.overhead;
+
+import java.io.Serializable;
+
+/**
+ * 单个监听器在单个方法上的开销统计
+ */
+public class OverheadEntry implements Serializable {
+    /**
+     * 监听器ID
+     */
+    private int listenerId;
+    /**
+     * 监听器类名
+     */
+    private String listenerClassName;
+    /**
+     * 被拦截的类名
+     */
+    private String className;
+    /**
+     * 被拦截的方法名
+     */
+    private String methodName;
+    /**
+     * 被拦截的方法描述
+     */
+    private String methodDesc;
+    /**
+     * 调用次数
+     */
+    private long invokeCount;
+    /**
+     * 监听器累计耗时,单位纳秒
+     */
+    private long totalNanos;
+    /**
+     * 单次调用平均耗时,单位纳秒
+     */
+    private long avgNanos;
+    /**
+     * 监听器累计分配字节数,未开启分配统计时为 0
+     */
+    private long allocatedBytes;
+
+    public int getListenerId() {
+        return listenerId;
+    }
+
+    public void setListenerId(int listenerId) {
+        this.listenerId = listenerId;
+    }
+
+    public String getListenerClassName() {
+        return listenerClassName;
+    }
+
+    public void setListenerClassName(String listenerClassName) {
+        this.listenerClassName = listenerClassName;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public void setMethodName(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public String getMethodDesc() {
+        return methodDesc;
+    }
+
+    public void setMethodDesc(String methodDesc) {
+        this.methodDesc = methodDesc;
+    }
+
+    public long getInvokeCount() {
+        return invokeCount;
+    }
+
+    public void setInvokeCount(long invokeCount) {
+        this.invokeCount = invokeCount;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    public long getAvgNanos() {
+        return avgNanos;
+    }
+
+    public void setAvgNanos(long avgNanos) {
+        this.avgNanos = avgNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public void setAllocatedBytes(long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "listenerId=" + listenerId +
+                ", listenerClassName='" + listenerClassName + '\'' +
+                ", className='" + className + '\'' +
+                ", methodName='" + methodName + '\'' +
+                ", methodDesc='" + methodDesc + '\'' +
+                ", invokeCount=" + invokeCount +
+                ", totalNanos=" + totalNanos +
+                ", avgNanos=" + avgNanos +
+                ", allocatedBytes=" + allocatedBytes +
+                '}';
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.module.model.overhead;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 监听器开销统计结果
+ */
+public class OverheadInfo implements Serializable {
+    /**
+     * 是否开启开销统计
+     */
+    private boolean enabled;
+    /**
+     * 是否开启分配字节数统计
+     */
+    private boolean allocationEnabled;
+    /**
+     * 当前 JVM 是否支持分配字节数统计
+     */
+    private boolean allocationSupported;
+    /**
+     * 统计项总数
+     */
+    private int total;
+    /**
+     * 排序后的统计项
+     */
+    private List<OverheadEntry> entries;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isAllocationEnabled() {
+        return allocationEnabled;
+    }
+
+    public void setAllocationEnabled(boolean allocationEnabled) {
+        this.allocationEnabled = allocationEnabled;
+    }
+
+    public boolean isAllocationSupported() {
+        return allocationSupported;
+    }
+
+    public void setAllocationSupported(boolean allocationSupported) {
+        this.allocationSupported = allocationSupported;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public List<OverheadEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<OverheadEntry> entries) {
+        this.entries = entries;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "enabled=" + enabled +
+                ", allocationEnabled=" + allocationEnabled +
+                ", allocationSupported=" + allocationSupported +
+                ", total=" + total +
+                ", entries=" + entries +
+                '}';
+    }
+}
@@ -18,6 +18,7 @@ import com.shulie.instrument.simulator.api.CommandResponse;
 import com.shulie.instrument.simulator.api.ExtensionModule;
 import com.shulie.instrument.simulator.api.ModuleInfo;
 import com.shulie.instrument.simulator.api.annotation.Command;
+import com.shulie.instrument.simulator.api.resource.EnhanceCacheManager;
 import com.shulie.instrument.simulator.api.resource.ModuleManager;
 import com.shulie.instrument.simulator.api.resource.SimulatorConfig;
 import com.shulie.instrument.simulator.module.model.info.CommandInfo;
@@ -45,6 +46,8 @@ public class InfoModule implements ExtensionModule {
     private SimulatorConfig simulatorConfig;
     @Resource
     private ModuleManager moduleManager;
+    @Resource
+    private EnhanceCacheManager enhanceCacheManager;
 
     @Command(value = "info", description = "查看模拟器基本信息")
     public CommandResponse info() throws IOException {
@@ -64,6 +67,17 @@ public class InfoModule implements ExtensionModule {
                     .append(" BIZ_CLASSLOADER_INJECT_FILES : ").append(simulatorConfig.getBizClassLoaderInjectFiles()).append("\n")
                     .append("          SYSTEM_PROVIDER_LIB : ").append(simulatorConfig.getSystemProviderLibPath()).append("\n")
                     .append("                   ZK_SERVERS : ").append(simulatorConfig.getZkServers()).append("\n");
+            if (enhanceCacheManager != null) {
+                versionSB.append("                ENHANCE_CACHE : ").append(enhanceCacheManager.isEnabled() ? "ENABLE" : "DISABLE").append("\n");
+                if (enhanceCacheManager.isEnabled()) {
+                    versionSB.append("           ENHANCE_CACHE_PATH : ").append(enhanceCacheManager.getCachePath()).append("\n")
+                            .append("            ENHANCE_CACHE_HIT : ").append(enhanceCacheManager.getHitCount())
+                            .append(" (").append(enhanceCacheManager.getHitCostMillis()).append("ms)").append("\n")
+                            .append("           ENHANCE_CACHE_MISS : ").append(enhanceCacheManager.getMissCount())
+                            .append(" (").append(enhanceCacheManager.getMissCostMillis()).append("ms)").append("\n")
+                            .append("          ENHANCE_CACHE_SAVED : ").append(enhanceCacheManager.getSavedCostMillis()).append("ms").append("\n");
+                }
+            }
             return CommandResponse.success(versionSB.toString());
         } catch (Throwable e) {
             return CommandResponse.failure(e);
@@ -16,8 +16,11 @@ package com.shulie.instrument.simulator.module.mgr;
 
 import com.shulie.instrument.simulator.api.*;
 import com.shulie.instrument.simulator.api.annotation.Command;
+import com.shulie.instrument.simulator.api.obj.ModuleLoadInfo;
+import com.shulie.instrument.simulator.api.resource.ModuleLoadInfoManager;
 import com.shulie.instrument.simulator.api.resource.ModuleManager;
 import com.shulie.instrument.simulator.module.mgr.model.ModuleInf;
+import com.shulie.instrument.simulator.module.mgr.model.ModuleTimeline;
 import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.MetaInfServices;
@@ -29,6 +32,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -47,6 +52,9 @@ public class ModuleManagementModule implements ExtensionModule {
     @Resource
     private ModuleManager moduleManager;
 
+    @Resource
+    private ModuleLoadInfoManager moduleLoadInfoManager;
+
     // 获取参数值
     private String getParamWithDefault(final Map<String, String> param, final String name, final String defaultValue) {
         final String valueFromReq = param.get(name);
@@ -291,4 +299,48 @@ public class ModuleManagementModule implements ExtensionModule {
 
     }
 
+    @Command(value = "timeline", description = "模块加载时间线")
+    public CommandResponse timeline() {
+        try {
+            long baseTime = Long.MAX_VALUE;
+            for (final ModuleLoadInfo moduleLoadInfo : moduleLoadInfoManager.getModuleLoadInfos().values()) {
+                if (moduleLoadInfo.getPrepareStartTime() > 0) {
+                    baseTime = Math.min(baseTime, moduleLoadInfo.getPrepareStartTime());
+                }
+            }
+            final List<ModuleTimeline> timelines = new ArrayList<ModuleTimeline>();
+            for (final ModuleLoadInfo moduleLoadInfo : moduleLoadInfoManager.getModuleLoadInfos().values()) {
+                if (moduleLoadInfo.getPrepareStartTime() <= 0) {
+                    continue;
+                }
+                final ModuleTimeline timeline = new ModuleTimeline();
+                timeline.setModuleId(moduleLoadInfo.getModuleId());
+                timeline.setStatus(moduleLoadInfo.getStatus() == null ? null : moduleLoadInfo.getStatus().name());
+                timeline.setThread(moduleLoadInfo.getLoadThread());
+                timeline.setPrepareStart(moduleLoadInfo.getPrepareStartTime() - baseTime);
+                timeline.setPrepareCost(moduleLoadInfo.getPrepareEndTime() - moduleLoadInfo.getPrepareStartTime());
+                if (moduleLoadInfo.getLoadStartTime() > 0) {
+                    timeline.setWaitCost(moduleLoadInfo.getLoadStartTime() - moduleLoadInfo.getPrepareEndTime());
+                    timeline.setLoadStart(moduleLoadInfo.getLoadStartTime() - baseTime);
+                    timeline.setLoadCost(moduleLoadInfo.getLoadEndTime() - moduleLoadInfo.getLoadStartTime());
+                } else {
+                    // 尚未加载(例如依赖的开关尚未开启)
+                    timeline.setLoadStart(-1);
+                }
+                timeline.setActiveCost(moduleLoadInfo.getActiveCost());
+                timelines.add(timeline);
+            }
+            Collections.sort(timelines, new Comparator<ModuleTimeline>() {
+                @Override
+                public int compare(ModuleTimeline o1, ModuleTimeline o2) {
+                    return o1.getPrepareStart() < o2.getPrepareStart() ? -1 : (o1.getPrepareStart() == o2.getPrepareStart() ? 0 : 1);
+                }
+            });
+            return CommandResponse.success(timelines);
+        } catch (Throwable e) {
+            logger.error("SIMULATOR: module management timeline err.", e);
+            return CommandResponse.failure(e);
+        }
+    }
+
 }
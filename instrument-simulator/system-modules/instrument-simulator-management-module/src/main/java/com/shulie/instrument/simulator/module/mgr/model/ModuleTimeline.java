@@ -0,0 +1,156 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.module.mgr.model;
+
+import java.io.Serializable;
+
+/**
+ * 模块加载时间线，时间点均为相对于最早开始加载的模块的偏移(毫秒)
+ */
+public class ModuleTimeline implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 模块id
+     */
+    private String moduleId;
+
+    /**
+     * 加载状态
+     */
+    private String status;
+
+    /**
+     * 准备及发现模块的线程
+     */
+    private String thread;
+
+    /**
+     * 开始准备的时间点
+     */
+    private long prepareStart;
+
+    /**
+     * 准备耗时(创建类加载器、发现模块实例)
+     */
+    private long prepareCost;
+
+    /**
+     * 准备完成后等待加载的耗时(等待依赖模块或者等待串行加载)
+     */
+    private long waitCost;
+
+    /**
+     * 开始加载的时间点
+     */
+    private long loadStart;
+
+    /**
+     * 加载耗时(注入资源、生命周期回调及激活)
+     */
+    private long loadCost;
+
+    /**
+     * 激活耗时
+     */
+    private long activeCost;
+
+    public String getModuleId() {
+        return moduleId;
+    }
+
+    public void setModuleId(String moduleId) {
+        this.moduleId = moduleId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public void setThread(String thread) {
+        this.thread = thread;
+    }
+
+    public long getPrepareStart() {
+        return prepareStart;
+    }
+
+    public void setPrepareStart(long prepareStart) {
+        this.prepareStart = prepareStart;
+    }
+
+    public long getPrepareCost() {
+        return prepareCost;
+    }
+
+    public void setPrepareCost(long prepareCost) {
+        this.prepareCost = prepareCost;
+    }
+
+    public long getWaitCost() {
+        return waitCost;
+    }
+
+    public void setWaitCost(long waitCost) {
+        this.waitCost = waitCost;
+    }
+
+    public long getLoadStart() {
+        return loadStart;
+    }
+
+    public void setLoadStart(long loadStart) {
+        this.loadStart = loadStart;
+    }
+
+    public long getLoadCost() {
+        return loadCost;
+    }
+
+    public void setLoadCost(long loadCost) {
+        this.loadCost = loadCost;
+    }
+
+    public long getActiveCost() {
+        return activeCost;
+    }
+
+    public void setActiveCost(long activeCost) {
+        this.activeCost = activeCost;
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleTimeline{" +
+                "moduleId='" + moduleId + '\'' +
+                ", status='" + status + '\'' +
+                ", thread='" + thread + '\'' +
+                ", prepareStart=" + prepareStart +
+                ", prepareCost=" + prepareCost +
+                ", waitCost=" + waitCost +
+                ", loadStart=" + loadStart +
+                ", loadCost=" + loadCost +
+                ", activeCost=" + activeCost +
+                '}';
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.module.overhead;
+
+import com.shulie.instrument.simulator.api.CommandResponse;
+import com.shulie.instrument.simulator.api.ExtensionModule;
+import com.shulie.instrument.simulator.api.ModuleInfo;
+import com.shulie.instrument.simulator.api.annotation.Command;
+import com.shulie.instrument.simulator.api.resource.OverheadProfiler;
+import com.shulie.instrument.simulator.api.resource.OverheadRecord;
+import com.shulie.instrument.simulator.module.ParamSupported;
+import com.shulie.instrument.simulator.module.model.overhead.OverheadEntry;
+import com.shulie.instrument.simulator.module.model.overhead.OverheadInfo;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.MetaInfServices;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监听器开销统计模块，统计每个监听器在每个被增强方法上的调用次数、耗时及分配字节数
+ */
+@MetaInfServices(ExtensionModule.class)
+@ModuleInfo(id = "overhead", version = "1.0.0", author = "xiaobin@shulie.io", description = "监听器开销统计模块")
+public class OverheadModule extends ParamSupported implements ExtensionModule {
+
+    @Resource
+    private OverheadProfiler overheadProfiler;
+
+    @Command(value = "enable", description = "开启监听器开销统计，allocation=true 时同时统计分配字节数")
+    public CommandResponse enable(final Map<String, String> args) {
+        try {
+            final boolean allocation = getBooleanParameter(args, "allocation", false);
+            if (allocation && !overheadProfiler.isAllocationSupported()) {
+                return CommandResponse.failure("current jvm is not support thread allocated memory.");
+            }
+            overheadProfiler.setAllocationEnabled(allocation);
+            overheadProfiler.setEnabled(true);
+            return CommandResponse.success(true);
+        } catch (Throwable e) {
+            return CommandResponse.failure(e);
+        }
+    }
+
+    @Command(value = "disable", description = "关闭监听器开销统计，已有统计结果保留")
+    public CommandResponse disable(final Map<String, String> args) {
+        try {
+            overheadProfiler.setEnabled(false);
+            overheadProfiler.setAllocationEnabled(false);
+            return CommandResponse.success(true);
+        } catch (Throwable e) {
+            return CommandResponse.failure(e);
+        }
+    }
+
+    @Command(value = "info", description = "获取监听器开销统计，参数 top 条数、sort 排序字段(nanos|count|bytes|avg)、listener 监听器类名过滤")
+    public CommandResponse info(final Map<String, String> args) {
+        try {
+            final int top = getIntParameter(args, "top", 20);
+            final String sort = getParameter(args, "sort", "nanos");
+            final String listener = getParameter(args, "listener");
+
+            final List<OverheadEntry> entries = new ArrayList<OverheadEntry>();
+            for (OverheadRecord record : overheadProfiler.getRecords()) {
+                if (StringUtils.isNotBlank(listener)
+                        && !StringUtils.contains(record.getListenerClassName(), listener)) {
+                    continue;
+                }
+                entries.add(toEntry(record));
+            }
+            Collections.sort(entries, comparatorOf(sort));
+
+            OverheadInfo overheadInfo = new OverheadInfo();
+            overheadInfo.setEnabled(overheadProfiler.isEnabled());
+            overheadInfo.setAllocationEnabled(overheadProfiler.isAllocationEnabled());
+            overheadInfo.setAllocationSupported(overheadProfiler.isAllocationSupported());
+            overheadInfo.setTotal(entries.size());
+            overheadInfo.setEntries(top > 0 && entries.size() > top
+                    ? new ArrayList<OverheadEntry>(entries.subList(0, top))
+                    : entries);
+            return CommandResponse.success(overheadInfo);
+        } catch (Throwable e) {
+            return CommandResponse.failure(e);
+        }
+    }
+
+    @Command(value = "reset", description = "清空监听器开销统计结果")
+    public CommandResponse reset(final Map<String, String> args) {
+        try {
+            overheadProfiler.reset();
+            return CommandResponse.success(true);
+        } catch (Throwable e) {
+            return CommandResponse.failure(e);
+        }
+    }
+
+    private static OverheadEntry toEntry(final OverheadRecord record) {
+        OverheadEntry entry = new OverheadEntry();
+        entry.setListenerId(record.getListenerId());
+        entry.setListenerClassName(record.getListenerClassName());
+        entry.setClassName(record.getClassName());
+        entry.setMethodName(record.getMethodName());
+        entry.setMethodDesc(record.getMethodDesc());
+        entry.setInvokeCount(record.getInvokeCount());
+        entry.setTotalNanos(record.getTotalNanos());
+        entry.setAvgNanos(record.getInvokeCount() == 0 ? 0 : record.getTotalNanos() / record.getInvokeCount());
+        entry.setAllocatedBytes(record.getAllocatedBytes());
+        return entry;
+    }
+
+    private static Comparator<OverheadEntry> comparatorOf(final String sort) {
+        return new Comparator<OverheadEntry>() {
+            @Override
+            public int compare(OverheadEntry o1, OverheadEntry o2) {
+                return compareDesc(valueOf(o1), valueOf(o2));
+            }
+
+            private long valueOf(OverheadEntry entry) {
+                if ("count".equals(sort)) {
+                    return entry.getInvokeCount();
+                } else if ("bytes".equals(sort)) {
+                    return entry.getAllocatedBytes();
+                } else if ("avg".equals(sort)) {
+                    return entry.getAvgNanos();
+                }
+                return entry.getTotalNanos();
+            }
+        };
+    }
+
+    private static int compareDesc(long v1, long v2) {
+        return v1 < v2 ? 1 : (v1 == v2 ? 0 : -1);
+    }
+}